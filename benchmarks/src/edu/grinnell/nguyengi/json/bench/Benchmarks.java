@@ -0,0 +1,38 @@
+package edu.grinnell.nguyengi.json.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler, so that allocation rates are
+ * reported along with throughput. Takes the same arguments as JMH's own Main,
+ * such as a pattern selecting benchmarks or -p corpus=numbers.
+ *
+ * @author Giang
+ *
+ */
+public class Benchmarks
+{
+  /**
+   * Runs the benchmarks selected by args
+   *
+   * @param args
+   *          Strings
+   * @throws Exception
+   */
+  static public void main(String[] args)
+    throws Exception
+  {
+    CommandLineOptions options = new CommandLineOptions(args);
+    if (options.shouldHelp())
+      options.showHelp();
+    else if (options.shouldList())
+      new Runner(options).list();
+    else
+      new Runner(new OptionsBuilder().parent(options)
+                                     .addProfiler(GCProfiler.class)
+                                     .build()).run();
+  } // main(String[])
+} // class Benchmarks
@@ -0,0 +1,44 @@
+package edu.grinnell.nguyengi.json.bench;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Counts the megabytes of JSON a benchmark reads or writes, which JMH
+ * reports per second next to the operation throughput.
+ *
+ * @author Giang
+ *
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class Bytes
+{
+  /**
+   * Megabytes (10^6 bytes) handled in the current iteration
+   */
+  public double megabytes;
+
+  /**
+   * Starts each iteration from zero
+   */
+  @Setup(Level.Iteration)
+  public void clear()
+  {
+    megabytes = 0;
+  } // clear()
+
+  /**
+   * Counts length more bytes
+   *
+   * @param length
+   *          an int
+   */
+  void add(int length)
+  {
+    megabytes += length / 1e6;
+  } // add(int)
+} // class Bytes
@@ -0,0 +1,312 @@
+package edu.grinnell.nguyengi.json.bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * The JSON texts the benchmarks run on. Generated corpora come from a fixed
+ * seed, so every run, on every machine, measures the same bytes.
+ *
+ * @author Giang
+ *
+ */
+public class Corpora
+{
+  // +-------+-----------------------------------------------------------
+  // | Notes |
+  // +-------+
+
+  /*
+   * The corpora are:
+   *
+   * sample, sample2, sample3 - the bundled FileSample*.txt files, looked up
+   * in the directory named by the json.samples system property, or else in
+   * the working directory or its parent
+   *
+   * numbers - an array of arrays of integers, longs, and decimals with and
+   * without exponents
+   *
+   * strings - an array of objects whose strings are full of escapes, \\uXXXX
+   * sequences, and raw non-ASCII characters, including surrogate pairs
+   *
+   * deep - objects and arrays nested DEPTH levels deep, repeated
+   *
+   * ndjson - newline-delimited records, for JSONLines
+   */
+
+  // +-----------+-------------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * Seed of every generated corpus
+   */
+  static final long SEED = 20140207L;
+
+  /**
+   * Rough size of the generated corpora, other than ndjson, in bytes
+   */
+  static final int TARGET_SIZE = 1 << 20;
+
+  /**
+   * Nesting depth of the deep corpus, well within the parsers' stack
+   */
+  static final int DEPTH = 256;
+
+  /**
+   * Records in the ndjson corpus
+   */
+  static final int RECORDS = 100000;
+
+  // +---------+---------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Returns the text of the corpus called name.
+   *
+   * @param name
+   *          a String
+   * @throws IOException
+   */
+  static public String text(String name)
+    throws IOException
+  {
+    switch (name)
+      {
+        case "sample":
+          return sample("FileSample.txt");
+        case "sample2":
+          return sample("FileSample2.txt");
+        case "sample3":
+          return sample("FileSample3.txt");
+        case "numbers":
+          return numbers(new Random(SEED));
+        case "strings":
+          return strings(new Random(SEED));
+        case "deep":
+          return deep();
+        case "ndjson":
+          return ndjson(new Random(SEED));
+        default:
+          throw new IllegalArgumentException("No corpus called " + name);
+      } // switch
+  } // text(String)
+
+  /**
+   * Writes text to a new temporary file, returning its path.
+   *
+   * @param name
+   *          a String
+   * @param text
+   *          a String
+   * @throws IOException
+   */
+  static public Path write(String name, String text)
+    throws IOException
+  {
+    Path file = Files.createTempFile("corpus-" + name + "-", ".json");
+    file.toFile().deleteOnExit();
+    Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+    return file;
+  } // write(String, String)
+
+  /**
+   * Reads one of the bundled sample files
+   *
+   * @param fileName
+   *          a String
+   * @throws IOException
+   */
+  static String sample(String fileName)
+    throws IOException
+  {
+    String dir = System.getProperty("json.samples");
+    Path[] candidates =
+        dir != null ? new Path[] { Paths.get(dir, fileName) }
+                    : new Path[] { Paths.get(fileName),
+                                  Paths.get("..", fileName) };
+    for (Path candidate : candidates)
+      {
+        if (Files.isRegularFile(candidate))
+          return new String(Files.readAllBytes(candidate),
+                            StandardCharsets.UTF_8);
+      } // for
+    throw new IOException("Cannot find " + fileName
+                          + "; set -Djson.samples to its directory");
+  } // sample(String)
+
+  /**
+   * Generates the numbers corpus
+   *
+   * @param random
+   *          a Random
+   */
+  static String numbers(Random random)
+  {
+    StringBuilder text = new StringBuilder(TARGET_SIZE + 256);
+    text.append('[');
+    while (text.length() < TARGET_SIZE)
+      {
+        if (text.length() > 1)
+          text.append(",\n");
+        text.append('[');
+        for (int i = 0; i < 16; i++)
+          {
+            if (i > 0)
+              text.append(", ");
+            switch (random.nextInt(5))
+              {
+                case 0:
+                  text.append(random.nextInt(1000));
+                  break;
+                case 1:
+                  text.append(random.nextInt());
+                  break;
+                case 2:
+                  text.append(random.nextLong());
+                  break;
+                case 3:
+                  text.append(random.nextInt(100000) / 100.0);
+                  break;
+                default:
+                  text.append(random.nextInt(10)).append('.')
+                      .append(random.nextInt(1000000)).append('e')
+                      .append(random.nextInt(40) - 20);
+              } // switch
+          } // for
+        text.append(']');
+      } // while
+    return text.append(']').toString();
+  } // numbers(Random)
+
+  /**
+   * Generates the strings corpus
+   *
+   * @param random
+   *          a Random
+   */
+  static String strings(Random random)
+  {
+    StringBuilder text = new StringBuilder(TARGET_SIZE + 256);
+    text.append('[');
+    for (int id = 0; text.length() < TARGET_SIZE; id++)
+      {
+        if (id > 0)
+          text.append(",\n");
+        text.append("{\"id\": \"item-").append(id).append("\", \"title\": ");
+        string(text, random, 8 + random.nextInt(32));
+        text.append(", \"body\": ");
+        string(text, random, 64 + random.nextInt(256));
+        text.append(", \"tags\": [");
+        for (int i = random.nextInt(4); i >= 0; i--)
+          {
+            string(text, random, 3 + random.nextInt(8));
+            if (i > 0)
+              text.append(", ");
+          } // for
+        text.append("]}");
+      } // for
+    return text.append(']').toString();
+  } // strings(Random)
+
+  /**
+   * Appends a JSON string of about length characters, mostly ASCII letters
+   * with escapes, \\uXXXX sequences, and raw non-ASCII characters mixed in
+   *
+   * @param text
+   *          a StringBuilder
+   * @param random
+   *          a Random
+   * @param length
+   *          an int
+   */
+  static void string(StringBuilder text, Random random, int length)
+  {
+    text.append('\"');
+    for (int i = 0; i < length; i++)
+      {
+        int roll = random.nextInt(100);
+        if (roll < 80)
+          text.append((char) ('a' + random.nextInt(26)));
+        else if (roll < 88)
+          text.append(' ');
+        else if (roll < 93)
+          text.append('\\').append("\"\\/bfnrt".charAt(random.nextInt(8)));
+        else if (roll < 96)
+          text.append(String.format(Locale.ROOT, "\\u%04x",
+                                    0x80 + random.nextInt(0x700)));
+        else if (roll < 98)
+          text.append((char) (0x4e00 + random.nextInt(0x5000)));
+        else if (roll < 99)
+          text.append("\\ud83d\\ude00");
+        else
+          text.appendCodePoint(0x1f600 + random.nextInt(0x40));
+      } // for
+    text.append('\"');
+  } // string(StringBuilder, Random, int)
+
+  /**
+   * Generates the deep corpus
+   */
+  static String deep()
+  {
+    StringBuilder text = new StringBuilder(TARGET_SIZE + 256);
+    text.append('[');
+    while (text.length() < TARGET_SIZE)
+      {
+        if (text.length() > 1)
+          text.append(',');
+        for (int level = 0; level < DEPTH; level++)
+          {
+            if (level % 2 == 0)
+              text.append("{\"level\": ").append(level).append(", \"next\": ");
+            else
+              text.append('[').append(level).append(", ");
+          } // for
+        text.append("null");
+        for (int level = DEPTH - 1; level >= 0; level--)
+          {
+            text.append(level % 2 == 0 ? '}' : ']');
+          } // for
+      } // while
+    return text.append(']').toString();
+  } // deep()
+
+  /**
+   * Generates the ndjson corpus
+   *
+   * @param random
+   *          a Random
+   */
+  static String ndjson(Random random)
+  {
+    StringBuilder text = new StringBuilder(RECORDS * 160);
+    for (int id = 0; id < RECORDS; id++)
+      {
+        text.append("{\"id\":").append(id).append(",\"user\":");
+        string(text, random, 6 + random.nextInt(10));
+        text.append(",\"score\":").append(random.nextInt(100000) / 100.0)
+            .append(",\"active\":").append(random.nextBoolean())
+            .append(",\"tags\":[");
+        for (int i = random.nextInt(3); i >= 0; i--)
+          {
+            string(text, random, 4);
+            if (i > 0)
+              text.append(',');
+          } // for
+        text.append("],\"parent\":");
+        if (id > 0 && random.nextBoolean())
+          text.append(random.nextInt(id));
+        else
+          text.append("null");
+        text.append("}\n");
+      } // for
+    return text.toString();
+  } // ndjson(Random)
+} // class Corpora
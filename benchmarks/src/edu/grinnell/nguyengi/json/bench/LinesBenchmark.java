@@ -0,0 +1,123 @@
+package edu.grinnell.nguyengi.json.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.grinnell.nguyengi.json.JSONLines;
+import edu.grinnell.nguyengi.json.JSONUtils;
+
+/**
+ * Parsing the large ndjson corpus with JSONLines, sequentially and in
+ * parallel
+ *
+ * @author Giang
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LinesBenchmark
+{
+  // +--------+----------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * A file holding the corpus
+   */
+  Path file;
+
+  /**
+   * Size of the file in bytes
+   */
+  int size;
+
+  // +---------+---------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Generates the corpus and writes it to a file
+   *
+   * @throws IOException
+   */
+  @Setup(Level.Trial)
+  public void setUp()
+    throws IOException
+  {
+    file = Corpora.write("ndjson", Corpora.text("ndjson"));
+    size = (int) Files.size(file);
+  } // setUp()
+
+  /**
+   * Deletes the file
+   *
+   * @throws IOException
+   */
+  @TearDown(Level.Trial)
+  public void tearDown()
+    throws IOException
+  {
+    Files.deleteIfExists(file);
+  } // tearDown()
+
+  /**
+   * JSONUtils.parseLines(Path)
+   *
+   * @param counter
+   *          a Bytes
+   * @param hole
+   *          a Blackhole
+   * @throws IOException
+   */
+  @Benchmark
+  public void parseLines(Bytes counter, Blackhole hole)
+    throws IOException
+  {
+    counter.add(size);
+    try (Stream<Object> records = JSONUtils.parseLines(file))
+      {
+        records.forEach(hole::consume);
+      } // try
+  } // parseLines(Bytes, Blackhole)
+
+  /**
+   * JSONLines.parallelStream(Path, false)
+   *
+   * @param counter
+   *          a Bytes
+   * @param hole
+   *          a Blackhole
+   * @throws IOException
+   */
+  @Benchmark
+  public void parseLinesParallel(Bytes counter, Blackhole hole)
+    throws IOException
+  {
+    counter.add(size);
+    try (Stream<Object> records = new JSONLines().parallelStream(file, false))
+      {
+        records.forEach(hole::consume);
+      } // try
+  } // parseLinesParallel(Bytes, Blackhole)
+} // class LinesBenchmark
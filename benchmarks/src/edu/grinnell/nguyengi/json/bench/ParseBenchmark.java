@@ -0,0 +1,138 @@
+package edu.grinnell.nguyengi.json.bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.grinnell.nguyengi.json.JSONUtils;
+
+/**
+ * Parsing each corpus from a String, from UTF-8 bytes, and from a file
+ *
+ * @author Giang
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseBenchmark
+{
+  // +--------+----------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * Name of the corpus, as in Corpora.text
+   */
+  @Param({ "sample", "sample2", "sample3", "numbers", "strings", "deep" })
+  public String corpus;
+
+  /**
+   * The corpus
+   */
+  String text;
+
+  /**
+   * The corpus, encoded as UTF-8
+   */
+  byte[] bytes;
+
+  /**
+   * A file holding the corpus
+   */
+  Path file;
+
+  // +---------+---------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Generates the corpus and writes it to a file
+   *
+   * @throws IOException
+   */
+  @Setup(Level.Trial)
+  public void setUp()
+    throws IOException
+  {
+    text = Corpora.text(corpus);
+    bytes = text.getBytes(StandardCharsets.UTF_8);
+    file = Corpora.write(corpus, text);
+  } // setUp()
+
+  /**
+   * Deletes the file
+   *
+   * @throws IOException
+   */
+  @TearDown(Level.Trial)
+  public void tearDown()
+    throws IOException
+  {
+    Files.deleteIfExists(file);
+  } // tearDown()
+
+  /**
+   * JSONUtils.parse(String)
+   *
+   * @param counter
+   *          a Bytes
+   * @throws Exception
+   */
+  @Benchmark
+  public Object parseString(Bytes counter)
+    throws Exception
+  {
+    counter.add(bytes.length);
+    return JSONUtils.parse(text);
+  } // parseString(Bytes)
+
+  /**
+   * JSONUtils.parse(byte[])
+   *
+   * @param counter
+   *          a Bytes
+   * @throws Exception
+   */
+  @Benchmark
+  public Object parseBytes(Bytes counter)
+    throws Exception
+  {
+    counter.add(bytes.length);
+    return JSONUtils.parse(bytes);
+  } // parseBytes(Bytes)
+
+  /**
+   * JSONUtils.parseFromFile(Path)
+   *
+   * @param counter
+   *          a Bytes
+   * @throws Exception
+   */
+  @Benchmark
+  public Object parseFromFile(Bytes counter)
+    throws Exception
+  {
+    counter.add(bytes.length);
+    return JSONUtils.parseFromFile(file);
+  } // parseFromFile(Bytes)
+} // class ParseBenchmark
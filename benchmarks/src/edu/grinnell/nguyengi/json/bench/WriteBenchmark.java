@@ -0,0 +1,108 @@
+package edu.grinnell.nguyengi.json.bench;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.grinnell.nguyengi.json.JSONUtils;
+
+/**
+ * Serializing each corpus with toJSONString, and parsing and serializing it
+ * again in a round trip
+ *
+ * @author Giang
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WriteBenchmark
+{
+  // +--------+----------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * Name of the corpus, as in Corpora.text
+   */
+  @Param({ "sample", "sample2", "sample3", "numbers", "strings", "deep" })
+  public String corpus;
+
+  /**
+   * The corpus
+   */
+  String text;
+
+  /**
+   * The corpus, parsed
+   */
+  Object value;
+
+  /**
+   * Length of the serialized corpus in UTF-8
+   */
+  int written;
+
+  // +---------+---------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Generates and parses the corpus
+   *
+   * @throws Exception
+   */
+  @Setup(Level.Trial)
+  public void setUp()
+    throws Exception
+  {
+    text = Corpora.text(corpus);
+    value = JSONUtils.parse(text);
+    written =
+        JSONUtils.toJSONString(value).getBytes(StandardCharsets.UTF_8).length;
+  } // setUp()
+
+  /**
+   * JSONUtils.toJSONString(Object)
+   *
+   * @param counter
+   *          a Bytes
+   */
+  @Benchmark
+  public String toJSONString(Bytes counter)
+  {
+    counter.add(written);
+    return JSONUtils.toJSONString(value);
+  } // toJSONString(Bytes)
+
+  /**
+   * JSONUtils.toJSONString(JSONUtils.parse(text)), counting the bytes
+   * written
+   *
+   * @param counter
+   *          a Bytes
+   * @throws Exception
+   */
+  @Benchmark
+  public String roundTrip(Bytes counter)
+    throws Exception
+  {
+    counter.add(written);
+    return JSONUtils.toJSONString(JSONUtils.parse(text));
+  } // roundTrip(Bytes)
+} // class WriteBenchmark
@@ -0,0 +1,381 @@
+package edu.grinnell.nguyengi.json;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Parses many files at once without tying up a thread per file. Each file is
+ * read asynchronously and, once read, parsed on a bounded pool, and its value
+ * comes back through a CompletableFuture. A JSONBatchParser may be shared by
+ * any number of threads.
+ *
+ * @author Giang
+ *
+ */
+public class JSONBatchParser
+{
+  // +-------+-----------------------------------------------------------
+  // | Notes |
+  // +-------+
+
+  /*
+   * Files are read through AsynchronousFileChannels. On a JVM with virtual
+   * threads (Java 21 and later) the channels run their reads on virtual
+   * threads; otherwise they share the JVM's default channel group. The
+   * library targets Java 11, so the virtual thread executor is looked up by
+   * reflection.
+   *
+   * At most concurrency files are open at once. Files beyond that wait in a
+   * queue and are opened as others finish reading, so parseFiles never
+   * blocks the caller.
+   */
+
+  // +-----------+-------------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * Default number of files open at once
+   */
+  static final int DEFAULT_CONCURRENCY = 256;
+
+  /**
+   * An executor starting a virtual thread per task, or null if the JVM has
+   * no virtual threads
+   */
+  static final ExecutorService VIRTUAL_THREADS = virtualThreads();
+
+  /**
+   * Options for opening files
+   */
+  static final Set<StandardOpenOption> READ_ONLY =
+      Collections.singleton(StandardOpenOption.READ);
+
+  // +--------+----------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * Most files open at once
+   */
+  int concurrency = DEFAULT_CONCURRENCY;
+
+  /**
+   * Where files are parsed once read
+   */
+  Executor parsers = ForkJoinPool.commonPool();
+
+  /**
+   * Reads waiting for a file to close
+   */
+  Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+
+  /**
+   * Files open now
+   */
+  AtomicInteger open = new AtomicInteger();
+
+  // +--------------+----------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Creates a batch parser with the default limits
+   */
+  public JSONBatchParser()
+  {
+  } // JSONBatchParser()
+
+  // +---------+---------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Sets the most files that are open at once.
+   *
+   * @param concurrency
+   *          an int
+   */
+  public void setConcurrency(int concurrency)
+  {
+    if (concurrency < 1)
+      throw new IllegalArgumentException("Concurrency must be positive: "
+                                         + concurrency);
+    this.concurrency = concurrency;
+  } // setConcurrency(int)
+
+  /**
+   * Sets the executor files are parsed on once they are read. The default is
+   * the common ForkJoinPool, which has a thread per processor.
+   *
+   * @param parsers
+   *          an Executor
+   */
+  public void setParseExecutor(Executor parsers)
+  {
+    this.parsers = parsers;
+  } // setParseExecutor(Executor)
+
+  /**
+   * Starts parsing the UTF-8 encoded file at each path, and returns a future
+   * for the value of each, in the same order. A future completes
+   * exceptionally if its file cannot be read or is not valid JSON.
+   *
+   * @param paths
+   *          a Collection of Paths
+   */
+  public List<CompletableFuture<Object>> parseFiles(Collection<Path> paths)
+  {
+    List<CompletableFuture<Object>> results = new ArrayList<>(paths.size());
+    for (Path path : paths)
+      {
+        results.add(parseFile(path));
+      } // for
+    return Collections.unmodifiableList(results);
+  } // parseFiles(Collection<Path>)
+
+  /**
+   * Starts parsing the UTF-8 encoded file at path, and returns a future for
+   * its value.
+   *
+   * @param path
+   *          a Path
+   */
+  public CompletableFuture<Object> parseFile(Path path)
+  {
+    CompletableFuture<byte[]> read = new CompletableFuture<>();
+    pending.offer(() -> read(path, read));
+    startPending();
+    return read.thenApplyAsync(bytes -> parse(path, bytes), parsers);
+  } // parseFile(Path)
+
+  /**
+   * Parses the bytes read from path. An exception is wrapped for the future,
+   * with the path added to its message.
+   *
+   * @param path
+   *          a Path
+   * @param bytes
+   *          a byte[]
+   */
+  static Object parse(Path path, byte[] bytes)
+  {
+    try
+      {
+        return JSONUtils.parse(bytes);
+      } // try
+    catch (Exception e)
+      {
+        throw new CompletionException(new Exception(path + ": "
+                                                    + e.getMessage(), e));
+      } // catch
+  } // parse(Path, byte[])
+
+  /**
+   * Starts as many waiting reads as the limit on open files allows
+   */
+  void startPending()
+  {
+    while (!pending.isEmpty())
+      {
+        int count = open.get();
+        if (count >= concurrency)
+          return;
+        if (!open.compareAndSet(count, count + 1))
+          continue;
+        Runnable task = pending.poll();
+        if (task == null)
+          {
+            // another thread took it; check again
+            open.decrementAndGet();
+            continue;
+          } // if
+        task.run();
+      } // while
+  } // startPending()
+
+  /**
+   * Opens path and starts reading it into a byte array that completes result.
+   * When the file cannot even be opened, it is given up without starting
+   * another read, since startPending is already looping and recursing could
+   * run deep over a batch of missing files.
+   *
+   * @param path
+   *          a Path
+   * @param result
+   *          a CompletableFuture
+   */
+  void read(Path path, CompletableFuture<byte[]> result)
+  {
+    AsynchronousFileChannel channel;
+    long size;
+    try
+      {
+        channel =
+            AsynchronousFileChannel.open(path, READ_ONLY, VIRTUAL_THREADS);
+      } // try
+    catch (IOException | RuntimeException e)
+      {
+        open.decrementAndGet();
+        result.completeExceptionally(e);
+        return;
+      } // catch
+    try
+      {
+        size = channel.size();
+        if (size > Integer.MAX_VALUE - 8)
+          throw new IOException("File too large: " + path);
+      } // try
+    catch (IOException e)
+      {
+        close(channel);
+        open.decrementAndGet();
+        result.completeExceptionally(e);
+        return;
+      } // catch
+    ByteBuffer buffer = ByteBuffer.allocate((int) size);
+    if (size == 0)
+      {
+        close(channel);
+        open.decrementAndGet();
+        result.complete(new byte[0]);
+        return;
+      } // if
+    channel.read(buffer, 0, null, new Reader(channel, buffer, result));
+  } // read(Path, CompletableFuture<byte[]>)
+
+  /**
+   * Closes channel, which is done with
+   *
+   * @param channel
+   *          an AsynchronousFileChannel
+   */
+  void close(AsynchronousFileChannel channel)
+  {
+    try
+      {
+        channel.close();
+      } // try
+    catch (IOException e)
+      {
+        // nothing was written, so nothing is lost
+      } // catch
+  } // close(AsynchronousFileChannel)
+
+  /**
+   * Notes that a file has closed and starts the next waiting read
+   */
+  void finished()
+  {
+    open.decrementAndGet();
+    startPending();
+  } // finished()
+
+  /**
+   * Returns an executor starting a virtual thread per task, or null if the
+   * JVM has no virtual threads
+   */
+  static ExecutorService virtualThreads()
+  {
+    try
+      {
+        Method factory =
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        return (ExecutorService) factory.invoke(null);
+      } // try
+    catch (ReflectiveOperationException | RuntimeException e)
+      {
+        return null;
+      } // catch
+  } // virtualThreads()
+
+  // +---------------+---------------------------------------------------
+  // | Inner Classes |
+  // +---------------+
+
+  /**
+   * Reads a file until its buffer is full, then closes it and hands over the
+   * bytes
+   */
+  class Reader
+      implements CompletionHandler<Integer, Void>
+  {
+    /**
+     * The file being read
+     */
+    AsynchronousFileChannel channel;
+
+    /**
+     * Where its bytes go
+     */
+    ByteBuffer buffer;
+
+    /**
+     * What completes with the bytes
+     */
+    CompletableFuture<byte[]> result;
+
+    /**
+     * Creates a handler reading channel into buffer
+     *
+     * @param channel
+     *          an AsynchronousFileChannel
+     * @param buffer
+     *          a ByteBuffer
+     * @param result
+     *          a CompletableFuture
+     */
+    Reader(AsynchronousFileChannel channel, ByteBuffer buffer,
+           CompletableFuture<byte[]> result)
+    {
+      this.channel = channel;
+      this.buffer = buffer;
+      this.result = result;
+    } // Reader(AsynchronousFileChannel, ByteBuffer, CompletableFuture)
+
+    @Override
+    public void completed(Integer count, Void attachment)
+    {
+      if (count >= 0 && buffer.hasRemaining())
+        {
+          channel.read(buffer, buffer.position(), null, this);
+          return;
+        } // if
+      close(channel);
+      byte[] bytes = buffer.array();
+      // the file shrank while it was being read
+      if (buffer.hasRemaining())
+        bytes = Arrays.copyOf(bytes, buffer.position());
+      result.complete(bytes);
+      finished();
+    } // completed(Integer, Void)
+
+    @Override
+    public void failed(Throwable exc, Void attachment)
+    {
+      close(channel);
+      result.completeExceptionally(exc);
+      finished();
+    } // failed(Throwable, Void)
+  } // class Reader
+} // class JSONBatchParser
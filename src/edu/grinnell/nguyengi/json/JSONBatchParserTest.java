@@ -0,0 +1,143 @@
+package edu.grinnell.nguyengi.json;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Tests for parsing batches of files
+ *
+ * @author Giang
+ *
+ */
+public class JSONBatchParserTest
+{
+  /**
+   * Many files give the same values as parseFromFile, in order, however few
+   * files may be open at once
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testParseFiles()
+    throws Exception
+  {
+    Path dir = Files.createTempDirectory("JSONBatchParserTest");
+    List<Path> paths = new ArrayList<>();
+    List<Object> expected = new ArrayList<>();
+    try
+      {
+        for (int i = 0; i < 200; i++)
+          {
+            Path path = dir.resolve(i + ".json");
+            String text = "{\"id\":" + i + ",\"name\":\"file " + i + "\"}";
+            Files.write(path, text.getBytes(StandardCharsets.UTF_8));
+            paths.add(path);
+            expected.add(JSONUtils.parse(text));
+          } // for
+        for (String name : new String[] { "FileSample.txt", "FileSample2.txt",
+                                          "FileSample3.txt" })
+          {
+            paths.add(Paths.get(name));
+            expected.add(JSONUtils.parseFromFile(name));
+          } // for
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try
+          {
+            for (int concurrency : new int[] { 1, 8, 1000 })
+              {
+                JSONBatchParser batch = new JSONBatchParser();
+                batch.setConcurrency(concurrency);
+                batch.setParseExecutor(pool);
+                List<Object> values = new ArrayList<>();
+                List<CompletableFuture<Object>> futures =
+                    batch.parseFiles(paths);
+                for (CompletableFuture<Object> future : futures)
+                  {
+                    values.add(future.get(30, TimeUnit.SECONDS));
+                  } // for
+                assertEquals(expected, values);
+              } // for
+          } // try
+        finally
+          {
+            pool.shutdown();
+          } // finally
+        List<Object> values = new ArrayList<>();
+        for (CompletableFuture<Object> future : JSONUtils.parseFiles(paths))
+          {
+            values.add(future.get(30, TimeUnit.SECONDS));
+          } // for
+        assertEquals(expected, values);
+      } // try
+    finally
+      {
+        for (Path path : paths)
+          {
+            if (path.startsWith(dir))
+              Files.delete(path);
+          } // for
+        Files.delete(dir);
+      } // finally
+  } // testParseFiles()
+
+  /**
+   * A missing or invalid file fails only its own future
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testFailures()
+    throws Exception
+  {
+    Path bad = Files.createTempFile("JSONBatchParserTest", ".json");
+    try
+      {
+        Files.write(bad, "{\"a\":".getBytes(StandardCharsets.UTF_8));
+        List<Path> paths = new ArrayList<>();
+        for (int i = 0; i < 100; i++)
+          {
+            paths.add(Paths.get("no such file " + i + ".json"));
+          } // for
+        paths.add(bad);
+        paths.add(Paths.get("FileSample.txt"));
+        JSONBatchParser batch = new JSONBatchParser();
+        batch.setConcurrency(4);
+        List<CompletableFuture<Object>> futures = batch.parseFiles(paths);
+        for (int i = 0; i < 101; i++)
+          {
+            try
+              {
+                futures.get(i).get(30, TimeUnit.SECONDS);
+                fail(paths.get(i).toString());
+              } // try
+            catch (ExecutionException e)
+              {
+                if (i < 100)
+                  assertTrue(e.getCause() instanceof NoSuchFileException);
+                else
+                  assertTrue(e.getCause().getMessage().contains("JSONBatch"));
+              } // catch
+          } // for
+        assertEquals(JSONUtils.parseFromFile("FileSample.txt"),
+                     futures.get(101).get(30, TimeUnit.SECONDS));
+      } // try
+    finally
+      {
+        Files.delete(bad);
+      } // finally
+  } // testFailures()
+} // class JSONBatchParserTest
@@ -0,0 +1,828 @@
+package edu.grinnell.nguyengi.json;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parses UTF-8 encoded JSON straight from bytes, producing the same values as
+ * JSONUtils.parse. The input is never decoded into a String as a whole; only
+ * the strings inside the document are decoded, one at a time, as they are
+ * turned into values.
+ *
+ * @author Giang
+ *
+ */
+public class JSONByteParser
+{
+  // +-------+-----------------------------------------------------------
+  // | Notes |
+  // +-------+
+
+  /*
+   * The grammar and error messages follow the String based methods of
+   * JSONUtils. The parser never changes the position or limit of the buffer it
+   * is given; it reads with absolute indices between its own pos and limit.
+   *
+   * Strings without escape sequences are decoded with a single call to the
+   * String constructor. Strings with escapes are decoded by hand into a char
+   * buffer that is reused across strings.
+   *
+   * Whenever the parser runs out of bytes it calls refill, which by default
+   * reports the end of the input. Subclasses reading from larger sources
+   * override it to move the buffer along, keeping the bytes of a string or
+   * number that is being scanned.
+   */
+
+  // +--------+----------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The bytes being parsed
+   */
+  ByteBuffer buf;
+
+  /**
+   * Index of the next byte to look at
+   */
+  int pos;
+
+  /**
+   * Index one past the last byte of the input
+   */
+  int limit;
+
+  /**
+   * Scratch space for decoding strings with escapes
+   */
+  char[] chars = new char[64];
+
+  /**
+   * Scratch space for copying strings out of buffers without an array
+   */
+  byte[] bytes = new byte[64];
+
+  /**
+   * Recognizes numbers and computes their values
+   */
+  JSONNumberScanner numbers = new JSONNumberScanner();
+
+  /**
+   * Where object keys are looked up, if anywhere
+   */
+  JSONKeyCache keys = null;
+
+  /**
+   * Whether arrays of numbers are returned as JSONNumberLists
+   */
+  boolean primitiveArrays = false;
+
+  /**
+   * Where parse events are reported, if anywhere
+   */
+  JSONListener listener = null;
+
+  /**
+   * Nesting depth of the value being parsed, kept only for the listener
+   */
+  int depth = 0;
+
+  // +--------------+----------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Creates a parser reading the bytes between the position and the limit of
+   * buf
+   *
+   * @param buf
+   *          a ByteBuffer
+   */
+  public JSONByteParser(ByteBuffer buf)
+  {
+    this.buf = buf;
+    this.pos = buf.position();
+    this.limit = buf.limit();
+  } // JSONByteParser(ByteBuffer)
+
+  // +---------+---------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Points the parser at the bytes of buf between start and end, keeping its
+   * options and scratch space
+   *
+   * @param buf
+   *          a ByteBuffer
+   * @param start
+   *          an int
+   * @param end
+   *          an int
+   */
+  void reset(ByteBuffer buf, int start, int end)
+  {
+    this.buf = buf;
+    this.pos = start;
+    this.limit = end;
+  } // reset(ByteBuffer, int, int)
+
+  /**
+   * Sets whether numbers with a fraction or an exponent are parsed as
+   * BigDecimals rather than Doubles. Integers are not affected.
+   *
+   * @param bigDecimals
+   *          a boolean
+   */
+  public void setBigDecimals(boolean bigDecimals)
+  {
+    numbers.bigDecimals = bigDecimals;
+  } // setBigDecimals(boolean)
+
+  /**
+   * Sets the cache that object keys are looked up in, or null to create a
+   * new String for every key.
+   *
+   * @param keys
+   *          a JSONKeyCache
+   */
+  public void setKeyCache(JSONKeyCache keys)
+  {
+    this.keys = keys;
+  } // setKeyCache(JSONKeyCache)
+
+  /**
+   * Sets whether non-empty arrays holding only numbers are returned as
+   * read-only JSONNumberLists, which keep their elements unboxed, rather than
+   * as ArrayLists. Arrays holding BigIntegers or BigDecimals are not.
+   *
+   * @param primitiveArrays
+   *          a boolean
+   */
+  public void setPrimitiveArrays(boolean primitiveArrays)
+  {
+    this.primitiveArrays = primitiveArrays;
+  } // setPrimitiveArrays(boolean)
+
+  /**
+   * Sets the listener that parse events are reported to, or null to report
+   * nothing.
+   *
+   * @param listener
+   *          a JSONListener
+   */
+  public void setListener(JSONListener listener)
+  {
+    this.listener = listener;
+  } // setListener(JSONListener)
+
+  // +----------------+-----------------------------------------------
+  // | Parser Methods |
+  // +----------------+
+
+  /**
+   * Parses UTF-8 encoded JSON text and returns the corresponding value.
+   *
+   * @param bytes
+   *          a byte[]
+   * @throws Exception
+   */
+  static public Object parse(byte[] bytes)
+    throws Exception
+  {
+    return parse(bytes, 0, bytes.length);
+  } // parse(byte[])
+
+  /**
+   * Parses the UTF-8 encoded JSON text held in length bytes of the array,
+   * starting at offset, and returns the corresponding value.
+   *
+   * @param bytes
+   *          a byte[]
+   * @param offset
+   *          an int
+   * @param length
+   *          an int
+   * @throws Exception
+   */
+  static public Object parse(byte[] bytes, int offset, int length)
+    throws Exception
+  {
+    return parse(ByteBuffer.wrap(bytes, offset, length));
+  } // parse(byte[], int, int)
+
+  /**
+   * Parses the UTF-8 encoded JSON text between the position and the limit of
+   * buf and returns the corresponding value. The position of buf is left
+   * unchanged.
+   *
+   * @param buf
+   *          a ByteBuffer
+   * @throws Exception
+   */
+  static public Object parse(ByteBuffer buf)
+    throws Exception
+  {
+    return new JSONByteParser(buf).parse();
+  } // parse(ByteBuffer)
+
+  /**
+   * Parses the value starting at the parser's position.
+   *
+   * @throws Exception
+   */
+  public Object parse()
+    throws Exception
+  {
+    skipWhitespace();
+    if (pos == limit)
+      throw new Exception("Parser does not recognize value: end of input");
+    if (listener != null)
+      return observe();
+    byte first = buf.get(pos);
+    if (first == '{')
+      {
+        return parseObject();
+      } // if object
+    else if (first == '[')
+      {
+        return parseArray();
+      } // else if array
+    else if (first == '\"')
+      {
+        return parseString(null);
+      } // else if String
+    else if ((first >= '0' && first <= '9') || first == '-')
+      {
+        return parseNumber();
+      } // else if Number
+    else
+      {
+        return parseSpecialValue();
+      } // else must be special value
+  } // parse()
+
+  /**
+   * Parses the value starting at the parser's position as parse does,
+   * reporting it to the listener
+   *
+   * @throws Exception
+   */
+  Object observe()
+    throws Exception
+  {
+    long start = position();
+    long began = System.nanoTime();
+    byte first = buf.get(pos);
+    Object value;
+    if (first == '{' || first == '[')
+      {
+        depth++;
+        try
+          {
+            if (first == '{')
+              {
+                Map<String, Object> obj = parseObject();
+                listener.objectParsed(obj.size(), depth);
+                value = obj;
+              } // if
+            else
+              {
+                List<Object> arr = parseArray();
+                listener.arrayParsed(arr.size(), depth);
+                value = arr;
+              } // else
+          } // try
+        finally
+          {
+            depth--;
+          } // finally
+      } // if object or array
+    else if (first == '\"')
+      {
+        String string = parseString(null);
+        listener.stringParsed(string.length(), System.nanoTime() - began);
+        value = string;
+      } // else if String
+    else if ((first >= '0' && first <= '9') || first == '-')
+      {
+        value = parseNumber();
+        listener.numberParsed(System.nanoTime() - began);
+      } // else if Number
+    else
+      {
+        value = parseSpecialValue();
+        listener.literalParsed((Boolean) value);
+      } // else must be special value
+    if (depth == 0)
+      listener.documentParsed(position() - start, System.nanoTime() - began);
+    return value;
+  } // observe()
+
+  /**
+   * Returns the offset of the parser's position from the start of the input
+   */
+  long position()
+  {
+    return pos;
+  } // position()
+
+  /**
+   * Skips over consecutive whitespace bytes
+   * 
+   * @throws IOException
+   */
+  void skipWhitespace()
+    throws IOException
+  {
+    while ((pos < limit || refill(pos) >= 0) && isWhitespace(buf.get(pos)))
+      {
+        pos++;
+      } // while
+  } // skipWhitespace()
+
+  /**
+   * Helper predicate, agrees with Character.isWhitespace on ASCII bytes
+   *
+   * @param b
+   *          a byte
+   */
+  static boolean isWhitespace(byte b)
+  {
+    return b == ' ' || (b >= '\t' && b <= '\r') || (b >= 0x1C && b <= 0x1F);
+  } // isWhitespace(byte)
+
+  /**
+   * Makes at least one more byte available once the bytes up to limit have
+   * been used up. Bytes from index keep on must stay available; they may move
+   * to a lower index, in which case pos moves with them. Returns the distance
+   * they moved, or -1 at the end of the input.
+   *
+   * @param keep
+   *          an int
+   * @throws IOException
+   */
+  int refill(int keep)
+    throws IOException
+  {
+    return -1;
+  } // refill(int)
+
+  /**
+   * Returns the byte at the parser's position, failing at the end of input
+   *
+   * @throws Exception
+   */
+  byte current()
+    throws Exception
+  {
+    if (pos == limit && refill(pos) < 0)
+      throw new Exception("Unexpected end of input.");
+    return buf.get(pos);
+  } // current()
+
+  /**
+   * Tries to parse true, false, or null at the parser's position
+   *
+   * @throws Exception
+   */
+  Object parseSpecialValue()
+    throws Exception
+  {
+    Object result;
+    if (matches("true"))
+      result = Boolean.TRUE;
+    else if (matches("false"))
+      result = Boolean.FALSE;
+    else if (matches("null"))
+      result = null;
+    else
+      throw new Exception("Parser does not recognize value: "
+                          + (char) buf.get(pos));
+    skipWhitespace();
+    if (pos == limit || isEndOfSV(buf.get(pos)))
+      return result;
+    throw new Exception("Parser does not recognize value: "
+                        + (char) buf.get(pos));
+  } // parseSpecialValue()
+
+  /**
+   * Moves past literal if the input continues with it
+   *
+   * @param literal
+   *          a String
+   */
+  boolean matches(String literal)
+    throws IOException
+  {
+    int length = literal.length();
+    while (limit - pos < length)
+      {
+        if (refill(pos) < 0)
+          return false;
+      } // while
+    for (int i = 0; i < length; i++)
+      {
+        if (buf.get(pos + i) != literal.charAt(i))
+          return false;
+      } // for
+    pos += length;
+    return true;
+  } // matches(String)
+
+  /**
+   * Helper predicate, determines whether b signals end of a special value
+   *
+   * @param b
+   *          a byte
+   */
+  static boolean isEndOfSV(byte b)
+  {
+    return b == ',' || b == ']' || b == '}';
+  } // isEndOfSV(byte)
+
+  /**
+   * Tries to parse a JSON object, returns a JSONObjectMap representing the
+   * object if successful
+   *
+   * @throws Exception
+   */
+  Map<String, Object> parseObject()
+    throws Exception
+  {
+    JSONObjectMap obj = new JSONObjectMap();
+    pos++;
+    skipWhitespace();
+    while (current() != '}')
+      {
+        if (buf.get(pos) != '\"')
+          throw new Exception("Invalid key type.");
+        long began = listener == null ? 0 : System.nanoTime();
+        String key = parseString(keys);
+        if (listener != null)
+          listener.keyParsed(key.length(), System.nanoTime() - began);
+        if (current() != ':')
+          throw new Exception("Invalid object format.");
+        pos++;
+        obj.put(key, parse());
+        byte b = current();
+        if (b != ',' && b != '}')
+          throw new Exception("Illegal object character: " + (char) b);
+        if (b == ',')
+          {
+            pos++;
+            skipWhitespace();
+          } // if
+      } // while
+    pos++;
+    skipWhitespace();
+    return obj.trim();
+  } // parseObject()
+
+  /**
+   * Tries to parse a JSON array, returns an ArrayList representing the array
+   * if successful, or a JSONNumberList if primitiveArrays is set and the
+   * array holds only numbers
+   *
+   * @throws Exception
+   */
+  List<Object> parseArray()
+    throws Exception
+  {
+    ArrayList<Object> arr = null;
+    JSONNumberList nums = primitiveArrays ? new JSONNumberList() : null;
+    pos++;
+    skipWhitespace();
+    while (current() != ']')
+      {
+        byte first = current();
+        if (nums != null && ((first >= '0' && first <= '9') || first == '-'))
+          {
+            long began = listener == null ? 0 : System.nanoTime();
+            int start = scanNumber();
+            if (!nums.add(numbers))
+              {
+                Number value = numbers.value(decodeUTF8(start, pos));
+                if (!nums.addNumber(value))
+                  {
+                    // a big number; fall back to boxing every element
+                    arr = nums.toArrayList();
+                    arr.add(value);
+                    nums = null;
+                  } // if
+              } // if
+            skipWhitespace();
+            if (listener != null)
+              listener.numberParsed(System.nanoTime() - began);
+          } // if
+        else
+          {
+            if (arr == null)
+              arr = nums == null ? new ArrayList<>() : nums.toArrayList();
+            nums = null;
+            arr.add(parse());
+          } // else
+        byte b = current();
+        if (b != ',' && b != ']')
+          throw new Exception("Illegal array character: " + (char) b);
+        if (b == ',')
+          {
+            pos++;
+            skipWhitespace();
+          } // if
+      } // while
+    pos++;
+    skipWhitespace();
+    if (nums != null && nums.size() > 0)
+      return nums.trim();
+    return arr == null ? new ArrayList<>() : arr;
+  } // parseArray()
+
+  /**
+   * Tries to parse a JSON string, returns the corresponding String if
+   * successful. The String is looked up in cache unless cache is null.
+   *
+   * @param cache
+   *          a JSONKeyCache
+   * @throws Exception
+   */
+  String parseString(JSONKeyCache cache)
+    throws Exception
+  {
+    // Moves past "
+    int start = ++pos;
+    int end = start;
+    byte b = 0;
+    // Finds the closing quote, stopping early at the first escape
+    while (true)
+      {
+        if (end == limit)
+          {
+            int moved = refill(start);
+            if (moved < 0)
+              throw new Exception("Missing quote.");
+            start -= moved;
+            end -= moved;
+          } // if
+        if ((b = buf.get(end)) == '\"' || b == '\\')
+          break;
+        end++;
+      } // while
+    String result = null;
+    if (b == '\"')
+      {
+        if (cache != null)
+          result = cache.intern(buf, start, end);
+        if (result == null)
+          {
+            result = decodeUTF8(start, end);
+            // keys with non-ASCII bytes are looked up once decoded
+            if (cache != null)
+              result = cache.intern(result);
+          } // if
+        pos = end + 1;
+      } // if
+    else
+      {
+        result = decodeEscaped(start);
+        if (cache != null)
+          result = cache.intern(result);
+      } // else
+    // Remove spaces after Strings
+    skipWhitespace();
+    return result;
+  } // parseString(JSONKeyCache)
+
+  /**
+   * Decodes the escape-free UTF-8 bytes between start and end
+   *
+   * @param start
+   *          an int
+   * @param end
+   *          an int
+   */
+  String decodeUTF8(int start, int end)
+  {
+    int length = end - start;
+    if (buf.hasArray())
+      return new String(buf.array(), buf.arrayOffset() + start, length,
+                        StandardCharsets.UTF_8);
+    if (bytes.length < length)
+      bytes = new byte[Math.max(length, bytes.length * 2)];
+    for (int i = 0; i < length; i++)
+      {
+        bytes[i] = buf.get(start + i);
+      } // for
+    return new String(bytes, 0, length, StandardCharsets.UTF_8);
+  } // decodeUTF8(int, int)
+
+  /**
+   * Decodes a string containing escape sequences, starting at start and
+   * leaving the parser's position after the closing quote
+   *
+   * @param start
+   *          an int
+   * @throws Exception
+   */
+  String decodeEscaped(int start)
+    throws Exception
+  {
+    int length = 0;
+    pos = start;
+    while (true)
+      {
+        if (pos == limit && refill(pos) < 0)
+          throw new Exception("Missing quote.");
+        // a UTF-8 sequence never yields more than two chars
+        if (length + 2 > chars.length)
+          chars = Arrays.copyOf(chars, chars.length * 2);
+        int b = buf.get(pos++);
+        if (b == '\"')
+          {
+            return new String(chars, 0, length);
+          } // if
+        else if (b == '\\')
+          {
+            b = current();
+            pos++;
+            switch (b)
+              {
+                case '\\':
+                case '\"':
+                case '/':
+                  chars[length++] = (char) b;
+                  break;
+                case 'n':
+                  chars[length++] = '\n';
+                  break;
+                case 't':
+                  chars[length++] = '\t';
+                  break;
+                case 'b':
+                  chars[length++] = '\b';
+                  break;
+                case 'f':
+                  chars[length++] = '\f';
+                  break;
+                case 'r':
+                  chars[length++] = '\r';
+                  break;
+                case 'u':
+                  int unicode = 0;
+                  for (int i = 0; i < 4; i++)
+                    {
+                      int digit = Character.digit(current(), 16);
+                      if (digit < 0)
+                        throw new Exception("Illegal unicode escape.");
+                      unicode = (unicode << 4) | digit;
+                      pos++;
+                    } // for
+                  chars[length++] = (char) unicode;
+                  break;
+                default:
+                  throw new Exception("Illegal character after \\.");
+              } // switch
+          } // else if
+        else if (b >= 0)
+          {
+            chars[length++] = (char) b;
+          } // else if ASCII
+        else
+          {
+            length = decodeMultiByte(b, length);
+          } // else
+      } // while
+  } // decodeEscaped(int)
+
+  /**
+   * Decodes the UTF-8 sequence whose lead byte, b, has been consumed, storing
+   * the result in chars at length and returning the new length. Malformed
+   * sequences, including overlong forms, encoded surrogates, and code points
+   * above U+10FFFF, decode to U+FFFD exactly as new String(bytes, UTF_8)
+   * decodes them, so a string decodes the same whether or not it holds an
+   * escape: one U+FFFD for a byte that cannot start a sequence, one for the
+   * valid start of a sequence that breaks off, leaving the byte it breaks
+   * off at to be decoded next, and one for a whole encoded surrogate.
+   *
+   * @param b
+   *          an int
+   * @param length
+   *          an int
+   * @throws IOException
+   */
+  int decodeMultiByte(int b, int length)
+    throws IOException
+  {
+    int lead = b & 0xFF;
+    int extra;
+    int codePoint;
+    // range of the byte after the lead; narrower ones rule out overlong
+    // forms and code points above U+10FFFF
+    int min = 0x80;
+    int max = 0xBF;
+    if (lead >= 0xC2 && lead <= 0xDF)
+      {
+        extra = 1;
+        codePoint = lead & 0x1F;
+      } // if two bytes
+    else if (lead >= 0xE0 && lead <= 0xEF)
+      {
+        extra = 2;
+        codePoint = lead & 0x0F;
+        if (lead == 0xE0)
+          min = 0xA0;
+      } // else if three bytes
+    else if (lead >= 0xF0 && lead <= 0xF4)
+      {
+        extra = 3;
+        codePoint = lead & 0x07;
+        if (lead == 0xF0)
+          min = 0x90;
+        else if (lead == 0xF4)
+          max = 0x8F;
+      } // else if four bytes
+    else
+      {
+        chars[length++] = '\uFFFD';
+        return length;
+      } // else continuation byte, C0, C1, or F5 to FF
+    for (int i = 0; i < extra; i++)
+      {
+        if (pos == limit && refill(pos) < 0)
+          {
+            chars[length++] = '\uFFFD';
+            return length;
+          } // if
+        int next = buf.get(pos) & 0xFF;
+        if (next < min || next > max)
+          {
+            chars[length++] = '\uFFFD';
+            return length;
+          } // if
+        min = 0x80;
+        max = 0xBF;
+        codePoint = (codePoint << 6) | (next & 0x3F);
+        pos++;
+      } // for
+    if (codePoint >= Character.MIN_SURROGATE
+        && codePoint <= Character.MAX_SURROGATE)
+      {
+        chars[length++] = '\uFFFD';
+        return length;
+      } // if
+    return length + Character.toChars(codePoint, chars, length);
+  } // decodeMultiByte(int, int)
+
+  /**
+   * Tries to parse a JSON number, returns a corresponding Number if successful
+   *
+   * @throws Exception
+   */
+  Number parseNumber()
+    throws Exception
+  {
+    int start = scanNumber();
+    Number value = numbers.value();
+    if (value == null)
+      value = numbers.value(decodeUTF8(start, pos));
+    skipWhitespace();
+    return value;
+  } // parseNumber()
+
+  /**
+   * Runs the number at the parser's position through numbers, returning
+   * where it starts
+   *
+   * @throws Exception
+   */
+  int scanNumber()
+    throws Exception
+  {
+    int start = pos;
+    numbers.reset();
+    while (true)
+      {
+        if (pos == limit)
+          {
+            int moved = refill(start);
+            if (moved < 0)
+              break;
+            start -= moved;
+          } // if
+        if (!numbers.accept(buf.get(pos)))
+          break;
+        pos++;
+      } // while
+    // The number must end where the token does
+    if (pos < limit && !isEndOfSV(buf.get(pos)) && !isWhitespace(buf.get(pos)))
+      throw new Exception("Illegal number: " + decodeUTF8(start, pos + 1));
+    if (!numbers.isComplete())
+      throw new Exception("Illegal number.");
+    return start;
+  } // scanNumber()
+} // class JSONByteParser
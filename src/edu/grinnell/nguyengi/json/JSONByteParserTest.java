@@ -0,0 +1,167 @@
+package edu.grinnell.nguyengi.json;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for the byte level parser
+ *
+ * @author Giang
+ *
+ */
+public class JSONByteParserTest
+{
+  /**
+   * Parses str both from a String and from its UTF-8 bytes, in a heap buffer
+   * and in a direct buffer, and checks that the results agree
+   *
+   * @param str
+   *          a String
+   * @throws Exception
+   */
+  void checkSame(String str)
+    throws Exception
+  {
+    Object expected = JSONUtils.parse(str);
+    byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+    assertEquals(str, expected, JSONUtils.parse(bytes));
+    ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+    direct.put(bytes).flip();
+    assertEquals(str, expected, JSONUtils.parse(direct));
+    assertEquals(0, direct.position());
+  } // checkSame(String)
+
+  /**
+   * The byte parser agrees with the String parser on the sample inputs
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testSamples()
+    throws Exception
+  {
+    for (String sample : JSONReaderTest.SAMPLES)
+      {
+        checkSame(sample);
+      } // for
+  } // testSamples()
+
+  /**
+   * Multi-byte characters decode the same with and without escapes nearby
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testUnicode()
+    throws Exception
+  {
+    checkSame("\"caf\u00e9 \u4e2d\u6587 \ud83d\ude00\"");
+    checkSame("\"caf\u00e9 \\n \u4e2d\u6587 \ud83d\ude00\"");
+    checkSame("{\"\\u00e9\\ud83d\\ude00\":\"\u00e9\\t\"}");
+  } // testUnicode()
+
+  /**
+   * Decodes the bytes of a string, with and without an escape after them,
+   * and checks both against new String(bytes, UTF_8)
+   *
+   * @param bytes
+   *          a byte[]
+   * @throws Exception
+   */
+  void checkMalformed(byte[] bytes)
+    throws Exception
+  {
+    String expected = new String(bytes, StandardCharsets.UTF_8);
+    byte[] plain = new byte[bytes.length + 2];
+    byte[] escaped = new byte[bytes.length + 4];
+    plain[0] = escaped[0] = '\"';
+    System.arraycopy(bytes, 0, plain, 1, bytes.length);
+    System.arraycopy(bytes, 0, escaped, 1, bytes.length);
+    plain[bytes.length + 1] = '\"';
+    escaped[bytes.length + 1] = '\\';
+    escaped[bytes.length + 2] = 'n';
+    escaped[bytes.length + 3] = '\"';
+    assertEquals(expected, JSONUtils.parse(plain));
+    assertEquals(expected + "\n", JSONUtils.parse(escaped));
+  } // checkMalformed(byte[])
+
+  /**
+   * Malformed UTF-8 decodes the same whether or not the string holds an
+   * escape
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testMalformedUTF8()
+    throws Exception
+  {
+    int[][] cases = { { 0xED, 0xA0, 0x80 }, // encoded surrogate
+                     { 0xC0, 0x80 }, // overlong U+0000
+                     { 0xC1, 0xBF }, // overlong U+007F
+                     { 0xE0, 0x80, 0x80 }, // overlong three bytes
+                     { 0xF0, 0x80, 0x80, 0x80 }, // overlong four bytes
+                     { 0xF4, 0x90, 0x80, 0x80 }, // above U+10FFFF
+                     { 0xF5, 0x80, 0x80, 0x80 }, // lead byte above F4
+                     { 0x80, 0x41 }, // stray continuation byte
+                     { 0xE2, 0x82, 0x41 }, // sequence broken off
+                     { 0xE2, 0x82 }, // sequence cut short by the quote
+                     { 0xED, 0xA0, 0x41 }, // surrogate broken off
+                     { 0xE0, 0x9F, 0x80 }, // overlong, broken off
+                     { 0xF0, 0x9F, 0x98, 0x80 } // well formed
+                   };
+    for (int[] values : cases)
+      {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++)
+          {
+            bytes[i] = (byte) values[i];
+          } // for
+        checkMalformed(bytes);
+      } // for
+    Random random = new Random(2);
+    for (int n = 0; n < 10000; n++)
+      {
+        byte[] bytes = new byte[1 + random.nextInt(6)];
+        for (int i = 0; i < bytes.length; i++)
+          {
+            // high bytes, with the odd letter to break sequences
+            if (random.nextInt(8) == 0)
+              bytes[i] = 'a';
+            else
+              bytes[i] = (byte) (0x80 + random.nextInt(128));
+          } // for
+        checkMalformed(bytes);
+      } // for
+  } // testMalformedUTF8()
+
+  /**
+   * Only the bytes between position and limit are parsed
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testSlice()
+    throws Exception
+  {
+    byte[] bytes = "xx[1,\"a\"]yy".getBytes(StandardCharsets.UTF_8);
+    assertEquals(JSONUtils.parse("[1,\"a\"]"),
+                 JSONByteParser.parse(bytes, 2, 7));
+  } // testSlice()
+
+  /**
+   * An unterminated string is rejected
+   *
+   * @throws Exception
+   */
+  @Test(expected = Exception.class)
+  public void testMissingQuote()
+    throws Exception
+  {
+    JSONUtils.parse("[\"abc".getBytes(StandardCharsets.UTF_8));
+  } // testMissingQuote()
+} // class JSONByteParserTest
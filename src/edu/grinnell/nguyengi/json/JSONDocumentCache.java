@@ -0,0 +1,508 @@
+package edu.grinnell.nguyengi.json;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of parsed documents, for services that parse the same few
+ * files or strings over and over. Files are looked up by path and checked
+ * against their modification time and size; strings are looked up by a hash
+ * of their contents. The values handed out are read-only, so no caller can
+ * change what another one sees.
+ *
+ * @author Giang
+ *
+ */
+public class JSONDocumentCache
+    implements Closeable
+{
+  // +-------+-----------------------------------------------------------
+  // | Notes |
+  // +-------+
+
+  /*
+   * Entries are kept in a LinkedHashMap in access order, so the least
+   * recently used document is the one evicted once the cache is full. All
+   * access to the map is synchronized; parsing happens outside the lock, so
+   * two threads missing on the same document at once may both parse it.
+   *
+   * Strings are keyed by the SHA-256 digest of their UTF-8 bytes, wrapped in
+   * a ByteBuffer for its content-based equals and hashCode, so the cache
+   * does not hold on to the text.
+   *
+   * Values are frozen once, when they are cached: every map and list in the
+   * tree is wrapped in an unmodifiable view. JSONNumberLists are read-only
+   * already.
+   *
+   * By default every lookup of a file reads its attributes to see whether it
+   * has changed. After watch(), a WatchService on the directories of cached
+   * files removes entries when their files change instead, and lookups
+   * trust the cache. An entry whose file changes while it is being parsed is
+   * not cached, since the change might have been missed.
+   */
+
+  // +--------+----------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * Most documents held
+   */
+  int maximumSize;
+
+  /**
+   * The cached documents, least recently used first
+   */
+  LinkedHashMap<Object, Document> entries;
+
+  /**
+   * Number of lookups that found their document
+   */
+  LongAdder hits = new LongAdder();
+
+  /**
+   * Number of lookups that parsed their document
+   */
+  LongAdder misses = new LongAdder();
+
+  /**
+   * Number of documents dropped to make room for others
+   */
+  LongAdder evictions = new LongAdder();
+
+  /**
+   * Number of documents dropped because their files changed
+   */
+  LongAdder invalidations = new LongAdder();
+
+  /**
+   * Watches the directories of cached files, once watch() has been called
+   */
+  WatchService watcher;
+
+  /**
+   * Directories registered with watcher
+   */
+  Set<Path> watched = new HashSet<>();
+
+  /**
+   * Counts changes seen by watcher, so that a parse overlapping one can tell
+   */
+  long changes = 0;
+
+  // +--------------+----------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Creates a cache holding at most maximumSize documents
+   *
+   * @param maximumSize
+   *          an int
+   */
+  public JSONDocumentCache(int maximumSize)
+  {
+    if (maximumSize < 1)
+      throw new IllegalArgumentException("Maximum size must be positive: "
+                                         + maximumSize);
+    this.maximumSize = maximumSize;
+    this.entries = new LinkedHashMap<Object, Document>(16, 0.75f, true)
+    {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Object, Document> eldest)
+      {
+        if (size() <= JSONDocumentCache.this.maximumSize)
+          return false;
+        evictions.increment();
+        return true;
+      } // removeEldestEntry(Map.Entry<Object, Document>)
+    };
+  } // JSONDocumentCache(int)
+
+  // +---------+---------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Returns the value of the UTF-8 encoded JSON file at path, parsing it
+   * only if it is not cached or has changed since it was.
+   *
+   * @param path
+   *          a Path
+   * @throws Exception
+   *           if the file cannot be read or is not valid JSON
+   */
+  public Object parseFromFile(Path path)
+    throws Exception
+  {
+    Path key = path.toAbsolutePath().normalize();
+    long modified = -1;
+    long size = -1;
+    long before;
+    synchronized (this)
+      {
+        if (watcher == null)
+          {
+            BasicFileAttributes attributes =
+                Files.readAttributes(key, BasicFileAttributes.class);
+            modified = attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+            size = attributes.size();
+          } // if
+        Document entry = entries.get(key);
+        if (entry != null
+            && (watcher != null || (entry.modified == modified
+                                    && entry.size == size)))
+          {
+            hits.increment();
+            return entry.value;
+          } // if
+        if (watcher != null)
+          register(key.getParent());
+        before = changes;
+      } // synchronized
+    misses.increment();
+    Object value = freeze(JSONUtils.parseFromFile(key));
+    synchronized (this)
+      {
+        if (watcher == null || changes == before)
+          entries.put(key, new Document(value, modified, size));
+      } // synchronized
+    return value;
+  } // parseFromFile(Path)
+
+  /**
+   * Returns the value of the JSON text str, parsing it only if the same text
+   * is not cached.
+   *
+   * @param str
+   *          a String
+   * @throws Exception
+   *           if str is not valid JSON
+   */
+  public Object parse(String str)
+    throws Exception
+  {
+    Object key = ByteBuffer.wrap(digest(str));
+    synchronized (this)
+      {
+        Document entry = entries.get(key);
+        if (entry != null)
+          {
+            hits.increment();
+            return entry.value;
+          } // if
+      } // synchronized
+    misses.increment();
+    Object value = freeze(JSONUtils.parse(str));
+    synchronized (this)
+      {
+        entries.put(key, new Document(value, -1, -1));
+      } // synchronized
+    return value;
+  } // parse(String)
+
+  /**
+   * Drops the document for the file at path, if it is cached.
+   *
+   * @param path
+   *          a Path
+   */
+  public synchronized void invalidate(Path path)
+  {
+    if (entries.remove(path.toAbsolutePath().normalize()) != null)
+      invalidations.increment();
+  } // invalidate(Path)
+
+  /**
+   * Starts watching the directories of cached files, so that documents are
+   * dropped when their files change rather than checked on every lookup.
+   * Changes may take a moment to be noticed, longer on file systems that
+   * the platform has to poll.
+   *
+   * @throws IOException
+   *           if the file system cannot be watched
+   */
+  public synchronized void watch()
+    throws IOException
+  {
+    if (watcher != null)
+      return;
+    watcher = FileSystems.getDefault().newWatchService();
+    // entries cached so far were only checked when they were looked up
+    entries.clear();
+    Thread thread = new Thread(this::processEvents, "JSONDocumentCache");
+    thread.setDaemon(true);
+    thread.start();
+  } // watch()
+
+  /**
+   * Stops watching for changes, going back to checking files on lookup.
+   */
+  @Override
+  public void close()
+    throws IOException
+  {
+    WatchService closing;
+    synchronized (this)
+      {
+        closing = watcher;
+        watcher = null;
+        watched.clear();
+        // entries cached while watching carry no attributes to check
+        entries.clear();
+      } // synchronized
+    if (closing != null)
+      closing.close();
+  } // close()
+
+  /**
+   * Returns the number of documents in the cache.
+   */
+  public synchronized int size()
+  {
+    return entries.size();
+  } // size()
+
+  /**
+   * Returns the number of lookups that found their document in the cache.
+   */
+  public long getHits()
+  {
+    return hits.sum();
+  } // getHits()
+
+  /**
+   * Returns the number of lookups that had to parse their document.
+   */
+  public long getMisses()
+  {
+    return misses.sum();
+  } // getMisses()
+
+  /**
+   * Returns the number of documents dropped to make room for others.
+   */
+  public long getEvictions()
+  {
+    return evictions.sum();
+  } // getEvictions()
+
+  /**
+   * Returns the number of documents dropped because their files changed.
+   */
+  public long getInvalidations()
+  {
+    return invalidations.sum();
+  } // getInvalidations()
+
+  /**
+   * Returns the share of lookups that found their document, or 0 before any
+   * lookup.
+   */
+  public double getHitRate()
+  {
+    long found = getHits();
+    long total = found + getMisses();
+    return total == 0 ? 0 : (double) found / total;
+  } // getHitRate()
+
+  /**
+   * Empties the cache and resets its statistics.
+   */
+  public synchronized void clear()
+  {
+    entries.clear();
+    hits.reset();
+    misses.reset();
+    evictions.reset();
+    invalidations.reset();
+  } // clear()
+
+  /**
+   * Describes the cache statistics
+   */
+  @Override
+  public String toString()
+  {
+    return "JSONDocumentCache[size=" + size() + ", hits=" + getHits()
+           + ", misses=" + getMisses() + ", evictions=" + getEvictions()
+           + ", invalidations=" + getInvalidations() + "]";
+  } // toString()
+
+  /**
+   * Makes every map and list in a parsed value read-only, returning the
+   * read-only value
+   *
+   * @param value
+   *          an Object
+   */
+  @SuppressWarnings("unchecked")
+  static Object freeze(Object value)
+  {
+    if (value instanceof Map)
+      {
+        Map<String, Object> map = (Map<String, Object>) value;
+        for (Map.Entry<String, Object> member : map.entrySet())
+          {
+            member.setValue(freeze(member.getValue()));
+          } // for
+        return Collections.unmodifiableMap(map);
+      } // if
+    if (value instanceof List && !(value instanceof JSONNumberList))
+      {
+        List<Object> list = (List<Object>) value;
+        list.replaceAll(JSONDocumentCache::freeze);
+        return Collections.unmodifiableList(list);
+      } // if
+    return value;
+  } // freeze(Object)
+
+  /**
+   * Returns the SHA-256 digest of the UTF-8 bytes of str
+   *
+   * @param str
+   *          a String
+   */
+  static byte[] digest(String str)
+  {
+    try
+      {
+        return MessageDigest.getInstance("SHA-256")
+                            .digest(str.getBytes(StandardCharsets.UTF_8));
+      } // try
+    catch (NoSuchAlgorithmException e)
+      {
+        // every Java platform must support SHA-256
+        throw new IllegalStateException(e);
+      } // catch
+  } // digest(String)
+
+  /**
+   * Registers dir with the watcher, unless it already is
+   *
+   * @param dir
+   *          a Path
+   * @throws IOException
+   */
+  void register(Path dir)
+    throws IOException
+  {
+    if (watched.add(dir))
+      dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                   StandardWatchEventKinds.ENTRY_DELETE,
+                   StandardWatchEventKinds.ENTRY_MODIFY);
+  } // register(Path)
+
+  /**
+   * Drops the documents of files the watcher reports as changed, until the
+   * watcher is closed
+   */
+  void processEvents()
+  {
+    WatchService service;
+    synchronized (this)
+      {
+        service = watcher;
+      } // synchronized
+    try
+      {
+        while (true)
+          {
+            WatchKey key = service.take();
+            Path dir = (Path) key.watchable();
+            synchronized (this)
+              {
+                changes++;
+                for (WatchEvent<?> event : key.pollEvents())
+                  {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+                      {
+                        invalidations.add(entries.size());
+                        entries.clear();
+                      } // if
+                    else
+                      {
+                        Path file = dir.resolve((Path) event.context());
+                        if (entries.remove(file) != null)
+                          invalidations.increment();
+                      } // else
+                  } // for
+              } // synchronized
+            if (!key.reset())
+              {
+                synchronized (this)
+                  {
+                    watched.remove(dir);
+                  } // synchronized
+              } // if
+          } // while
+      } // try
+    catch (InterruptedException | ClosedWatchServiceException e)
+      {
+        // the cache stopped watching
+      } // catch
+  } // processEvents()
+
+  // +---------------+---------------------------------------------------
+  // | Inner Classes |
+  // +---------------+
+
+  /**
+   * A cached document
+   */
+  static class Document
+  {
+    /**
+     * The frozen value
+     */
+    Object value;
+
+    /**
+     * Modification time of the file, in nanoseconds, or -1
+     */
+    long modified;
+
+    /**
+     * Size of the file in bytes, or -1
+     */
+    long size;
+
+    /**
+     * Creates an entry
+     *
+     * @param value
+     *          an Object
+     * @param modified
+     *          a long
+     * @param size
+     *          a long
+     */
+    Document(Object value, long modified, long size)
+    {
+      this.value = value;
+      this.modified = modified;
+      this.size = size;
+    } // Document(Object, long, long)
+  } // class Document
+} // class JSONDocumentCache
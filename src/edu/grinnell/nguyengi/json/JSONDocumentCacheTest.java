@@ -0,0 +1,179 @@
+package edu.grinnell.nguyengi.json;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests for the document cache
+ *
+ * @author Giang
+ *
+ */
+public class JSONDocumentCacheTest
+{
+  /**
+   * Writes text to path
+   *
+   * @param path
+   *          a Path
+   * @param text
+   *          a String
+   * @throws Exception
+   */
+  static void write(Path path, String text)
+    throws Exception
+  {
+    Files.write(path, text.getBytes(StandardCharsets.UTF_8));
+  } // write(Path, String)
+
+  /**
+   * A file is parsed once until it changes
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testFiles()
+    throws Exception
+  {
+    Path path = Files.createTempFile("JSONDocumentCacheTest", ".json");
+    try (JSONDocumentCache cache = new JSONDocumentCache(10))
+      {
+        write(path, "{\"a\":1}");
+        Object first = cache.parseFromFile(path);
+        assertEquals(JSONUtils.parse("{\"a\":1}"), first);
+        assertSame(first, cache.parseFromFile(path));
+        assertSame(first, cache.parseFromFile(path.getParent().resolve(
+            "x/../" + path.getFileName())));
+        assertEquals(1, cache.getMisses());
+        assertEquals(2, cache.getHits());
+
+        write(path, "{\"a\":[1,2]}");
+        assertEquals(JSONUtils.parse("{\"a\":[1,2]}"),
+                     cache.parseFromFile(path));
+        assertEquals(2, cache.getMisses());
+
+        cache.invalidate(path);
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getInvalidations());
+        assertSame(cache.parseFromFile(Paths.get("FileSample.txt")),
+                   cache.parseFromFile(Paths.get("FileSample.txt")));
+      } // try
+    finally
+      {
+        Files.delete(path);
+      } // finally
+  } // testFiles()
+
+  /**
+   * The same text is parsed once, and the values cannot be changed
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testStrings()
+    throws Exception
+  {
+    JSONDocumentCache cache = new JSONDocumentCache(10);
+    String text = "{\"a\":[1,{\"b\":[\"c\"]}],\"n\":[1,2,3]}";
+    Object value = cache.parse(text);
+    assertEquals(JSONUtils.parse(text), value);
+    assertSame(value, cache.parse(new String(text)));
+    assertEquals(0.5, cache.getHitRate(), 0);
+
+    Map<?, ?> map = (Map<?, ?>) value;
+    List<?> a = (List<?>) map.get("a");
+    List<?> c = (List<?>) ((Map<?, ?>) a.get(1)).get("b");
+    try
+      {
+        map.remove("a");
+        fail("removed a member");
+      } // try
+    catch (UnsupportedOperationException e)
+      {
+      } // catch
+    try
+      {
+        a.clear();
+        fail("cleared an array");
+      } // try
+    catch (UnsupportedOperationException e)
+      {
+      } // catch
+    try
+      {
+        c.add(null);
+        fail("added to a nested array");
+      } // try
+    catch (UnsupportedOperationException e)
+      {
+      } // catch
+
+    cache.clear();
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.getHits());
+  } // testStrings()
+
+  /**
+   * The least recently used document is evicted
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testEviction()
+    throws Exception
+  {
+    JSONDocumentCache cache = new JSONDocumentCache(2);
+    Object one = cache.parse("1");
+    Object two = cache.parse("[2]");
+    assertSame(one, cache.parse("1"));
+    cache.parse("\"three\"");
+    assertEquals(2, cache.size());
+    assertEquals(1, cache.getEvictions());
+    assertSame(one, cache.parse("1"));
+    assertNotSame(two, cache.parse("[2]"));
+    assertEquals("JSONDocumentCache[size=2, hits=2, misses=4, evictions=2, "
+                 + "invalidations=0]", cache.toString());
+  } // testEviction()
+
+  /**
+   * A watching cache notices a change that keeps the size of a file
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testWatch()
+    throws Exception
+  {
+    Path dir = Files.createTempDirectory("JSONDocumentCacheTest");
+    Path path = dir.resolve("doc.json");
+    try (JSONDocumentCache cache = new JSONDocumentCache(10))
+      {
+        cache.watch();
+        write(path, "[1]");
+        assertEquals(JSONUtils.parse("[1]"), cache.parseFromFile(path));
+        write(path, "[2]");
+        Object value = null;
+        for (int i = 0; i < 200; i++)
+          {
+            value = cache.parseFromFile(path);
+            if (!value.equals(JSONUtils.parse("[1]")))
+              break;
+            Thread.sleep(50);
+          } // for
+        assertEquals(JSONUtils.parse("[2]"), value);
+      } // try
+    finally
+      {
+        Files.deleteIfExists(path);
+        Files.delete(dir);
+      } // finally
+  } // testWatch()
+} // class JSONDocumentCacheTest
@@ -0,0 +1,654 @@
+package edu.grinnell.nguyengi.json;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Extracts the values at JSON Pointers (RFC 6901), such as
+ * "/glossary/GlossDiv/title", from JSON text without building the rest of
+ * the document. Any number of pointers are looked up in a single pass.
+ *
+ * @author Giang
+ *
+ */
+public class JSONExtractor
+    extends JSONParser
+{
+  // +-------+-----------------------------------------------------------
+  // | Notes |
+  // +-------+
+
+  /*
+   * The pointers are merged into a tree of Targets, one per distinct prefix.
+   * The document is walked alongside the tree: a member or element that
+   * leads to a target is visited, a target that ends a pointer is built by
+   * parseValue, and everything else is passed over by the skip methods,
+   * which check the same grammar as the parse methods without creating any
+   * values. Keys are compared with the text they span unless they contain
+   * escapes.
+   *
+   * The whole document is read, so that malformed text fails as it would in
+   * parse and a later duplicate key replaces what an earlier one led to, as
+   * it does in the maps parse builds. The results are therefore the values that
+   * navigating the result of parse would find.
+   */
+
+  // +--------+----------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The values found so far, by pointer
+   */
+  Map<String, Object> found;
+
+  // +---------+---------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Returns the value at pointer in the JSON text source, or null if there
+   * is none. Use extractAll to tell a missing value from null.
+   *
+   * @param source
+   *          a String
+   * @param pointer
+   *          a String
+   * @throws Exception
+   */
+  static public Object extract(String source, String pointer)
+    throws Exception
+  {
+    return extractAll(source, pointer).get(pointer);
+  } // extract(String, String)
+
+  /**
+   * Returns the values at the given pointers in the JSON text source, keyed
+   * by pointer. Pointers with no value are left out of the result.
+   *
+   * @param source
+   *          a String
+   * @param pointers
+   *          Strings
+   * @throws Exception
+   */
+  static public Map<String, Object> extractAll(String source,
+                                               String... pointers)
+    throws Exception
+  {
+    Target root = new Target(null);
+    for (String pointer : pointers)
+      {
+        root.add(pointer, tokens(pointer), 0);
+      } // for
+    JSONExtractor extractor = new JSONExtractor();
+    Map<String, Object> found = extractor.extract(source, root);
+    // report in the order the pointers were given
+    Map<String, Object> result = new LinkedHashMap<>();
+    for (String pointer : pointers)
+      {
+        if (found.containsKey(pointer))
+          result.put(pointer, found.get(pointer));
+      } // for
+    return result;
+  } // extractAll(String, String...)
+
+  /**
+   * Splits a JSON Pointer into its unescaped reference tokens
+   *
+   * @param pointer
+   *          a String
+   */
+  static List<String> tokens(String pointer)
+  {
+    List<String> tokens = new ArrayList<>();
+    if (pointer.isEmpty())
+      return tokens;
+    if (pointer.charAt(0) != '/')
+      throw new IllegalArgumentException("JSON Pointer must start with /: "
+                                         + pointer);
+    StringBuilder token = new StringBuilder();
+    for (int i = 1; i <= pointer.length(); i++)
+      {
+        char c = i < pointer.length() ? pointer.charAt(i) : '/';
+        if (c == '/')
+          {
+            tokens.add(token.toString());
+            token.setLength(0);
+          } // if
+        else if (c != '~')
+          {
+            token.append(c);
+          } // else if
+        else if (i + 1 < pointer.length() && pointer.charAt(i + 1) == '0')
+          {
+            token.append('~');
+            i++;
+          } // else if
+        else if (i + 1 < pointer.length() && pointer.charAt(i + 1) == '1')
+          {
+            token.append('/');
+            i++;
+          } // else if
+        else
+          {
+            throw new IllegalArgumentException("Illegal ~ in JSON Pointer: "
+                                               + pointer);
+          } // else
+      } // for
+    return tokens;
+  } // tokens(String)
+
+  /**
+   * Finds the targets under root in str
+   *
+   * @param str
+   *          a String
+   * @param root
+   *          a Target
+   * @throws Exception
+   */
+  Map<String, Object> extract(String str, Target root)
+    throws Exception
+  {
+    this.str = str;
+    this.pos = 0;
+    this.length = str.length();
+    this.found = new HashMap<>();
+    try
+      {
+        skipWhitespace();
+        visit(root);
+        return found;
+      } // try
+    finally
+      {
+        this.str = null;
+      } // finally
+  } // extract(String, Target)
+
+  // +----------------+-----------------------------------------------
+  // | Parser Methods |
+  // +----------------+
+
+  /**
+   * Finds the targets under target in the value at the parser's position
+   *
+   * @param target
+   *          a Target
+   * @throws Exception
+   */
+  void visit(Target target)
+    throws Exception
+  {
+    // an earlier duplicate key may have led here already
+    target.forget(found);
+    skipWhitespace();
+    if (target.pointer != null)
+      {
+        Object value = parseValue();
+        target.resolve(value, found);
+        return;
+      } // if
+    char c = current();
+    if (c == '{')
+      visitObject(target);
+    else if (c == '[')
+      visitArray(target);
+    else
+      skipValue();
+  } // visit(Target)
+
+  /**
+   * Finds the targets under target among the members of the object at the
+   * parser's position
+   *
+   * @param target
+   *          a Target
+   * @throws Exception
+   */
+  void visitObject(Target target)
+    throws Exception
+  {
+    pos++;
+    skipWhitespace();
+    while (current() != '}')
+      {
+        if (str.charAt(pos) != '\"')
+          throw new Exception("Invalid key type.");
+        Target child = matchKey(target);
+        if (current() != ':')
+          throw new Exception("Invalid object format.");
+        pos++;
+        skipWhitespace();
+        if (child == null)
+          skipValue();
+        else
+          visit(child);
+        char c = current();
+        if (c != ',' && c != '}')
+          throw new Exception("Illegal object character: " + c);
+        if (c == ',')
+          {
+            pos++;
+            skipWhitespace();
+          } // if
+      } // while
+    pos++;
+    skipWhitespace();
+  } // visitObject(Target)
+
+  /**
+   * Moves past the key at the parser's position, returning the child of
+   * target it names, if any
+   *
+   * @param target
+   *          a Target
+   * @throws Exception
+   */
+  Target matchKey(Target target)
+    throws Exception
+  {
+    int start = pos + 1;
+    int end = start;
+    char c = 0;
+    while (end < length && (c = str.charAt(end)) != '\"' && c != '\\')
+      {
+        end++;
+      } // while
+    if (c != '\"' || end == length)
+      return target.child(parseString());
+    pos = end + 1;
+    skipWhitespace();
+    for (Target child : target.children)
+      {
+        String token = child.token;
+        if (token.length() == end - start
+            && str.regionMatches(start, token, 0, end - start))
+          return child;
+      } // for
+    return null;
+  } // matchKey(Target)
+
+  /**
+   * Finds the targets under target among the elements of the array at the
+   * parser's position
+   *
+   * @param target
+   *          a Target
+   * @throws Exception
+   */
+  void visitArray(Target target)
+    throws Exception
+  {
+    pos++;
+    skipWhitespace();
+    int index = 0;
+    while (current() != ']')
+      {
+        Target child = target.element(index++);
+        if (child == null)
+          skipValue();
+        else
+          visit(child);
+        char c = current();
+        if (c != ',' && c != ']')
+          throw new Exception("Illegal array character: " + c);
+        if (c == ',')
+          {
+            pos++;
+            skipWhitespace();
+          } // if
+      } // while
+    pos++;
+    skipWhitespace();
+  } // visitArray(Target)
+
+  /**
+   * Moves past the value starting at the parser's position, checking it as
+   * parseValue would but without building it
+   *
+   * @throws Exception
+   */
+  void skipValue()
+    throws Exception
+  {
+    skipWhitespace();
+    char first = current();
+    if (first == '{')
+      {
+        skipObject();
+      } // if object
+    else if (first == '[')
+      {
+        skipArray();
+      } // else if array
+    else if (first == '\"')
+      {
+        skipString();
+      } // else if String
+    else if ((first >= '0' && first <= '9') || first == '-')
+      {
+        skipNumber();
+      } // else if Number
+    else
+      {
+        parseSpecialValue();
+      } // else must be special value
+  } // skipValue()
+
+  /**
+   * Moves past the object at the parser's position
+   *
+   * @throws Exception
+   */
+  void skipObject()
+    throws Exception
+  {
+    pos++;
+    skipWhitespace();
+    while (current() != '}')
+      {
+        if (str.charAt(pos) != '\"')
+          throw new Exception("Invalid key type.");
+        skipString();
+        if (current() != ':')
+          throw new Exception("Invalid object format.");
+        pos++;
+        skipValue();
+        char c = current();
+        if (c != ',' && c != '}')
+          throw new Exception("Illegal object character: " + c);
+        if (c == ',')
+          {
+            pos++;
+            skipWhitespace();
+          } // if
+      } // while
+    pos++;
+    skipWhitespace();
+  } // skipObject()
+
+  /**
+   * Moves past the array at the parser's position
+   *
+   * @throws Exception
+   */
+  void skipArray()
+    throws Exception
+  {
+    pos++;
+    skipWhitespace();
+    while (current() != ']')
+      {
+        skipValue();
+        char c = current();
+        if (c != ',' && c != ']')
+          throw new Exception("Illegal array character: " + c);
+        if (c == ',')
+          {
+            pos++;
+            skipWhitespace();
+          } // if
+      } // while
+    pos++;
+    skipWhitespace();
+  } // skipArray()
+
+  /**
+   * Moves past the string at the parser's position
+   *
+   * @throws Exception
+   */
+  void skipString()
+    throws Exception
+  {
+    pos++;
+    while (pos < length)
+      {
+        char c = str.charAt(pos++);
+        if (c == '\"')
+          {
+            skipWhitespace();
+            return;
+          } // if
+        if (c == '\\')
+          {
+            c = current();
+            pos++;
+            if (c == 'u')
+              {
+                if (pos + 4 > length)
+                  throw new Exception("Illegal unicode escape.");
+                for (int i = 0; i < 4; i++)
+                  {
+                    if (JSONParser.hexValue(str.charAt(pos++)) < 0)
+                      throw new Exception("Illegal unicode escape.");
+                  } // for
+              } // if
+            else if ("\\\"/ntbfr".indexOf(c) < 0)
+              {
+                throw new Exception("Illegal character after \\.");
+              } // else if
+          } // if
+      } // while
+    throw new Exception("Missing quote.");
+  } // skipString()
+
+  /**
+   * Moves past the number at the parser's position
+   *
+   * @throws Exception
+   */
+  void skipNumber()
+    throws Exception
+  {
+    int start = pos;
+    numbers.reset();
+    while (pos < length && numbers.accept(str.charAt(pos)))
+      {
+        pos++;
+      } // while
+    if (pos < length && !isEndOfNumber(str.charAt(pos))
+        && !Character.isWhitespace(str.charAt(pos)))
+      throw new Exception("Illegal number: "
+                          + str.substring(start, pos + 1));
+    if (!numbers.isComplete())
+      throw new Exception("Illegal number.");
+    skipWhitespace();
+  } // skipNumber()
+
+  // +---------------+---------------------------------------------------
+  // | Inner Classes |
+  // +---------------+
+
+  /**
+   * A node in the tree of pointers: the reference token leading to it from
+   * its parent, and the pointers that end at it or below it
+   */
+  static class Target
+  {
+    /**
+     * The reference token that leads here, or null at the root
+     */
+    String token;
+
+    /**
+     * The token as an array index, or -1 if it is not one
+     */
+    int index;
+
+    /**
+     * The pointer that ends here, if any
+     */
+    String pointer;
+
+    /**
+     * The reference tokens of each pointer below this one, from here on
+     */
+    List<List<String>> below = new ArrayList<>();
+
+    /**
+     * The pointers below this one, in the same order as below
+     */
+    List<String> pointers = new ArrayList<>();
+
+    /**
+     * The targets one token further
+     */
+    List<Target> children = new ArrayList<>();
+
+    /**
+     * Creates a target reached by token
+     *
+     * @param token
+     *          a String
+     */
+    Target(String token)
+    {
+      this.token = token;
+      this.index = token == null ? -1 : arrayIndex(token);
+    } // Target(String)
+
+    /**
+     * Adds the pointer whose tokens from i on lead from here
+     *
+     * @param pointer
+     *          a String
+     * @param tokens
+     *          a List
+     * @param i
+     *          an int
+     */
+    void add(String pointer, List<String> tokens, int i)
+    {
+      if (i == tokens.size())
+        {
+          this.pointer = pointer;
+          return;
+        } // if
+      below.add(tokens.subList(i, tokens.size()));
+      pointers.add(pointer);
+      Target child = child(tokens.get(i));
+      if (child == null)
+        {
+          child = new Target(tokens.get(i));
+          children.add(child);
+        } // if
+      child.add(pointer, tokens, i + 1);
+    } // add(String, List<String>, int)
+
+    /**
+     * Returns the child reached by key, or null
+     *
+     * @param key
+     *          a String
+     */
+    Target child(String key)
+    {
+      for (Target child : children)
+        {
+          if (child.token.equals(key))
+            return child;
+        } // for
+      return null;
+    } // child(String)
+
+    /**
+     * Returns the child reached by the array index i, or null
+     *
+     * @param i
+     *          an int
+     */
+    Target element(int i)
+    {
+      for (Target child : children)
+        {
+          if (child.index == i)
+            return child;
+        } // for
+      return null;
+    } // element(int)
+
+    /**
+     * Records value for the pointer ending here, and the values within it
+     * for the pointers below
+     *
+     * @param value
+     *          an Object
+     * @param found
+     *          a Map
+     */
+    void resolve(Object value, Map<String, Object> found)
+    {
+      found.put(pointer, value);
+      for (int i = 0; i < below.size(); i++)
+        {
+          Object current = value;
+          boolean present = true;
+          for (String step : below.get(i))
+            {
+              int n = arrayIndex(step);
+              if (current instanceof Map
+                  && ((Map<?, ?>) current).containsKey(step))
+                {
+                  current = ((Map<?, ?>) current).get(step);
+                } // if
+              else if (current instanceof List && n >= 0
+                       && n < ((List<?>) current).size())
+                {
+                  current = ((List<?>) current).get(n);
+                } // else if
+              else
+                {
+                  present = false;
+                  break;
+                } // else
+            } // for
+          if (present)
+            found.put(pointers.get(i), current);
+        } // for
+    } // resolve(Object, Map<String, Object>)
+
+    /**
+     * Removes the values found for the pointers at and below this target
+     *
+     * @param found
+     *          a Map
+     */
+    void forget(Map<String, Object> found)
+    {
+      if (pointer != null)
+        found.remove(pointer);
+      for (String name : pointers)
+        {
+          found.remove(name);
+        } // for
+    } // forget(Map<String, Object>)
+
+    /**
+     * Returns token as an array index, or -1 if it is not one
+     *
+     * @param token
+     *          a String
+     */
+    static int arrayIndex(String token)
+    {
+      int length = token.length();
+      if (length == 0 || length > 9 || (token.charAt(0) == '0' && length > 1))
+        return -1;
+      int value = 0;
+      for (int i = 0; i < length; i++)
+        {
+          char c = token.charAt(i);
+          if (c < '0' || c > '9')
+            return -1;
+          value = value * 10 + (c - '0');
+        } // for
+      return value;
+    } // arrayIndex(String)
+  } // class Target
+} // class JSONExtractor
@@ -0,0 +1,144 @@
+package edu.grinnell.nguyengi.json;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests for extracting values at JSON Pointers
+ *
+ * @author Giang
+ *
+ */
+public class JSONExtractorTest
+{
+  /**
+   * Returns the value at pointer in value, navigating it as a user of parse
+   * would, or the string "missing"
+   *
+   * @param value
+   *          an Object
+   * @param pointer
+   *          a String
+   */
+  static Object navigate(Object value, String pointer)
+  {
+    for (String token : JSONExtractor.tokens(pointer))
+      {
+        int index = JSONExtractor.Target.arrayIndex(token);
+        if (value instanceof Map && ((Map<?, ?>) value).containsKey(token))
+          value = ((Map<?, ?>) value).get(token);
+        else if (value instanceof List && index >= 0
+                 && index < ((List<?>) value).size())
+          value = ((List<?>) value).get(index);
+        else
+          return "missing";
+      } // for
+    return value;
+  } // navigate(Object, String)
+
+  /**
+   * Values match those found by navigating the result of parse
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testFileSample()
+    throws Exception
+  {
+    String text = new String(Files.readAllBytes(Paths.get("FileSample.txt")),
+                             StandardCharsets.UTF_8);
+    Object parsed = JSONUtils.parse(text);
+    String[] pointers = { "/glossary/GlossDiv/title", "/glossary/GlossDiv",
+                         "/glossary/GlossDiv/GlossList/GlossEntry/GlossDef"
+                             + "/GlossSeeAlso/1",
+                         "/glossary/title", "/glossary/nothing", "",
+                         "/glossary/GlossDiv/GlossList/GlossEntry/ID/x" };
+    Map<String, Object> found = JSONUtils.extractAll(text, pointers);
+    for (String pointer : pointers)
+      {
+        Object expected = navigate(parsed, pointer);
+        if (expected == "missing")
+          assertFalse(pointer, found.containsKey(pointer));
+        else
+          assertEquals(pointer, expected, found.get(pointer));
+      } // for
+    assertEquals("S", JSONUtils.extract(text, "/glossary/GlossDiv/title"));
+  } // testFileSample()
+
+  /**
+   * Escaped pointers and keys, array indices, and duplicate keys
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testTokens()
+    throws Exception
+  {
+    String text = "{\"a/b\": 1, \"m~n\": [10, 20, {\"k\": null}],"
+                  + " \"\\u0078\": \"x\", \"\": 0, \"d\": {\"e\": 1},"
+                  + " \"d\": {\"f\": 2}}";
+    Map<String, Object> found =
+        JSONUtils.extractAll(text, "/a~1b", "/m~0n/1", "/m~0n/2/k", "/x",
+                             "/", "/m~0n/01", "/m~0n/-", "/d/e", "/d/f");
+    assertEquals(1, found.get("/a~1b"));
+    assertEquals(20, found.get("/m~0n/1"));
+    assertTrue(found.containsKey("/m~0n/2/k"));
+    assertNull(found.get("/m~0n/2/k"));
+    assertEquals("x", found.get("/x"));
+    assertEquals(0, found.get("/"));
+    assertFalse(found.containsKey("/m~0n/01"));
+    assertFalse(found.containsKey("/m~0n/-"));
+    assertFalse(found.containsKey("/d/e"));
+    assertEquals(2, found.get("/d/f"));
+    // trailing commas before whitespace, on and off the path
+    assertEquals(1, JSONUtils.extract("[1, ]", "/0"));
+    found = JSONUtils.extractAll("{\"a\":[1, ], \"b\":2}", "/b");
+    assertEquals(2, found.get("/b"));
+    found = JSONUtils.extractAll("{\"a\":[[1, ], 2, ]}", "/a/1");
+    assertEquals(2, found.get("/a/1"));
+  } // testTokens()
+
+  /**
+   * Errors anywhere in the document are reported, as in parse
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testErrors()
+    throws Exception
+  {
+    String[] bad = { "{\"a\": 1, \"b\": [1 2]}", "{\"a\": 1, \"b\": \"\\q\"}",
+                    "{\"a\": 1, \"b\": tru}", "{\"a\": 1, \"b\": 1.}",
+                    "{\"a\": 1",
+                    // a skipped \\u escape with Arabic-Indic digits
+                    "{\"a\": 1, \"b\": \"\\u\u0660\u0661\u0662\u0663\"}" };
+    for (String text : bad)
+      {
+        try
+          {
+            JSONUtils.extract(text, "/a");
+            fail(text);
+          } // try
+        catch (Exception e)
+          {
+            // expected
+          } // catch
+      } // for
+    try
+      {
+        JSONUtils.extract("{}", "a");
+        fail();
+      } // try
+    catch (IllegalArgumentException e)
+      {
+        // pointers start with /
+      } // catch
+  } // testErrors()
+} // class JSONExtractorTest
@@ -0,0 +1,213 @@
+package edu.grinnell.nguyengi.json;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Parses a UTF-8 encoded JSON file through a memory mapping of it, so the
+ * file's contents are never copied onto the heap.
+ *
+ * @author Giang
+ *
+ */
+public class JSONFileParser
+    extends JSONByteParser
+{
+  // +-------+-----------------------------------------------------------
+  // | Notes |
+  // +-------+
+
+  /*
+   * A single mapping cannot be larger than 2 GB. Larger files are mapped one
+   * window at a time; when the parser reaches the end of a window, the next
+   * one is mapped starting at the first byte the parser still needs, so a
+   * string or number never has to be stitched together from two windows.
+   *
+   * Files smaller than MAP_THRESHOLD are read into a heap buffer instead,
+   * since setting up a mapping costs more than reading a few pages.
+   */
+
+  // +-----------+-------------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * Files smaller than this are read rather than mapped
+   */
+  static final long MAP_THRESHOLD = 1 << 16;
+
+  /**
+   * Size of each mapping for files too large to map at once
+   */
+  static final int WINDOW_SIZE = 1 << 30;
+
+  // +--------+----------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The file being parsed
+   */
+  FileChannel channel;
+
+  /**
+   * Size of the file
+   */
+  long size;
+
+  /**
+   * Offset in the file of the first byte of buf
+   */
+  long base;
+
+  /**
+   * Size of the mappings
+   */
+  int windowSize;
+
+  // +--------------+----------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Creates a parser for the file open in channel, mapping at most
+   * windowSize bytes at a time
+   *
+   * @param channel
+   *          a FileChannel
+   * @param windowSize
+   *          an int
+   * @throws IOException
+   */
+  JSONFileParser(FileChannel channel, int windowSize)
+    throws IOException
+  {
+    super(map(channel, 0, windowSize));
+    this.channel = channel;
+    this.size = channel.size();
+    this.base = 0;
+    this.windowSize = windowSize;
+  } // JSONFileParser(FileChannel, int)
+
+  // +---------+---------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Parses the JSON value held in the file at path.
+   *
+   * @param path
+   *          a Path
+   * @throws Exception
+   */
+  static public Object parse(Path path)
+    throws Exception
+  {
+    return parse(path, WINDOW_SIZE, null);
+  } // parse(Path)
+
+  /**
+   * Parses the JSON value held in the file at path, mapping at most
+   * windowSize bytes at a time and reporting to listener unless it is null.
+   *
+   * @param path
+   *          a Path
+   * @param windowSize
+   *          an int
+   * @param listener
+   *          a JSONListener
+   * @throws Exception
+   */
+  static Object parse(Path path, int windowSize, JSONListener listener)
+    throws Exception
+  {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+      {
+        long size = channel.size();
+        JSONByteParser parser;
+        if (size < MAP_THRESHOLD)
+          parser = new JSONByteParser(read(channel, (int) size));
+        else
+          parser = new JSONFileParser(channel, windowSize);
+        parser.setListener(listener);
+        return parser.parse();
+      } // try
+  } // parse(Path, int, JSONListener)
+
+  /**
+   * Maps up to windowSize bytes of the file open in channel, starting at
+   * offset
+   *
+   * @param channel
+   *          a FileChannel
+   * @param offset
+   *          a long
+   * @param windowSize
+   *          an int
+   * @throws IOException
+   */
+  static ByteBuffer map(FileChannel channel, long offset, int windowSize)
+    throws IOException
+  {
+    long length = Math.min(windowSize, channel.size() - offset);
+    return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+  } // map(FileChannel, long, int)
+
+  /**
+   * Reads size bytes of the file open in channel into a heap buffer
+   *
+   * @param channel
+   *          a FileChannel
+   * @param size
+   *          an int
+   * @throws IOException
+   */
+  static ByteBuffer read(FileChannel channel, int size)
+    throws IOException
+  {
+    ByteBuffer buf = ByteBuffer.allocate(size);
+    while (buf.hasRemaining() && channel.read(buf) >= 0)
+      {
+        // keep reading until the buffer is full or the file ends
+      } // while
+    buf.flip();
+    return buf;
+  } // read(FileChannel, int)
+
+  /**
+   * Maps the next window of the file, starting at the byte at index keep of
+   * the current one.
+   *
+   * @param keep
+   *          an int
+   * @throws IOException
+   */
+  @Override
+  int refill(int keep)
+    throws IOException
+  {
+    long end = base + limit;
+    if (end >= size)
+      return -1;
+    if (keep == 0)
+      throw new IOException("Value at offset " + base
+                            + " does not fit in one mapping.");
+    base += keep;
+    buf = map(channel, base, windowSize);
+    pos -= keep;
+    limit = buf.limit();
+    return keep;
+  } // refill(int)
+
+  /**
+   * Returns the offset of the parser's position from the start of the file
+   */
+  @Override
+  long position()
+  {
+    return base + pos;
+  } // position()
+} // class JSONFileParser
@@ -0,0 +1,70 @@
+package edu.grinnell.nguyengi.json;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.Test;
+
+/**
+ * Tests for parsing files through memory mappings
+ *
+ * @author Giang
+ *
+ */
+public class JSONFileParserTest
+{
+  /**
+   * The sample files parse to the same values as their contents
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testSampleFiles()
+    throws Exception
+  {
+    for (String name : new String[] { "FileSample2.txt", "FileSample3.txt" })
+      {
+        Path path = Paths.get(name);
+        String contents =
+            new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        assertEquals(name, JSONUtils.parse(contents),
+                     JSONUtils.parseFromFile(path));
+      } // for
+  } // testSampleFiles()
+
+  /**
+   * A file spread over many small mappings parses like one mapped at once
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testWindows()
+    throws Exception
+  {
+    StringBuilder json = new StringBuilder("[");
+    for (int i = 0; json.length() < 2 * JSONFileParser.MAP_THRESHOLD; i++)
+      {
+        json.append("{\"id\":").append(i)
+            .append(",\"name\":\"caf\u00e9 \\\"").append(i)
+            .append("\\\"\",\"tags\":[true,false,null]},\n");
+      } // for
+    json.append("\"end\"]");
+    Path path = Files.createTempFile("JSONFileParserTest", ".json");
+    try
+      {
+        Files.write(path, json.toString().getBytes(StandardCharsets.UTF_8));
+        Object expected = JSONUtils.parse(json.toString());
+        assertEquals(expected, JSONFileParser.parse(path, 4096, null));
+        assertEquals(expected, JSONFileParser.parse(path, 61, null));
+        assertEquals(expected, JSONUtils.parseFromFile(path));
+      } // try
+    finally
+      {
+        Files.delete(path);
+      } // finally
+  } // testWindows()
+} // class JSONFileParserTest
@@ -0,0 +1,694 @@
+package edu.grinnell.nguyengi.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Copies UTF-8 encoded JSON text from a stream to another, either with all
+ * the whitespace between tokens removed or indented one member or element to
+ * a line. Tokens are copied byte for byte, so key order, number formatting,
+ * and escapes are kept, and no values are built, so a file of any size is
+ * formatted in a fixed amount of memory. The text is checked as it goes by,
+ * with the grammar JSONUtils.parse uses.
+ *
+ * @author Giang
+ *
+ */
+public class JSONFormatter
+{
+  // +-------+-----------------------------------------------------------
+  // | Notes |
+  // +-------+
+
+  /*
+   * Every byte that matters to the layout of JSON text is ASCII, and no byte
+   * of a multi-byte UTF-8 sequence is, so the formatter works on bytes and
+   * never decodes the text.
+   *
+   * Outside strings, whitespace is dropped and structural characters are
+   * written with whatever line breaks and indentation go around them. The
+   * line break after an opening bracket waits for the next token, so that an
+   * empty object or array stays on one line. A comma waits too, and is
+   * dropped if a closing bracket comes next, so that the output is strict
+   * JSON even where the input has a trailing comma. Several top-level values,
+   * as in newline-delimited JSON, are written one to a line.
+   *
+   * To check the text without building it, the formatter keeps what may come
+   * next (expect), whether each open container is an object (one bit per
+   * level), and where it is inside the current string, number, or literal.
+   * Numbers are checked by a JSONNumberScanner, which needs none of their
+   * text. As in the parsers, a comma may come before a closing bracket.
+   */
+
+  // +-----------+-------------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * Size of the input and output buffers
+   */
+  static final int BUFFER_SIZE = 1 << 16;
+
+  /**
+   * Expecting a top-level value or the end of the input
+   */
+  static final int TOP = 0;
+
+  /**
+   * Expecting a value, after a colon
+   */
+  static final int VALUE = 1;
+
+  /**
+   * Expecting an element or ], after [ or a comma in an array
+   */
+  static final int VALUE_OR_CLOSE = 2;
+
+  /**
+   * Expecting a key or }, after { or a comma in an object
+   */
+  static final int KEY_OR_CLOSE = 3;
+
+  /**
+   * Expecting the colon after a key
+   */
+  static final int COLON = 4;
+
+  /**
+   * Expecting a comma or a closing bracket, after a member or an element
+   */
+  static final int COMMA_OR_CLOSE = 5;
+
+  /**
+   * Not inside a number or a literal
+   */
+  static final int NONE = 0;
+
+  /**
+   * Inside a number
+   */
+  static final int NUMBER = 1;
+
+  /**
+   * Inside true, false, or null
+   */
+  static final int LITERAL = 2;
+
+  /**
+   * The literals
+   */
+  static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+  static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+  static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+
+  // +--------+----------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * Spaces per level of nesting, or 0 to remove whitespace
+   */
+  int indent = 0;
+
+  /**
+   * Bytes read but not yet formatted
+   */
+  byte[] input = new byte[BUFFER_SIZE];
+
+  /**
+   * Bytes formatted but not yet written
+   */
+  byte[] output = new byte[BUFFER_SIZE];
+
+  /**
+   * Number of bytes in output
+   */
+  int count;
+
+  /**
+   * Where output goes
+   */
+  OutputStream out;
+
+  /**
+   * Whether each open container is an object, one bit per level
+   */
+  long[] objects = new long[1];
+
+  /**
+   * Number of open containers
+   */
+  int depth;
+
+  /**
+   * What may come next, outside strings, numbers, and literals
+   */
+  int expect;
+
+  /**
+   * Whether a top-level value has begun
+   */
+  boolean started;
+
+  /**
+   * Whether the formatter is inside a string
+   */
+  boolean inString;
+
+  /**
+   * Whether the string is a key
+   */
+  boolean isKey;
+
+  /**
+   * Inside a string, -1 after a backslash, the number of hex digits still
+   * to come in a \\u escape, or 0
+   */
+  int escape;
+
+  /**
+   * NUMBER or LITERAL inside a number or a literal, or else NONE
+   */
+  int token;
+
+  /**
+   * Checks the current number
+   */
+  JSONNumberScanner numbers = new JSONNumberScanner();
+
+  /**
+   * The current literal
+   */
+  byte[] literal;
+
+  /**
+   * Number of bytes of literal seen so far
+   */
+  int matched;
+
+  /**
+   * Whether an opening bracket is waiting for its line break
+   */
+  boolean opened;
+
+  /**
+   * Whether a comma is waiting to be written, with its line break
+   */
+  boolean pending;
+
+  // +--------------+----------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Creates a formatter that removes whitespace
+   */
+  public JSONFormatter()
+  {
+  } // JSONFormatter()
+
+  // +---------+---------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Sets the number of spaces each level of nesting is indented by, or 0 to
+   * remove all whitespace.
+   *
+   * @param indent
+   *          an int
+   */
+  public void setIndent(int indent)
+  {
+    if (indent < 0)
+      throw new IllegalArgumentException("Indent must not be negative: "
+                                         + indent);
+    this.indent = indent;
+  } // setIndent(int)
+
+  /**
+   * Reads JSON text from in until it ends and writes it, formatted, to out.
+   * Neither stream is closed. The text may hold several top-level values.
+   * Output written before an error is found is not taken back.
+   *
+   * @param in
+   *          an InputStream
+   * @param out
+   *          an OutputStream
+   * @throws IOException
+   *           if either stream fails
+   * @throws Exception
+   *           if the text is not valid JSON
+   */
+  public void format(InputStream in, OutputStream out)
+    throws Exception
+  {
+    this.out = out;
+    count = 0;
+    depth = 0;
+    expect = TOP;
+    started = false;
+    inString = false;
+    escape = 0;
+    token = NONE;
+    opened = false;
+    pending = false;
+    try
+      {
+        int length;
+        while ((length = in.read(input)) != -1)
+          {
+            format(length);
+          } // while
+        if (inString)
+          throw new Exception("Missing quote.");
+        if (token != NONE)
+          endToken();
+        if (!started || depth != 0 || expect != TOP)
+          throw new Exception("Unexpected end of input.");
+        if (indent > 0)
+          put((byte) '\n');
+        flushOutput();
+      } // try
+    finally
+      {
+        this.out = null;
+      } // finally
+  } // format(InputStream, OutputStream)
+
+  /**
+   * Formats the first length bytes of input
+   *
+   * @param length
+   *          an int
+   * @throws Exception
+   */
+  void format(int length)
+    throws Exception
+  {
+    byte[] bytes = input;
+    int i = 0;
+    while (i < length)
+      {
+        if (inString)
+          {
+            if (escape != 0)
+              {
+                checkEscape(bytes[i]);
+                put(bytes[i++]);
+                continue;
+              } // if
+            int start = i;
+            while (i < length && bytes[i] != '"' && bytes[i] != '\\')
+              {
+                i++;
+              } // while
+            if (i == length)
+              {
+                put(bytes, start, i - start);
+                break;
+              } // if
+            // the closing quote or the backslash goes with the run
+            if (bytes[i] == '"')
+              inString = false;
+            else
+              escape = -1;
+            i++;
+            put(bytes, start, i - start);
+            if (!inString)
+              {
+                if (isKey)
+                  expect = COLON;
+                else
+                  endValue();
+              } // if
+            continue;
+          } // if
+        byte b = bytes[i++];
+        if (token != NONE)
+          {
+            if (!endsToken(b))
+              {
+                continueToken(b);
+                put(b);
+                continue;
+              } // if
+            endToken();
+          } // if
+        if (JSONByteParser.isWhitespace(b))
+          continue;
+        switch (b)
+          {
+            case '{':
+            case '[':
+              beginValue(b);
+              put(b);
+              push(b == '{');
+              opened = true;
+              expect = b == '{' ? KEY_OR_CLOSE : VALUE_OR_CLOSE;
+              break;
+            case '}':
+            case ']':
+              closeContainer(b);
+              break;
+            case ',':
+              if (expect != COMMA_OR_CLOSE)
+                throw unexpected(b);
+              // written only once the next member or element begins
+              pending = true;
+              expect = isObject() ? KEY_OR_CLOSE : VALUE_OR_CLOSE;
+              break;
+            case ':':
+              if (expect != COLON)
+                throw unexpected(b);
+              put(b);
+              if (indent > 0)
+                put((byte) ' ');
+              expect = VALUE;
+              break;
+            case '"':
+              isKey = expect == KEY_OR_CLOSE;
+              if (isKey)
+                breakLine();
+              else
+                beginValue(b);
+              put(b);
+              inString = true;
+              break;
+            default:
+              beginValue(b);
+              beginToken(b);
+              put(b);
+          } // switch
+      } // while
+  } // format(int)
+
+  /**
+   * Checks that a value may start with b here, and writes whatever has to
+   * come before it: a line break after an opening bracket or a comma, or
+   * between top-level values
+   *
+   * @param b
+   *          a byte
+   * @throws Exception
+   */
+  void beginValue(byte b)
+    throws Exception
+  {
+    if (expect != VALUE && expect != VALUE_OR_CLOSE && expect != TOP)
+      throw unexpected(b);
+    if (expect == TOP && started)
+      put((byte) '\n');
+    else
+      breakLine();
+    started = true;
+  } // beginValue(byte)
+
+  /**
+   * Notes that a value has ended
+   */
+  void endValue()
+  {
+    expect = depth == 0 ? TOP : COMMA_OR_CLOSE;
+  } // endValue()
+
+  /**
+   * Closes the innermost container with b, checking that b matches it and
+   * may come here
+   *
+   * @param b
+   *          a byte
+   * @throws Exception
+   */
+  void closeContainer(byte b)
+    throws Exception
+  {
+    boolean object = b == '}';
+    if (depth == 0 || isObject() != object
+        || (expect != COMMA_OR_CLOSE
+            && expect != (object ? KEY_OR_CLOSE : VALUE_OR_CLOSE)))
+      throw unexpected(b);
+    depth--;
+    if (opened)
+      opened = false;
+    else
+      {
+        // a trailing comma is dropped
+        pending = false;
+        newLine();
+      } // else
+    put(b);
+    endValue();
+  } // closeContainer(byte)
+
+  /**
+   * Starts the number or literal whose first byte is b
+   *
+   * @param b
+   *          a byte
+   * @throws Exception
+   */
+  void beginToken(byte b)
+    throws Exception
+  {
+    if (b == '-' || (b >= '0' && b <= '9'))
+      {
+        numbers.reset();
+        numbers.accept(b);
+        token = NUMBER;
+        return;
+      } // if
+    if (b == 't')
+      literal = TRUE;
+    else if (b == 'f')
+      literal = FALSE;
+    else if (b == 'n')
+      literal = NULL;
+    else
+      throw new Exception("Parser does not recognize value: " + (char) b);
+    matched = 1;
+    token = LITERAL;
+  } // beginToken(byte)
+
+  /**
+   * Checks b, the next byte of the current number or literal
+   *
+   * @param b
+   *          a byte
+   * @throws Exception
+   */
+  void continueToken(byte b)
+    throws Exception
+  {
+    if (token == NUMBER)
+      {
+        if (!numbers.accept(b))
+          throw new Exception("Illegal number.");
+      } // if
+    else if (matched == literal.length)
+      {
+        throw new Exception("Parser does not recognize value: " + (char) b);
+      } // else if
+    else if (literal[matched++] != b)
+      {
+        throw new Exception("Parser does not recognize value: "
+                            + (char) literal[0]);
+      } // else if
+  } // continueToken(byte)
+
+  /**
+   * Checks that the current number or literal is whole, and ends it
+   *
+   * @throws Exception
+   */
+  void endToken()
+    throws Exception
+  {
+    if (token == NUMBER)
+      {
+        if (!numbers.isComplete())
+          throw new Exception("Illegal number.");
+      } // if
+    else if (matched != literal.length)
+      {
+        throw new Exception("Parser does not recognize value: "
+                            + (char) literal[0]);
+      } // else if
+    token = NONE;
+    endValue();
+  } // endToken()
+
+  /**
+   * Checks b, the next byte of an escape sequence in a string
+   *
+   * @param b
+   *          a byte
+   * @throws Exception
+   */
+  void checkEscape(byte b)
+    throws Exception
+  {
+    if (escape > 0)
+      {
+        if (JSONParser.hexValue((char) b) < 0)
+          throw new Exception("Illegal unicode escape.");
+        escape--;
+      } // if
+    else if (b == 'u')
+      escape = 4;
+    else if ("\"\\/bfnrt".indexOf(b) < 0)
+      throw new Exception("Illegal character after \\.");
+    else
+      escape = 0;
+  } // checkEscape(byte)
+
+  /**
+   * Returns the error for b coming where it may not, worded as the parsers
+   * word it
+   *
+   * @param b
+   *          a byte
+   */
+  Exception unexpected(byte b)
+  {
+    switch (expect)
+      {
+        case KEY_OR_CLOSE:
+          return new Exception("Invalid key type.");
+        case COLON:
+          return new Exception("Invalid object format.");
+        case COMMA_OR_CLOSE:
+          if (isObject())
+            return new Exception("Illegal object character: " + (char) b);
+          return new Exception("Illegal array character: " + (char) b);
+        default:
+          return new Exception("Parser does not recognize value: "
+                               + (char) b);
+      } // switch
+  } // unexpected(byte)
+
+  /**
+   * Writes the comma and the line break an opening bracket or a comma is
+   * waiting for, if any
+   */
+  void breakLine()
+    throws IOException
+  {
+    if (pending)
+      put((byte) ',');
+    if (opened || pending)
+      {
+        opened = false;
+        pending = false;
+        newLine();
+      } // if
+  } // breakLine()
+
+  /**
+   * Starts a new line indented to the current depth, unless whitespace is
+   * being removed
+   */
+  void newLine()
+    throws IOException
+  {
+    if (indent == 0)
+      return;
+    put((byte) '\n');
+    for (long spaces = (long) depth * indent; spaces > 0; spaces--)
+      {
+        put((byte) ' ');
+      } // for
+  } // newLine()
+
+  /**
+   * Opens a container, an object if object is set and otherwise an array
+   *
+   * @param object
+   *          a boolean
+   */
+  void push(boolean object)
+  {
+    int word = depth >>> 6;
+    if (word == objects.length)
+      objects = Arrays.copyOf(objects, word * 2);
+    if (object)
+      objects[word] |= 1L << depth;
+    else
+      objects[word] &= ~(1L << depth);
+    depth++;
+  } // push(boolean)
+
+  /**
+   * Determines whether the innermost open container is an object
+   */
+  boolean isObject()
+  {
+    int top = depth - 1;
+    return (objects[top >>> 6] & (1L << top)) != 0;
+  } // isObject()
+
+  /**
+   * Helper predicate, determines whether b ends a number or a literal
+   *
+   * @param b
+   *          a byte
+   */
+  static boolean endsToken(byte b)
+  {
+    return JSONByteParser.isWhitespace(b) || b == '{' || b == '}' || b == '['
+           || b == ']' || b == ',' || b == ':' || b == '"';
+  } // endsToken(byte)
+
+  /**
+   * Adds b to the output
+   *
+   * @param b
+   *          a byte
+   */
+  void put(byte b)
+    throws IOException
+  {
+    if (count == output.length)
+      flushOutput();
+    output[count++] = b;
+  } // put(byte)
+
+  /**
+   * Adds length bytes of bytes, from offset, to the output
+   *
+   * @param bytes
+   *          a byte[]
+   * @param offset
+   *          an int
+   * @param length
+   *          an int
+   */
+  void put(byte[] bytes, int offset, int length)
+    throws IOException
+  {
+    if (length > output.length - count)
+      {
+        flushOutput();
+        if (length > output.length)
+          {
+            out.write(bytes, offset, length);
+            return;
+          } // if
+      } // if
+    System.arraycopy(bytes, offset, output, count, length);
+    count += length;
+  } // put(byte[], int, int)
+
+  /**
+   * Writes out the output
+   */
+  void flushOutput()
+    throws IOException
+  {
+    out.write(output, 0, count);
+    count = 0;
+  } // flushOutput()
+} // class JSONFormatter
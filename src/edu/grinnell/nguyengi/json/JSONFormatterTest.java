@@ -0,0 +1,268 @@
+package edu.grinnell.nguyengi.json;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Tests for the streaming formatter
+ *
+ * @author Giang
+ *
+ */
+public class JSONFormatterTest
+{
+  /**
+   * A document whose tokens must come through unchanged
+   */
+  static final String DOCUMENT =
+      "{ \"b\" : [ 1 , 2.50 , -0e+3 , true , null ] ,\n"
+          + "  \"a\" : { } , \"s p\" : \"x \\\" y\\\\\" ,"
+          + " \"caf\\u00e9\" : \"\u00e9t\u00e9 \u4e2d\" , \"e\" : [ ] }";
+
+  /**
+   * Formats text, reading it one byte at a time if trickle is set
+   *
+   * @param text
+   *          a String
+   * @param indent
+   *          an int
+   * @param trickle
+   *          a boolean
+   * @throws Exception
+   */
+  static String format(String text, int indent, boolean trickle)
+    throws Exception
+  {
+    InputStream in =
+        new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8))
+        {
+          @Override
+          public synchronized int read(byte[] b, int off, int len)
+          {
+            return super.read(b, off, trickle ? Math.min(len, 1) : len);
+          } // read(byte[], int, int)
+        };
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    JSONFormatter formatter = new JSONFormatter();
+    formatter.setIndent(indent);
+    formatter.format(in, out);
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  } // format(String, int, boolean)
+
+  /**
+   * Whitespace between tokens is removed and the tokens are kept as written
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testMinify()
+    throws Exception
+  {
+    String expected =
+        "{\"b\":[1,2.50,-0e+3,true,null],\"a\":{},\"s p\":\"x \\\" y\\\\\","
+            + "\"caf\\u00e9\":\"\u00e9t\u00e9 \u4e2d\",\"e\":[]}";
+    assertEquals(expected, format(DOCUMENT, 0, false));
+    assertEquals(expected, format(DOCUMENT, 0, true));
+    assertEquals("1\n\"a\"\n[]", format(" 1 \n \"a\"\r\n[ ]\n", 0, false));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    JSONUtils.minify(new ByteArrayInputStream(DOCUMENT.getBytes(
+        StandardCharsets.UTF_8)), out);
+    assertEquals(expected, new String(out.toByteArray(),
+                                      StandardCharsets.UTF_8));
+  } // testMinify()
+
+  /**
+   * Members and elements go on lines of their own, and pretty-printed text
+   * minifies back to the same text
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testPrettyPrint()
+    throws Exception
+  {
+    assertEquals("{\n  \"a\": [\n    1,\n    {}\n  ],\n  \"b\": []\n}\n",
+                 format("{\"a\":[1,{ }],\"b\":[]}", 2, false));
+    String pretty = format(DOCUMENT, 4, true);
+    assertEquals(format(DOCUMENT, 4, false), pretty);
+    assertEquals(format(DOCUMENT, 0, false), format(pretty, 0, false));
+    assertEquals(JSONUtils.parse(DOCUMENT), JSONUtils.parse(pretty));
+
+    StringBuilder deep = new StringBuilder();
+    for (int i = 0; i < 200; i++)
+      {
+        deep.append(i % 3 == 0 ? "{\"k\":" : "[");
+      } // for
+    for (int i = 199; i >= 0; i--)
+      {
+        deep.append(i % 3 == 0 ? "}" : "]");
+      } // for
+    String text = deep.toString();
+    assertEquals(text, format(format(text, 1, false), 0, false));
+  } // testPrettyPrint()
+
+  /**
+   * A trailing comma, which the parsers accept, is dropped so that the
+   * output is strict JSON
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testTrailingCommas()
+    throws Exception
+  {
+    assertEquals("[\n  1\n]\n", format("[1, ]", 2, false));
+    assertEquals("{\"a\":1}", format("{\"a\" : 1 , }", 0, true));
+    assertEquals("{\n  \"a\": [\n    1,\n    2\n  ]\n}\n",
+                 format("{\"a\":[1,2,]}", 2, false));
+    assertEquals("[[1],{\"b\":[]}]",
+                 format("[[1,],{\"b\":[],},]", 0, false));
+  } // testTrailingCommas()
+
+  /**
+   * Text the parser rejects is rejected, with the parser's message, however
+   * it is split up
+   */
+  @Test
+  public void testErrors()
+  {
+    String[] bad =
+        { "[1,2}", "{\"a\":1]", "[1", "]", "\"abc", "[1:2]", "{\"a\" 1}",
+         "[tru e]", "[tru]", "[truer]", "[01]", "[1.]", "[-]", "[1 2]",
+         "{1:2}", "{\"a\"}", "{\"a\":}", "[,]", "[1,,]", "\"\\x\"",
+         "\"\\u12g4\"", "[nul", "", " ", "[\"a\":1]", "[1]]", "{\"a\":1,,}" };
+    for (String text : bad)
+      {
+        String expected = null;
+        try
+          {
+            JSONUtils.parse(text);
+          } // try
+        catch (Exception e)
+          {
+            expected = e.getMessage();
+          } // catch
+        for (boolean trickle : new boolean[] { false, true })
+          {
+            try
+              {
+                format(text, 0, trickle);
+                fail(text);
+              } // try
+            catch (Exception e)
+              {
+                if (expected != null && !expected.startsWith("Illegal number"))
+                  assertEquals(text, expected, e.getMessage());
+              } // catch
+          } // for
+      } // for
+  } // testErrors()
+
+  /**
+   * deleteWhitespace rewrites a file with its tokens as they were
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testDeleteWhitespace()
+    throws Exception
+  {
+    Path path = Files.createTempFile("JSONFormatterTest", ".json");
+    try
+      {
+        Files.copy(Paths.get("FileSample2.txt"), path,
+                   StandardCopyOption.REPLACE_EXISTING);
+        JSONUtils.deleteWhitespace(path.toString());
+        String minified =
+            new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        assertFalse(minified.contains("\n"));
+        assertTrue(minified.startsWith("{\"menu\":{\"id\":\"file\","));
+        assertEquals(JSONUtils.parseFromFile("FileSample2.txt"),
+                     JSONUtils.parse(minified));
+
+        Files.write(path, "[1, {".getBytes(StandardCharsets.UTF_8));
+        try
+          {
+            JSONUtils.deleteWhitespace(path.toString());
+            fail("invalid file");
+          } // try
+        catch (Exception e)
+          {
+          } // catch
+        assertEquals("[1, {", new String(Files.readAllBytes(path),
+                                         StandardCharsets.UTF_8));
+      } // try
+    finally
+      {
+        Files.delete(path);
+      } // finally
+  } // testDeleteWhitespace()
+
+  /**
+   * deleteWhitespace keeps a file's permissions, and rewrites the file a
+   * symbolic link points to rather than the link
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testDeleteWhitespaceKeepsFile()
+    throws Exception
+  {
+    Path dir = Files.createTempDirectory("JSONFormatterTest");
+    Path path = dir.resolve("target.json");
+    Path link = dir.resolve("link.json");
+    try
+      {
+        Files.write(path, "[ 1, 2 ]".getBytes(StandardCharsets.UTF_8));
+        boolean posix =
+            Files.getFileStore(path)
+                 .supportsFileAttributeView(PosixFileAttributeView.class);
+        Set<PosixFilePermission> permissions =
+            PosixFilePermissions.fromString("rw-r--r--");
+        if (posix)
+          Files.setPosixFilePermissions(path, permissions);
+        JSONUtils.deleteWhitespace(path.toString());
+        assertEquals("[1,2]", new String(Files.readAllBytes(path),
+                                         StandardCharsets.UTF_8));
+        if (posix)
+          assertEquals(permissions, Files.getPosixFilePermissions(path));
+
+        Files.write(path, "{ \"a\" : 1 }".getBytes(StandardCharsets.UTF_8));
+        try
+          {
+            Files.createSymbolicLink(link, path.getFileName());
+          } // try
+        catch (UnsupportedOperationException | IOException e)
+          {
+            return;
+          } // catch
+        JSONUtils.deleteWhitespace(link.toString());
+        assertTrue(Files.isSymbolicLink(link));
+        assertEquals("{\"a\":1}", new String(Files.readAllBytes(path),
+                                             StandardCharsets.UTF_8));
+        if (posix)
+          assertEquals(permissions, Files.getPosixFilePermissions(path));
+      } // try
+    finally
+      {
+        Files.deleteIfExists(link);
+        Files.deleteIfExists(path);
+        Files.delete(dir);
+      } // finally
+  } // testDeleteWhitespaceKeepsFile()
+} // class JSONFormatterTest
@@ -0,0 +1,191 @@
+package edu.grinnell.nguyengi.json;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Parses UTF-8 encoded JSON in two stages. The first builds a
+ * JSONStructuralIndex of the text; the second walks it to build the same
+ * values as JSONByteParser, jumping from token to token rather than stepping
+ * over white space and string contents one byte at a time.
+ *
+ * @author Giang
+ *
+ */
+public class JSONIndexedParser
+    extends JSONByteParser
+{
+  // +-------+-----------------------------------------------------------
+  // | Notes |
+  // +-------+
+
+  /*
+   * The second stage is JSONByteParser with two methods replaced. Between
+   * tokens, skipWhitespace moves straight to the next indexed position; the
+   * index guarantees that only white space lies in between. parseString
+   * takes the end of a string from the index, where the closing quote is the
+   * position after the opening one, and only looks at its bytes to decode
+   * them.
+   *
+   * next is the first indexed position not behind pos. Every method that
+   * moves pos past a token leaves next behind, and skipWhitespace catches it
+   * up, so next never needs to be moved anywhere else.
+   */
+
+  // +--------+----------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The bytes being parsed
+   */
+  byte[] text;
+
+  /**
+   * The positions of the tokens of text
+   */
+  JSONStructuralIndex index;
+
+  /**
+   * Number of the first indexed position at or after pos
+   */
+  int next = 0;
+
+  // +--------------+----------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Creates a parser reading length bytes of the array, starting at offset,
+   * and indexes them
+   *
+   * @param bytes
+   *          a byte[]
+   * @param offset
+   *          an int
+   * @param length
+   *          an int
+   */
+  public JSONIndexedParser(byte[] bytes, int offset, int length)
+  {
+    super(ByteBuffer.wrap(bytes, offset, length));
+    this.text = bytes;
+    this.index = JSONStructuralIndex.build(bytes, offset, offset + length);
+  } // JSONIndexedParser(byte[], int, int)
+
+  // +----------------+-----------------------------------------------
+  // | Parser Methods |
+  // +----------------+
+
+  /**
+   * Parses UTF-8 encoded JSON text and returns the corresponding value.
+   *
+   * @param bytes
+   *          a byte[]
+   * @throws Exception
+   */
+  static public Object parse(byte[] bytes)
+    throws Exception
+  {
+    return parse(bytes, 0, bytes.length);
+  } // parse(byte[])
+
+  /**
+   * Parses the UTF-8 encoded JSON text held in length bytes of the array,
+   * starting at offset, and returns the corresponding value.
+   *
+   * @param bytes
+   *          a byte[]
+   * @param offset
+   *          an int
+   * @param length
+   *          an int
+   * @throws Exception
+   */
+  static public Object parse(byte[] bytes, int offset, int length)
+    throws Exception
+  {
+    return new JSONIndexedParser(bytes, offset, length).parse();
+  } // parse(byte[], int, int)
+
+  /**
+   * Parses the UTF-8 encoded JSON text between the position and the limit of
+   * buf and returns the corresponding value. The position of buf is left
+   * unchanged.
+   *
+   * @param buf
+   *          a ByteBuffer
+   * @throws Exception
+   */
+  static public Object parse(ByteBuffer buf)
+    throws Exception
+  {
+    if (buf.hasArray())
+      return parse(buf.array(), buf.arrayOffset() + buf.position(),
+                   buf.remaining());
+    byte[] bytes = new byte[buf.remaining()];
+    buf.duplicate().get(bytes);
+    return parse(bytes);
+  } // parse(ByteBuffer)
+
+  /**
+   * Moves to the next token if the parser is at white space
+   */
+  @Override
+  void skipWhitespace()
+  {
+    int[] positions = index.positions;
+    int count = index.count;
+    while (next < count && positions[next] < pos)
+      {
+        next++;
+      } // while
+    if (pos < limit && isWhitespace(text[pos]))
+      pos = next < count ? positions[next] : limit;
+  } // skipWhitespace()
+
+  /**
+   * Tries to parse a JSON string whose closing quote is the next indexed
+   * position, returns the corresponding String if successful. The String is
+   * looked up in cache unless cache is null.
+   *
+   * @param cache
+   *          a JSONKeyCache
+   * @throws Exception
+   */
+  @Override
+  String parseString(JSONKeyCache cache)
+    throws Exception
+  {
+    skipWhitespace();
+    int start = pos + 1;
+    if (next + 1 >= index.count)
+      throw new Exception("Missing quote.");
+    int end = index.positions[next + 1];
+    int escape = start;
+    while (escape < end && text[escape] != '\\')
+      {
+        escape++;
+      } // while
+    String result = null;
+    if (escape == end)
+      {
+        if (cache != null)
+          result = cache.intern(buf, start, end);
+        if (result == null)
+          {
+            result = decodeUTF8(start, end);
+            if (cache != null)
+              result = cache.intern(result);
+          } // if
+        pos = end + 1;
+      } // if
+    else
+      {
+        result = decodeEscaped(start);
+        if (cache != null)
+          result = cache.intern(result);
+      } // else
+    skipWhitespace();
+    return result;
+  } // parseString(JSONKeyCache)
+} // class JSONIndexedParser
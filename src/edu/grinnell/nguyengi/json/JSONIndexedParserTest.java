@@ -0,0 +1,217 @@
+package edu.grinnell.nguyengi.json;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for the structural index and the two-stage parser
+ *
+ * @author Giang
+ *
+ */
+public class JSONIndexedParserTest
+{
+  /**
+   * Bytes that random texts are made of
+   */
+  static final byte[] ALPHABET = "\"\\{}[]:, \t\n\u001Fa1-.e".getBytes(
+      StandardCharsets.ISO_8859_1);
+
+  /**
+   * Indexes text one byte at a time
+   *
+   * @param text
+   *          a byte[]
+   */
+  static List<Integer> reference(byte[] text)
+  {
+    List<Integer> positions = new ArrayList<>();
+    boolean inString = false;
+    boolean escaped = false;
+    boolean scalar = false;
+    for (int i = 0; i < text.length; i++)
+      {
+        byte b = text[i];
+        boolean quote = b == '\"' && !escaped;
+        escaped = b == '\\' && !escaped;
+        if (inString)
+          {
+            if (quote)
+              {
+                positions.add(i);
+                inString = false;
+              } // if
+            continue;
+          } // if
+        if (quote || "{}[]:,".indexOf(b) >= 0)
+          {
+            positions.add(i);
+            inString = quote;
+            scalar = false;
+          } // if
+        else if (JSONByteParser.isWhitespace(b))
+          {
+            scalar = false;
+          } // else if
+        else
+          {
+            if (!scalar)
+              positions.add(i);
+            scalar = true;
+          } // else
+      } // for
+    return positions;
+  } // reference(byte[])
+
+  /**
+   * Returns the positions in index
+   *
+   * @param index
+   *          a JSONStructuralIndex
+   */
+  static List<Integer> positions(JSONStructuralIndex index)
+  {
+    List<Integer> positions = new ArrayList<>();
+    for (int i = 0; i < index.size(); i++)
+      {
+        positions.add(index.get(i));
+      } // for
+    return positions;
+  } // positions(JSONStructuralIndex)
+
+  /**
+   * The portable classifier and the one in use, which is the Vector API one
+   * when the tests run from the multi-release jar with the incubator module,
+   * index random text like the reference, including long runs of
+   * backslashes across blocks
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testIndex()
+    throws Exception
+  {
+    Random random = new Random(10);
+    JSONStructuralIndex.Classifier swar = new JSONStructuralIndex.Classifier();
+    for (int n = 0; n < 3000; n++)
+      {
+        byte[] text = new byte[random.nextInt(300)];
+        for (int i = 0; i < text.length; i++)
+          {
+            if (n % 3 == 0 && random.nextInt(4) == 0)
+              text[i] = '\\';
+            else
+              text[i] = ALPHABET[random.nextInt(ALPHABET.length)];
+          } // for
+        List<Integer> expected = reference(text);
+        assertEquals(expected,
+                     positions(JSONStructuralIndex.build(text, 0,
+                                                         text.length, swar)));
+        assertEquals(expected,
+                     positions(JSONStructuralIndex.build(text, 0,
+                                                         text.length)));
+      } // for
+  } // testIndex()
+
+  /**
+   * The classifier in use is the one the build says to expect, if it says
+   */
+  @Test
+  public void testClassifier()
+  {
+    String expected = System.getProperty("json.classifier");
+    if (expected != null)
+      assertEquals(expected,
+                   JSONStructuralIndex.CLASSIFIER.getClass().getSimpleName());
+  } // testClassifier()
+
+  /**
+   * Values match those of the byte parser
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testMatchesByteParser()
+    throws Exception
+  {
+    List<String> docs = new ArrayList<>();
+    for (String sample : JSONReaderTest.SAMPLES)
+      {
+        docs.add(sample);
+      } // for
+    docs.add(JSONParallelParserTest.records());
+    docs.add("  {\"a\\\\\" : [ true ,false,null , -1.5e3, \"\\u00e9\\\"\" ],"
+             + " \"\u00e9\u4e2d\": {} }  ");
+    docs.add("\"x\"");
+    docs.add("12");
+    docs.add("[1,2,] trailing \" text");
+    for (String doc : docs)
+      {
+        byte[] bytes = doc.getBytes(StandardCharsets.UTF_8);
+        assertEquals(doc, JSONByteParser.parse(bytes),
+                     JSONIndexedParser.parse(bytes));
+      } // for
+    byte[] padded = "xx[1, \"a\"]yy".getBytes(StandardCharsets.UTF_8);
+    assertEquals(JSONUtils.parse("[1,\"a\"]"),
+                 JSONIndexedParser.parse(padded, 2, padded.length - 4));
+  } // testMatchesByteParser()
+
+  /**
+   * Keys are looked up in the key cache
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testKeyCache()
+    throws Exception
+  {
+    byte[] bytes = "[{\"id\":1},{\"id\":2}]".getBytes(StandardCharsets.UTF_8);
+    JSONKeyCache keys = new JSONKeyCache();
+    JSONIndexedParser parser = new JSONIndexedParser(bytes, 0, bytes.length);
+    parser.setKeyCache(keys);
+    assertEquals(JSONUtils.parse("[{\"id\":1},{\"id\":2}]"), parser.parse());
+    assertEquals(1, keys.getHits());
+  } // testKeyCache()
+
+  /**
+   * Malformed text fails as it does in the byte parser
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testErrors()
+    throws Exception
+  {
+    String[] bad = { "[1 2]", "{\"a\" 1}", "[\"a]", "[1,tru]", "truex",
+                    "[1\u0001]", "{\"a\":1", "[", "", "  ", "1x", "[1.]",
+                    "{1:2}", "[\\\"a\"]" };
+    for (String text : bad)
+      {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        try
+          {
+            JSONByteParser.parse(bytes);
+            fail("byte parser: " + text);
+          } // try
+        catch (Exception e)
+          {
+            // expected
+          } // catch
+        try
+          {
+            JSONIndexedParser.parse(bytes);
+            fail(text);
+          } // try
+        catch (Exception e)
+          {
+            // expected
+          } // catch
+      } // for
+  } // testErrors()
+} // class JSONIndexedParserTest
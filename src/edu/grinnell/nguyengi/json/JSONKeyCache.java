@@ -0,0 +1,285 @@
+package edu.grinnell.nguyengi.json;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of object keys. Parsers given a key cache look each key up
+ * by the characters (or bytes) it spans in the input, and only create a new
+ * String when the key is not in the cache, so documents with many records of
+ * the same shape share one String per distinct key.
+ *
+ * @author Giang
+ *
+ */
+public class JSONKeyCache
+{
+  // +-------+-----------------------------------------------------------
+  // | Notes |
+  // +-------+
+
+  /*
+   * The cache is a direct-mapped table: a key can only live in the slot its
+   * hash selects, and a key that hashes to an occupied slot replaces the one
+   * there. This makes both hits and evictions a single array access.
+   *
+   * The hash of a key is computed the same way from chars and from ASCII
+   * bytes, so String and byte parsers can share a cache. Keys with non-ASCII
+   * bytes are looked up by their decoded String instead.
+   *
+   * A cache may be shared by parsers on several threads. Slots are written
+   * without locking, which is safe because Strings are immutable and every
+   * hit is checked against the characters of the input.
+   */
+
+  // +-----------+-------------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * Number of slots in a cache made with the default constructor
+   */
+  static final int DEFAULT_CAPACITY = 1024;
+
+  /**
+   * Keys longer than this are never cached
+   */
+  static final int MAX_KEY_LENGTH = 64;
+
+  // +--------+----------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The cached keys, indexed by hash
+   */
+  String[] slots;
+
+  /**
+   * Number of lookups that found their key
+   */
+  LongAdder hits = new LongAdder();
+
+  /**
+   * Number of lookups that created a new String
+   */
+  LongAdder misses = new LongAdder();
+
+  /**
+   * Number of keys replaced by other keys
+   */
+  LongAdder evictions = new LongAdder();
+
+  // +--------------+----------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Creates a cache with room for 1024 keys
+   */
+  public JSONKeyCache()
+  {
+    this(DEFAULT_CAPACITY);
+  } // JSONKeyCache()
+
+  /**
+   * Creates a cache with room for capacity keys, rounded up to a power of two
+   *
+   * @param capacity
+   *          an int
+   */
+  public JSONKeyCache(int capacity)
+  {
+    int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+    this.slots = new String[size];
+  } // JSONKeyCache(int)
+
+  // +---------+---------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Returns the canonical String with the characters of src between start
+   * and end.
+   *
+   * @param src
+   *          a CharSequence
+   * @param start
+   *          an int
+   * @param end
+   *          an int
+   */
+  public String intern(CharSequence src, int start, int end)
+  {
+    int length = end - start;
+    if (length > MAX_KEY_LENGTH)
+      return src.subSequence(start, end).toString();
+    int hash = 0;
+    for (int i = start; i < end; i++)
+      {
+        hash = 31 * hash + src.charAt(i);
+      } // for
+    int slot = index(hash);
+    String cached = slots[slot];
+    if (cached != null && cached.length() == length)
+      {
+        int i = 0;
+        while (i < length && cached.charAt(i) == src.charAt(start + i))
+          {
+            i++;
+          } // while
+        if (i == length)
+          {
+            hits.increment();
+            return cached;
+          } // if
+      } // if
+    return store(slot, src.subSequence(start, end).toString());
+  } // intern(CharSequence, int, int)
+
+  /**
+   * Returns the canonical String with the ASCII bytes of buf between start
+   * and end, or null if any of those bytes is not ASCII.
+   *
+   * @param buf
+   *          a ByteBuffer
+   * @param start
+   *          an int
+   * @param end
+   *          an int
+   */
+  public String intern(ByteBuffer buf, int start, int end)
+  {
+    int length = end - start;
+    if (length > MAX_KEY_LENGTH)
+      return null;
+    int hash = 0;
+    for (int i = start; i < end; i++)
+      {
+        byte b = buf.get(i);
+        if (b < 0)
+          return null;
+        hash = 31 * hash + b;
+      } // for
+    int slot = index(hash);
+    String cached = slots[slot];
+    if (cached != null && cached.length() == length)
+      {
+        int i = 0;
+        while (i < length && cached.charAt(i) == buf.get(start + i))
+          {
+            i++;
+          } // while
+        if (i == length)
+          {
+            hits.increment();
+            return cached;
+          } // if
+      } // if
+    char[] chars = new char[length];
+    for (int i = 0; i < length; i++)
+      {
+        chars[i] = (char) buf.get(start + i);
+      } // for
+    return store(slot, new String(chars));
+  } // intern(ByteBuffer, int, int)
+
+  /**
+   * Returns the canonical String equal to key.
+   *
+   * @param key
+   *          a String
+   */
+  public String intern(String key)
+  {
+    return intern(key, 0, key.length());
+  } // intern(String)
+
+  /**
+   * Puts key in slot and counts the miss
+   *
+   * @param slot
+   *          an int
+   * @param key
+   *          a String
+   */
+  String store(int slot, String key)
+  {
+    misses.increment();
+    if (slots[slot] != null)
+      evictions.increment();
+    slots[slot] = key;
+    return key;
+  } // store(int, String)
+
+  /**
+   * Returns the slot for a key with the given hash
+   *
+   * @param hash
+   *          an int
+   */
+  int index(int hash)
+  {
+    // spread the high bits, which a small table would otherwise ignore
+    return (hash ^ (hash >>> 16)) & (slots.length - 1);
+  } // index(int)
+
+  /**
+   * Returns the number of lookups that found their key in the cache.
+   */
+  public long getHits()
+  {
+    return hits.sum();
+  } // getHits()
+
+  /**
+   * Returns the number of lookups that had to create a new String.
+   */
+  public long getMisses()
+  {
+    return misses.sum();
+  } // getMisses()
+
+  /**
+   * Returns the number of keys that were replaced by other keys.
+   */
+  public long getEvictions()
+  {
+    return evictions.sum();
+  } // getEvictions()
+
+  /**
+   * Returns the share of lookups that found their key, or 0 before any
+   * lookup.
+   */
+  public double getHitRate()
+  {
+    long found = getHits();
+    long total = found + getMisses();
+    return total == 0 ? 0 : (double) found / total;
+  } // getHitRate()
+
+  /**
+   * Empties the cache and resets its statistics.
+   */
+  public void clear()
+  {
+    for (int i = 0; i < slots.length; i++)
+      {
+        slots[i] = null;
+      } // for
+    hits.reset();
+    misses.reset();
+    evictions.reset();
+  } // clear()
+
+  /**
+   * Describes the cache statistics
+   */
+  @Override
+  public String toString()
+  {
+    return "JSONKeyCache[hits=" + getHits() + ", misses=" + getMisses()
+           + ", evictions=" + getEvictions() + "]";
+  } // toString()
+} // class JSONKeyCache
@@ -0,0 +1,110 @@
+package edu.grinnell.nguyengi.json;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests for the key cache
+ *
+ * @author Giang
+ *
+ */
+public class JSONKeyCacheTest
+{
+  /**
+   * Records of the same shape
+   */
+  static final String RECORDS =
+      "[{\"id\":1,\"name\":\"a\",\"caf\\u00e9\":true},"
+          + "{\"id\":2,\"name\":\"b\",\"caf\\u00e9\":false},"
+          + "{\"id\":3,\"name\":\"c\",\"caf\\u00e9\":null}]";
+
+  /**
+   * Returns the key of records[i] that equals key
+   *
+   * @param records
+   *          an Object
+   * @param i
+   *          an int
+   * @param key
+   *          a String
+   */
+  static String keyOf(Object records, int i, String key)
+  {
+    Map<?, ?> record = (Map<?, ?>) ((ArrayList<?>) records).get(i);
+    for (Object k : record.keySet())
+      {
+        if (k.equals(key))
+          return (String) k;
+      } // for
+    return null;
+  } // keyOf(Object, int, String)
+
+  /**
+   * Repeated keys parsed from a String are the same instance
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testStringParser()
+    throws Exception
+  {
+    JSONKeyCache cache = new JSONKeyCache();
+    JSONParser parser = new JSONParser();
+    parser.setKeyCache(cache);
+    Object records = parser.parse(RECORDS);
+    assertEquals(JSONUtils.parse(RECORDS), records);
+    assertSame(keyOf(records, 0, "name"), keyOf(records, 2, "name"));
+    assertSame(keyOf(records, 0, "caf\u00e9"), keyOf(records, 1, "caf\u00e9"));
+    assertEquals(3, cache.getMisses());
+    assertEquals(6, cache.getHits());
+  } // testStringParser()
+
+  /**
+   * Repeated keys parsed from bytes are the same instance, and the same as
+   * those parsed from a String with the same cache
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testByteParser()
+    throws Exception
+  {
+    JSONKeyCache cache = new JSONKeyCache();
+    JSONParser parser = new JSONParser();
+    parser.setKeyCache(cache);
+    Object fromString = parser.parse(RECORDS);
+    byte[] utf8 = RECORDS.getBytes(StandardCharsets.UTF_8);
+    JSONByteParser bytes = new JSONByteParser(ByteBuffer.wrap(utf8));
+    bytes.setKeyCache(cache);
+    Object fromBytes = bytes.parse();
+    assertEquals(fromString, fromBytes);
+    assertSame(keyOf(fromString, 0, "id"), keyOf(fromBytes, 2, "id"));
+    assertSame(keyOf(fromString, 0, "caf\u00e9"),
+               keyOf(fromBytes, 2, "caf\u00e9"));
+  } // testByteParser()
+
+  /**
+   * A full cache replaces keys and counts the evictions
+   */
+  @Test
+  public void testEviction()
+  {
+    JSONKeyCache cache = new JSONKeyCache(2);
+    for (int i = 0; i < 100; i++)
+      {
+        cache.intern("key" + i);
+      } // for
+    assertEquals(100, cache.getMisses());
+    assertEquals(98, cache.getEvictions());
+    cache.clear();
+    assertEquals(0, cache.getMisses());
+    assertEquals(0, cache.getHitRate(), 0);
+  } // testEviction()
+} // class JSONKeyCacheTest
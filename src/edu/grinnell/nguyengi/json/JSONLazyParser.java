@@ -0,0 +1,689 @@
+package edu.grinnell.nguyengi.json;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Parses UTF-8 encoded JSON on demand. Objects and arrays come back as
+ * read-only Map and List views over the input, which decode a member or
+ * element only the first time it is read and skip over the rest.
+ *
+ * @author Giang
+ *
+ */
+public class JSONLazyParser
+{
+  // +-------+-----------------------------------------------------------
+  // | Notes |
+  // +-------+
+
+  /*
+   * The first read of an object or array scans its own level of the input,
+   * recording where each key and value starts. Nested values are passed over
+   * by skip, which only tracks brackets and quotes. A value is decoded when
+   * it is first read and kept in the view from then on; nested objects and
+   * arrays are decoded into views of their own.
+   *
+   * Looking up a key compares the UTF-8 bytes of the key with the raw bytes
+   * of each member's name, so names are only decoded when they contain
+   * escapes or when all entries are asked for. As in the maps built by
+   * parse, a later duplicate key hides an earlier one, and entries come in
+   * the order their names first appear.
+   *
+   * Only the parts of the input that are read are checked for errors, so an
+   * error in a value that is never read goes unnoticed, and errors surface as
+   * IllegalStateExceptions from the Map and List methods. Like the parsers,
+   * the views share decoding state and are not safe for use by several
+   * threads at once.
+   */
+
+  // +--------+----------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The bytes being parsed
+   */
+  ByteBuffer buf;
+
+  /**
+   * Index one past the last byte of the input
+   */
+  int limit;
+
+  /**
+   * Decodes strings, numbers, and literals
+   */
+  JSONByteParser decoder;
+
+  // +--------------+----------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Creates a parser over the bytes between the position and the limit of
+   * buf
+   *
+   * @param buf
+   *          a ByteBuffer
+   */
+  JSONLazyParser(ByteBuffer buf)
+  {
+    this.buf = buf;
+    this.limit = buf.limit();
+    this.decoder = new JSONByteParser(buf);
+  } // JSONLazyParser(ByteBuffer)
+
+  // +---------+---------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Parses UTF-8 encoded JSON text, returning a view for an object or an
+   * array and the value itself for anything else.
+   *
+   * @param bytes
+   *          a byte[]
+   * @throws Exception
+   */
+  static public Object parse(byte[] bytes)
+    throws Exception
+  {
+    return parse(ByteBuffer.wrap(bytes));
+  } // parse(byte[])
+
+  /**
+   * Parses the UTF-8 encoded JSON text between the position and the limit of
+   * buf. The views read buf until they are dropped, so it must not change in
+   * the meantime; its position is left unchanged.
+   *
+   * @param buf
+   *          a ByteBuffer
+   * @throws Exception
+   */
+  static public Object parse(ByteBuffer buf)
+    throws Exception
+  {
+    JSONLazyParser parser = new JSONLazyParser(buf);
+    int start = parser.skipWhitespace(buf.position());
+    if (start == parser.limit)
+      throw new Exception("Parser does not recognize value: end of input");
+    return parser.value(start);
+  } // parse(ByteBuffer)
+
+  /**
+   * Returns the value starting at pos, as a view if it is an object or an
+   * array
+   *
+   * @param pos
+   *          an int
+   * @throws Exception
+   */
+  Object value(int pos)
+    throws Exception
+  {
+    byte b = buf.get(pos);
+    if (b == '{')
+      return new LazyObject(pos);
+    if (b == '[')
+      return new LazyArray(pos);
+    decoder.reset(buf, pos, limit);
+    return decoder.parse();
+  } // value(int)
+
+  /**
+   * Returns the position after the value starting at pos, looking at nothing
+   * but brackets, quotes, and escapes
+   *
+   * @param pos
+   *          an int
+   * @throws Exception
+   */
+  int skip(int pos)
+    throws Exception
+  {
+    byte b = buf.get(pos);
+    if (b == '\"')
+      return stringEnd(pos) + 1;
+    if (b != '{' && b != '[')
+      {
+        // numbers and literals end at white space or a delimiter
+        while (pos < limit && !JSONByteParser.isEndOfSV(b = buf.get(pos))
+               && !JSONByteParser.isWhitespace(b))
+          {
+            pos++;
+          } // while
+        return pos;
+      } // if
+    int depth = 0;
+    while (pos < limit)
+      {
+        b = buf.get(pos);
+        if (b == '\"')
+          {
+            pos = stringEnd(pos);
+          } // if
+        else if (b == '{' || b == '[')
+          {
+            depth++;
+          } // else if
+        else if ((b == '}' || b == ']') && --depth == 0)
+          {
+            return pos + 1;
+          } // else if
+        pos++;
+      } // while
+    throw new Exception("Unexpected end of input.");
+  } // skip(int)
+
+  /**
+   * Returns the position of the quote that closes the string whose opening
+   * quote is at pos
+   *
+   * @param pos
+   *          an int
+   * @throws Exception
+   */
+  int stringEnd(int pos)
+    throws Exception
+  {
+    pos++;
+    while (pos < limit)
+      {
+        byte b = buf.get(pos);
+        if (b == '\"')
+          return pos;
+        pos += b == '\\' ? 2 : 1;
+      } // while
+    throw new Exception("Missing quote.");
+  } // stringEnd(int)
+
+  /**
+   * Returns the first position from pos on that is not white space
+   *
+   * @param pos
+   *          an int
+   */
+  int skipWhitespace(int pos)
+  {
+    while (pos < limit && JSONByteParser.isWhitespace(buf.get(pos)))
+      {
+        pos++;
+      } // while
+    return pos;
+  } // skipWhitespace(int)
+
+  /**
+   * Returns the byte at pos, failing at the end of input
+   *
+   * @param pos
+   *          an int
+   * @throws Exception
+   */
+  byte byteAt(int pos)
+    throws Exception
+  {
+    if (pos >= limit)
+      throw new Exception("Unexpected end of input.");
+    return buf.get(pos);
+  } // byteAt(int)
+
+  /**
+   * Returns the name of the member whose key starts at pos
+   *
+   * @param pos
+   *          an int
+   * @throws Exception
+   */
+  String name(int pos)
+    throws Exception
+  {
+    decoder.reset(buf, pos, limit);
+    return decoder.parseString(null);
+  } // name(int)
+
+  /**
+   * Determines whether the key whose quotes are at start and end has the
+   * UTF-8 bytes wanted
+   *
+   * @param start
+   *          an int
+   * @param end
+   *          an int
+   * @param wanted
+   *          a byte[]
+   * @param key
+   *          a String
+   * @throws Exception
+   */
+  boolean nameEquals(int start, int end, byte[] wanted, String key)
+    throws Exception
+  {
+    for (int i = start + 1; i < end; i++)
+      {
+        if (buf.get(i) == '\\')
+          return name(start).equals(key);
+      } // for
+    if (end - start - 1 != wanted.length)
+      return false;
+    for (int i = 0; i < wanted.length; i++)
+      {
+        if (buf.get(start + 1 + i) != wanted[i])
+          return false;
+      } // for
+    return true;
+  } // nameEquals(int, int, byte[], String)
+
+  // +---------------+---------------------------------------------------
+  // | Inner Classes |
+  // +---------------+
+
+  /**
+   * A JSON object, read as it is used
+   */
+  class LazyObject
+      extends AbstractMap<String, Object>
+  {
+    /**
+     * Position of the {
+     */
+    int start;
+
+    /**
+     * Number of members, or -1 before the object has been scanned
+     */
+    int length = -1;
+
+    /**
+     * Positions of the opening and closing quotes of each member's key
+     */
+    int[] keyStarts, keyEnds;
+
+    /**
+     * Position of each member's value
+     */
+    int[] valueStarts;
+
+    /**
+     * Values decoded so far
+     */
+    Object[] values;
+
+    /**
+     * Whether each member's value has been decoded
+     */
+    boolean[] decoded;
+
+    /**
+     * The members that are not hidden by later duplicates, once needed
+     */
+    Set<Map.Entry<String, Object>> entries;
+
+    /**
+     * Creates a view of the object whose { is at start
+     *
+     * @param start
+     *          an int
+     */
+    LazyObject(int start)
+    {
+      this.start = start;
+    } // LazyObject(int)
+
+    /**
+     * Records where the members start, unless that has been done
+     */
+    void scan()
+    {
+      if (length >= 0)
+        return;
+      try
+        {
+          int n = 0;
+          int[] keys = new int[8];
+          int[] ends = new int[8];
+          int[] vals = new int[8];
+          int pos = skipWhitespace(start + 1);
+          while (byteAt(pos) != '}')
+            {
+              if (buf.get(pos) != '\"')
+                throw new Exception("Invalid key type.");
+              if (n == keys.length)
+                {
+                  keys = Arrays.copyOf(keys, n * 2);
+                  ends = Arrays.copyOf(ends, n * 2);
+                  vals = Arrays.copyOf(vals, n * 2);
+                } // if
+              keys[n] = pos;
+              ends[n] = stringEnd(pos);
+              pos = skipWhitespace(ends[n] + 1);
+              if (byteAt(pos) != ':')
+                throw new Exception("Invalid object format.");
+              pos = skipWhitespace(pos + 1);
+              if (pos == limit)
+                throw new Exception("Parser does not recognize value: "
+                                    + "end of input");
+              vals[n++] = pos;
+              pos = skipWhitespace(skip(pos));
+              byte b = byteAt(pos);
+              if (b != ',' && b != '}')
+                throw new Exception("Illegal object character: " + (char) b);
+              if (b == ',')
+                pos = skipWhitespace(pos + 1);
+            } // while
+          keyStarts = keys;
+          keyEnds = ends;
+          valueStarts = vals;
+          values = new Object[n];
+          decoded = new boolean[n];
+          length = n;
+        } // try
+      catch (Exception e)
+        {
+          throw new IllegalStateException(e.getMessage(), e);
+        } // catch
+    } // scan()
+
+    /**
+     * Returns the value of member i, decoding it if needed
+     *
+     * @param i
+     *          an int
+     */
+    Object member(int i)
+    {
+      if (!decoded[i])
+        {
+          try
+            {
+              values[i] = value(valueStarts[i]);
+            } // try
+          catch (Exception e)
+            {
+              throw new IllegalStateException(e.getMessage(), e);
+            } // catch
+          decoded[i] = true;
+        } // if
+      return values[i];
+    } // member(int)
+
+    /**
+     * Returns the number of the last member named key, or -1
+     *
+     * @param key
+     *          an Object
+     */
+    int find(Object key)
+    {
+      if (!(key instanceof String))
+        return -1;
+      scan();
+      String name = (String) key;
+      byte[] wanted = name.getBytes(StandardCharsets.UTF_8);
+      try
+        {
+          for (int i = length - 1; i >= 0; i--)
+            {
+              if (nameEquals(keyStarts[i], keyEnds[i], wanted, name))
+                return i;
+            } // for
+        } // try
+      catch (Exception e)
+        {
+          throw new IllegalStateException(e.getMessage(), e);
+        } // catch
+      return -1;
+    } // find(Object)
+
+    @Override
+    public Object get(Object key)
+    {
+      int i = find(key);
+      return i < 0 ? null : member(i);
+    } // get(Object)
+
+    @Override
+    public boolean containsKey(Object key)
+    {
+      return find(key) >= 0;
+    } // containsKey(Object)
+
+    @Override
+    public int size()
+    {
+      return entrySet().size();
+    } // size()
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet()
+    {
+      if (entries != null)
+        return entries;
+      scan();
+      // later members replace earlier ones with the same name
+      Map<String, Integer> last = new LinkedHashMap<>();
+      try
+        {
+          for (int i = 0; i < length; i++)
+            {
+              last.put(name(keyStarts[i]), i);
+            } // for
+        } // try
+      catch (Exception e)
+        {
+          throw new IllegalStateException(e.getMessage(), e);
+        } // catch
+      List<Map.Entry<String, Object>> list = new ArrayList<>(last.size());
+      for (Map.Entry<String, Integer> entry : last.entrySet())
+        {
+          list.add(new Member(entry.getKey(), entry.getValue()));
+        } // for
+      entries = new AbstractSet<Map.Entry<String, Object>>()
+        {
+          @Override
+          public Iterator<Map.Entry<String, Object>> iterator()
+          {
+            return list.iterator();
+          } // iterator()
+
+          @Override
+          public int size()
+          {
+            return list.size();
+          } // size()
+        };
+      return entries;
+    } // entrySet()
+
+    /**
+     * An entry whose value is decoded when it is first read
+     */
+    class Member
+        implements Map.Entry<String, Object>
+    {
+      /**
+       * The decoded key
+       */
+      String key;
+
+      /**
+       * The number of the member
+       */
+      int index;
+
+      /**
+       * Creates the entry for member index, named key
+       *
+       * @param key
+       *          a String
+       * @param index
+       *          an int
+       */
+      Member(String key, int index)
+      {
+        this.key = key;
+        this.index = index;
+      } // Member(String, int)
+
+      @Override
+      public String getKey()
+      {
+        return key;
+      } // getKey()
+
+      @Override
+      public Object getValue()
+      {
+        return member(index);
+      } // getValue()
+
+      @Override
+      public Object setValue(Object value)
+      {
+        throw new UnsupportedOperationException();
+      } // setValue(Object)
+
+      @Override
+      public boolean equals(Object other)
+      {
+        if (!(other instanceof Map.Entry))
+          return false;
+        Map.Entry<?, ?> entry = (Map.Entry<?, ?>) other;
+        Object value = getValue();
+        return key.equals(entry.getKey())
+               && (value == null ? entry.getValue() == null
+                                 : value.equals(entry.getValue()));
+      } // equals(Object)
+
+      @Override
+      public int hashCode()
+      {
+        Object value = getValue();
+        return key.hashCode() ^ (value == null ? 0 : value.hashCode());
+      } // hashCode()
+
+      @Override
+      public String toString()
+      {
+        return key + "=" + getValue();
+      } // toString()
+    } // class Member
+  } // class LazyObject
+
+  /**
+   * A JSON array, read as it is used
+   */
+  class LazyArray
+      extends AbstractList<Object>
+  {
+    /**
+     * Position of the [
+     */
+    int start;
+
+    /**
+     * Number of elements, or -1 before the array has been scanned
+     */
+    int length = -1;
+
+    /**
+     * Position of each element
+     */
+    int[] starts;
+
+    /**
+     * Elements decoded so far
+     */
+    Object[] values;
+
+    /**
+     * Whether each element has been decoded
+     */
+    boolean[] decoded;
+
+    /**
+     * Creates a view of the array whose [ is at start
+     *
+     * @param start
+     *          an int
+     */
+    LazyArray(int start)
+    {
+      this.start = start;
+    } // LazyArray(int)
+
+    /**
+     * Records where the elements start, unless that has been done
+     */
+    void scan()
+    {
+      if (length >= 0)
+        return;
+      try
+        {
+          int n = 0;
+          int[] elements = new int[8];
+          int pos = skipWhitespace(start + 1);
+          while (byteAt(pos) != ']')
+            {
+              if (n == elements.length)
+                elements = Arrays.copyOf(elements, n * 2);
+              elements[n++] = pos;
+              pos = skipWhitespace(skip(pos));
+              byte b = byteAt(pos);
+              if (b != ',' && b != ']')
+                throw new Exception("Illegal array character: " + (char) b);
+              if (b == ',')
+                pos = skipWhitespace(pos + 1);
+            } // while
+          starts = elements;
+          values = new Object[n];
+          decoded = new boolean[n];
+          length = n;
+        } // try
+      catch (Exception e)
+        {
+          throw new IllegalStateException(e.getMessage(), e);
+        } // catch
+    } // scan()
+
+    @Override
+    public Object get(int index)
+    {
+      scan();
+      if (index < 0 || index >= length)
+        throw new IndexOutOfBoundsException("Index " + index + " of "
+                                            + length);
+      if (!decoded[index])
+        {
+          try
+            {
+              values[index] = value(starts[index]);
+            } // try
+          catch (Exception e)
+            {
+              throw new IllegalStateException(e.getMessage(), e);
+            } // catch
+          decoded[index] = true;
+        } // if
+      return values[index];
+    } // get(int)
+
+    @Override
+    public int size()
+    {
+      scan();
+      return length;
+    } // size()
+  } // class LazyArray
+} // class JSONLazyParser
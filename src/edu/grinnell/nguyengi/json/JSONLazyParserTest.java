@@ -0,0 +1,117 @@
+package edu.grinnell.nguyengi.json;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests for parsing on demand
+ *
+ * @author Giang
+ *
+ */
+public class JSONLazyParserTest
+{
+  /**
+   * Parses text lazily
+   *
+   * @param text
+   *          a String
+   * @throws Exception
+   */
+  static Object lazy(String text)
+    throws Exception
+  {
+    return JSONUtils.parseLazy(text.getBytes(StandardCharsets.UTF_8));
+  } // lazy(String)
+
+  /**
+   * Views equal the values built by parse, and write the same JSON
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testMatchesParse()
+    throws Exception
+  {
+    for (String sample : JSONReaderTest.SAMPLES)
+      {
+        Object expected = JSONUtils.parse(sample);
+        Object view = lazy(sample);
+        assertEquals(sample, expected, view);
+        assertEquals(sample, view, expected);
+        assertEquals(sample, expected,
+                     JSONUtils.parse(JSONUtils.toJSONString(view)));
+      } // for
+    String records = JSONParallelParserTest.records();
+    assertEquals(JSONUtils.parse(records), lazy(records));
+  } // testMatchesParse()
+
+  /**
+   * Reading one member leaves the others undecoded, and errors in them
+   * unnoticed
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testSparse()
+    throws Exception
+  {
+    String text = "{\"skip\": {\"deep\": [1, \"]}\\\"\", {\"x\": tru}]},"
+                  + " \"a\\u0062\": [10, {\"c\": \"d\"}], \"e\": 2, \"e\": 3}";
+    @SuppressWarnings("unchecked")
+    Map<String, Object> obj = (Map<String, Object>) lazy(text);
+    List<?> ab = (List<?>) obj.get("ab");
+    assertEquals(2, ab.size());
+    assertEquals(10, ab.get(0));
+    assertEquals("d", ((Map<?, ?>) ab.get(1)).get("c"));
+    assertEquals(3, obj.get("e"));
+    assertNull(obj.get("missing"));
+    assertTrue(obj.containsKey("skip"));
+    assertEquals(3, obj.size());
+    Object x = ((Map<?, ?>) ((List<?>) ((Map<?, ?>) obj.get("skip")).get(
+        "deep")).get(2));
+    try
+      {
+        ((Map<?, ?>) x).get("x");
+        fail();
+      } // try
+    catch (IllegalStateException e)
+      {
+        // the error surfaces once the value is read
+      } // catch
+  } // testSparse()
+
+  /**
+   * Malformed structure fails when the level holding it is read
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testErrors()
+    throws Exception
+  {
+    String[] bad = { "{\"a\" 1}", "[1 2]", "{\"a\":1", "[\"a]", "{1:2}" };
+    for (String text : bad)
+      {
+        try
+          {
+            Object view = lazy(text);
+            if (view instanceof Map)
+              ((Map<?, ?>) view).get("a");
+            else
+              ((List<?>) view).size();
+            fail(text);
+          } // try
+        catch (IllegalStateException e)
+          {
+            // expected
+          } // catch
+      } // for
+    assertEquals("s", lazy(" \"s\" "));
+  } // testErrors()
+} // class JSONLazyParserTest
@@ -0,0 +1,658 @@
+package edu.grinnell.nguyengi.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads newline-delimited JSON (NDJSON), where every line of the input holds
+ * one JSON value. Records are handed out one at a time through an Iterator
+ * or a Stream, and a file can be parsed in parallel, in chunks that each end
+ * at a line break.
+ *
+ * @author Giang
+ *
+ */
+public class JSONLines
+{
+  // +-------+-----------------------------------------------------------
+  // | Notes |
+  // +-------+
+
+  /*
+   * Files are read through memory mappings by LineSpliterator, each record
+   * being parsed by a JSONByteParser straight from the mapped bytes. When a
+   * parallel stream splits a LineSpliterator, the split point is moved to the
+   * line break following the middle of its range, so every chunk holds whole
+   * lines and the ForkJoin workers never share a record. The chunks are
+   * handed out in file order, so an ordered stream keeps the file's order;
+   * parallelStream(path, false) drops that guarantee so that terminal
+   * operations need not buffer records.
+   *
+   * Blank lines are skipped. A line holding anything besides one value is an
+   * error. Errors surface as UncheckedIOExceptions for I/O and as
+   * IllegalStateExceptions, naming the byte offset of the line, for bad JSON.
+   */
+
+  // +-----------+-------------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * Largest region of a file mapped at once
+   */
+  static final int WINDOW_SIZE = 1 << 30;
+
+  /**
+   * Ranges smaller than this are not split for parallel parsing
+   */
+  static final long MIN_SPLIT = 1 << 16;
+
+  /**
+   * How much of a file is mapped at once while looking for a line break
+   */
+  static final int PROBE_SIZE = 1 << 12;
+
+  // +--------+----------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * Where object keys are looked up, if anywhere
+   */
+  JSONKeyCache keys = null;
+
+  /**
+   * Whether decimals are parsed as BigDecimals
+   */
+  boolean bigDecimals = false;
+
+  /**
+   * Whether arrays of numbers are parsed as JSONNumberLists
+   */
+  boolean primitiveArrays = false;
+
+  /**
+   * Where parse events are reported, if anywhere
+   */
+  JSONListener listener = null;
+
+  // +--------------+----------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Creates a reader with the default parser options
+   */
+  public JSONLines()
+  {
+  } // JSONLines()
+
+  // +---------+---------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Sets the cache that object keys are looked up in, or null to create a
+   * new String for every key. A cache pays off for NDJSON, where every record
+   * usually repeats the same keys, and is safe to share between the workers
+   * of a parallel stream.
+   *
+   * @param keys
+   *          a JSONKeyCache
+   */
+  public void setKeyCache(JSONKeyCache keys)
+  {
+    this.keys = keys;
+  } // setKeyCache(JSONKeyCache)
+
+  /**
+   * Sets whether numbers with a fraction or an exponent are parsed as
+   * BigDecimals rather than Doubles.
+   *
+   * @param bigDecimals
+   *          a boolean
+   */
+  public void setBigDecimals(boolean bigDecimals)
+  {
+    this.bigDecimals = bigDecimals;
+  } // setBigDecimals(boolean)
+
+  /**
+   * Sets whether non-empty arrays holding only numbers are parsed as
+   * JSONNumberLists rather than ArrayLists.
+   *
+   * @param primitiveArrays
+   *          a boolean
+   */
+  public void setPrimitiveArrays(boolean primitiveArrays)
+  {
+    this.primitiveArrays = primitiveArrays;
+  } // setPrimitiveArrays(boolean)
+
+  /**
+   * Sets the listener that parse events are reported to, or null to report
+   * nothing. The listener is called from every thread that parses.
+   *
+   * @param listener
+   *          a JSONListener
+   */
+  public void setListener(JSONListener listener)
+  {
+    this.listener = listener;
+  } // setListener(JSONListener)
+
+  /**
+   * Returns a sequential stream of the records in the file at path. The
+   * stream holds the file open until it is closed.
+   *
+   * @param path
+   *          a Path
+   * @throws IOException
+   */
+  public Stream<Object> stream(Path path)
+    throws IOException
+  {
+    return stream(path, false);
+  } // stream(Path)
+
+  /**
+   * Returns a parallel stream of the records in the file at path. Records are
+   * parsed by the ForkJoin pool the terminal operation runs in. If ordered is
+   * false, the stream does not keep the records in file order. The stream
+   * holds the file open until it is closed.
+   *
+   * @param path
+   *          a Path
+   * @param ordered
+   *          a boolean
+   * @throws IOException
+   */
+  public Stream<Object> parallelStream(Path path, boolean ordered)
+    throws IOException
+  {
+    Stream<Object> records = stream(path, true);
+    return ordered ? records : records.unordered();
+  } // parallelStream(Path, boolean)
+
+  /**
+   * Returns a stream of the records in the file at path
+   *
+   * @param path
+   *          a Path
+   * @param parallel
+   *          a boolean
+   * @throws IOException
+   */
+  Stream<Object> stream(Path path, boolean parallel)
+    throws IOException
+  {
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+    LineSpliterator lines = new LineSpliterator(channel, 0, channel.size());
+    return StreamSupport.stream(lines, parallel).onClose(() -> {
+      try
+        {
+          channel.close();
+        } // try
+      catch (IOException e)
+        {
+          throw new UncheckedIOException(e);
+        } // catch
+    });
+  } // stream(Path, boolean)
+
+  /**
+   * Returns an iterator over the records read from in. The iterator reads
+   * in only as far as it needs to and never holds more than one line.
+   *
+   * @param in
+   *          an InputStream
+   */
+  public Iterator<Object> iterator(InputStream in)
+  {
+    return new StreamIterator(in);
+  } // iterator(InputStream)
+
+  /**
+   * Returns a sequential stream of the records read from in. Closing the
+   * stream closes in.
+   *
+   * @param in
+   *          an InputStream
+   */
+  public Stream<Object> stream(InputStream in)
+  {
+    Spliterator<Object> records =
+        Spliterators.spliteratorUnknownSize(iterator(in), Spliterator.ORDERED);
+    return StreamSupport.stream(records, false).onClose(() -> {
+      try
+        {
+          in.close();
+        } // try
+      catch (IOException e)
+        {
+          throw new UncheckedIOException(e);
+        } // catch
+    });
+  } // stream(InputStream)
+
+  /**
+   * Creates a parser with this reader's options
+   */
+  JSONByteParser newParser()
+  {
+    JSONByteParser parser = new JSONByteParser(ByteBuffer.allocate(0));
+    parser.setKeyCache(keys);
+    parser.setBigDecimals(bigDecimals);
+    parser.setPrimitiveArrays(primitiveArrays);
+    parser.setListener(listener);
+    return parser;
+  } // newParser()
+
+  /**
+   * Parses the line between start and end of buf, returning true and handing
+   * its record to action unless the line is blank
+   *
+   * @param parser
+   *          a JSONByteParser
+   * @param buf
+   *          a ByteBuffer
+   * @param start
+   *          an int
+   * @param end
+   *          an int
+   * @param offset
+   *          a long, the position of buf in the input, for error messages
+   * @param action
+   *          a Consumer
+   */
+  static boolean parseLine(JSONByteParser parser, ByteBuffer buf, int start,
+                           int end, long offset,
+                           Consumer<? super Object> action)
+  {
+    parser.reset(buf, start, end);
+    Object record;
+    try
+      {
+        parser.skipWhitespace();
+        if (parser.pos == end)
+          return false;
+        record = parser.parse();
+        if (parser.pos != end)
+          throw new Exception("Unexpected character after value: "
+                              + (char) buf.get(parser.pos));
+      } // try
+    catch (Exception e)
+      {
+        throw new IllegalStateException("Invalid JSON in line at offset "
+                                        + (offset + start) + ": "
+                                        + e.getMessage(), e);
+      } // catch
+    action.accept(record);
+    return true;
+  } // parseLine(JSONByteParser, ByteBuffer, int, int, long, Consumer)
+
+  /**
+   * Returns the index of the first line break in buf between start and end,
+   * or end if there is none
+   *
+   * @param buf
+   *          a ByteBuffer
+   * @param start
+   *          an int
+   * @param end
+   *          an int
+   */
+  static int lineEnd(ByteBuffer buf, int start, int end)
+  {
+    while (start < end && buf.get(start) != '\n')
+      {
+        start++;
+      } // while
+    return start;
+  } // lineEnd(ByteBuffer, int, int)
+
+  // +---------------+---------------------------------------------------
+  // | Inner Classes |
+  // +---------------+
+
+  /**
+   * Hands out the records in a range of a file, one mapping window at a time
+   */
+  class LineSpliterator
+      implements Spliterator<Object>
+  {
+    /**
+     * The file being read
+     */
+    FileChannel channel;
+
+    /**
+     * Offset of the first line not yet mapped
+     */
+    long start;
+
+    /**
+     * Offset one past the last byte of the range
+     */
+    long end;
+
+    /**
+     * The mapped window of lines being read, if any
+     */
+    ByteBuffer window = null;
+
+    /**
+     * Offset of window in the file
+     */
+    long windowBase;
+
+    /**
+     * Index in window of the next line
+     */
+    int pos = 0;
+
+    /**
+     * Parses the lines; created when first needed
+     */
+    JSONByteParser parser = null;
+
+    /**
+     * Creates a spliterator over the lines between start and end of the file
+     * open in channel. start must be at the beginning of a line.
+     *
+     * @param channel
+     *          a FileChannel
+     * @param start
+     *          a long
+     * @param end
+     *          a long
+     */
+    LineSpliterator(FileChannel channel, long start, long end)
+    {
+      this.channel = channel;
+      this.start = start;
+      this.end = end;
+    } // LineSpliterator(FileChannel, long, long)
+
+    /**
+     * Hands the next record to action, if there is one
+     */
+    @Override
+    public boolean tryAdvance(Consumer<? super Object> action)
+    {
+      if (parser == null)
+        parser = newParser();
+      while (true)
+        {
+          if (window == null || pos >= window.limit())
+            {
+              if (!nextWindow())
+                return false;
+            } // if
+          int lineEnd = lineEnd(window, pos, window.limit());
+          int lineStart = pos;
+          pos = lineEnd + 1;
+          if (parseLine(parser, window, lineStart, lineEnd, windowBase, action))
+            return true;
+        } // while
+    } // tryAdvance(Consumer)
+
+    /**
+     * Maps the next window of whole lines. Returns false once the range is
+     * used up.
+     */
+    boolean nextWindow()
+    {
+      window = null;
+      if (start >= end)
+        return false;
+      try
+        {
+          int size = (int) Math.min(WINDOW_SIZE, end - start);
+          ByteBuffer mapped =
+              channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+          int length = size;
+          if (start + size < end)
+            {
+              // stop after the last complete line in the window
+              while (length > 0 && mapped.get(length - 1) != '\n')
+                {
+                  length--;
+                } // while
+              if (length == 0)
+                throw new IllegalStateException("Line at offset " + start
+                                                + " is too long.");
+              mapped.limit(length);
+            } // if
+          window = mapped;
+          windowBase = start;
+          pos = 0;
+          start += length;
+          return true;
+        } // try
+      catch (IOException e)
+        {
+          throw new UncheckedIOException(e);
+        } // catch
+    } // nextWindow()
+
+    /**
+     * Splits off the first half of the lines not yet read, if the range is
+     * large enough and no window is partly read
+     */
+    @Override
+    public Spliterator<Object> trySplit()
+    {
+      if ((window != null && pos < window.limit()) || end - start < MIN_SPLIT)
+        return null;
+      try
+        {
+          long split = nextLineStart(start + (end - start) / 2);
+          if (split <= start || split >= end)
+            return null;
+          LineSpliterator prefix = new LineSpliterator(channel, start, split);
+          start = split;
+          return prefix;
+        } // try
+      catch (IOException e)
+        {
+          throw new UncheckedIOException(e);
+        } // catch
+    } // trySplit()
+
+    /**
+     * Returns the offset just after the first line break at or after offset,
+     * or end if there is none before it
+     *
+     * @param offset
+     *          a long
+     * @throws IOException
+     */
+    long nextLineStart(long offset)
+      throws IOException
+    {
+      while (offset < end)
+        {
+          int size = (int) Math.min(PROBE_SIZE, end - offset);
+          ByteBuffer probe =
+              channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+          int lineEnd = lineEnd(probe, 0, size);
+          if (lineEnd < size)
+            return offset + lineEnd + 1;
+          offset += size;
+        } // while
+      return end;
+    } // nextLineStart(long)
+
+    /**
+     * Returns the number of bytes left, as an estimate of the number of
+     * records
+     */
+    @Override
+    public long estimateSize()
+    {
+      long mapped = window == null ? 0 : window.limit() - pos;
+      return end - start + mapped;
+    } // estimateSize()
+
+    /**
+     * Records come in file order
+     */
+    @Override
+    public int characteristics()
+    {
+      return ORDERED;
+    } // characteristics()
+  } // class LineSpliterator
+
+  /**
+   * Hands out the records read from an InputStream
+   */
+  class StreamIterator
+      implements Iterator<Object>
+  {
+    /**
+     * Where the bytes come from
+     */
+    InputStream in;
+
+    /**
+     * Bytes read but not yet parsed
+     */
+    byte[] bytes = new byte[1 << 16];
+
+    /**
+     * A view of bytes for the parser
+     */
+    ByteBuffer buf = ByteBuffer.wrap(bytes);
+
+    /**
+     * Index in bytes of the next line
+     */
+    int pos = 0;
+
+    /**
+     * Number of valid bytes in bytes
+     */
+    int limit = 0;
+
+    /**
+     * Offset in the input of bytes[0], for error messages
+     */
+    long base = 0;
+
+    /**
+     * Whether in has been read to its end
+     */
+    boolean eof = false;
+
+    /**
+     * Parses the lines
+     */
+    JSONByteParser parser = newParser();
+
+    /**
+     * The record to hand out next, if ready is set
+     */
+    Object next;
+
+    /**
+     * Whether next holds a record
+     */
+    boolean ready = false;
+
+    /**
+     * Creates an iterator over the lines of in
+     *
+     * @param in
+     *          an InputStream
+     */
+    StreamIterator(InputStream in)
+    {
+      this.in = in;
+    } // StreamIterator(InputStream)
+
+    /**
+     * Reads ahead to the next record, if there is one
+     */
+    @Override
+    public boolean hasNext()
+    {
+      while (!ready)
+        {
+          int lineEnd = lineEnd(buf, pos, limit);
+          if (lineEnd == limit && !eof)
+            {
+              fill();
+              continue;
+            } // if
+          if (pos == limit && eof)
+            return false;
+          int lineStart = pos;
+          pos = Math.min(lineEnd + 1, limit);
+          ready = parseLine(parser, buf, lineStart, lineEnd, base,
+                            record -> next = record);
+        } // while
+      return true;
+    } // hasNext()
+
+    /**
+     * Returns the next record
+     */
+    @Override
+    public Object next()
+    {
+      if (!hasNext())
+        throw new NoSuchElementException();
+      ready = false;
+      Object record = next;
+      next = null;
+      return record;
+    } // next()
+
+    /**
+     * Reads more of in, moving the unparsed bytes to the front and growing
+     * the buffer if a line does not fit
+     */
+    void fill()
+    {
+      if (pos > 0)
+        {
+          System.arraycopy(bytes, pos, bytes, 0, limit - pos);
+          base += pos;
+          limit -= pos;
+          pos = 0;
+        } // if
+      if (limit == bytes.length)
+        {
+          bytes = Arrays.copyOf(bytes, bytes.length * 2);
+          buf = ByteBuffer.wrap(bytes);
+        } // if
+      try
+        {
+          int count = in.read(bytes, limit, bytes.length - limit);
+          if (count < 0)
+            eof = true;
+          else
+            limit += count;
+        } // try
+      catch (IOException e)
+        {
+          throw new UncheckedIOException(e);
+        } // catch
+    } // fill()
+  } // class StreamIterator
+} // class JSONLines
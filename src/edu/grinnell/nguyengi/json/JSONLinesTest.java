@@ -0,0 +1,149 @@
+package edu.grinnell.nguyengi.json;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+/**
+ * Tests for reading newline-delimited JSON
+ *
+ * @author Giang
+ *
+ */
+public class JSONLinesTest
+{
+  /**
+   * Number of records in the generated file
+   */
+  static final int RECORDS = 20000;
+
+  /**
+   * Returns NDJSON text with RECORDS records, some blank lines, and some
+   * Windows line endings
+   */
+  static String records()
+  {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < RECORDS; i++)
+      {
+        text.append("{\"id\":").append(i).append(",\"msg\":\"line ")
+            .append(i).append("\",\"tags\":[\"a\",\"b\"]}");
+        text.append(i % 7 == 0 ? "\r\n" : "\n");
+        if (i % 1000 == 0)
+          text.append("\n  \n");
+      } // for
+    return text.toString();
+  } // records()
+
+  /**
+   * Returns the ids of the records, in order
+   *
+   * @param records
+   *          a List
+   */
+  static List<Object> ids(List<Object> records)
+  {
+    List<Object> ids = new ArrayList<>();
+    for (Object record : records)
+      {
+        ids.add(((Map<?, ?>) record).get("id"));
+      } // for
+    return ids;
+  } // ids(List<Object>)
+
+  /**
+   * Sequential, ordered parallel, and unordered parallel streams all see
+   * every record, the ordered ones in file order
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testFileStreams()
+    throws Exception
+  {
+    Path path = Files.createTempFile("JSONLinesTest", ".ndjson");
+    try
+      {
+        Files.write(path, records().getBytes(StandardCharsets.UTF_8));
+        JSONLines lines = new JSONLines();
+        lines.setKeyCache(new JSONKeyCache());
+        List<Object> expected;
+        try (Stream<Object> records = JSONUtils.parseLines(path))
+          {
+            expected = records.collect(Collectors.toList());
+          } // try
+        assertEquals(RECORDS, expected.size());
+        assertEquals(JSONUtils.parse("{\"id\":5,\"msg\":\"line 5\","
+                                     + "\"tags\":[\"a\",\"b\"]}"),
+                     expected.get(5));
+        try (Stream<Object> records = lines.parallelStream(path, true))
+          {
+            assertEquals(expected, records.collect(Collectors.toList()));
+          } // try
+        try (Stream<Object> records = lines.parallelStream(path, false))
+          {
+            List<Object> ids = ids(records.collect(Collectors.toList()));
+            ids.sort(null);
+            assertEquals(ids(expected), ids);
+          } // try
+      } // try
+    finally
+      {
+        Files.delete(path);
+      } // finally
+  } // testFileStreams()
+
+  /**
+   * An InputStream is read line by line, including lines longer than the
+   * iterator's buffer and a last line without a line break
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testInputStream()
+    throws Exception
+  {
+    StringBuilder longString = new StringBuilder();
+    for (int i = 0; i < 100000; i++)
+      {
+        longString.append((char) ('a' + i % 26));
+      } // for
+    String text = records() + "\"" + longString + "\"\n[1,2]";
+    byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+    Iterator<Object> records =
+        new JSONLines().iterator(new ByteArrayInputStream(bytes));
+    int count = 0;
+    Object last = null;
+    Object beforeLast = null;
+    while (records.hasNext())
+      {
+        beforeLast = last;
+        last = records.next();
+        count++;
+      } // while
+    assertEquals(RECORDS + 2, count);
+    assertEquals(longString.toString(), beforeLast);
+    assertEquals(JSONUtils.parse("[1,2]"), last);
+  } // testInputStream()
+
+  /**
+   * A line with two values is an error
+   */
+  @Test(expected = IllegalStateException.class)
+  public void testTwoValuesOnALine()
+  {
+    byte[] bytes = "1\n2 3\n".getBytes(StandardCharsets.UTF_8);
+    new JSONLines().stream(new ByteArrayInputStream(bytes)).count();
+  } // testTwoValuesOnALine()
+} // class JSONLinesTest
@@ -0,0 +1,115 @@
+package edu.grinnell.nguyengi.json;
+
+/**
+ * Receives events from an instrumented parser or writer. Parsers and writers
+ * report to a listener only when one is set with setListener, or for
+ * JSONUtils with JSONUtils.setListener; without one they do no extra work.
+ * Every method does nothing by default, so a listener overrides only the
+ * events it needs. JSONMetrics is a listener that adds the events up.
+ *
+ * A listener shared by parsers on several threads is called from all of
+ * them at once.
+ *
+ * @author Giang
+ *
+ */
+public interface JSONListener
+{
+  /**
+   * Called when a whole document has been parsed. length counts characters
+   * for JSONParser and bytes for the byte parsers.
+   *
+   * @param length
+   *          a long
+   * @param nanos
+   *          a long
+   */
+  default void documentParsed(long length, long nanos)
+  {
+  } // documentParsed(long, long)
+
+  /**
+   * Called when an object with the given number of distinct members has been
+   * parsed. The document's top-level value is at depth 1.
+   *
+   * @param members
+   *          an int
+   * @param depth
+   *          an int
+   */
+  default void objectParsed(int members, int depth)
+  {
+  } // objectParsed(int, int)
+
+  /**
+   * Called when an array with the given number of elements has been parsed.
+   * The document's top-level value is at depth 1.
+   *
+   * @param elements
+   *          an int
+   * @param depth
+   *          an int
+   */
+  default void arrayParsed(int elements, int depth)
+  {
+  } // arrayParsed(int, int)
+
+  /**
+   * Called when a string value of length chars has been decoded, taking
+   * nanos nanoseconds.
+   *
+   * @param length
+   *          an int
+   * @param nanos
+   *          a long
+   */
+  default void stringParsed(int length, long nanos)
+  {
+  } // stringParsed(int, long)
+
+  /**
+   * Called when an object key of length chars has been decoded, taking nanos
+   * nanoseconds.
+   *
+   * @param length
+   *          an int
+   * @param nanos
+   *          a long
+   */
+  default void keyParsed(int length, long nanos)
+  {
+  } // keyParsed(int, long)
+
+  /**
+   * Called when a number has been parsed, taking nanos nanoseconds.
+   *
+   * @param nanos
+   *          a long
+   */
+  default void numberParsed(long nanos)
+  {
+  } // numberParsed(long)
+
+  /**
+   * Called when true, false, or null has been parsed, with its value.
+   *
+   * @param value
+   *          a Boolean, or null
+   */
+  default void literalParsed(Boolean value)
+  {
+  } // literalParsed(Boolean)
+
+  /**
+   * Called when a writer has written a value of length characters, taking
+   * nanos nanoseconds.
+   *
+   * @param length
+   *          a long
+   * @param nanos
+   *          a long
+   */
+  default void documentWritten(long length, long nanos)
+  {
+  } // documentWritten(long, long)
+} // interface JSONListener
@@ -0,0 +1,441 @@
+package edu.grinnell.nguyengi.json;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * A listener that adds up what parsers and writers report: documents and
+ * their lengths, values by type, the deepest nesting, the time spent on
+ * strings and numbers, and an estimate of the heap the results take. One
+ * JSONMetrics may be shared by any number of parsers and threads, and can be
+ * published through JMX with register.
+ *
+ * @author Giang
+ *
+ */
+public class JSONMetrics
+    implements JSONListener, JSONMetricsMBean
+{
+  // +-------+-----------------------------------------------------------
+  // | Notes |
+  // +-------+
+
+  /*
+   * The heap estimate assumes a 64-bit JVM with compressed references and
+   * compact strings holding one byte per character. Maps are counted as
+   * JSONObjectMaps and lists as ArrayLists, both without spare room; numbers
+   * as boxed Integers; true, false, and null as nothing, since they are
+   * shared. It is meant for comparing documents, not for exact accounting.
+   */
+
+  // +-----------+-------------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * Estimated bytes of a String, not counting its characters
+   */
+  static final int STRING_OVERHEAD = 40;
+
+  /**
+   * Estimated bytes of a map, not counting its members
+   */
+  static final int OBJECT_OVERHEAD = 72;
+
+  /**
+   * Estimated bytes per member of a map
+   */
+  static final int MEMBER_SIZE = 8;
+
+  /**
+   * Estimated bytes of a list, not counting its elements
+   */
+  static final int ARRAY_OVERHEAD = 40;
+
+  /**
+   * Estimated bytes per element of a list
+   */
+  static final int ELEMENT_SIZE = 4;
+
+  /**
+   * Estimated bytes of a number
+   */
+  static final int NUMBER_SIZE = 16;
+
+  // +--------+----------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * Documents parsed
+   */
+  LongAdder documentsParsed = new LongAdder();
+
+  /**
+   * Characters or bytes parsed
+   */
+  LongAdder lengthParsed = new LongAdder();
+
+  /**
+   * Nanoseconds spent parsing documents
+   */
+  LongAdder parseNanos = new LongAdder();
+
+  /**
+   * Objects parsed
+   */
+  LongAdder objects = new LongAdder();
+
+  /**
+   * Arrays parsed
+   */
+  LongAdder arrays = new LongAdder();
+
+  /**
+   * String values parsed
+   */
+  LongAdder strings = new LongAdder();
+
+  /**
+   * Object keys parsed
+   */
+  LongAdder keys = new LongAdder();
+
+  /**
+   * Numbers parsed
+   */
+  LongAdder numbers = new LongAdder();
+
+  /**
+   * Trues and falses parsed
+   */
+  LongAdder booleans = new LongAdder();
+
+  /**
+   * Nulls parsed
+   */
+  LongAdder nulls = new LongAdder();
+
+  /**
+   * Deepest nesting seen
+   */
+  LongAccumulator maxDepth = new LongAccumulator(Math::max, 0);
+
+  /**
+   * Longest string or key seen
+   */
+  LongAccumulator maxStringLength = new LongAccumulator(Math::max, 0);
+
+  /**
+   * Characters in strings and keys
+   */
+  LongAdder stringChars = new LongAdder();
+
+  /**
+   * Nanoseconds spent decoding strings and keys
+   */
+  LongAdder stringNanos = new LongAdder();
+
+  /**
+   * Nanoseconds spent parsing numbers
+   */
+  LongAdder numberNanos = new LongAdder();
+
+  /**
+   * Estimated heap taken by the parsed values
+   */
+  LongAdder estimatedBytes = new LongAdder();
+
+  /**
+   * Values written
+   */
+  LongAdder documentsWritten = new LongAdder();
+
+  /**
+   * Characters written
+   */
+  LongAdder charsWritten = new LongAdder();
+
+  /**
+   * Nanoseconds spent writing
+   */
+  LongAdder writeNanos = new LongAdder();
+
+  // +--------------+----------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Creates metrics with every count at zero
+   */
+  public JSONMetrics()
+  {
+  } // JSONMetrics()
+
+  // +---------+---------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Publishes these metrics in the platform MBean server under
+   * edu.grinnell.nguyengi.json:type=JSONMetrics,name=name, returning the
+   * name they were registered under.
+   *
+   * @param name
+   *          a String
+   * @throws JMException
+   *           if the name is taken or malformed
+   */
+  public ObjectName register(String name)
+    throws JMException
+  {
+    ObjectName objectName =
+        new ObjectName("edu.grinnell.nguyengi.json:type=JSONMetrics,name="
+                       + ObjectName.quote(name));
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    server.registerMBean(this, objectName);
+    return objectName;
+  } // register(String)
+
+  /**
+   * Returns the counts, one per line.
+   */
+  @Override
+  public String toString()
+  {
+    return "documents parsed: " + getDocumentsParsed() + " ("
+           + getLengthParsed() + " chars or bytes, " + getParseNanos()
+           + " ns)\nobjects: " + getObjects() + ", arrays: " + getArrays()
+           + ", strings: " + getStrings() + ", keys: " + getKeys()
+           + ", numbers: " + getNumbers() + ", booleans: " + getBooleans()
+           + ", nulls: " + getNulls() + "\nmax depth: " + getMaxDepth()
+           + ", max string length: " + getMaxStringLength()
+           + "\nstring chars: " + getStringChars() + " (" + getStringNanos()
+           + " ns), number time: " + getNumberNanos()
+           + " ns\nestimated bytes: " + getEstimatedBytes()
+           + "\ndocuments written: " + getDocumentsWritten() + " ("
+           + getCharsWritten() + " chars, " + getWriteNanos() + " ns)";
+  } // toString()
+
+  // +-----------------+-------------------------------------------------
+  // | Listener Events |
+  // +-----------------+
+
+  @Override
+  public void documentParsed(long length, long nanos)
+  {
+    documentsParsed.increment();
+    lengthParsed.add(length);
+    parseNanos.add(nanos);
+  } // documentParsed(long, long)
+
+  @Override
+  public void objectParsed(int members, int depth)
+  {
+    objects.increment();
+    maxDepth.accumulate(depth);
+    estimatedBytes.add(OBJECT_OVERHEAD + (long) MEMBER_SIZE * members);
+  } // objectParsed(int, int)
+
+  @Override
+  public void arrayParsed(int elements, int depth)
+  {
+    arrays.increment();
+    maxDepth.accumulate(depth);
+    estimatedBytes.add(ARRAY_OVERHEAD + (long) ELEMENT_SIZE * elements);
+  } // arrayParsed(int, int)
+
+  @Override
+  public void stringParsed(int length, long nanos)
+  {
+    strings.increment();
+    string(length, nanos);
+  } // stringParsed(int, long)
+
+  @Override
+  public void keyParsed(int length, long nanos)
+  {
+    keys.increment();
+    string(length, nanos);
+  } // keyParsed(int, long)
+
+  @Override
+  public void numberParsed(long nanos)
+  {
+    numbers.increment();
+    numberNanos.add(nanos);
+    estimatedBytes.add(NUMBER_SIZE);
+  } // numberParsed(long)
+
+  @Override
+  public void literalParsed(Boolean value)
+  {
+    if (value == null)
+      nulls.increment();
+    else
+      booleans.increment();
+  } // literalParsed(Boolean)
+
+  @Override
+  public void documentWritten(long length, long nanos)
+  {
+    documentsWritten.increment();
+    charsWritten.add(length);
+    writeNanos.add(nanos);
+  } // documentWritten(long, long)
+
+  /**
+   * Counts a string or key of length chars, decoded in nanos nanoseconds
+   *
+   * @param length
+   *          an int
+   * @param nanos
+   *          a long
+   */
+  void string(int length, long nanos)
+  {
+    maxStringLength.accumulate(length);
+    stringChars.add(length);
+    stringNanos.add(nanos);
+    estimatedBytes.add(STRING_OVERHEAD + length);
+  } // string(int, long)
+
+  // +------------+------------------------------------------------------
+  // | MBean Data |
+  // +------------+
+
+  @Override
+  public long getDocumentsParsed()
+  {
+    return documentsParsed.sum();
+  } // getDocumentsParsed()
+
+  @Override
+  public long getLengthParsed()
+  {
+    return lengthParsed.sum();
+  } // getLengthParsed()
+
+  @Override
+  public long getParseNanos()
+  {
+    return parseNanos.sum();
+  } // getParseNanos()
+
+  @Override
+  public long getObjects()
+  {
+    return objects.sum();
+  } // getObjects()
+
+  @Override
+  public long getArrays()
+  {
+    return arrays.sum();
+  } // getArrays()
+
+  @Override
+  public long getStrings()
+  {
+    return strings.sum();
+  } // getStrings()
+
+  @Override
+  public long getKeys()
+  {
+    return keys.sum();
+  } // getKeys()
+
+  @Override
+  public long getNumbers()
+  {
+    return numbers.sum();
+  } // getNumbers()
+
+  @Override
+  public long getBooleans()
+  {
+    return booleans.sum();
+  } // getBooleans()
+
+  @Override
+  public long getNulls()
+  {
+    return nulls.sum();
+  } // getNulls()
+
+  @Override
+  public long getMaxDepth()
+  {
+    return maxDepth.get();
+  } // getMaxDepth()
+
+  @Override
+  public long getMaxStringLength()
+  {
+    return maxStringLength.get();
+  } // getMaxStringLength()
+
+  @Override
+  public long getStringChars()
+  {
+    return stringChars.sum();
+  } // getStringChars()
+
+  @Override
+  public long getStringNanos()
+  {
+    return stringNanos.sum();
+  } // getStringNanos()
+
+  @Override
+  public long getNumberNanos()
+  {
+    return numberNanos.sum();
+  } // getNumberNanos()
+
+  @Override
+  public long getEstimatedBytes()
+  {
+    return estimatedBytes.sum();
+  } // getEstimatedBytes()
+
+  @Override
+  public long getDocumentsWritten()
+  {
+    return documentsWritten.sum();
+  } // getDocumentsWritten()
+
+  @Override
+  public long getCharsWritten()
+  {
+    return charsWritten.sum();
+  } // getCharsWritten()
+
+  @Override
+  public long getWriteNanos()
+  {
+    return writeNanos.sum();
+  } // getWriteNanos()
+
+  @Override
+  public void reset()
+  {
+    LongAdder[] adders =
+        { documentsParsed, lengthParsed, parseNanos, objects, arrays,
+         strings, keys, numbers, booleans, nulls, stringChars, stringNanos,
+         numberNanos, estimatedBytes, documentsWritten, charsWritten,
+         writeNanos };
+    for (LongAdder adder : adders)
+      {
+        adder.reset();
+      } // for
+    maxDepth.reset();
+    maxStringLength.reset();
+  } // reset()
+} // class JSONMetrics
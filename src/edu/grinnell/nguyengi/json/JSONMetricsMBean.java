@@ -0,0 +1,110 @@
+package edu.grinnell.nguyengi.json;
+
+/**
+ * The management interface of JSONMetrics, as seen through JMX
+ *
+ * @author Giang
+ *
+ */
+public interface JSONMetricsMBean
+{
+  /**
+   * Returns the number of documents parsed.
+   */
+  long getDocumentsParsed();
+
+  /**
+   * Returns the characters or bytes of all documents parsed.
+   */
+  long getLengthParsed();
+
+  /**
+   * Returns the time spent parsing documents, in nanoseconds.
+   */
+  long getParseNanos();
+
+  /**
+   * Returns the number of objects parsed.
+   */
+  long getObjects();
+
+  /**
+   * Returns the number of arrays parsed.
+   */
+  long getArrays();
+
+  /**
+   * Returns the number of string values parsed, not counting keys.
+   */
+  long getStrings();
+
+  /**
+   * Returns the number of object keys parsed.
+   */
+  long getKeys();
+
+  /**
+   * Returns the number of numbers parsed.
+   */
+  long getNumbers();
+
+  /**
+   * Returns the number of trues and falses parsed.
+   */
+  long getBooleans();
+
+  /**
+   * Returns the number of nulls parsed.
+   */
+  long getNulls();
+
+  /**
+   * Returns the deepest nesting of objects and arrays seen.
+   */
+  long getMaxDepth();
+
+  /**
+   * Returns the length of the longest string or key seen.
+   */
+  long getMaxStringLength();
+
+  /**
+   * Returns the characters in all strings and keys parsed.
+   */
+  long getStringChars();
+
+  /**
+   * Returns the time spent decoding strings and keys, in nanoseconds.
+   */
+  long getStringNanos();
+
+  /**
+   * Returns the time spent parsing numbers, in nanoseconds.
+   */
+  long getNumberNanos();
+
+  /**
+   * Returns a rough estimate of the heap the parsed values take, in bytes.
+   */
+  long getEstimatedBytes();
+
+  /**
+   * Returns the number of values written.
+   */
+  long getDocumentsWritten();
+
+  /**
+   * Returns the characters written.
+   */
+  long getCharsWritten();
+
+  /**
+   * Returns the time spent writing, in nanoseconds.
+   */
+  long getWriteNanos();
+
+  /**
+   * Sets every count back to zero.
+   */
+  void reset();
+} // interface JSONMetricsMBean
@@ -0,0 +1,179 @@
+package edu.grinnell.nguyengi.json;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+/**
+ * Tests for parser instrumentation
+ *
+ * @author Giang
+ *
+ */
+public class JSONMetricsTest
+{
+  /**
+   * A document with two of each value type, nested three deep
+   */
+  static final String DOCUMENT =
+      "{\"name\": \"glossary\", \"tags\": [\"a\", 1, 2.5, true, null],"
+          + " \"inner\": {\"on\": false, \"off\": null, \"list\": []}}";
+
+  /**
+   * Checks the counts metrics should hold after parsing DOCUMENT times
+   * documents
+   *
+   * @param metrics
+   *          a JSONMetrics
+   * @param documents
+   *          an int
+   */
+  static void checkCounts(JSONMetrics metrics, int documents)
+  {
+    assertEquals(documents, metrics.getDocumentsParsed());
+    assertEquals(documents * DOCUMENT.length(), metrics.getLengthParsed());
+    assertEquals(documents * 2, metrics.getObjects());
+    assertEquals(documents * 2, metrics.getArrays());
+    assertEquals(documents * 2, metrics.getStrings());
+    assertEquals(documents * 6, metrics.getKeys());
+    assertEquals(documents * 2, metrics.getNumbers());
+    assertEquals(documents * 2, metrics.getBooleans());
+    assertEquals(documents * 2, metrics.getNulls());
+    assertEquals(3, metrics.getMaxDepth());
+    assertEquals(8, metrics.getMaxStringLength());
+    // keys and strings: name tags inner on off list glossary a
+    assertEquals(documents * 31, metrics.getStringChars());
+    assertTrue(metrics.getEstimatedBytes() > 0);
+    assertTrue(metrics.getParseNanos() > 0);
+  } // checkCounts(JSONMetrics, int)
+
+  /**
+   * Both engines report the same events
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testParsers()
+    throws Exception
+  {
+    JSONMetrics metrics = new JSONMetrics();
+    JSONParser parser = new JSONParser();
+    parser.setListener(metrics);
+    Object expected = parser.parse(DOCUMENT);
+    assertEquals(JSONUtils.parse(DOCUMENT), expected);
+    checkCounts(metrics, 1);
+    byte[] bytes = DOCUMENT.getBytes(StandardCharsets.UTF_8);
+    JSONByteParser byteParser = new JSONByteParser(ByteBuffer.wrap(bytes));
+    byteParser.setListener(metrics);
+    byteParser.setKeyCache(new JSONKeyCache());
+    assertEquals(expected, byteParser.parse());
+    checkCounts(metrics, 2);
+    JSONIndexedParser indexed = new JSONIndexedParser(bytes, 0, bytes.length);
+    indexed.setListener(metrics);
+    indexed.setPrimitiveArrays(true);
+    assertEquals(expected, indexed.parse());
+    checkCounts(metrics, 3);
+    metrics.reset();
+    assertEquals(0, metrics.getDocumentsParsed());
+    assertEquals(0, metrics.getMaxDepth());
+  } // testParsers()
+
+  /**
+   * JSONUtils reports parsing and writing once a listener is set, and
+   * nothing otherwise
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testUtils()
+    throws Exception
+  {
+    JSONMetrics metrics = new JSONMetrics();
+    JSONUtils.setListener(metrics);
+    try
+      {
+        Object value = JSONUtils.parse(DOCUMENT);
+        JSONUtils.parse(DOCUMENT.getBytes(StandardCharsets.UTF_8));
+        checkCounts(metrics, 2);
+        String text = JSONUtils.toJSONString(value);
+        StringBuilder out = new StringBuilder();
+        JSONUtils.writeJSON(value, out);
+        assertEquals(2, metrics.getDocumentsWritten());
+        assertEquals(2 * text.length(), metrics.getCharsWritten());
+      } // try
+    finally
+      {
+        JSONUtils.setListener(null);
+      } // finally
+    JSONUtils.parse(DOCUMENT);
+    JSONUtils.toJSONString(DOCUMENT);
+    assertEquals(2, metrics.getDocumentsParsed());
+    assertEquals(2, metrics.getDocumentsWritten());
+  } // testUtils()
+
+  /**
+   * The parallel parser reports a top-level array as one document
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testParallel()
+    throws Exception
+  {
+    String text = JSONParallelParserTest.records();
+    byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+    JSONMetrics sequential = new JSONMetrics();
+    JSONByteParser parser = new JSONByteParser(ByteBuffer.wrap(bytes));
+    parser.setListener(sequential);
+    parser.parse();
+    JSONMetrics parallel = new JSONMetrics();
+    JSONParallelParser parallelParser = new JSONParallelParser();
+    parallelParser.setChunkSize(4096);
+    parallelParser.setListener(parallel);
+    parallelParser.parse(bytes);
+    assertEquals(1, parallel.getDocumentsParsed());
+    assertEquals(sequential.getLengthParsed(), parallel.getLengthParsed());
+    assertEquals(sequential.getObjects(), parallel.getObjects());
+    assertEquals(sequential.getArrays(), parallel.getArrays());
+    assertEquals(sequential.getStrings(), parallel.getStrings());
+    assertEquals(sequential.getNumbers(), parallel.getNumbers());
+    assertEquals(sequential.getMaxDepth(), parallel.getMaxDepth());
+    assertEquals(sequential.getEstimatedBytes(),
+                 parallel.getEstimatedBytes());
+  } // testParallel()
+
+  /**
+   * Metrics can be read through JMX
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testMBean()
+    throws Exception
+  {
+    JSONMetrics metrics = new JSONMetrics();
+    JSONParser parser = new JSONParser();
+    parser.setListener(metrics);
+    parser.parse(DOCUMENT);
+    ObjectName name = metrics.register("JSONMetricsTest");
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try
+      {
+        assertEquals(1L, server.getAttribute(name, "DocumentsParsed"));
+        assertEquals(6L, server.getAttribute(name, "Keys"));
+        server.invoke(name, "reset", new Object[0], new String[0]);
+        assertEquals(0L, server.getAttribute(name, "Keys"));
+      } // try
+    finally
+      {
+        server.unregisterMBean(name);
+      } // finally
+  } // testMBean()
+} // class JSONMetricsTest
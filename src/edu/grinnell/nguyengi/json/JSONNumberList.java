@@ -0,0 +1,274 @@
+package edu.grinnell.nguyengi.json;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * A read-only list of numbers kept unboxed, which parsers set up with
+ * setPrimitiveArrays(true) return for arrays holding nothing but numbers.
+ * Its elements are the same Integers, Longs, and Doubles parse would put in
+ * an ArrayList, but each takes only eight bytes until it is read.
+ *
+ * @author Giang
+ *
+ */
+public class JSONNumberList
+    extends AbstractList<Object>
+    implements RandomAccess
+{
+  // +-------+-----------------------------------------------------------
+  // | Notes |
+  // +-------+
+
+  /*
+   * Every element is stored in values as a long: integers as themselves and
+   * decimals as the bits of a double. A bit set in decimals marks the
+   * elements that are doubles. Numbers that need a BigInteger or a
+   * BigDecimal cannot be stored, and the parsers fall back to an ArrayList
+   * for arrays holding them.
+   */
+
+  // +--------+----------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The elements, as longs or the bits of doubles
+   */
+  long[] values;
+
+  /**
+   * One bit per element, set if it is a double
+   */
+  long[] decimals;
+
+  /**
+   * Number of elements
+   */
+  int size = 0;
+
+  // +--------------+----------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Creates an empty list for a parser to fill
+   */
+  JSONNumberList()
+  {
+    this.values = new long[8];
+    this.decimals = new long[1];
+  } // JSONNumberList()
+
+  // +---------+---------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Returns element index, as an Integer, a Long, or a Double.
+   *
+   * @param index
+   *          an int
+   */
+  @Override
+  public Object get(int index)
+  {
+    check(index);
+    long value = values[index];
+    if (isDecimal(index))
+      return Double.valueOf(Double.longBitsToDouble(value));
+    if (value == (int) value)
+      return Integer.valueOf((int) value);
+    return Long.valueOf(value);
+  } // get(int)
+
+  /**
+   * Returns the number of elements.
+   */
+  @Override
+  public int size()
+  {
+    return size;
+  } // size()
+
+  /**
+   * Returns element index as a double.
+   *
+   * @param index
+   *          an int
+   */
+  public double getDouble(int index)
+  {
+    check(index);
+    if (isDecimal(index))
+      return Double.longBitsToDouble(values[index]);
+    return values[index];
+  } // getDouble(int)
+
+  /**
+   * Returns element index as a long, truncating any fraction.
+   *
+   * @param index
+   *          an int
+   */
+  public long getLong(int index)
+  {
+    check(index);
+    if (isDecimal(index))
+      return (long) Double.longBitsToDouble(values[index]);
+    return values[index];
+  } // getLong(int)
+
+  /**
+   * Determines whether element index is an integer rather than a decimal.
+   *
+   * @param index
+   *          an int
+   */
+  public boolean isIntegral(int index)
+  {
+    check(index);
+    return !isDecimal(index);
+  } // isIntegral(int)
+
+  /**
+   * Returns the elements as doubles.
+   */
+  public double[] toDoubleArray()
+  {
+    double[] result = new double[size];
+    for (int i = 0; i < size; i++)
+      {
+        result[i] = getDouble(i);
+      } // for
+    return result;
+  } // toDoubleArray()
+
+  /**
+   * Returns the elements as longs, truncating any fractions.
+   */
+  public long[] toLongArray()
+  {
+    long[] result = new long[size];
+    for (int i = 0; i < size; i++)
+      {
+        result[i] = getLong(i);
+      } // for
+    return result;
+  } // toLongArray()
+
+  /**
+   * Fails unless index is that of an element
+   *
+   * @param index
+   *          an int
+   */
+  void check(int index)
+  {
+    if (index < 0 || index >= size)
+      throw new IndexOutOfBoundsException("Index " + index + " of " + size);
+  } // check(int)
+
+  /**
+   * Determines whether element index is a double
+   *
+   * @param index
+   *          an int
+   */
+  boolean isDecimal(int index)
+  {
+    return (decimals[index >>> 6] & (1L << index)) != 0;
+  } // isDecimal(int)
+
+  /**
+   * Appends bits, marking it as a double if decimal is set
+   *
+   * @param bits
+   *          a long
+   * @param decimal
+   *          a boolean
+   */
+  void append(long bits, boolean decimal)
+  {
+    if (size == values.length)
+      {
+        values = Arrays.copyOf(values, size * 2);
+        decimals = Arrays.copyOf(decimals, (size * 2 + 63) >>> 6);
+      } // if
+    if (decimal)
+      decimals[size >>> 6] |= 1L << size;
+    values[size++] = bits;
+  } // append(long, boolean)
+
+  /**
+   * Appends the number just scanned by numbers, returning false if its
+   * value can only be computed from its text
+   *
+   * @param numbers
+   *          a JSONNumberScanner
+   */
+  boolean add(JSONNumberScanner numbers)
+  {
+    if (numbers.isIntegral())
+      {
+        if (numbers.digits > 18)
+          return false;
+        append(numbers.negative ? -numbers.mantissa : numbers.mantissa, false);
+        return true;
+      } // if
+    if (numbers.bigDecimals)
+      return false;
+    double value = numbers.fastDouble();
+    if (Double.isNaN(value))
+      return false;
+    append(Double.doubleToRawLongBits(value), true);
+    return true;
+  } // add(JSONNumberScanner)
+
+  /**
+   * Appends value, returning false if it is neither an Integer, a Long, nor
+   * a Double
+   *
+   * @param value
+   *          a Number
+   */
+  boolean addNumber(Number value)
+  {
+    if (value instanceof Integer || value instanceof Long)
+      append(value.longValue(), false);
+    else if (value instanceof Double)
+      append(Double.doubleToRawLongBits(value.doubleValue()), true);
+    else
+      return false;
+    return true;
+  } // addNumber(Number)
+
+  /**
+   * Returns the elements in a new ArrayList, for an array that turns out to
+   * hold other values
+   */
+  ArrayList<Object> toArrayList()
+  {
+    ArrayList<Object> arr = new ArrayList<>(Math.max(10, size * 2));
+    for (int i = 0; i < size; i++)
+      {
+        arr.add(get(i));
+      } // for
+    return arr;
+  } // toArrayList()
+
+  /**
+   * Releases the room left over after the last element
+   */
+  JSONNumberList trim()
+  {
+    if (size < values.length)
+      {
+        values = Arrays.copyOf(values, size);
+        decimals = Arrays.copyOf(decimals, (size + 63) >>> 6);
+      } // if
+    return this;
+  } // trim()
+} // class JSONNumberList
@@ -0,0 +1,173 @@
+package edu.grinnell.nguyengi.json;
+
+import static org.junit.Assert.*;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests for arrays of numbers parsed as JSONNumberLists
+ *
+ * @author Giang
+ *
+ */
+public class JSONNumberListTest
+{
+  /**
+   * Parses text with both engines, with primitive arrays on, checking that
+   * they agree
+   *
+   * @param text
+   *          a String
+   * @throws Exception
+   */
+  static Object parse(String text)
+    throws Exception
+  {
+    JSONParser parser = new JSONParser();
+    parser.setPrimitiveArrays(true);
+    Object value = parser.parse(text);
+    byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+    JSONByteParser bytes = new JSONByteParser(ByteBuffer.wrap(utf8));
+    bytes.setPrimitiveArrays(true);
+    assertEquals(value, bytes.parse());
+    return value;
+  } // parse(String)
+
+  /**
+   * Arrays of numbers hold the same values parse would box
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testValues()
+    throws Exception
+  {
+    String text =
+        "[0, -12, 2147483648, 12E-5, -0.5, 9223372036854775807, 1e400]";
+    Object value = parse(text);
+    assertTrue(value instanceof JSONNumberList);
+    assertEquals(JSONUtils.parse(text), value);
+    JSONNumberList nums = (JSONNumberList) value;
+    assertEquals(7, nums.size());
+    assertEquals(Integer.valueOf(-12), nums.get(1));
+    assertEquals(Long.valueOf(2147483648L), nums.get(2));
+    assertEquals(Double.valueOf(12E-5), nums.get(3));
+    assertEquals(Long.MAX_VALUE, nums.getLong(5));
+    assertEquals(-0.5, nums.getDouble(4), 0);
+    assertEquals(-12.0, nums.getDouble(1), 0);
+    assertEquals(0, nums.getLong(4));
+    assertTrue(nums.isIntegral(0));
+    assertFalse(nums.isIntegral(3));
+    assertTrue(Double.isInfinite(nums.getDouble(6)));
+  } // testValues()
+
+  /**
+   * Arrays holding anything else, or big numbers, stay ArrayLists
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testFallback()
+    throws Exception
+  {
+    assertEquals(ArrayList.class, parse("[]").getClass());
+    assertEquals(ArrayList.class, parse("[1, 2, \"three\"]").getClass());
+    assertEquals(ArrayList.class, parse("[1, null]").getClass());
+    assertEquals(ArrayList.class, parse("[1, [2]]").getClass());
+    Object big = parse("[1, 123456789012345678901234, 3]");
+    assertEquals(ArrayList.class, big.getClass());
+    assertEquals(Arrays.asList(1, new BigInteger("123456789012345678901234"),
+                               3), big);
+    List<?> nested = (List<?>) parse("[\"a\", [1.5, 2], {\"b\": [3]}]");
+    assertTrue(nested.get(1) instanceof JSONNumberList);
+    assertTrue(((Map<?, ?>) nested.get(2)).get("b")
+               instanceof JSONNumberList);
+    // the option is off by default
+    assertEquals(ArrayList.class, JSONUtils.parse("[1, 2]").getClass());
+  } // testFallback()
+
+  /**
+   * Large arrays grow past the initial capacity
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testLarge()
+    throws Exception
+  {
+    StringBuilder text = new StringBuilder("[");
+    for (int i = 0; i < 1000; i++)
+      {
+        if (i > 0)
+          text.append(", ");
+        text.append(i % 3 == 0 ? i + 0.25 : i);
+      } // for
+    text.append(']');
+    JSONNumberList nums = (JSONNumberList) parse(text.toString());
+    assertEquals(1000, nums.size());
+    assertEquals(JSONUtils.parse(text.toString()), nums);
+    double[] doubles = nums.toDoubleArray();
+    long[] longs = nums.toLongArray();
+    assertEquals(999.25, doubles[999], 0);
+    assertEquals(999, longs[999]);
+    assertEquals(998.0, doubles[998], 0);
+  } // testLarge()
+
+  /**
+   * Lists of numbers are written as arrays, and are read-only
+   *
+   * @throws Exception
+   */
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testWrite()
+    throws Exception
+  {
+    String text = "[1, -2.5, 3E2, 4294967296]";
+    Object value = parse(text);
+    assertEquals("[1,-2.5,300.0,4294967296]", JSONUtils.toJSONString(value));
+    assertEquals(JSONUtils.toJSONString(JSONUtils.parse(text)),
+                 JSONUtils.toJSONString(value));
+    try
+      {
+        ((List<Object>) value).add(5);
+        fail("JSONNumberList should be read-only");
+      } // try
+    catch (UnsupportedOperationException e)
+      {
+      } // catch
+  } // testWrite()
+
+  /**
+   * Errors are reported as without the option
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testErrors()
+    throws Exception
+  {
+    String[] bad = { "[1, 2", "[1, -]", "[1, 2.]", "[1 2]", "[1, ,]", "[01]" };
+    for (String text : bad)
+      {
+        JSONParser parser = new JSONParser();
+        parser.setPrimitiveArrays(true);
+        try
+          {
+            parser.parse(text);
+            fail("Should reject " + text);
+          } // try
+        catch (Exception e)
+          {
+          } // catch
+      } // for
+  } // testErrors()
+} // class JSONNumberListTest
@@ -0,0 +1,506 @@
+package edu.grinnell.nguyengi.json;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Recognizes JSON numbers one character at a time and computes their values
+ * without collecting their text. Integers come back as an Integer or a Long
+ * when they fit, other numbers as a Double, or as a BigDecimal when asked.
+ *
+ * @author Giang
+ *
+ */
+public class JSONNumberScanner
+{
+  // +-------+-----------------------------------------------------------
+  // | Notes |
+  // +-------+
+
+  /*
+   * A parser resets the scanner, feeds it characters through accept until it
+   * refuses one, and then calls value. The scanner follows the grammar
+   *
+   * -? (0 | [1-9][0-9]*) (. [0-9]+)? ([eE] [+-]? [0-9]+)?
+   *
+   * While accepting, it keeps the first 19 significant digits as an unsigned
+   * long mantissa and a power of ten. From those, a double is computed with
+   * Clinger's fast path when both fit in a double exactly, and otherwise with
+   * the Eisel-Lemire algorithm, which uses a 128-bit approximation of the power
+   * of ten and reports the rare cases it cannot round correctly. Only when
+   * there are more digits, or when Eisel-Lemire gives up, does value return
+   * null; the parser then passes the number's text to value(String), which
+   * falls back on the JDK.
+   *
+   * Citation:
+   *  Daniel Lemire, Number Parsing at a Gigabyte per Second, 2021
+   *  https://arxiv.org/abs/2101.11408
+   *  the eiselLemire64 function of Go's strconv package
+   */
+
+  // +-----------+-------------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * Nothing accepted yet
+   */
+  static final int START = 0;
+
+  /**
+   * After the minus sign
+   */
+  static final int SIGN = 1;
+
+  /**
+   * After a leading zero
+   */
+  static final int ZERO = 2;
+
+  /**
+   * In the integer digits
+   */
+  static final int INTEGER = 3;
+
+  /**
+   * After the decimal point
+   */
+  static final int POINT = 4;
+
+  /**
+   * In the fraction digits
+   */
+  static final int FRACTION = 5;
+
+  /**
+   * After the e or E
+   */
+  static final int E = 6;
+
+  /**
+   * After the sign of the exponent
+   */
+  static final int EXPONENT_SIGN = 7;
+
+  /**
+   * In the exponent digits
+   */
+  static final int EXPONENT = 8;
+
+  /**
+   * Number of significant digits kept in the mantissa
+   */
+  static final int MAX_DIGITS = 19;
+
+  /**
+   * Powers of ten that are exact as doubles
+   */
+  static final double[] SMALL_POWERS =
+      { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12,
+       1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+  /**
+   * Smallest power of ten in the Eisel-Lemire tables
+   */
+  static final int MIN_POWER = -348;
+
+  /**
+   * Largest power of ten in the Eisel-Lemire tables
+   */
+  static final int MAX_POWER = 347;
+
+  /**
+   * High 64 bits of the 128-bit mantissas of the powers of ten
+   */
+  static final long[] POWERS_HIGH = new long[MAX_POWER - MIN_POWER + 1];
+
+  /**
+   * Low 64 bits of the 128-bit mantissas of the powers of ten
+   */
+  static final long[] POWERS_LOW = new long[MAX_POWER - MIN_POWER + 1];
+
+  static
+  {
+    // The mantissa of 10^q is that of 5^q, normalized so that its top bit is
+    // bit 127 and rounded down.
+    BigInteger mask = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+    BigInteger five = BigInteger.valueOf(5);
+    BigInteger power = BigInteger.ONE;
+    for (int q = 0; q <= MAX_POWER; q++)
+      {
+        int shift = 128 - power.bitLength();
+        BigInteger mantissa =
+            shift >= 0 ? power.shiftLeft(shift) : power.shiftRight(-shift);
+        POWERS_HIGH[q - MIN_POWER] = mantissa.shiftRight(64).longValue();
+        POWERS_LOW[q - MIN_POWER] = mantissa.and(mask).longValue();
+        power = power.multiply(five);
+      } // for
+    power = five;
+    for (int q = -1; q >= MIN_POWER; q--)
+      {
+        BigInteger mantissa =
+            BigInteger.ONE.shiftLeft(power.bitLength() + 127).divide(power);
+        POWERS_HIGH[q - MIN_POWER] = mantissa.shiftRight(64).longValue();
+        POWERS_LOW[q - MIN_POWER] = mantissa.and(mask).longValue();
+        power = power.multiply(five);
+      } // for
+  } // static
+
+  // +--------+----------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * Where the scanner is in the grammar
+   */
+  int state;
+
+  /**
+   * Whether the number starts with a minus sign
+   */
+  boolean negative;
+
+  /**
+   * The first significant digits, as an unsigned long
+   */
+  long mantissa;
+
+  /**
+   * Number of significant digits in mantissa
+   */
+  int digits;
+
+  /**
+   * Whether significant digits were dropped from the mantissa
+   */
+  boolean truncated;
+
+  /**
+   * Power of ten by which mantissa is scaled, before the exponent
+   */
+  int scale;
+
+  /**
+   * Value of the exponent, capped well outside the range of doubles
+   */
+  int exponent;
+
+  /**
+   * Whether the exponent has a minus sign
+   */
+  boolean negativeExponent;
+
+  /**
+   * Whether numbers with a fraction or exponent become BigDecimals
+   */
+  boolean bigDecimals = false;
+
+  // +---------+---------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Prepares the scanner for a new number
+   */
+  public void reset()
+  {
+    state = START;
+    negative = false;
+    mantissa = 0;
+    digits = 0;
+    truncated = false;
+    scale = 0;
+    exponent = 0;
+    negativeExponent = false;
+  } // reset()
+
+  /**
+   * Feeds the scanner the next character. Returns false, leaving the scanner
+   * unchanged, if c cannot continue the number.
+   *
+   * @param c
+   *          an int
+   */
+  @SuppressWarnings("fallthrough")
+  public boolean accept(int c)
+  {
+    boolean digit = c >= '0' && c <= '9';
+    switch (state)
+      {
+        case START:
+          if (c == '-')
+            {
+              negative = true;
+              state = SIGN;
+              return true;
+            } // if
+          // a number may also start without a sign
+        case SIGN:
+          if (c == '0')
+            state = ZERO;
+          else if (digit)
+            {
+              addDigit(c - '0');
+              state = INTEGER;
+            } // else if
+          else
+            return false;
+          return true;
+        case INTEGER:
+          if (digit)
+            {
+              addDigit(c - '0');
+              return true;
+            } // if
+          // the rest of the integer part is the same as after a zero
+        case ZERO:
+          if (c == '.')
+            state = POINT;
+          else if (c == 'e' || c == 'E')
+            state = E;
+          else
+            return false;
+          return true;
+        case POINT:
+        case FRACTION:
+          if (digit)
+            {
+              addFractionDigit(c - '0');
+              state = FRACTION;
+              return true;
+            } // if
+          if (state == FRACTION && (c == 'e' || c == 'E'))
+            {
+              state = E;
+              return true;
+            } // if
+          return false;
+        case E:
+          if (c == '+' || c == '-')
+            {
+              negativeExponent = c == '-';
+              state = EXPONENT_SIGN;
+              return true;
+            } // if
+          // the exponent may also start without a sign
+        default:
+          if (!digit)
+            return false;
+          // cap the exponent; anything this large is infinite or zero anyway
+          exponent = Math.min(exponent * 10 + (c - '0'), 100000);
+          state = EXPONENT;
+          return true;
+      } // switch
+  } // accept(int)
+
+  /**
+   * Adds a digit of the integer part
+   *
+   * @param d
+   *          an int
+   */
+  void addDigit(int d)
+  {
+    if (digits < MAX_DIGITS)
+      {
+        mantissa = mantissa * 10 + d;
+        digits++;
+      } // if
+    else
+      {
+        truncated = true;
+        scale++;
+      } // else
+  } // addDigit(int)
+
+  /**
+   * Adds a digit of the fraction
+   *
+   * @param d
+   *          an int
+   */
+  void addFractionDigit(int d)
+  {
+    if (digits < MAX_DIGITS)
+      {
+        mantissa = mantissa * 10 + d;
+        scale--;
+        // zeros before the first significant digit do not count
+        if (mantissa != 0)
+          digits++;
+      } // if
+    else
+      {
+        truncated = true;
+      } // else
+  } // addFractionDigit(int)
+
+  /**
+   * Returns whether the characters accepted so far form a complete number
+   */
+  public boolean isComplete()
+  {
+    return state == ZERO || state == INTEGER || state == FRACTION
+           || state == EXPONENT;
+  } // isComplete()
+
+  /**
+   * Returns whether the number has neither a fraction nor an exponent
+   */
+  public boolean isIntegral()
+  {
+    return state == ZERO || state == INTEGER;
+  } // isIntegral()
+
+  /**
+   * Returns the value of the number, or null if it can only be computed from
+   * the number's text.
+   *
+   * @throws Exception
+   *           if the number is incomplete
+   */
+  public Number value()
+    throws Exception
+  {
+    if (!isComplete())
+      throw new Exception("Illegal number.");
+    if (isIntegral())
+      {
+        // up to 18 digits always fit in a long
+        if (digits > 18)
+          return null;
+        long value = negative ? -mantissa : mantissa;
+        if (value == (int) value)
+          return Integer.valueOf((int) value);
+        return Long.valueOf(value);
+      } // if
+    if (bigDecimals)
+      return null;
+    double value = fastDouble();
+    return Double.isNaN(value) ? null : Double.valueOf(value);
+  } // value()
+
+  /**
+   * Returns the value of the number from its text, for the cases in which
+   * value() returns null.
+   *
+   * @param text
+   *          a String
+   */
+  public Number value(String text)
+  {
+    if (isIntegral())
+      {
+        BigInteger big = new BigInteger(text);
+        if (big.bitLength() < 64)
+          return Long.valueOf(big.longValue());
+        return big;
+      } // if
+    if (bigDecimals)
+      return new BigDecimal(text);
+    return Double.valueOf(Double.parseDouble(text));
+  } // value(String)
+
+  /**
+   * Returns the number as a double, or NaN if it can only be computed from
+   * the number's text.
+   */
+  public double fastDouble()
+  {
+    if (mantissa == 0)
+      return negative ? -0.0 : 0.0;
+    if (truncated)
+      return Double.NaN;
+    long power = negativeExponent ? scale - exponent : scale + exponent;
+    // Clinger's fast path: both the mantissa and the power are exact
+    if (mantissa >= 0 && mantissa < (1L << 53) && power >= -22 && power <= 22)
+      {
+        double value = mantissa;
+        value = power < 0 ? value / SMALL_POWERS[(int) -power]
+                         : value * SMALL_POWERS[(int) power];
+        return negative ? -value : value;
+      } // if
+    if (power < MIN_POWER || power > MAX_POWER)
+      return Double.NaN;
+    return eiselLemire(mantissa, (int) power, negative);
+  } // fastDouble()
+
+  /**
+   * Computes the double closest to man * 10^power, or NaN if that cannot be
+   * decided from the 128-bit approximation of 10^power. man must not be zero.
+   *
+   * @param man
+   *          a long, read as unsigned
+   * @param power
+   *          an int
+   * @param negative
+   *          a boolean
+   */
+  static double eiselLemire(long man, int power, boolean negative)
+  {
+    // Normalization
+    int clz = Long.numberOfLeadingZeros(man);
+    man <<= clz;
+    long exp2 = ((217706L * power) >> 16) + 64 + 1023 - clz;
+
+    // Multiplication
+    int index = power - MIN_POWER;
+    long xHigh = multiplyHighUnsigned(man, POWERS_HIGH[index]);
+    long xLow = man * POWERS_HIGH[index];
+
+    // Wider approximation
+    if ((xHigh & 0x1FF) == 0x1FF && Long.compareUnsigned(xLow + man, man) < 0)
+      {
+        long yHigh = multiplyHighUnsigned(man, POWERS_LOW[index]);
+        long yLow = man * POWERS_LOW[index];
+        long mergedHigh = xHigh;
+        long mergedLow = xLow + yHigh;
+        if (Long.compareUnsigned(mergedLow, xLow) < 0)
+          mergedHigh++;
+        if ((mergedHigh & 0x1FF) == 0x1FF && mergedLow + 1 == 0
+            && Long.compareUnsigned(yLow + man, man) < 0)
+          return Double.NaN;
+        xHigh = mergedHigh;
+        xLow = mergedLow;
+      } // if
+
+    // Shifting to 54 bits
+    long msb = xHigh >>> 63;
+    long result = xHigh >>> (msb + 9);
+    exp2 -= 1 ^ msb;
+
+    // Half-way ambiguity
+    if (xLow == 0 && (xHigh & 0x1FF) == 0 && (result & 3) == 1)
+      return Double.NaN;
+
+    // From 54 to 53 bits
+    result += result & 1;
+    result >>>= 1;
+    if ((result >>> 53) > 0)
+      {
+        result >>>= 1;
+        exp2++;
+      } // if
+
+    // Subnormal, infinite, and NaN results are left to the slow path
+    if (Long.compareUnsigned(exp2 - 1, 0x7FF - 1) >= 0)
+      return Double.NaN;
+    long bits = (exp2 << 52) | (result & 0x000FFFFFFFFFFFFFL);
+    if (negative)
+      bits |= 0x8000000000000000L;
+    return Double.longBitsToDouble(bits);
+  } // eiselLemire(long, int, boolean)
+
+  /**
+   * Returns the high 64 bits of the unsigned product of a and b
+   *
+   * @param a
+   *          a long
+   * @param b
+   *          a long
+   */
+  static long multiplyHighUnsigned(long a, long b)
+  {
+    return Math.multiplyHigh(a, b) + ((a >> 63) & b) + ((b >> 63) & a);
+  } // multiplyHighUnsigned(long, long)
+} // class JSONNumberScanner
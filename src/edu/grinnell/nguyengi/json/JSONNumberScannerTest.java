@@ -0,0 +1,146 @@
+package edu.grinnell.nguyengi.json;
+
+import static org.junit.Assert.*;
+
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for number parsing
+ *
+ * @author Giang
+ *
+ */
+public class JSONNumberScannerTest
+{
+  /**
+   * Integers come back as the smallest of Integer, Long, and BigInteger that
+   * holds them exactly, from every parser
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testIntegers()
+    throws Exception
+  {
+    checkAll("0", 0);
+    checkAll("-12", -12);
+    checkAll("2147483648", 2147483648L);
+    // above 2^53, where a double would lose the last digits
+    checkAll("9007199254740993", 9007199254740993L);
+    checkAll("-9223372036854775808", Long.MIN_VALUE);
+    checkAll("123456789012345678901234",
+             new BigInteger("123456789012345678901234"));
+  } // testIntegers()
+
+  /**
+   * Numbers with a fraction or exponent come back as Doubles, or as
+   * BigDecimals when asked
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testDecimals()
+    throws Exception
+  {
+    checkAll("12E-5", 12E-5);
+    checkAll("-56.712E11", -56.712E11);
+    checkAll("0.1", 0.1);
+    checkAll("1e400", Double.POSITIVE_INFINITY);
+    checkAll("2.2250738585072011e-308", 2.2250738585072011e-308);
+    JSONParser parser = new JSONParser();
+    parser.setBigDecimals(true);
+    assertEquals(new BigDecimal("0.10000000000000000001"),
+                 parser.parse("0.10000000000000000001"));
+    assertEquals(42, parser.parse("42"));
+  } // testDecimals()
+
+  /**
+   * Parses str with the String, byte, and pull parsers and checks each result
+   * against expected
+   *
+   * @param str
+   *          a String
+   * @param expected
+   *          an Object
+   * @throws Exception
+   */
+  void checkAll(String str, Object expected)
+    throws Exception
+  {
+    String array = "[" + str + " ]";
+    assertEquals(str, expected, JSONUtils.parse(str));
+    assertEquals(array, expected, ((List<?>) JSONUtils.parse(array)).get(0));
+    assertEquals(str, expected,
+                 JSONUtils.parse(str.getBytes(StandardCharsets.UTF_8)));
+    JSONReader reader = new JSONReader(new StringReader(array));
+    reader.nextToken();
+    reader.nextToken();
+    assertEquals(str, expected, reader.getNumber());
+  } // checkAll(String, Object)
+
+  /**
+   * Numbers outside the JSON grammar are rejected
+   */
+  @Test
+  public void testStrictGrammar()
+  {
+    String[] illegal =
+        { "01", "1.", ".5", "+1", "-", "1e", "1e+", "--1", "1.e5", "[1x]",
+         "[12a]", "{\"a\":1.2.3}", "0x10" };
+    for (String str : illegal)
+      {
+        try
+          {
+            JSONUtils.parse(str);
+            fail(str);
+          } // try
+        catch (Exception e)
+          {
+            // expected
+          } // catch
+        try
+          {
+            JSONUtils.parse(str.getBytes(StandardCharsets.UTF_8));
+            fail(str);
+          } // try
+        catch (Exception e)
+          {
+            // expected
+          } // catch
+      } // for
+  } // testStrictGrammar()
+
+  /**
+   * The fast double conversion agrees with Double.parseDouble
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testRandomDoubles()
+    throws Exception
+  {
+    Random r = new Random(207);
+    JSONNumberScanner numbers = new JSONNumberScanner();
+    for (int i = 0; i < 100000; i++)
+      {
+        double d = Double.longBitsToDouble(r.nextLong() & 0x7FEFFFFFFFFFFFFFL);
+        String str = Double.toString(d).replace('E', 'e');
+        numbers.reset();
+        for (int j = 0; j < str.length(); j++)
+          {
+            assertTrue(str, numbers.accept(str.charAt(j)));
+          } // for
+        Number value = numbers.value();
+        if (value == null)
+          value = numbers.value(str);
+        assertEquals(str, Double.valueOf(d), value);
+      } // for
+  } // testRandomDoubles()
+} // class JSONNumberScannerTest
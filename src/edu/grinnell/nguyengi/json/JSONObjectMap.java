@@ -0,0 +1,454 @@
+package edu.grinnell.nguyengi.json;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The Map that parse returns for JSON objects. Members are kept in the order
+ * they appear in the text, in two flat arrays, so a small object costs little
+ * more than its keys and values, and writing it back gives the same order
+ * every time.
+ *
+ * @author Giang
+ *
+ */
+public class JSONObjectMap
+    extends AbstractMap<String, Object>
+{
+  // +-------+-----------------------------------------------------------
+  // | Notes |
+  // +-------+
+
+  /*
+   * Up to LINEAR_LIMIT members are found by comparing keys one by one, which
+   * beats hashing for the small objects most documents are made of. Larger
+   * maps also keep an open-addressing table of positions, probed linearly.
+   *
+   * Putting a key that is already present replaces its value but keeps its
+   * place, as in a LinkedHashMap, so a duplicate key in the text leaves the
+   * last value at the position of the first. Removing a member shifts the
+   * later ones down.
+   */
+
+  // +-----------+-------------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * Largest map searched without the hash table
+   */
+  static final int LINEAR_LIMIT = 8;
+
+  /**
+   * Room for members in a map created without a capacity
+   */
+  static final int DEFAULT_CAPACITY = 4;
+
+  // +--------+----------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The keys, in order
+   */
+  String[] keys;
+
+  /**
+   * The values, in the same order
+   */
+  Object[] values;
+
+  /**
+   * Number of members
+   */
+  int size = 0;
+
+  /**
+   * Positions plus one, by hash of key, or null while the map is small
+   */
+  int[] table = null;
+
+  /**
+   * Number of changes to the members, for failing iterators
+   */
+  int modCount = 0;
+
+  // +--------------+----------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Creates an empty map
+   */
+  public JSONObjectMap()
+  {
+    this(DEFAULT_CAPACITY);
+  } // JSONObjectMap()
+
+  /**
+   * Creates an empty map with room for capacity members
+   *
+   * @param capacity
+   *          an int
+   */
+  public JSONObjectMap(int capacity)
+  {
+    this.keys = new String[Math.max(1, capacity)];
+    this.values = new Object[keys.length];
+  } // JSONObjectMap(int)
+
+  /**
+   * Creates a map holding the members of map, in its iteration order
+   *
+   * @param map
+   *          a Map
+   */
+  public JSONObjectMap(Map<String, ?> map)
+  {
+    this(map.size());
+    putAll(map);
+  } // JSONObjectMap(Map<String, ?>)
+
+  // +---------+---------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  @Override
+  public int size()
+  {
+    return size;
+  } // size()
+
+  @Override
+  public boolean containsKey(Object key)
+  {
+    return find(key) >= 0;
+  } // containsKey(Object)
+
+  @Override
+  public Object get(Object key)
+  {
+    int i = find(key);
+    return i < 0 ? null : values[i];
+  } // get(Object)
+
+  @Override
+  public Object put(String key, Object value)
+  {
+    int i = find(key);
+    if (i >= 0)
+      {
+        Object old = values[i];
+        values[i] = value;
+        return old;
+      } // if
+    append(key, value);
+    return null;
+  } // put(String, Object)
+
+  @Override
+  public Object remove(Object key)
+  {
+    int i = find(key);
+    if (i < 0)
+      return null;
+    Object old = values[i];
+    removeAt(i);
+    return old;
+  } // remove(Object)
+
+  @Override
+  public void clear()
+  {
+    Arrays.fill(keys, 0, size, null);
+    Arrays.fill(values, 0, size, null);
+    size = 0;
+    table = null;
+    modCount++;
+  } // clear()
+
+  @Override
+  public Set<Map.Entry<String, Object>> entrySet()
+  {
+    return new Entries();
+  } // entrySet()
+
+  /**
+   * Returns the position of key, or -1 if it is not in the map
+   *
+   * @param key
+   *          an Object
+   */
+  int find(Object key)
+  {
+    if (table == null)
+      {
+        for (int i = 0; i < size; i++)
+          {
+            if (Objects.equals(keys[i], key))
+              return i;
+          } // for
+        return -1;
+      } // if
+    int mask = table.length - 1;
+    for (int slot = hash(key) & mask; table[slot] != 0;
+         slot = (slot + 1) & mask)
+      {
+        int i = table[slot] - 1;
+        if (Objects.equals(keys[i], key))
+          return i;
+      } // for
+    return -1;
+  } // find(Object)
+
+  /**
+   * Adds a member known not to be in the map. Parsers call this directly for
+   * keys they have not seen in the object.
+   *
+   * @param key
+   *          a String
+   * @param value
+   *          an Object
+   */
+  void append(String key, Object value)
+  {
+    if (size == keys.length)
+      {
+        keys = Arrays.copyOf(keys, size * 2);
+        values = Arrays.copyOf(values, size * 2);
+      } // if
+    keys[size] = key;
+    values[size] = value;
+    size++;
+    modCount++;
+    if (table != null && size * 2 <= table.length)
+      index(size - 1);
+    else if (size > LINEAR_LIMIT)
+      rehash();
+  } // append(String, Object)
+
+  /**
+   * Removes the member at position i
+   *
+   * @param i
+   *          an int
+   */
+  void removeAt(int i)
+  {
+    System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+    System.arraycopy(values, i + 1, values, i, size - i - 1);
+    size--;
+    keys[size] = null;
+    values[size] = null;
+    modCount++;
+    if (table != null)
+      rehash();
+  } // removeAt(int)
+
+  /**
+   * Releases the room left over after the last member
+   */
+  JSONObjectMap trim()
+  {
+    if (size < keys.length)
+      {
+        keys = Arrays.copyOf(keys, Math.max(1, size));
+        values = Arrays.copyOf(values, keys.length);
+      } // if
+    return this;
+  } // trim()
+
+  /**
+   * Rebuilds the hash table for the current members, or drops it if the map
+   * is small enough to search without it
+   */
+  void rehash()
+  {
+    if (size <= LINEAR_LIMIT)
+      {
+        table = null;
+        return;
+      } // if
+    table = new int[Integer.highestOneBit(size * 4 - 1)];
+    for (int i = 0; i < size; i++)
+      {
+        index(i);
+      } // for
+  } // rehash()
+
+  /**
+   * Enters the member at position i in the hash table
+   *
+   * @param i
+   *          an int
+   */
+  void index(int i)
+  {
+    int mask = table.length - 1;
+    int slot = hash(keys[i]) & mask;
+    while (table[slot] != 0)
+      {
+        slot = (slot + 1) & mask;
+      } // while
+    table[slot] = i + 1;
+  } // index(int)
+
+  /**
+   * Spreads the bits of the hash code of key
+   *
+   * @param key
+   *          an Object
+   */
+  static int hash(Object key)
+  {
+    int h = Objects.hashCode(key);
+    return h ^ (h >>> 16);
+  } // hash(Object)
+
+  // +---------------+---------------------------------------------------
+  // | Inner Classes |
+  // +---------------+
+
+  /**
+   * The members, in order
+   */
+  class Entries
+      extends AbstractSet<Map.Entry<String, Object>>
+  {
+    @Override
+    public int size()
+    {
+      return size;
+    } // size()
+
+    @Override
+    public void clear()
+    {
+      JSONObjectMap.this.clear();
+    } // clear()
+
+    @Override
+    public Iterator<Map.Entry<String, Object>> iterator()
+    {
+      return new Iterator<Map.Entry<String, Object>>()
+      {
+        /**
+         * Position of the next member
+         */
+        int next = 0;
+
+        /**
+         * Position of the last member returned, or -1
+         */
+        int last = -1;
+
+        /**
+         * The modCount this iterator expects
+         */
+        int expected = modCount;
+
+        @Override
+        public boolean hasNext()
+        {
+          return next < size;
+        } // hasNext()
+
+        @Override
+        public Map.Entry<String, Object> next()
+        {
+          if (modCount != expected)
+            throw new ConcurrentModificationException();
+          if (next >= size)
+            throw new NoSuchElementException();
+          last = next++;
+          return new Member(last);
+        } // next()
+
+        @Override
+        public void remove()
+        {
+          if (last < 0)
+            throw new IllegalStateException();
+          if (modCount != expected)
+            throw new ConcurrentModificationException();
+          removeAt(last);
+          next = last;
+          last = -1;
+          expected = modCount;
+        } // remove()
+      };
+    } // iterator()
+  } // class Entries
+
+  /**
+   * The member at one position, which writes through to the map
+   */
+  class Member
+      implements Map.Entry<String, Object>
+  {
+    /**
+     * Position of the member
+     */
+    final int i;
+
+    /**
+     * Creates the entry for the member at position i
+     *
+     * @param i
+     *          an int
+     */
+    Member(int i)
+    {
+      this.i = i;
+    } // Member(int)
+
+    @Override
+    public String getKey()
+    {
+      return keys[i];
+    } // getKey()
+
+    @Override
+    public Object getValue()
+    {
+      return values[i];
+    } // getValue()
+
+    @Override
+    public Object setValue(Object value)
+    {
+      Object old = values[i];
+      values[i] = value;
+      return old;
+    } // setValue(Object)
+
+    @Override
+    public boolean equals(Object other)
+    {
+      if (!(other instanceof Map.Entry))
+        return false;
+      Map.Entry<?, ?> entry = (Map.Entry<?, ?>) other;
+      return Objects.equals(getKey(), entry.getKey())
+             && Objects.equals(getValue(), entry.getValue());
+    } // equals(Object)
+
+    @Override
+    public int hashCode()
+    {
+      return Objects.hashCode(getKey()) ^ Objects.hashCode(getValue());
+    } // hashCode()
+
+    @Override
+    public String toString()
+    {
+      return getKey() + "=" + getValue();
+    } // toString()
+  } // class Member
+} // class JSONObjectMap
@@ -0,0 +1,135 @@
+package edu.grinnell.nguyengi.json;
+
+import static org.junit.Assert.*;
+
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for the maps parse returns for objects
+ *
+ * @author Giang
+ *
+ */
+public class JSONObjectMapTest
+{
+  /**
+   * Every parser keeps members in the order they were written
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testOrder()
+    throws Exception
+  {
+    String text = "{\"zebra\":1,\"apple\":2,\"mango\":{\"y\":[],\"x\":null},"
+                  + "\"banana\":\"b\"}";
+    byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+    Object[] results =
+        { JSONUtils.parse(text), JSONUtils.parse(bytes),
+         JSONIndexedParser.parse(bytes), JSONTape.parse(bytes).toObject(),
+         new JSONReader(new StringReader(text)).readValue() };
+    for (Object result : results)
+      {
+        assertTrue(result instanceof JSONObjectMap);
+        assertEquals(text, JSONUtils.toJSONString(result));
+      } // for
+    assertEquals(text,
+                 JSONUtils.toJSONString(JSONLazyParser.parse(bytes)));
+  } // testOrder()
+
+  /**
+   * A duplicate key keeps the place of its first appearance and the value of
+   * its last
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testDuplicates()
+    throws Exception
+  {
+    String text = "{\"a\":1,\"b\":2,\"a\":3}";
+    assertEquals("{\"a\":3,\"b\":2}",
+                 JSONUtils.toJSONString(JSONUtils.parse(text)));
+    assertEquals("{\"a\":3,\"b\":2}",
+                 JSONUtils.toJSONString(JSONUtils.parse(text.getBytes(
+                     StandardCharsets.UTF_8))));
+  } // testDuplicates()
+
+  /**
+   * Maps behave like HashMaps through random puts and removes, small and
+   * large
+   */
+  @Test
+  public void testAgainstHashMap()
+  {
+    Random random = new Random(207);
+    for (int round = 0; round < 20; round++)
+      {
+        JSONObjectMap map = new JSONObjectMap();
+        Map<String, Object> expected = new HashMap<>();
+        int range = round < 10 ? 12 : 200;
+        for (int i = 0; i < 2000; i++)
+          {
+            String key = "k" + random.nextInt(range);
+            int op = random.nextInt(10);
+            if (op < 6)
+              assertEquals(expected.put(key, i), map.put(key, i));
+            else if (op < 9)
+              assertEquals(expected.remove(key), map.remove(key));
+            else
+              assertEquals(expected.get(key), map.get(key));
+            assertEquals(expected.size(), map.size());
+          } // for
+        assertEquals(expected, map);
+        assertEquals(map, expected);
+        assertEquals(expected.hashCode(), map.hashCode());
+        for (String key : expected.keySet())
+          {
+            assertTrue(map.containsKey(key));
+          } // for
+        assertFalse(map.containsKey("missing"));
+      } // for
+  } // testAgainstHashMap()
+
+  /**
+   * Iterators remove members and write values through, and removal keeps the
+   * order of the rest
+   */
+  @Test
+  public void testIterator()
+  {
+    JSONObjectMap map = new JSONObjectMap();
+    List<String> order = new ArrayList<>();
+    for (int i = 0; i < 30; i++)
+      {
+        map.put("key" + i, i);
+        order.add("key" + i);
+      } // for
+    Iterator<Map.Entry<String, Object>> it = map.entrySet().iterator();
+    while (it.hasNext())
+      {
+        Map.Entry<String, Object> entry = it.next();
+        if ((Integer) entry.getValue() % 3 == 0)
+          it.remove();
+        else
+          entry.setValue(-(Integer) entry.getValue());
+      } // while
+    order.removeIf((key) -> Integer.parseInt(key.substring(3)) % 3 == 0);
+    assertEquals(order, new ArrayList<>(map.keySet()));
+    assertEquals(-29, map.get("key29"));
+    assertNull(map.get("key3"));
+    map.clear();
+    assertTrue(map.isEmpty());
+    map.put("again", true);
+    assertEquals("{\"again\":true}", JSONUtils.toJSONString(map));
+  } // testIterator()
+} // class JSONObjectMapTest
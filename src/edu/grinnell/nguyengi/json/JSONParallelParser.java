@@ -0,0 +1,551 @@
+package edu.grinnell.nguyengi.json;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Parses a document whose top-level value is one large array by parsing its
+ * elements on several threads at once. The result is the same ArrayList that
+ * JSONUtils.parse would return.
+ *
+ * @author Giang
+ *
+ */
+public class JSONParallelParser
+{
+  // +-------+-----------------------------------------------------------
+  // | Notes |
+  // +-------+
+
+  /*
+   * Parsing happens in two passes. The first is a quick sequential scan over
+   * the bytes that only tracks nesting depth and whether it is inside a
+   * string (minding escapes). It cuts the array into chunks at top-level
+   * commas, each roughly chunkSize bytes long. The second pass hands every
+   * chunk to the pool, where a JSONByteParser parses its comma-separated
+   * elements. The chunks' element lists are then joined in order.
+   *
+   * Each chunk is read through its own slice or mapping of the input, so a
+   * file larger than 2 GB can be parsed as long as no single element is that
+   * large. Documents that are not arrays are parsed sequentially.
+   */
+
+  // +-----------+-------------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * Size of the mappings used while scanning a file
+   */
+  static final int SCAN_WINDOW = 1 << 26;
+
+  /**
+   * Smallest chunk size chosen automatically
+   */
+  static final long MIN_CHUNK = 1 << 16;
+
+  /**
+   * Largest chunk size chosen automatically
+   */
+  static final long MAX_CHUNK = 1 << 26;
+
+  // +--------+----------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * Where the chunks are parsed
+   */
+  ForkJoinPool pool;
+
+  /**
+   * Target size of a chunk in bytes, or 0 to choose one from the input size
+   */
+  long chunkSize = 0;
+
+  /**
+   * Where object keys are looked up, if anywhere
+   */
+  JSONKeyCache keys = null;
+
+  /**
+   * Whether decimals are parsed as BigDecimals
+   */
+  boolean bigDecimals = false;
+
+  /**
+   * Whether arrays of numbers are parsed as JSONNumberLists
+   */
+  boolean primitiveArrays = false;
+
+  /**
+   * Where parse events are reported, if anywhere
+   */
+  JSONListener listener = null;
+
+  /**
+   * The input, if it is in memory
+   */
+  ByteBuffer whole;
+
+  /**
+   * The input, if it is a file
+   */
+  FileChannel channel;
+
+  // +--------------+----------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Creates a parser that uses the common ForkJoin pool
+   */
+  public JSONParallelParser()
+  {
+    this(ForkJoinPool.commonPool());
+  } // JSONParallelParser()
+
+  /**
+   * Creates a parser that parses chunks in pool
+   *
+   * @param pool
+   *          a ForkJoinPool
+   */
+  public JSONParallelParser(ForkJoinPool pool)
+  {
+    this.pool = pool;
+  } // JSONParallelParser(ForkJoinPool)
+
+  // +---------+---------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Sets the target size of a chunk in bytes, or 0 to have one chosen from
+   * the size of the input and the parallelism of the pool.
+   *
+   * @param chunkSize
+   *          a long
+   */
+  public void setChunkSize(long chunkSize)
+  {
+    this.chunkSize = chunkSize;
+  } // setChunkSize(long)
+
+  /**
+   * Sets the cache that object keys are looked up in, or null to create a
+   * new String for every key. The cache is shared by all threads.
+   *
+   * @param keys
+   *          a JSONKeyCache
+   */
+  public void setKeyCache(JSONKeyCache keys)
+  {
+    this.keys = keys;
+  } // setKeyCache(JSONKeyCache)
+
+  /**
+   * Sets whether numbers with a fraction or an exponent are parsed as
+   * BigDecimals rather than Doubles.
+   *
+   * @param bigDecimals
+   *          a boolean
+   */
+  public void setBigDecimals(boolean bigDecimals)
+  {
+    this.bigDecimals = bigDecimals;
+  } // setBigDecimals(boolean)
+
+  /**
+   * Sets whether non-empty arrays holding only numbers are parsed as
+   * JSONNumberLists rather than ArrayLists. A top-level array split into
+   * chunks is still an ArrayList.
+   *
+   * @param primitiveArrays
+   *          a boolean
+   */
+  public void setPrimitiveArrays(boolean primitiveArrays)
+  {
+    this.primitiveArrays = primitiveArrays;
+  } // setPrimitiveArrays(boolean)
+
+  /**
+   * Sets the listener that parse events are reported to, or null to report
+   * nothing. The listener is called from every thread that parses.
+   *
+   * @param listener
+   *          a JSONListener
+   */
+  public void setListener(JSONListener listener)
+  {
+    this.listener = listener;
+  } // setListener(JSONListener)
+
+  /**
+   * Parses UTF-8 encoded JSON text.
+   *
+   * @param bytes
+   *          a byte[]
+   * @throws Exception
+   */
+  public Object parse(byte[] bytes)
+    throws Exception
+  {
+    return parse(ByteBuffer.wrap(bytes));
+  } // parse(byte[])
+
+  /**
+   * Parses the UTF-8 encoded JSON text between the position and the limit of
+   * buf. The position of buf is left unchanged.
+   *
+   * @param buf
+   *          a ByteBuffer
+   * @throws Exception
+   */
+  public Object parse(ByteBuffer buf)
+    throws Exception
+  {
+    JSONParallelParser job = copy();
+    job.whole = buf.slice();
+    return job.parseInput(buf.remaining());
+  } // parse(ByteBuffer)
+
+  /**
+   * Parses the UTF-8 encoded JSON file at path.
+   *
+   * @param path
+   *          a Path
+   * @throws Exception
+   */
+  public Object parse(Path path)
+    throws Exception
+  {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+      {
+        JSONParallelParser job = copy();
+        job.channel = channel;
+        return job.parseInput(channel.size());
+      } // try
+  } // parse(Path)
+
+  /**
+   * Returns a parser with the same options, to hold the state of one input
+   */
+  JSONParallelParser copy()
+  {
+    JSONParallelParser job = new JSONParallelParser(pool);
+    job.chunkSize = chunkSize;
+    job.keys = keys;
+    job.bigDecimals = bigDecimals;
+    job.primitiveArrays = primitiveArrays;
+    job.listener = listener;
+    return job;
+  } // copy()
+
+  /**
+   * Creates a parser with this parser's options
+   */
+  JSONByteParser newParser()
+  {
+    JSONByteParser parser = new JSONByteParser(ByteBuffer.allocate(0));
+    parser.setKeyCache(keys);
+    parser.setBigDecimals(bigDecimals);
+    parser.setPrimitiveArrays(primitiveArrays);
+    parser.setListener(listener);
+    return parser;
+  } // newParser()
+
+  /**
+   * Returns length bytes of the input, starting at offset
+   *
+   * @param offset
+   *          a long
+   * @param length
+   *          a long
+   * @throws IOException
+   */
+  ByteBuffer region(long offset, long length)
+    throws IOException
+  {
+    if (length > Integer.MAX_VALUE)
+      throw new IOException("Array element at offset " + offset
+                            + " is larger than 2 GB.");
+    if (channel != null)
+      return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+    ByteBuffer view = whole.duplicate();
+    view.position((int) offset).limit((int) (offset + length));
+    return view.slice();
+  } // region(long, long)
+
+  /**
+   * Parses the size bytes of input
+   *
+   * @param size
+   *          a long
+   * @throws Exception
+   */
+  Object parseInput(long size)
+    throws Exception
+  {
+    long start = firstValue(size);
+    if (start == size || byteAt(start) != '[')
+      {
+        // not an array; nothing to gain from parallel parsing
+        JSONByteParser parser;
+        if (channel != null)
+          parser = new JSONFileParser(channel, JSONFileParser.WINDOW_SIZE);
+        else
+          parser = new JSONByteParser(whole);
+        parser.setKeyCache(keys);
+        parser.setBigDecimals(bigDecimals);
+        parser.setPrimitiveArrays(primitiveArrays);
+        parser.setListener(listener);
+        return parser.parse();
+      } // if
+    long began = System.nanoTime();
+    long target = chunkSize;
+    if (target <= 0)
+      {
+        target = size / (4L * pool.getParallelism());
+        target = Math.max(MIN_CHUNK, Math.min(MAX_CHUNK, target));
+      } // if
+    List<Long> bounds = scan(start, size, target);
+    List<ForkJoinTask<List<Object>>> tasks = new ArrayList<>();
+    for (int i = 0; i + 1 < bounds.size(); i++)
+      {
+        long from = bounds.get(i) + 1;
+        long to = bounds.get(i + 1);
+        boolean first = i == 0;
+        boolean last = i + 2 == bounds.size();
+        tasks.add(pool.submit(() -> parseChunk(from, to, first, last)));
+      } // for
+    ArrayList<Object> arr = new ArrayList<>();
+    List<List<Object>> chunks = new ArrayList<>();
+    int total = 0;
+    try
+      {
+        for (ForkJoinTask<List<Object>> task : tasks)
+          {
+            List<Object> chunk = task.get();
+            chunks.add(chunk);
+            total += chunk.size();
+          } // for
+      } // try
+    catch (ExecutionException e)
+      {
+        for (ForkJoinTask<List<Object>> task : tasks)
+          {
+            task.cancel(false);
+          } // for
+        throw unwrap(e);
+      } // catch
+    arr.ensureCapacity(total);
+    for (List<Object> chunk : chunks)
+      {
+        arr.addAll(chunk);
+      } // for
+    if (listener != null)
+      {
+        listener.arrayParsed(arr.size(), 1);
+        listener.documentParsed(size - start, System.nanoTime() - began);
+      } // if
+    return arr;
+  } // parseInput(long)
+
+  /**
+   * Returns the exception a chunk failed with. The pool wraps the checked
+   * exceptions of a Callable in RuntimeExceptions, and may wrap those again
+   * when rethrowing them on another thread, so the innermost checked one is
+   * the parser's.
+   *
+   * @param e
+   *          an ExecutionException
+   */
+  static Exception unwrap(ExecutionException e)
+  {
+    Throwable cause = e.getCause();
+    while (cause instanceof RuntimeException && cause.getCause() != null)
+      {
+        cause = cause.getCause();
+      } // while
+    if (cause instanceof Exception)
+      return (Exception) cause;
+    return e;
+  } // unwrap(ExecutionException)
+
+  /**
+   * Returns the offset of the first byte that is not white space
+   *
+   * @param size
+   *          a long
+   * @throws IOException
+   */
+  long firstValue(long size)
+    throws IOException
+  {
+    long offset = 0;
+    while (offset < size && JSONByteParser.isWhitespace(byteAt(offset)))
+      {
+        offset++;
+      } // while
+    return offset;
+  } // firstValue(long)
+
+  /**
+   * Returns the byte at offset
+   *
+   * @param offset
+   *          a long
+   * @throws IOException
+   */
+  byte byteAt(long offset)
+    throws IOException
+  {
+    if (channel == null)
+      return whole.get((int) offset);
+    ByteBuffer one = ByteBuffer.allocate(1);
+    channel.read(one, offset);
+    return one.get(0);
+  } // byteAt(long)
+
+  /**
+   * Scans the array whose [ is at start, returning the offsets of the [, of
+   * the top-level commas chosen as chunk boundaries, and of the closing ]
+   *
+   * @param start
+   *          a long
+   * @param size
+   *          a long
+   * @param target
+   *          a long
+   * @throws Exception
+   */
+  List<Long> scan(long start, long size, long target)
+    throws Exception
+  {
+    List<Long> bounds = new ArrayList<>();
+    bounds.add(start);
+    long chunkStart = start;
+    int depth = 0;
+    boolean inString = false;
+    boolean escaped = false;
+    for (long base = start; base < size; base += SCAN_WINDOW)
+      {
+        int length = (int) Math.min(SCAN_WINDOW, size - base);
+        ByteBuffer window = region(base, length);
+        for (int i = 0; i < length; i++)
+          {
+            byte b = window.get(i);
+            if (inString)
+              {
+                if (escaped)
+                  escaped = false;
+                else if (b == '\\')
+                  escaped = true;
+                else if (b == '\"')
+                  inString = false;
+                continue;
+              } // if
+            switch (b)
+              {
+                case '\"':
+                  inString = true;
+                  break;
+                case '[':
+                case '{':
+                  depth++;
+                  break;
+                case ']':
+                case '}':
+                  if (--depth == 0)
+                    {
+                      // the chunks check the brackets inside, not this one
+                      if (b != ']')
+                        throw new Exception("Illegal array character: "
+                                            + (char) b);
+                      bounds.add(base + i);
+                      return bounds;
+                    } // if
+                  break;
+                case ',':
+                  if (depth == 1 && base + i - chunkStart >= target)
+                    {
+                      chunkStart = base + i;
+                      bounds.add(chunkStart);
+                    } // if
+                  break;
+                default:
+                  break;
+              } // switch
+          } // for
+      } // for
+    if (inString)
+      throw new Exception("Missing quote.");
+    throw new Exception("Unexpected end of input.");
+  } // scan(long, long, long)
+
+  /**
+   * Parses the comma-separated elements between from and to. Like
+   * parseArray, only a lone chunk may be empty (as in [ ]) and only the
+   * last may end with a comma, with nothing but whitespace after it.
+   *
+   * @param from
+   *          a long
+   * @param to
+   *          a long
+   * @param first
+   *          a boolean
+   * @param last
+   *          a boolean
+   * @throws Exception
+   */
+  List<Object> parseChunk(long from, long to, boolean first, boolean last)
+    throws Exception
+  {
+    ByteBuffer chunk = region(from, to - from);
+    JSONByteParser parser = newParser();
+    parser.reset(chunk, 0, chunk.limit());
+    // the elements are inside the top-level array
+    parser.depth = 1;
+    List<Object> elements = new ArrayList<>();
+    if (first && last)
+      {
+        parser.skipWhitespace();
+        if (parser.pos == parser.limit)
+          return elements;
+      } // if the whole array
+    else if (last)
+      {
+        parser.skipWhitespace();
+        if (parser.pos == parser.limit)
+          return elements;
+      } // else if after a trailing comma
+    while (true)
+      {
+        elements.add(parser.parse());
+        if (parser.pos == parser.limit)
+          break;
+        byte b = parser.buf.get(parser.pos);
+        if (b != ',')
+          throw new Exception("Illegal array character: " + (char) b);
+        parser.pos++;
+        if (last)
+          parser.skipWhitespace();
+        if (parser.pos == parser.limit)
+          {
+            if (!last)
+              throw new Exception("Illegal array character: ,");
+            break;
+          } // if
+      } // while
+    return elements;
+  } // parseChunk(long, long, boolean, boolean)
+} // class JSONParallelParser
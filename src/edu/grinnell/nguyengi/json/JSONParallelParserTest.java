@@ -0,0 +1,201 @@
+package edu.grinnell.nguyengi.json;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+/**
+ * Tests for parsing the elements of a top-level array in parallel
+ *
+ * @author Giang
+ *
+ */
+public class JSONParallelParserTest
+{
+  /**
+   * Returns an array whose strings hold brackets, commas, and escaped quotes
+   * that the scan must not mistake for structure
+   */
+  static String records()
+  {
+    StringBuilder text = new StringBuilder("[ ");
+    for (int i = 0; i < 5000; i++)
+      {
+        if (i > 0)
+          text.append(i % 3 == 0 ? ",\n" : ",");
+        switch (i % 4)
+          {
+            case 0:
+              text.append("{\"id\":").append(i)
+                  .append(",\"msg\":\"a, [b] {c} \\\"d\\\\\",\"v\":[1.5,-2]}");
+              break;
+            case 1:
+              text.append("[").append(i).append(",[],{},\"]\"]");
+              break;
+            case 2:
+              text.append("\"\\u00e9\\\\\"");
+              break;
+            default:
+              text.append(i % 8 == 3 ? "true" : "null");
+          } // switch
+      } // for
+    return text.append(" ]").toString();
+  } // records()
+
+  /**
+   * Parses text with the given chunk size
+   *
+   * @param text
+   *          a String
+   * @param chunkSize
+   *          a long
+   * @throws Exception
+   */
+  static Object parse(String text, long chunkSize)
+    throws Exception
+  {
+    JSONParallelParser parser = new JSONParallelParser(new ForkJoinPool(3));
+    parser.setChunkSize(chunkSize);
+    return parser.parse(text.getBytes(StandardCharsets.UTF_8));
+  } // parse(String, long)
+
+  /**
+   * Any chunk size gives the same result as the sequential parser
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testMatchesSequential()
+    throws Exception
+  {
+    String text = records();
+    Object expected = JSONUtils.parse(text);
+    for (long chunkSize : new long[] { 1, 7, 1000, 0 })
+      {
+        assertEquals(expected, parse(text, chunkSize));
+      } // for
+    for (String sample : JSONReaderTest.SAMPLES)
+      {
+        assertEquals(sample, JSONUtils.parse(sample), parse(sample, 1));
+      } // for
+  } // testMatchesSequential()
+
+  /**
+   * Files and buffers with leading content are parsed in the same way
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testFileAndBuffer()
+    throws Exception
+  {
+    String text = records();
+    Object expected = JSONUtils.parse(text);
+    Path file = Files.createTempFile("parallel", ".json");
+    try
+      {
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+        JSONParallelParser parser = new JSONParallelParser();
+        parser.setChunkSize(512);
+        assertEquals(expected, parser.parse(file));
+        assertEquals(expected, JSONUtils.parseParallel(file));
+      } // try
+    finally
+      {
+        Files.delete(file);
+      } // finally
+    byte[] bytes = ("xx" + text).getBytes(StandardCharsets.UTF_8);
+    ByteBuffer buf = ByteBuffer.wrap(bytes);
+    buf.position(2);
+    assertEquals(expected, new JSONParallelParser().parse(buf));
+    assertEquals(2, buf.position());
+  } // testFileAndBuffer()
+
+  /**
+   * Empty arrays, trailing commas, and values that are not arrays
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testEdges()
+    throws Exception
+  {
+    assertEquals(0, ((List<?>) parse(" [ ] ", 1)).size());
+    assertEquals(JSONUtils.parse("[1,2,]"), parse("[1,2,]", 1));
+    assertEquals(JSONUtils.parse("[1,2, ]"), parse("[1,2, ]", 1));
+    assertEquals(JSONUtils.parse("[1,2, ]"), parse("[1,2, ]", 100));
+    assertEquals(JSONUtils.parse("{\"a\":[1]}"), parse("{\"a\":[1]}", 1));
+    assertEquals("s", parse(" \"s\"", 1));
+  } // testEdges()
+
+  /**
+   * Malformed arrays fail whichever chunk the error falls in
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testErrors()
+    throws Exception
+  {
+    String[] bad = { "[1,,2]", "[,1]", "[1 2]", "[1,2", "[\"a]", "[1,tru]",
+                    "[1,,]", "[1, ,2]", "[1,2}", "[1}63]" };
+    for (String text : bad)
+      {
+        for (long chunkSize : new long[] { 1, 100 })
+          {
+            try
+              {
+                parse(text, chunkSize);
+                fail(text);
+              } // try
+            catch (Exception e)
+              {
+                // expected
+              } // catch
+          } // for
+      } // for
+  } // testErrors()
+
+  /**
+   * Errors come back as the same Exception, with the same message, that
+   * JSONUtils.parse throws
+   */
+  @Test
+  public void testErrorMessages()
+  {
+    String[] bad = { "[1,2}", "[1}63]", "[1,{\"a\" 1},3]", "[1,2,tru]" };
+    for (String text : bad)
+      {
+        String expected = null;
+        try
+          {
+            JSONUtils.parse(text);
+            fail(text);
+          } // try
+        catch (Exception e)
+          {
+            expected = e.getMessage();
+          } // catch
+        for (long chunkSize : new long[] { 1, 100 })
+          {
+            try
+              {
+                parse(text, chunkSize);
+                fail(text);
+              } // try
+            catch (Exception e)
+              {
+                assertEquals(text, Exception.class, e.getClass());
+                assertEquals(text, expected, e.getMessage());
+              } // catch
+          } // for
+      } // for
+  } // testErrorMessages()
+} // class JSONParallelParserTest
@@ -0,0 +1,730 @@
+package edu.grinnell.nguyengi.json;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The engine behind JSONUtils.parse. A JSONParser keeps its position in the
+ * text in a field rather than passing it from method to method, and can be
+ * reused for any number of documents.
+ *
+ * @author Giang
+ *
+ */
+public class JSONParser
+{
+  // +-------+-----------------------------------------------------------
+  // | Notes |
+  // +-------+
+
+  /*
+   * I1: Object and array parse methods can only call parseValue when pos is
+   * at the first character of a new value.
+   *
+   * I2: All parse methods keep pos at the separator tokens or the end when
+   * they finish.
+   *
+   * A parser is not safe for use by several threads at once. JSONUtils keeps
+   * one per thread; see cached().
+   */
+
+  // +-----------+-------------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * Initial size of the scratch space for strings with escapes
+   */
+  static final int CHARS_SIZE = 64;
+
+  /**
+   * Largest scratch space kept from one document to the next, so that a
+   * cached parser does not hold on to room for one huge string
+   */
+  static final int MAX_CHARS = 1 << 16;
+
+  // +--------+----------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * One parser per thread, for the static methods of JSONUtils
+   */
+  static final ThreadLocal<JSONParser> CACHED =
+      ThreadLocal.withInitial(JSONParser::new);
+
+  /**
+   * The text being parsed
+   */
+  String str;
+
+  /**
+   * Index of the next character to look at
+   */
+  int pos;
+
+  /**
+   * Length of str
+   */
+  int length;
+
+  /**
+   * Whether the parser is in the middle of a document
+   */
+  boolean busy = false;
+
+  /**
+   * Recognizes numbers and computes their values
+   */
+  JSONNumberScanner numbers = new JSONNumberScanner();
+
+  /**
+   * Scratch space for decoding strings with escapes
+   */
+  char[] chars = new char[CHARS_SIZE];
+
+  /**
+   * Where object keys are looked up, if anywhere
+   */
+  JSONKeyCache keys = null;
+
+  /**
+   * Whether arrays of numbers are returned as JSONNumberLists
+   */
+  boolean primitiveArrays = false;
+
+  /**
+   * Where parse events are reported, if anywhere
+   */
+  JSONListener listener = null;
+
+  /**
+   * Nesting depth of the value being parsed, kept only for the listener
+   */
+  int depth = 0;
+
+  // +--------------+----------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Creates a parser with no text
+   */
+  public JSONParser()
+  {
+  } // JSONParser()
+
+  // +---------+---------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Sets whether numbers with a fraction or an exponent are parsed as
+   * BigDecimals rather than Doubles. Integers are not affected.
+   *
+   * @param bigDecimals
+   *          a boolean
+   */
+  public void setBigDecimals(boolean bigDecimals)
+  {
+    numbers.bigDecimals = bigDecimals;
+  } // setBigDecimals(boolean)
+
+  /**
+   * Sets the cache that object keys are looked up in, or null to create a
+   * new String for every key.
+   *
+   * @param keys
+   *          a JSONKeyCache
+   */
+  public void setKeyCache(JSONKeyCache keys)
+  {
+    this.keys = keys;
+  } // setKeyCache(JSONKeyCache)
+
+  /**
+   * Sets whether non-empty arrays holding only numbers are returned as
+   * read-only JSONNumberLists, which keep their elements unboxed, rather than
+   * as ArrayLists. Arrays holding BigIntegers or BigDecimals are not.
+   *
+   * @param primitiveArrays
+   *          a boolean
+   */
+  public void setPrimitiveArrays(boolean primitiveArrays)
+  {
+    this.primitiveArrays = primitiveArrays;
+  } // setPrimitiveArrays(boolean)
+
+  /**
+   * Sets the listener that parse events are reported to, or null to report
+   * nothing.
+   *
+   * @param listener
+   *          a JSONListener
+   */
+  public void setListener(JSONListener listener)
+  {
+    this.listener = listener;
+  } // setListener(JSONListener)
+
+  /**
+   * Returns the calling thread's parser, or a fresh one if that parser is
+   * already busy further up the stack.
+   */
+  static JSONParser cached()
+  {
+    JSONParser parser = CACHED.get();
+    return parser.busy ? new JSONParser() : parser;
+  } // cached()
+
+  /**
+   * Parses a JSON string and returns an object that corresponds to the value
+   * described in that string.
+   *
+   * @param str
+   *          a String
+   * @throws Exception
+   */
+  public Object parse(String str)
+    throws Exception
+  {
+    return parse(str, 0);
+  } // parse(String)
+
+  /**
+   * Parses the JSON value starting at index start of str.
+   *
+   * @param str
+   *          a String
+   * @param start
+   *          an int
+   * @throws Exception
+   */
+  public Object parse(String str, int start)
+    throws Exception
+  {
+    this.str = str;
+    this.pos = start;
+    this.length = str.length();
+    this.busy = true;
+    try
+      {
+        return parseValue();
+      } // try
+    finally
+      {
+        // drop the reference so a cached parser does not pin the text
+        this.str = null;
+        if (chars.length > MAX_CHARS)
+          chars = new char[CHARS_SIZE];
+        this.busy = false;
+      } // finally
+  } // parse(String, int)
+
+  // +----------------+-----------------------------------------------
+  // | Parser Methods |
+  // +----------------+
+
+  /**
+   * Parses the value starting at the parser's position.
+   *
+   * @throws Exception
+   */
+  Object parseValue()
+    throws Exception
+  {
+    // White spaces either precede or follow JSON values
+    // Removing here takes care of the white spaces in front in most cases
+    skipWhitespace();
+    if (listener != null)
+      return observeValue();
+    char first = current();
+    if (first == '{')
+      {
+        return parseObject();
+      } // if object
+    else if (first == '[')
+      {
+        return parseArray();
+      } // else if array
+    else if (first == '\"')
+      {
+        return parseString();
+      } // else if String
+    else if ((first >= '0' && first <= '9') || first == '-')
+      {
+        return parseNumber();
+      } // else if Number
+    else
+      {
+        return parseSpecialValue();
+      } // else must be special value
+  } // parseValue()
+
+  /**
+   * Parses the value starting at the parser's position as parseValue does,
+   * reporting it to the listener
+   *
+   * @throws Exception
+   */
+  Object observeValue()
+    throws Exception
+  {
+    int start = pos;
+    long began = System.nanoTime();
+    char first = current();
+    Object value;
+    if (first == '{' || first == '[')
+      {
+        depth++;
+        try
+          {
+            if (first == '{')
+              {
+                Map<String, Object> obj = parseObject();
+                listener.objectParsed(obj.size(), depth);
+                value = obj;
+              } // if
+            else
+              {
+                List<Object> arr = parseArray();
+                listener.arrayParsed(arr.size(), depth);
+                value = arr;
+              } // else
+          } // try
+        finally
+          {
+            depth--;
+          } // finally
+      } // if object or array
+    else if (first == '\"')
+      {
+        String string = parseString();
+        listener.stringParsed(string.length(), System.nanoTime() - began);
+        value = string;
+      } // else if String
+    else if ((first >= '0' && first <= '9') || first == '-')
+      {
+        value = parseNumber();
+        listener.numberParsed(System.nanoTime() - began);
+      } // else if Number
+    else
+      {
+        value = parseSpecialValue();
+        listener.literalParsed((Boolean) value);
+      } // else must be special value
+    if (depth == 0)
+      listener.documentParsed(pos - start, System.nanoTime() - began);
+    return value;
+  } // observeValue()
+
+  /**
+   * Skips over consecutive whitespace characters
+   */
+  void skipWhitespace()
+  {
+    while (pos < length && Character.isWhitespace(str.charAt(pos)))
+      {
+        pos++;
+      } // while
+  } // skipWhitespace()
+
+  /**
+   * Returns the character at the parser's position, failing at the end of
+   * the text
+   *
+   * @throws Exception
+   */
+  char current()
+    throws Exception
+  {
+    if (pos == length)
+      throw new Exception("Unexpected end of input.");
+    return str.charAt(pos);
+  } // current()
+
+  /**
+   * Tries to parse true, false, or null, returns them if successful
+   *
+   * @throws Exception
+   */
+  Object parseSpecialValue()
+    throws Exception
+  {
+    Object result;
+    if (str.startsWith("true", pos))
+      {
+        pos += 4;
+        result = Boolean.TRUE;
+      } // if
+    else if (str.startsWith("false", pos))
+      {
+        pos += 5;
+        result = Boolean.FALSE;
+      } // else if
+    else if (str.startsWith("null", pos))
+      {
+        pos += 4;
+        result = null;
+      } // else if
+    else
+      {
+        throw new Exception("Parser does not recognize value: "
+                            + str.charAt(pos));
+      } // else
+    // Takes care of all white spaces after value
+    skipWhitespace();
+    // We're safe if the token ends here
+    if (pos == length || isEndOfSV(str.charAt(pos)))
+      return result;
+    throw new Exception("Parser does not recognize value: " + str.charAt(pos));
+  } // parseSpecialValue()
+
+  /**
+   * Helper predicate, determines whether c signals end of a special value
+   *
+   * @param c
+   *          a char
+   */
+  static boolean isEndOfSV(char c)
+  {
+    return c == ',' || c == ']' || c == '}';
+  } // isEndOfSV(char)
+
+  /**
+   * Tries to parse a JSON object, returns a JSONObjectMap representing the
+   * object if successful
+   *
+   * @throws Exception
+   */
+  Map<String, Object> parseObject()
+    throws Exception
+  {
+    JSONObjectMap obj = new JSONObjectMap();
+    pos++;
+    skipWhitespace();
+    while (current() != '}')
+      {
+        if (str.charAt(pos) != '\"')
+          throw new Exception("Invalid key type.");
+        long began = listener == null ? 0 : System.nanoTime();
+        String key = keys == null ? parseString() : parseKey();
+        if (listener != null)
+          listener.keyParsed(key.length(), System.nanoTime() - began);
+        if (current() != ':')
+          throw new Exception("Invalid object format.");
+        pos++;
+        obj.put(key, parseValue());
+        // check for appropriate object characters
+        char c = current();
+        if (c != ',' && c != '}')
+          throw new Exception("Illegal object character: " + c);
+        // skip a character only if it's a comma, not a }
+        if (c == ',')
+          {
+            pos++;
+            // Removes whitespace before the next key, because parseString
+            // does not go through parseValue()
+            skipWhitespace();
+          } // if
+      } // while
+    pos++;
+    // Takes care of all white spaces after object
+    skipWhitespace();
+    return obj.trim();
+  } // parseObject()
+
+  /**
+   * Parses an object key through the key cache. Keys without escapes are
+   * looked up by the characters they span, without building a String first.
+   *
+   * @throws Exception
+   */
+  String parseKey()
+    throws Exception
+  {
+    int start = pos + 1;
+    int end = scanString(start);
+    if (end == length || str.charAt(end) != '\"')
+      return keys.intern(parseString());
+    pos = end + 1;
+    // Remove spaces after keys
+    skipWhitespace();
+    return keys.intern(str, start, end);
+  } // parseKey()
+
+  /**
+   * Tries to parse a JSON string, returns a corresponding String if successful
+   *
+   * @throws Exception
+   */
+  String parseString()
+    throws Exception
+  {
+    // Moves past "
+    int start = pos + 1;
+    int end = scanString(start);
+    if (end == length)
+      throw new Exception("Missing quote.");
+    String result;
+    if (str.charAt(end) == '\"')
+      {
+        // No escapes, so the String is a plain substring of the text
+        result = str.substring(start, end);
+        pos = end + 1;
+      } // if
+    else
+      {
+        result = decodeEscaped(start, end);
+      } // else
+    // Remove spaces after Strings
+    skipWhitespace();
+    return result;
+  } // parseString()
+
+  /**
+   * Returns the index of the first quote or backslash at or after start, or
+   * length if there is none
+   *
+   * @param start
+   *          an int
+   */
+  int scanString(int start)
+  {
+    int end = start;
+    char c;
+    while (end < length && (c = str.charAt(end)) != '\"' && c != '\\')
+      {
+        end++;
+      } // while
+    return end;
+  } // scanString(int)
+
+  /**
+   * Decodes a string whose first backslash is at end, starting at start and
+   * leaving the parser's position after the closing quote. The runs between
+   * escapes are copied in bulk.
+   *
+   * @param start
+   *          an int
+   * @param end
+   *          an int
+   * @throws Exception
+   */
+  String decodeEscaped(int start, int end)
+    throws Exception
+  {
+    int count = 0;
+    while (true)
+      {
+        // room for the run and the one char an escape yields
+        if (count + (end - start) + 1 > chars.length)
+          chars =
+              Arrays.copyOf(chars, Math.max(count + (end - start) + 1,
+                                            chars.length * 2));
+        str.getChars(start, end, chars, count);
+        count += end - start;
+        if (end == length)
+          throw new Exception("Missing quote.");
+        pos = end + 1;
+        if (str.charAt(end) == '\"')
+          return new String(chars, 0, count);
+        char c = current();
+        pos++;
+        switch (c)
+          {
+            case '\\':
+            case '\"':
+            case '/':
+              chars[count++] = c;
+              break;
+            case 'n':
+              chars[count++] = '\n';
+              break;
+            case 't':
+              chars[count++] = '\t';
+              break;
+            case 'b':
+              chars[count++] = '\b';
+              break;
+            case 'f':
+              chars[count++] = '\f';
+              break;
+            case 'r':
+              chars[count++] = '\r';
+              break;
+            case 'u':
+              chars[count++] = parseUnicode();
+              break;
+            default:
+              throw new Exception("Illegal character after \\.");
+          } // switch
+        start = pos;
+        end = scanString(start);
+      } // while
+  } // decodeEscaped(int, int)
+
+  /**
+   * Decodes the four hex digits of a \\u escape, with pos at the first one.
+   * Java Strings are UTF-16 like the escapes, so a surrogate pair written as
+   * two escapes decodes to its code point one half at a time; lone surrogates
+   * are kept as they are.
+   *
+   * @throws Exception
+   */
+  char parseUnicode()
+    throws Exception
+  {
+    if (pos + 4 > length)
+      throw new Exception("Illegal unicode escape.");
+    int unicode =
+        (hexValue(str.charAt(pos)) << 12)
+            | (hexValue(str.charAt(pos + 1)) << 8)
+            | (hexValue(str.charAt(pos + 2)) << 4)
+            | hexValue(str.charAt(pos + 3));
+    // a bad digit's -1 leaves the result negative
+    if (unicode < 0)
+      throw new Exception("Illegal unicode escape.");
+    pos += 4;
+    return (char) unicode;
+  } // parseUnicode()
+
+  /**
+   * Returns the value of a hex digit, or -1 if c is not one
+   *
+   * @param c
+   *          a char
+   */
+  static int hexValue(char c)
+  {
+    if (c >= '0' && c <= '9')
+      return c - '0';
+    // folds upper case into lower case
+    char lower = (char) (c | 0x20);
+    if (lower >= 'a' && lower <= 'f')
+      return lower - 'a' + 10;
+    return -1;
+  } // hexValue(char)
+
+  /**
+   * Tries to parse a JSON Number, returns a corresponding Number if successful
+   *
+   * @throws Exception
+   */
+  Number parseNumber()
+    throws Exception
+  {
+    int start = scanNumber();
+    Number value = numbers.value();
+    if (value == null)
+      value = numbers.value(str.substring(start, pos));
+    // Remove spaces after numbers
+    skipWhitespace();
+    return value;
+  } // parseNumber()
+
+  /**
+   * Runs the number at the parser's position through numbers, returning
+   * where it starts
+   *
+   * @throws Exception
+   */
+  int scanNumber()
+    throws Exception
+  {
+    int start = pos;
+    numbers.reset();
+    while (pos < length && numbers.accept(str.charAt(pos)))
+      {
+        pos++;
+      } // while
+    // The number must end where the token does
+    if (pos < length && !isEndOfNumber(str.charAt(pos))
+        && !Character.isWhitespace(str.charAt(pos)))
+      throw new Exception("Illegal number: "
+                          + str.substring(start, pos + 1));
+    if (!numbers.isComplete())
+      throw new Exception("Illegal number.");
+    return start;
+  } // scanNumber()
+
+  /**
+   * Helper predicate, determines whether c signals end of a number
+   *
+   * @param c
+   *          a char
+   */
+  static boolean isEndOfNumber(char c)
+  {
+    return c == ',' || c == ']' || c == '}';
+  } // isEndOfNumber(char)
+
+  /**
+   * Tries to parse a JSON array, returns an ArrayList representing the array
+   * if successful, or a JSONNumberList if primitiveArrays is set and the
+   * array holds only numbers
+   *
+   * @throws Exception
+   */
+  List<Object> parseArray()
+    throws Exception
+  {
+    ArrayList<Object> arr = null;
+    JSONNumberList nums = primitiveArrays ? new JSONNumberList() : null;
+    // Moves past [
+    pos++;
+    skipWhitespace();
+    while (current() != ']')
+      {
+        if (nums != null)
+          skipWhitespace();
+        char first = current();
+        if (nums != null && ((first >= '0' && first <= '9') || first == '-'))
+          {
+            long began = listener == null ? 0 : System.nanoTime();
+            int start = scanNumber();
+            if (!nums.add(numbers))
+              {
+                Number value = numbers.value(str.substring(start, pos));
+                if (!nums.addNumber(value))
+                  {
+                    // a big number; fall back to boxing every element
+                    arr = nums.toArrayList();
+                    arr.add(value);
+                    nums = null;
+                  } // if
+              } // if
+            skipWhitespace();
+            if (listener != null)
+              listener.numberParsed(System.nanoTime() - began);
+          } // if
+        else
+          {
+            if (arr == null)
+              arr = nums == null ? new ArrayList<>() : nums.toArrayList();
+            nums = null;
+            arr.add(parseValue());
+          } // else
+        char c = current();
+        if (c != ',' && c != ']')
+          throw new Exception("Illegal array character: " + c);
+        // skips a character only if it is a comma, not ], and the whitespace
+        // after it, so that a trailing comma may be followed by whitespace
+        // as in an object
+        if (c == ',')
+          {
+            pos++;
+            skipWhitespace();
+          } // if
+      } // while
+    // for ]
+    pos++;
+    // Remove white spaces after array
+    skipWhitespace();
+    if (nums != null && nums.size() > 0)
+      return nums.trim();
+    return arr == null ? new ArrayList<>() : arr;
+  } // parseArray()
+} // class JSONParser
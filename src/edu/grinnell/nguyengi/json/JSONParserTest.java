@@ -0,0 +1,183 @@
+package edu.grinnell.nguyengi.json;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * Tests for the reusable parser engine
+ *
+ * @author Giang
+ *
+ */
+public class JSONParserTest
+{
+  /**
+   * One parser can be used for many documents in a row
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testReuse()
+    throws Exception
+  {
+    JSONParser parser = new JSONParser();
+    for (String sample : JSONReaderTest.SAMPLES)
+      {
+        assertEquals(sample, JSONUtils.parse(sample), parser.parse(sample));
+      } // for
+    assertNull(parser.str);
+  } // testReuse()
+
+  /**
+   * A failed parse leaves the parser usable
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testReuseAfterError()
+    throws Exception
+  {
+    JSONParser parser = new JSONParser();
+    try
+      {
+        parser.parse("{\"a\":");
+        fail();
+      } // try
+    catch (Exception e)
+      {
+        // expected
+      } // catch
+    assertFalse(parser.busy);
+    assertEquals(JSONUtils.parse("[1]"), parser.parse("[1]"));
+  } // testReuseAfterError()
+
+  /**
+   * Parsing can start in the middle of a String
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testStartIndex()
+    throws Exception
+  {
+    assertEquals("b", new JSONParser().parse("[\"a\", \"b\"]", 6));
+  } // testStartIndex()
+
+  /**
+   * Strings with and without escapes, including escapes at either end, runs
+   * longer than the scratch buffer, and surrogate pairs
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testStrings()
+    throws Exception
+  {
+    JSONParser parser = new JSONParser();
+    assertEquals("plain text", parser.parse("\"plain text\""));
+    assertEquals("", parser.parse("\"\""));
+    assertEquals("\"a\\b/\n\t\b\f\r",
+                 parser.parse("\"\\\"a\\\\b\\/\\n\\t\\b\\f\\r\""));
+    assertEquals("\u00fb\u00d8jK", parser.parse("\"\\u00fb\\u00D8\\u006aK\""));
+    String smile = new String(Character.toChars(0x1F600));
+    assertEquals("[" + smile + "]",
+                 parser.parse("\"[\\uD83D\\ude00]\""));
+    StringBuilder text = new StringBuilder("\"");
+    StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < 100; i++)
+      {
+        text.append("run ").append(i).append("\\n");
+        expected.append("run ").append(i).append('\n');
+      } // for
+    text.append('"');
+    assertEquals(expected.toString(), parser.parse(text.toString()));
+    String[] illegal =
+        { "\"\\u12G4\"", "\"\\u+fff\"", "\"\\u12\"", "\"ab\\", "\"ab",
+         "\"a\\nb", "\"\\x\"" };
+    for (String string : illegal)
+      {
+        try
+          {
+            parser.parse(string);
+            fail(string);
+          } // try
+        catch (Exception e)
+          {
+            // expected
+          } // catch
+      } // for
+  } // testStrings()
+
+  /**
+   * The scratch space grows for a long escaped string, but is not kept
+   * beyond MAX_CHARS once the parse is over
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testScratchSpace()
+    throws Exception
+  {
+    JSONParser parser = new JSONParser();
+    StringBuilder text = new StringBuilder("\"");
+    for (int i = 0; i < JSONParser.MAX_CHARS; i++)
+      {
+        text.append("\\n");
+      } // for
+    text.append('"');
+    assertEquals(JSONParser.MAX_CHARS,
+                 ((String) parser.parse(text.toString())).length());
+    assertEquals(JSONParser.CHARS_SIZE, parser.chars.length);
+    assertEquals("a\nb", parser.parse("\"a\\nb\""));
+  } // testScratchSpace()
+
+  /**
+   * The thread's cached parser is handed out again once it is free, but not
+   * while it is in use
+   */
+  @Test
+  public void testCached()
+  {
+    JSONParser parser = JSONParser.cached();
+    assertSame(parser, JSONParser.cached());
+    parser.busy = true;
+    assertNotSame(parser, JSONParser.cached());
+    parser.busy = false;
+  } // testCached()
+
+  /**
+   * A trailing comma may be followed by whitespace in arrays as in objects,
+   * and parsing a String agrees with parsing its bytes
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testTrailingCommas()
+    throws Exception
+  {
+    String[] texts = { "[1,]", "[1, ]", "[1,\n]", "{\"a\":1,}",
+                      "{\"a\":1, }", "[[1, ], {\"a\":[2,\t]}, ]" };
+    for (String text : texts)
+      {
+        Object value = JSONUtils.parse(text);
+        assertEquals(text, value,
+                     JSONUtils.parse(text.getBytes(StandardCharsets.UTF_8)));
+      } // for
+    assertEquals(JSONUtils.parse("[1]"), JSONUtils.parse("[1, ]"));
+    for (String text : new String[] { "[1, ,]", "[,]", "{\"a\":1, ,}" })
+      {
+        try
+          {
+            JSONUtils.parse(text);
+            fail(text);
+          } // try
+        catch (Exception e)
+          {
+            // expected
+          } // catch
+      } // for
+  } // testTrailingCommas()
+} // class JSONParserTest
@@ -0,0 +1,367 @@
+package edu.grinnell.nguyengi.json;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A Flow.Processor that parses a stream of byte chunks, holding UTF-8 JSON
+ * text, into values, so that parsing fits into reactive pipelines without a
+ * thread blocking on the input. The values are the elements of a top-level
+ * array, or the top-level values of newline-delimited JSON, and have the
+ * types JSONUtils.parse produces. Chunks are requested from upstream only as
+ * values are requested downstream.
+ *
+ * Flow forbids null items, so JSON nulls are published as JSONProcessor.NULL,
+ * which toJSONString writes as null.
+ *
+ * @author Giang
+ *
+ */
+public class JSONProcessor
+    implements Flow.Processor<ByteBuffer, Object>
+{
+  // +-------+-----------------------------------------------------------
+  // | Notes |
+  // +-------+
+
+  /*
+   * Chunks are parsed by a JSONPushParser as soon as they arrive in onNext,
+   * so a publisher may reuse a buffer once onNext returns. Upstream signals
+   * never overlap, so the parser is only used by one thread at a time.
+   *
+   * The values a chunk completes wait in a queue until downstream asks for
+   * them. Another chunk is requested, one at a time, only when the queue is
+   * empty and downstream still wants values, so at most one chunk's worth of
+   * values is ever waiting.
+   *
+   * Signals to the subscriber go out from drain(), which any thread may call
+   * and which only one thread runs at a time: a call that finds drain()
+   * running bumps wip, and the running thread goes round once more instead.
+   */
+
+  // +-----------+-------------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * What JSON null is published as
+   */
+  static public final Object NULL = new Object()
+  {
+    @Override
+    public String toString()
+    {
+      return "null";
+    } // toString()
+  };
+
+  // +--------+----------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * Parses the chunks
+   */
+  JSONPushParser parser;
+
+  /**
+   * Values parsed but not yet published
+   */
+  Queue<Object> values = new ConcurrentLinkedQueue<>();
+
+  /**
+   * Where chunks come from, once subscribed
+   */
+  volatile Flow.Subscription upstream;
+
+  /**
+   * Where values go, once subscribed
+   */
+  volatile Flow.Subscriber<? super Object> downstream;
+
+  /**
+   * Values requested downstream and not yet published
+   */
+  AtomicLong requested = new AtomicLong();
+
+  /**
+   * Whether a chunk has been requested and not yet received
+   */
+  volatile boolean awaiting = false;
+
+  /**
+   * Whether upstream has finished, or the input turned out not to be valid
+   */
+  volatile boolean done = false;
+
+  /**
+   * Why the stream failed, if it did
+   */
+  volatile Throwable error;
+
+  /**
+   * Whether downstream has cancelled
+   */
+  volatile boolean cancelled = false;
+
+  /**
+   * Calls to drain() not yet handled
+   */
+  AtomicInteger wip = new AtomicInteger();
+
+  // +--------------+----------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Creates a processor publishing the elements of a top-level array, if
+   * elements is set, or else each top-level value, as in newline-delimited
+   * JSON
+   *
+   * @param elements
+   *          a boolean
+   */
+  public JSONProcessor(boolean elements)
+  {
+    parser = new JSONPushParser(value -> values.offer(value == null ? NULL
+                                                                    : value));
+    parser.setEmitDepth(elements ? 1 : 0);
+  } // JSONProcessor(boolean)
+
+  // +---------+---------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Sets the cache that object keys are looked up in, or null to create a
+   * new String for every key. Call this before the first chunk arrives.
+   *
+   * @param keys
+   *          a JSONKeyCache
+   */
+  public void setKeyCache(JSONKeyCache keys)
+  {
+    parser.setKeyCache(keys);
+  } // setKeyCache(JSONKeyCache)
+
+  /**
+   * Sets whether numbers with a fraction or an exponent are parsed as
+   * BigDecimals rather than Doubles. Call this before the first chunk
+   * arrives.
+   *
+   * @param bigDecimals
+   *          a boolean
+   */
+  public void setBigDecimals(boolean bigDecimals)
+  {
+    parser.setBigDecimals(bigDecimals);
+  } // setBigDecimals(boolean)
+
+  /**
+   * Subscribes subscriber to the values. A processor has only one
+   * subscriber; any later one is sent an error.
+   */
+  @Override
+  public void subscribe(Flow.Subscriber<? super Object> subscriber)
+  {
+    synchronized (this)
+      {
+        if (downstream != null)
+          {
+            subscriber.onSubscribe(new Flow.Subscription()
+            {
+              @Override
+              public void request(long n)
+              {
+              } // request(long)
+
+              @Override
+              public void cancel()
+              {
+              } // cancel()
+            });
+            subscriber.onError(new IllegalStateException("JSONProcessor "
+                                                          + "already has a "
+                                                          + "subscriber."));
+            return;
+          } // if
+        downstream = subscriber;
+      } // synchronized
+    subscriber.onSubscribe(new Downstream());
+    drain();
+  } // subscribe(Flow.Subscriber<? super Object>)
+
+  @Override
+  public void onSubscribe(Flow.Subscription subscription)
+  {
+    if (upstream != null || cancelled)
+      {
+        subscription.cancel();
+        return;
+      } // if
+    upstream = subscription;
+    drain();
+  } // onSubscribe(Flow.Subscription)
+
+  @Override
+  public void onNext(ByteBuffer chunk)
+  {
+    if (done)
+      return;
+    try
+      {
+        parser.feed(chunk);
+      } // try
+    catch (Exception e)
+      {
+        upstream.cancel();
+        fail(e);
+        return;
+      } // catch
+    awaiting = false;
+    drain();
+  } // onNext(ByteBuffer)
+
+  @Override
+  public void onError(Throwable throwable)
+  {
+    fail(throwable);
+  } // onError(Throwable)
+
+  @Override
+  public void onComplete()
+  {
+    if (done)
+      return;
+    try
+      {
+        parser.finish();
+      } // try
+    catch (Exception e)
+      {
+        fail(e);
+        return;
+      } // catch
+    done = true;
+    drain();
+  } // onComplete()
+
+  /**
+   * Ends the stream with throwable, dropping any values not yet published
+   *
+   * @param throwable
+   *          a Throwable
+   */
+  void fail(Throwable throwable)
+  {
+    if (done)
+      return;
+    error = throwable;
+    done = true;
+    drain();
+  } // fail(Throwable)
+
+  /**
+   * Publishes as many waiting values as downstream has asked for, passes on
+   * the end of the stream once they are all published, and asks upstream for
+   * another chunk when none are waiting
+   */
+  void drain()
+  {
+    if (wip.getAndIncrement() != 0)
+      return;
+    int missed = 1;
+    do
+      {
+        Flow.Subscriber<? super Object> subscriber = downstream;
+        if (subscriber != null)
+          {
+            long wanted = requested.get();
+            long published = 0;
+            while (true)
+              {
+                if (cancelled)
+                  {
+                    values.clear();
+                    return;
+                  } // if
+                if (done && (error != null || values.isEmpty()))
+                  {
+                    // leaving wip raised keeps drain() from running again
+                    cancelled = true;
+                    values.clear();
+                    if (error != null)
+                      subscriber.onError(error);
+                    else
+                      subscriber.onComplete();
+                    return;
+                  } // if
+                if (published == wanted)
+                  break;
+                Object value = values.poll();
+                if (value == null)
+                  break;
+                subscriber.onNext(value);
+                published++;
+              } // while
+            if (published != 0 && wanted != Long.MAX_VALUE)
+              requested.addAndGet(-published);
+            Flow.Subscription subscription = upstream;
+            if (subscription != null && !done && !awaiting
+                && values.isEmpty() && requested.get() > 0)
+              {
+                awaiting = true;
+                subscription.request(1);
+              } // if
+          } // if
+        missed = wip.addAndGet(-missed);
+      } // do
+    while (missed != 0);
+  } // drain()
+
+  // +---------------+---------------------------------------------------
+  // | Inner Classes |
+  // +---------------+
+
+  /**
+   * The subscription handed to the subscriber
+   */
+  class Downstream
+      implements Flow.Subscription
+  {
+    @Override
+    public void request(long n)
+    {
+      if (n <= 0)
+        {
+          Flow.Subscription subscription = upstream;
+          if (subscription != null)
+            subscription.cancel();
+          fail(new IllegalArgumentException("Non-positive request: " + n));
+          return;
+        } // if
+      long current;
+      long next;
+      do
+        {
+          current = requested.get();
+          next = current + n < 0 ? Long.MAX_VALUE : current + n;
+        } // do
+      while (!requested.compareAndSet(current, next));
+      drain();
+    } // request(long)
+
+    @Override
+    public void cancel()
+    {
+      cancelled = true;
+      Flow.Subscription subscription = upstream;
+      if (subscription != null)
+        subscription.cancel();
+    } // cancel()
+  } // class Downstream
+} // class JSONProcessor
@@ -0,0 +1,304 @@
+package edu.grinnell.nguyengi.json;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Tests for the Flow processor
+ *
+ * @author Giang
+ *
+ */
+public class JSONProcessorTest
+{
+  // +---------------+---------------------------------------------------
+  // | Inner Classes |
+  // +---------------+
+
+  /**
+   * Publishes the chunks of a text on request, on the calling thread, and
+   * counts the chunks requested
+   */
+  static class ChunkPublisher
+      implements Flow.Publisher<ByteBuffer>, Flow.Subscription
+  {
+    /**
+     * The text
+     */
+    byte[] bytes;
+
+    /**
+     * Size of each chunk
+     */
+    int size;
+
+    /**
+     * Where the next chunk starts
+     */
+    int next = 0;
+
+    /**
+     * Chunks requested so far
+     */
+    long requested = 0;
+
+    /**
+     * Whether the subscriber has cancelled
+     */
+    boolean cancelled = false;
+
+    /**
+     * The subscriber
+     */
+    Flow.Subscriber<? super ByteBuffer> subscriber;
+
+    /**
+     * Creates a publisher of text in chunks of size bytes
+     *
+     * @param text
+     *          a String
+     * @param size
+     *          an int
+     */
+    ChunkPublisher(String text, int size)
+    {
+      this.bytes = text.getBytes(StandardCharsets.UTF_8);
+      this.size = size;
+    } // ChunkPublisher(String, int)
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber)
+    {
+      this.subscriber = subscriber;
+      subscriber.onSubscribe(this);
+    } // subscribe(Flow.Subscriber<? super ByteBuffer>)
+
+    @Override
+    public void request(long n)
+    {
+      requested += n;
+      for (long i = 0; i < n && !cancelled; i++)
+        {
+          if (next >= bytes.length)
+            {
+              subscriber.onComplete();
+              return;
+            } // if
+          int length = Math.min(size, bytes.length - next);
+          subscriber.onNext(ByteBuffer.wrap(bytes, next, length));
+          next += length;
+        } // for
+    } // request(long)
+
+    @Override
+    public void cancel()
+    {
+      cancelled = true;
+    } // cancel()
+  } // class ChunkPublisher
+
+  /**
+   * Records what it receives, requesting one value at a time up to a limit
+   */
+  static class Recorder
+      implements Flow.Subscriber<Object>
+  {
+    /**
+     * Values received
+     */
+    List<Object> values = new ArrayList<>();
+
+    /**
+     * Values still to request
+     */
+    long limit;
+
+    /**
+     * The subscription
+     */
+    Flow.Subscription subscription;
+
+    /**
+     * Whether the stream completed
+     */
+    boolean complete = false;
+
+    /**
+     * The error the stream failed with, if any
+     */
+    Throwable error;
+
+    /**
+     * Creates a recorder requesting at most limit values
+     *
+     * @param limit
+     *          a long
+     */
+    Recorder(long limit)
+    {
+      this.limit = limit;
+    } // Recorder(long)
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription)
+    {
+      this.subscription = subscription;
+      if (limit-- > 0)
+        subscription.request(1);
+    } // onSubscribe(Flow.Subscription)
+
+    @Override
+    public void onNext(Object item)
+    {
+      values.add(item);
+      if (limit-- > 0)
+        subscription.request(1);
+    } // onNext(Object)
+
+    @Override
+    public void onError(Throwable throwable)
+    {
+      error = throwable;
+    } // onError(Throwable)
+
+    @Override
+    public void onComplete()
+    {
+      complete = true;
+    } // onComplete()
+  } // class Recorder
+
+  // +-------+-----------------------------------------------------------
+  // | Tests |
+  // +-------+
+
+  /**
+   * The elements of a top-level array are published one by one, nulls as
+   * NULL, in whatever chunks the text arrives
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testElements()
+    throws Exception
+  {
+    String text = JSONParallelParserTest.records();
+    List<Object> expected = new ArrayList<>();
+    for (Object element : (List<?>) JSONUtils.parse(text))
+      {
+        expected.add(element == null ? JSONProcessor.NULL : element);
+      } // for
+    for (int size : new int[] { 1, 7, 4096, text.length() })
+      {
+        JSONProcessor processor = new JSONProcessor(true);
+        Recorder recorder = new Recorder(Long.MAX_VALUE);
+        processor.subscribe(recorder);
+        new ChunkPublisher(text, size).subscribe(processor);
+        assertTrue(recorder.complete);
+        assertEquals(expected, recorder.values);
+      } // for
+    assertEquals("[1,null]",
+                 JSONUtils.toJSONString(Arrays.asList(1, JSONProcessor.NULL)));
+  } // testElements()
+
+  /**
+   * Chunks are only requested as values are, and cancelling stops the input
+   */
+  @Test
+  public void testBackpressure()
+  {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 100; i++)
+      {
+        text.append("{\"line\":").append(i).append("}\n");
+      } // for
+    ChunkPublisher publisher = new ChunkPublisher(text.toString(), 20);
+    JSONProcessor processor = new JSONProcessor(false);
+    Recorder recorder = new Recorder(3);
+    processor.subscribe(recorder);
+    publisher.subscribe(processor);
+    assertEquals(3, recorder.values.size());
+    // two chunks hold the first three lines
+    assertEquals(2, publisher.requested);
+    assertFalse(recorder.complete);
+    recorder.subscription.cancel();
+    assertTrue(publisher.cancelled);
+  } // testBackpressure()
+
+  /**
+   * Invalid input, and a second subscriber, get errors
+   */
+  @Test
+  public void testErrors()
+  {
+    JSONProcessor processor = new JSONProcessor(true);
+    Recorder recorder = new Recorder(Long.MAX_VALUE);
+    processor.subscribe(recorder);
+    Recorder second = new Recorder(1);
+    processor.subscribe(second);
+    assertTrue(second.error instanceof IllegalStateException);
+    ChunkPublisher publisher = new ChunkPublisher("[1, 2, {]", 4);
+    publisher.subscribe(processor);
+    assertEquals(Arrays.asList(1, 2), recorder.values);
+    assertNotNull(recorder.error);
+    assertTrue(publisher.cancelled);
+
+    processor = new JSONProcessor(true);
+    recorder = new Recorder(Long.MAX_VALUE);
+    processor.subscribe(recorder);
+    new ChunkPublisher("[1, 2", 4).subscribe(processor);
+    assertNotNull(recorder.error);
+    assertFalse(recorder.complete);
+  } // testErrors()
+
+  /**
+   * Works with an asynchronous publisher
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testSubmissionPublisher()
+    throws Exception
+  {
+    JSONProcessor processor = new JSONProcessor(false);
+    CompletableFuture<Void> finished = new CompletableFuture<>();
+    Recorder recorder = new Recorder(Long.MAX_VALUE)
+    {
+      @Override
+      public void onComplete()
+      {
+        finished.complete(null);
+      } // onComplete()
+
+      @Override
+      public void onError(Throwable throwable)
+      {
+        finished.completeExceptionally(throwable);
+      } // onError(Throwable)
+    };
+    processor.subscribe(recorder);
+    try (SubmissionPublisher<ByteBuffer> publisher =
+        new SubmissionPublisher<>())
+      {
+        publisher.subscribe(processor);
+        for (String line : new String[] { "{\"a\":", "[1,2]}\n\"b", "\"\n3" })
+          {
+            publisher.submit(ByteBuffer.wrap(line.getBytes()));
+          } // for
+      } // try
+    finished.get(10, TimeUnit.SECONDS);
+    assertEquals(Arrays.asList(JSONUtils.parse("{\"a\":[1,2]}"), "b", 3),
+                 recorder.values);
+  } // testSubmissionPublisher()
+} // class JSONProcessorTest
@@ -0,0 +1,838 @@
+package edu.grinnell.nguyengi.json;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * A push parser for UTF-8 JSON text that arrives in pieces, such as a request
+ * body read from a non-blocking socket. Each chunk is handed to feed as soon
+ * as it arrives; the parser keeps its place between chunks, even in the
+ * middle of a string, a number, or a literal, and passes each value to its
+ * consumer as soon as the value is complete. The text never has to be held in
+ * memory all at once.
+ *
+ * @author Giang
+ *
+ */
+public class JSONPushParser
+{
+  // +-------+-----------------------------------------------------------
+  // | Notes |
+  // +-------+
+
+  /*
+   * Like JSONReader, the parser accepts any value at the top level, several
+   * values in a row separated by white space, and trailing commas. A number
+   * at the top level is only complete once something follows it, so the last
+   * one in the input is passed on by finish().
+   *
+   * Scopes are kept in a stack as in JSONReader, with one more scope for an
+   * object member whose colon has been read. A comma puts its scope back to
+   * the empty state, which is what lets a trailing comma through.
+   *
+   * A token split between chunks is carried over in the lexer state. Strings
+   * are kept as raw bytes and decoded once the closing quote arrives, so a
+   * chunk may end anywhere inside a UTF-8 sequence or an escape. Numbers are
+   * kept in the number scanner and text, and literals as the number of
+   * characters matched so far.
+   *
+   * Values nested emitDepth containers deep are passed to the consumer
+   * instead of being added to their container. Containers closer to the top
+   * are not built at all, so with an emitDepth of 1 the elements of a huge
+   * top-level array are handed out one by one and never gathered.
+   */
+
+  // +-----------+-------------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * Scope of the top level, outside any container
+   */
+  static final int DOCUMENT = 0;
+
+  /**
+   * Scope of an array expecting its first element, or one after a comma
+   */
+  static final int EMPTY_ARRAY = 1;
+
+  /**
+   * Scope of an array after an element
+   */
+  static final int NONEMPTY_ARRAY = 2;
+
+  /**
+   * Scope of an object expecting its first member, or one after a comma
+   */
+  static final int EMPTY_OBJECT = 3;
+
+  /**
+   * Scope of an object whose last token was a member name
+   */
+  static final int DANGLING_NAME = 4;
+
+  /**
+   * Scope of an object whose last token was the colon after a member name
+   */
+  static final int MEMBER_VALUE = 5;
+
+  /**
+   * Scope of an object after a member
+   */
+  static final int NONEMPTY_OBJECT = 6;
+
+  /**
+   * Lexer state between tokens
+   */
+  static final int BETWEEN = 0;
+
+  /**
+   * Lexer state inside a string
+   */
+  static final int STRING = 1;
+
+  /**
+   * Lexer state inside a number
+   */
+  static final int NUMBER = 2;
+
+  /**
+   * Lexer state inside true, false, or null
+   */
+  static final int LITERAL = 3;
+
+  /**
+   * Lexer state after a literal, which must not run into a letter or digit
+   */
+  static final int AFTER_LITERAL = 4;
+
+  // +--------+----------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * Where complete values go
+   */
+  Consumer<Object> consumer;
+
+  /**
+   * Nesting depth of the values passed to the consumer
+   */
+  int emitDepth = 0;
+
+  /**
+   * Scopes of the containers currently open, stack[0] being the document
+   */
+  int[] stack = new int[32];
+
+  /**
+   * Number of scopes in stack
+   */
+  int depth = 1;
+
+  /**
+   * The container being built for each scope, or null if it is not built
+   */
+  Object[] containers = new Object[32];
+
+  /**
+   * The name of the member being parsed in each object scope
+   */
+  String[] names = new String[32];
+
+  /**
+   * What the lexer is in the middle of
+   */
+  int lex = BETWEEN;
+
+  /**
+   * Raw bytes of the string being lexed
+   */
+  byte[] raw = new byte[64];
+
+  /**
+   * Number of bytes in raw
+   */
+  int rawLength = 0;
+
+  /**
+   * Whether the string being lexed contains an escape
+   */
+  boolean escapes = false;
+
+  /**
+   * Whether the last byte of the string so far is an escaping backslash
+   */
+  boolean backslash = false;
+
+  /**
+   * Whether the string being lexed is a member name
+   */
+  boolean name = false;
+
+  /**
+   * Recognizes numbers and computes their values
+   */
+  JSONNumberScanner numbers = new JSONNumberScanner();
+
+  /**
+   * The text of the number being lexed
+   */
+  StringBuilder text = new StringBuilder();
+
+  /**
+   * The literal being lexed
+   */
+  String literal;
+
+  /**
+   * Number of characters of literal matched so far
+   */
+  int matched;
+
+  /**
+   * Where object keys are looked up, if anywhere
+   */
+  JSONKeyCache keys = null;
+
+  /**
+   * Scratch space for copying chunks out of buffers without an array
+   */
+  byte[] bytes;
+
+  // +--------------+----------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Creates a parser passing each complete top-level value to consumer
+   *
+   * @param consumer
+   *          a Consumer
+   */
+  public JSONPushParser(Consumer<Object> consumer)
+  {
+    this.consumer = consumer;
+    this.stack[0] = DOCUMENT;
+  } // JSONPushParser(Consumer<Object>)
+
+  // +---------+---------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Sets whether numbers with a fraction or an exponent are parsed as
+   * BigDecimals rather than Doubles. Integers are not affected.
+   *
+   * @param bigDecimals
+   *          a boolean
+   */
+  public void setBigDecimals(boolean bigDecimals)
+  {
+    numbers.bigDecimals = bigDecimals;
+  } // setBigDecimals(boolean)
+
+  /**
+   * Sets the cache that object keys are looked up in, or null to create a
+   * new String for every key.
+   *
+   * @param keys
+   *          a JSONKeyCache
+   */
+  public void setKeyCache(JSONKeyCache keys)
+  {
+    this.keys = keys;
+  } // setKeyCache(JSONKeyCache)
+
+  /**
+   * Sets how deeply nested the values passed to the consumer are. At 0, the
+   * default, the consumer gets whole top-level values; at 1, it gets the
+   * elements of top-level arrays and the member values of top-level objects
+   * as each one is complete, and so on. Strings, numbers, and literals nested
+   * less deeply are passed on as well.
+   *
+   * @param emitDepth
+   *          an int
+   */
+  public void setEmitDepth(int emitDepth)
+  {
+    if (emitDepth < 0)
+      throw new IllegalArgumentException("Negative emit depth: " + emitDepth);
+    this.emitDepth = emitDepth;
+  } // setEmitDepth(int)
+
+  /**
+   * Parses the remaining bytes of chunk, passing on any values they
+   * complete, and leaves chunk with nothing remaining.
+   *
+   * @param chunk
+   *          a ByteBuffer
+   * @throws Exception
+   *           if the input so far is not valid JSON
+   */
+  public void feed(ByteBuffer chunk)
+    throws Exception
+  {
+    if (chunk.hasArray())
+      {
+        feed(chunk.array(), chunk.arrayOffset() + chunk.position(),
+             chunk.remaining());
+        chunk.position(chunk.limit());
+        return;
+      } // if
+    if (bytes == null)
+      bytes = new byte[8192];
+    while (chunk.hasRemaining())
+      {
+        int n = Math.min(chunk.remaining(), bytes.length);
+        chunk.get(bytes, 0, n);
+        feed(bytes, 0, n);
+      } // while
+  } // feed(ByteBuffer)
+
+  /**
+   * Parses length bytes of chunk starting at offset, passing on any values
+   * they complete.
+   *
+   * @param chunk
+   *          a byte[]
+   * @param offset
+   *          an int
+   * @param length
+   *          an int
+   * @throws Exception
+   *           if the input so far is not valid JSON
+   */
+  public void feed(byte[] chunk, int offset, int length)
+    throws Exception
+  {
+    int i = offset;
+    int end = offset + length;
+    while (i < end)
+      {
+        switch (lex)
+          {
+            case STRING:
+              i = scanString(chunk, i, end);
+              break;
+            case NUMBER:
+              i = scanNumber(chunk, i, end);
+              break;
+            case LITERAL:
+              i = scanLiteral(chunk, i, end);
+              break;
+            default:
+              byte b = chunk[i++];
+              if (lex == AFTER_LITERAL)
+                endLiteral(b);
+              if (!JSONByteParser.isWhitespace(b))
+                structural(b);
+          } // switch
+      } // while
+  } // feed(byte[], int, int)
+
+  /**
+   * Signals the end of the input, passing on a number left at the top level.
+   *
+   * @throws Exception
+   *           if the input stops in the middle of a value
+   */
+  public void finish()
+    throws Exception
+  {
+    if (lex == NUMBER)
+      endNumber();
+    else if (lex == AFTER_LITERAL)
+      endLiteral((byte) ' ');
+    if (lex != BETWEEN || depth > 1)
+      throw new Exception("Unexpected end of input.");
+  } // finish()
+
+  /**
+   * Returns whether the parser is between top-level values, so that the
+   * input may end here.
+   */
+  public boolean isIdle()
+  {
+    return lex == BETWEEN && depth == 1;
+  } // isIdle()
+
+  /**
+   * Returns the number of containers enclosing the parser's position.
+   */
+  public int getDepth()
+  {
+    return depth - 1;
+  } // getDepth()
+
+  /**
+   * Discards any partial value, so that the parser can start over, for
+   * example after an exception.
+   */
+  public void reset()
+  {
+    Arrays.fill(containers, 0, depth, null);
+    Arrays.fill(names, 0, depth, null);
+    depth = 1;
+    lex = BETWEEN;
+    rawLength = 0;
+    text.setLength(0);
+  } // reset()
+
+  // +-----------------+-------------------------------------------------
+  // | Parser Methods |
+  // +-----------------+
+
+  /**
+   * Handles a byte other than white space between tokens
+   *
+   * @param b
+   *          a byte
+   * @throws Exception
+   */
+  void structural(byte b)
+    throws Exception
+  {
+    switch (stack[depth - 1])
+      {
+        case EMPTY_ARRAY:
+          if (b == ']')
+            {
+              endContainer();
+              return;
+            } // if
+          stack[depth - 1] = NONEMPTY_ARRAY;
+          startValue(b);
+          return;
+        case NONEMPTY_ARRAY:
+          if (b == ']')
+            endContainer();
+          // like parseArray, tolerate a trailing comma
+          else if (b == ',')
+            stack[depth - 1] = EMPTY_ARRAY;
+          else
+            throw new Exception("Illegal array character: "
+                                + JSONReader.describe(b & 0xFF));
+          return;
+        case EMPTY_OBJECT:
+          if (b == '}')
+            {
+              endContainer();
+              return;
+            } // if
+          if (b != '\"')
+            throw new Exception("Invalid key type.");
+          stack[depth - 1] = DANGLING_NAME;
+          startString(true);
+          return;
+        case DANGLING_NAME:
+          if (b != ':')
+            throw new Exception("Invalid object format.");
+          stack[depth - 1] = MEMBER_VALUE;
+          return;
+        case MEMBER_VALUE:
+          stack[depth - 1] = NONEMPTY_OBJECT;
+          startValue(b);
+          return;
+        case NONEMPTY_OBJECT:
+          if (b == '}')
+            endContainer();
+          // like parseObject, tolerate a trailing comma
+          else if (b == ',')
+            stack[depth - 1] = EMPTY_OBJECT;
+          else
+            throw new Exception("Illegal object character: "
+                                + JSONReader.describe(b & 0xFF));
+          return;
+        default:
+          startValue(b);
+      } // switch
+  } // structural(byte)
+
+  /**
+   * Starts the value whose first byte is b
+   *
+   * @param b
+   *          a byte
+   * @throws Exception
+   */
+  void startValue(byte b)
+    throws Exception
+  {
+    switch (b)
+      {
+        case '{':
+          push(EMPTY_OBJECT);
+          break;
+        case '[':
+          push(EMPTY_ARRAY);
+          break;
+        case '\"':
+          startString(false);
+          break;
+        case 't':
+          startLiteral("true");
+          break;
+        case 'f':
+          startLiteral("false");
+          break;
+        case 'n':
+          startLiteral("null");
+          break;
+        default:
+          if ((b >= '0' && b <= '9') || b == '-')
+            {
+              numbers.reset();
+              numbers.accept(b);
+              text.setLength(0);
+              text.append((char) b);
+              lex = NUMBER;
+              break;
+            } // if
+          throw new Exception("Parser does not recognize value: "
+                              + JSONReader.describe(b & 0xFF));
+      } // switch
+  } // startValue(byte)
+
+  /**
+   * Opens a container with the given scope, building it only if its values
+   * are kept
+   *
+   * @param scope
+   *          an int
+   */
+  void push(int scope)
+  {
+    if (depth == stack.length)
+      {
+        stack = Arrays.copyOf(stack, depth * 2);
+        containers = Arrays.copyOf(containers, depth * 2);
+        names = Arrays.copyOf(names, depth * 2);
+      } // if
+    if (depth - 1 < emitDepth)
+      containers[depth] = null;
+    else if (scope == EMPTY_OBJECT)
+      containers[depth] = new JSONObjectMap();
+    else
+      containers[depth] = new ArrayList<Object>();
+    stack[depth++] = scope;
+  } // push(int)
+
+  /**
+   * Closes the innermost container and passes it on if it was built
+   *
+   * @throws Exception
+   */
+  void endContainer()
+    throws Exception
+  {
+    Object container = containers[--depth];
+    containers[depth] = null;
+    names[depth] = null;
+    if (container instanceof JSONObjectMap)
+      value(((JSONObjectMap) container).trim());
+    else if (container != null)
+      value(container);
+  } // endContainer()
+
+  /**
+   * Adds a complete value to its container, or passes it to the consumer
+   * if it is emitDepth deep or less
+   *
+   * @param value
+   *          an Object
+   */
+  @SuppressWarnings("unchecked")
+  void value(Object value)
+  {
+    int level = depth - 1;
+    if (level <= emitDepth)
+      consumer.accept(value);
+    else if (stack[level] == NONEMPTY_ARRAY)
+      ((ArrayList<Object>) containers[level]).add(value);
+    else
+      ((JSONObjectMap) containers[level]).put(names[level], value);
+  } // value(Object)
+
+  /**
+   * Starts a string whose opening quote has been consumed
+   *
+   * @param name
+   *          a boolean
+   */
+  void startString(boolean name)
+  {
+    this.name = name;
+    rawLength = 0;
+    escapes = false;
+    backslash = false;
+    lex = STRING;
+  } // startString(boolean)
+
+  /**
+   * Collects the bytes of a string from chunk starting at i, and returns the
+   * index after the last one used
+   *
+   * @param chunk
+   *          a byte[]
+   * @param i
+   *          an int
+   * @param end
+   *          an int
+   * @throws Exception
+   */
+  int scanString(byte[] chunk, int i, int end)
+    throws Exception
+  {
+    int start = i;
+    while (i < end)
+      {
+        byte b = chunk[i];
+        if (backslash)
+          {
+            backslash = false;
+          } // if
+        else if (b == '\\')
+          {
+            backslash = true;
+            escapes = true;
+          } // else if
+        else if (b == '\"')
+          {
+            append(chunk, start, i);
+            lex = BETWEEN;
+            endString();
+            return i + 1;
+          } // else if
+        i++;
+      } // while
+    append(chunk, start, end);
+    return end;
+  } // scanString(byte[], int, int)
+
+  /**
+   * Adds the bytes of chunk from start up to end to raw
+   *
+   * @param chunk
+   *          a byte[]
+   * @param start
+   *          an int
+   * @param end
+   *          an int
+   */
+  void append(byte[] chunk, int start, int end)
+  {
+    int n = end - start;
+    if (rawLength + n > raw.length)
+      raw = Arrays.copyOf(raw, Math.max(rawLength + n, raw.length * 2));
+    System.arraycopy(chunk, start, raw, rawLength, n);
+    rawLength += n;
+  } // append(byte[], int, int)
+
+  /**
+   * Decodes the string in raw and records it as a member name or a value
+   *
+   * @throws Exception
+   */
+  void endString()
+    throws Exception
+  {
+    String str = null;
+    if (name && keys != null && !escapes)
+      str = keys.intern(ByteBuffer.wrap(raw), 0, rawLength);
+    if (str == null)
+      {
+        str = escapes ? decodeEscaped() : new String(raw, 0, rawLength,
+                                                     StandardCharsets.UTF_8);
+        if (name && keys != null)
+          str = keys.intern(str);
+      } // if
+    if (name)
+      names[depth - 1] = str;
+    else
+      value(str);
+  } // endString()
+
+  /**
+   * Decodes the string in raw, which contains escape sequences
+   *
+   * @throws Exception
+   */
+  String decodeEscaped()
+    throws Exception
+  {
+    StringBuilder result = new StringBuilder(rawLength);
+    int run = 0;
+    int i = 0;
+    while (i < rawLength)
+      {
+        if (raw[i] != '\\')
+          {
+            i++;
+            continue;
+          } // if
+        result.append(new String(raw, run, i - run, StandardCharsets.UTF_8));
+        // a string never ends in the middle of an escape
+        byte b = raw[i + 1];
+        i += 2;
+        switch (b)
+          {
+            case '\\':
+            case '\"':
+            case '/':
+              result.append((char) b);
+              break;
+            case 'n':
+              result.append('\n');
+              break;
+            case 't':
+              result.append('\t');
+              break;
+            case 'b':
+              result.append('\b');
+              break;
+            case 'f':
+              result.append('\f');
+              break;
+            case 'r':
+              result.append('\r');
+              break;
+            case 'u':
+              if (i + 4 > rawLength)
+                throw new Exception("Illegal unicode escape.");
+              int unicode =
+                  (JSONParser.hexValue((char) raw[i]) << 12)
+                      | (JSONParser.hexValue((char) raw[i + 1]) << 8)
+                      | (JSONParser.hexValue((char) raw[i + 2]) << 4)
+                      | JSONParser.hexValue((char) raw[i + 3]);
+              if (unicode < 0)
+                throw new Exception("Illegal unicode escape.");
+              result.append((char) unicode);
+              i += 4;
+              break;
+            default:
+              throw new Exception("Illegal character after \\.");
+          } // switch
+        run = i;
+      } // while
+    result.append(new String(raw, run, rawLength - run,
+                             StandardCharsets.UTF_8));
+    return result.toString();
+  } // decodeEscaped()
+
+  /**
+   * Feeds the bytes of a number from chunk starting at i to the scanner, and
+   * returns the index after the last one used
+   *
+   * @param chunk
+   *          a byte[]
+   * @param i
+   *          an int
+   * @param end
+   *          an int
+   * @throws Exception
+   */
+  int scanNumber(byte[] chunk, int i, int end)
+    throws Exception
+  {
+    while (i < end && numbers.accept(chunk[i]))
+      {
+        text.append((char) chunk[i++]);
+      } // while
+    if (i == end)
+      return end;
+    // The number must end where the token does
+    byte b = chunk[i];
+    if (b != ',' && b != ']' && b != '}' && !JSONByteParser.isWhitespace(b))
+      throw new Exception("Illegal number: " + text
+                          + JSONReader.describe(b & 0xFF));
+    endNumber();
+    return i;
+  } // scanNumber(byte[], int, int)
+
+  /**
+   * Passes on the number that has been lexed
+   *
+   * @throws Exception
+   */
+  void endNumber()
+    throws Exception
+  {
+    if (!numbers.isComplete())
+      throw new Exception("Illegal number: " + text);
+    Number value = numbers.value();
+    if (value == null)
+      value = numbers.value(text.toString());
+    lex = BETWEEN;
+    value(value);
+  } // endNumber()
+
+  /**
+   * Starts lexing literal, whose first character has been consumed
+   *
+   * @param literal
+   *          a String
+   */
+  void startLiteral(String literal)
+  {
+    this.literal = literal;
+    matched = 1;
+    lex = LITERAL;
+  } // startLiteral(String)
+
+  /**
+   * Matches the bytes of a literal from chunk starting at i, and returns the
+   * index after the last one used
+   *
+   * @param chunk
+   *          a byte[]
+   * @param i
+   *          an int
+   * @param end
+   *          an int
+   * @throws Exception
+   */
+  int scanLiteral(byte[] chunk, int i, int end)
+    throws Exception
+  {
+    while (i < end && matched < literal.length())
+      {
+        if (chunk[i++] != literal.charAt(matched++))
+          throw new Exception("Parser does not recognize value: " + literal);
+      } // while
+    if (matched == literal.length())
+      lex = AFTER_LITERAL;
+    return i;
+  } // scanLiteral(byte[], int, int)
+
+  /**
+   * Passes on the literal that has been lexed, once b, the byte after it,
+   * shows that it stands alone
+   *
+   * @param b
+   *          a byte
+   * @throws Exception
+   */
+  void endLiteral(byte b)
+    throws Exception
+  {
+    if (b > 0 && Character.isLetterOrDigit(b))
+      throw new Exception("Parser does not recognize value: " + literal
+                          + (char) b);
+    lex = BETWEEN;
+    switch (literal)
+      {
+        case "true":
+          value(Boolean.TRUE);
+          break;
+        case "false":
+          value(Boolean.FALSE);
+          break;
+        default:
+          value(null);
+      } // switch
+  } // endLiteral(byte)
+} // class JSONPushParser
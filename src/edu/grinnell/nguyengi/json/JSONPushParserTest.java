@@ -0,0 +1,168 @@
+package edu.grinnell.nguyengi.json;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests for the incremental push parser
+ *
+ * @author Giang
+ *
+ */
+public class JSONPushParserTest
+{
+  /**
+   * Feeds bytes to parser in chunks of size bytes, then finishes
+   *
+   * @param parser
+   *          a JSONPushParser
+   * @param bytes
+   *          a byte[]
+   * @param size
+   *          an int
+   * @throws Exception
+   */
+  static void feed(JSONPushParser parser, byte[] bytes, int size)
+    throws Exception
+  {
+    for (int i = 0; i < bytes.length; i += size)
+      {
+        parser.feed(ByteBuffer.wrap(bytes, i,
+                                    Math.min(size, bytes.length - i)));
+      } // for
+    parser.finish();
+  } // feed(JSONPushParser, byte[], int)
+
+  /**
+   * Every sample gives what JSONUtils.parse does, however it is split,
+   * including through multi-byte characters and escapes
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testChunks()
+    throws Exception
+  {
+    List<String> samples =
+        new ArrayList<>(Arrays.asList(JSONReaderTest.SAMPLES));
+    samples.add("{\"caf\u00e9\":\"\u4e2d\\n\ud83d\ude00\\ud83d\\ude00\","
+                + "\"n\":-12.5e-3,\"big\":123456789012345678901234567890,"
+                + "\"t\":[true,false,null,],}");
+    for (String sample : samples)
+      {
+        Object expected = JSONUtils.parse(sample);
+        byte[] bytes = sample.getBytes(StandardCharsets.UTF_8);
+        for (int size = 1; size <= bytes.length; size++)
+          {
+            List<Object> values = new ArrayList<>();
+            JSONPushParser parser = new JSONPushParser(values::add);
+            feed(parser, bytes, size);
+            assertEquals(sample + " in chunks of " + size,
+                         Arrays.asList(expected), values);
+            assertTrue(parser.isIdle());
+          } // for
+      } // for
+  } // testChunks()
+
+  /**
+   * Values following each other are passed on one at a time, a number at
+   * the end only once the input is finished
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testSeveralValues()
+    throws Exception
+  {
+    List<Object> values = new ArrayList<>();
+    JSONPushParser parser = new JSONPushParser(values::add);
+    parser.feed(ByteBuffer.wrap("{\"a\":1} [2]\n\"x\" tr".getBytes()));
+    assertEquals(3, values.size());
+    assertFalse(parser.isIdle());
+    parser.feed(ByteBuffer.wrap("ue 42".getBytes()));
+    assertEquals(Boolean.TRUE, values.get(3));
+    assertEquals(4, values.size());
+    parser.finish();
+    assertEquals(Integer.valueOf(42), values.get(4));
+  } // testSeveralValues()
+
+  /**
+   * With an emit depth of 1, the elements of a top-level array are passed on
+   * before the array is closed, from direct buffers too
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testEmitDepth()
+    throws Exception
+  {
+    String text = JSONParallelParserTest.records();
+    byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+    List<Object> values = new ArrayList<>();
+    JSONPushParser parser = new JSONPushParser(values::add);
+    parser.setEmitDepth(1);
+    parser.setKeyCache(new JSONKeyCache());
+    ByteBuffer half = ByteBuffer.allocateDirect(bytes.length / 2);
+    half.put(bytes, 0, bytes.length / 2).flip();
+    parser.feed(half);
+    assertFalse(values.isEmpty());
+    assertTrue(parser.getDepth() >= 1);
+    parser.feed(ByteBuffer.wrap(bytes, bytes.length / 2,
+                                bytes.length - bytes.length / 2));
+    parser.finish();
+    assertEquals(JSONUtils.parse(text), values);
+  } // testEmitDepth()
+
+  /**
+   * Invalid input is rejected whether or not it is split, and the parser can
+   * start over after a reset
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testErrors()
+    throws Exception
+  {
+    String[] illegal =
+        { "[1 2]", "{\"a\" 1}", "{1:2}", "[,]", "tru", "truex", "[nul]",
+         "\"\\x\"", "\"\\u12G4\"", "01", "1.", "-", "[1", "{\"a\":", "\"abc",
+         "]" };
+    for (String text : illegal)
+      {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        for (int size = 1; size <= bytes.length; size++)
+          {
+            JSONPushParser parser = new JSONPushParser(new ArrayList<>()::add);
+            try
+              {
+                feed(parser, bytes, size);
+                fail(text + " in chunks of " + size);
+              } // try
+            catch (Exception e)
+              {
+                // expected
+              } // catch
+          } // for
+      } // for
+    List<Object> values = new ArrayList<>();
+    JSONPushParser parser = new JSONPushParser(values::add);
+    try
+      {
+        feed(parser, "[1 2]".getBytes(), 2);
+        fail();
+      } // try
+    catch (Exception e)
+      {
+        parser.reset();
+      } // catch
+    feed(parser, "[3]".getBytes(), 1);
+    assertEquals(Arrays.asList(Arrays.asList(3)), values);
+  } // testErrors()
+} // class JSONPushParserTest
@@ -0,0 +1,713 @@
+package edu.grinnell.nguyengi.json;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A pull parser for JSON text. Instead of building the whole value tree the
+ * way JSONUtils.parse does, a JSONReader hands out one token at a time, so the
+ * memory it needs grows with the nesting depth of the document rather than
+ * with its size.
+ *
+ * @author Giang
+ *
+ */
+public class JSONReader
+    implements Closeable
+{
+  // +-------+-----------------------------------------------------------
+  // | Notes |
+  // +-------+
+
+  /*
+   * The reader accepts the same values as JSONUtils.parse, including bare
+   * strings, numbers, and special values at the top level. Several top-level
+   * values may follow each other, separated by white space; END_DOCUMENT is
+   * only returned once the input is exhausted.
+   *
+   * The position in the nesting structure is kept in a stack of scopes. Each
+   * scope remembers what the reader expects to see next in that container.
+   */
+
+  /**
+   * The kinds of tokens returned by nextToken
+   */
+  public enum Token
+  {
+    START_OBJECT, END_OBJECT, START_ARRAY, END_ARRAY, NAME, STRING, NUMBER,
+    TRUE, FALSE, NULL, END_DOCUMENT
+  } // enum Token
+
+  // +-----------+-------------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * Scope of the top level, outside any container
+   */
+  static final int DOCUMENT = 0;
+
+  /**
+   * Scope of an array with no elements read yet
+   */
+  static final int EMPTY_ARRAY = 1;
+
+  /**
+   * Scope of an array with at least one element read
+   */
+  static final int NONEMPTY_ARRAY = 2;
+
+  /**
+   * Scope of an object with no members read yet
+   */
+  static final int EMPTY_OBJECT = 3;
+
+  /**
+   * Scope of an object whose last token was a member name
+   */
+  static final int DANGLING_NAME = 4;
+
+  /**
+   * Scope of an object with at least one member read
+   */
+  static final int NONEMPTY_OBJECT = 5;
+
+  /**
+   * Size of the character buffer
+   */
+  static final int BUFFER_SIZE = 8192;
+
+  // +--------+----------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * Where the characters come from
+   */
+  Reader in;
+
+  /**
+   * Characters read from in but not yet consumed
+   */
+  char[] buffer = new char[BUFFER_SIZE];
+
+  /**
+   * Position of the next unconsumed character in buffer
+   */
+  int pos = 0;
+
+  /**
+   * Number of valid characters in buffer
+   */
+  int limit = 0;
+
+  /**
+   * Scopes of the containers currently open, stack[0] being the document
+   */
+  int[] stack = new int[32];
+
+  /**
+   * Number of scopes in stack
+   */
+  int depth = 1;
+
+  /**
+   * The last token returned by nextToken
+   */
+  Token current = null;
+
+  /**
+   * The text of the current NAME, STRING, or NUMBER token
+   */
+  StringBuilder text = new StringBuilder();
+
+  /**
+   * When set, strings are scanned without keeping their text
+   */
+  boolean skipping = false;
+
+  /**
+   * Recognizes numbers and computes their values
+   */
+  JSONNumberScanner numbers = new JSONNumberScanner();
+
+  /**
+   * Where object keys are looked up, if anywhere
+   */
+  JSONKeyCache keys = null;
+
+  // +--------------+----------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Creates a reader pulling characters from in
+   *
+   * @param in
+   *          a Reader
+   */
+  public JSONReader(Reader in)
+  {
+    this.in = in;
+    this.stack[0] = DOCUMENT;
+  } // JSONReader(Reader)
+
+  /**
+   * Creates a reader pulling UTF-8 encoded text from in
+   *
+   * @param in
+   *          an InputStream
+   */
+  public JSONReader(InputStream in)
+  {
+    this(new InputStreamReader(in, StandardCharsets.UTF_8));
+  } // JSONReader(InputStream)
+
+  // +---------+---------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Sets whether numbers with a fraction or an exponent are read as
+   * BigDecimals rather than Doubles by getNumber and readValue. Integers are
+   * not affected.
+   *
+   * @param bigDecimals
+   *          a boolean
+   */
+  public void setBigDecimals(boolean bigDecimals)
+  {
+    numbers.bigDecimals = bigDecimals;
+  } // setBigDecimals(boolean)
+
+  /**
+   * Sets the cache that object keys are looked up in, or null to create a
+   * new String for every key.
+   *
+   * @param keys
+   *          a JSONKeyCache
+   */
+  public void setKeyCache(JSONKeyCache keys)
+  {
+    this.keys = keys;
+  } // setKeyCache(JSONKeyCache)
+
+  /**
+   * Advances to the next token and returns it.
+   *
+   * @throws Exception
+   *           if the input is not valid JSON or cannot be read
+   */
+  public Token nextToken()
+    throws Exception
+  {
+    int c;
+    switch (stack[depth - 1])
+      {
+        case EMPTY_ARRAY:
+          c = nextNonWhitespace();
+          if (c == ']')
+            return endScope(Token.END_ARRAY);
+          stack[depth - 1] = NONEMPTY_ARRAY;
+          return scanValue(c);
+        case NONEMPTY_ARRAY:
+          c = nextNonWhitespace();
+          if (c == ']')
+            return endScope(Token.END_ARRAY);
+          if (c != ',')
+            throw new Exception("Illegal array character: " + describe(c));
+          c = nextNonWhitespace();
+          // like parseArray, tolerate a trailing comma
+          if (c == ']')
+            return endScope(Token.END_ARRAY);
+          return scanValue(c);
+        case EMPTY_OBJECT:
+          c = nextNonWhitespace();
+          if (c == '}')
+            return endScope(Token.END_OBJECT);
+          return readName(c);
+        case NONEMPTY_OBJECT:
+          c = nextNonWhitespace();
+          if (c == '}')
+            return endScope(Token.END_OBJECT);
+          if (c != ',')
+            throw new Exception("Illegal object character: " + describe(c));
+          c = nextNonWhitespace();
+          // like parseObject, tolerate a trailing comma
+          if (c == '}')
+            return endScope(Token.END_OBJECT);
+          return readName(c);
+        case DANGLING_NAME:
+          if (nextNonWhitespace() != ':')
+            throw new Exception("Invalid object format.");
+          stack[depth - 1] = NONEMPTY_OBJECT;
+          return scanValue(nextNonWhitespace());
+        default:
+          c = nextNonWhitespace();
+          if (c == -1)
+            return current = Token.END_DOCUMENT;
+          return scanValue(c);
+      } // switch
+  } // nextToken()
+
+  /**
+   * Returns the last token returned by nextToken, or null before the first
+   * call.
+   */
+  public Token currentToken()
+  {
+    return current;
+  } // currentToken()
+
+  /**
+   * Returns the number of containers enclosing the reader's position.
+   */
+  public int getDepth()
+  {
+    return depth - 1;
+  } // getDepth()
+
+  /**
+   * Returns the text of the current NAME or STRING token (or the literal text
+   * of a NUMBER token).
+   *
+   * @throws Exception
+   *           if the current token carries no text
+   */
+  public String getString()
+    throws Exception
+  {
+    if (current != Token.NAME && current != Token.STRING
+        && current != Token.NUMBER)
+      throw new Exception("Current token is not a string: " + current);
+    if (current == Token.NAME && keys != null)
+      return keys.intern(text, 0, text.length());
+    return text.toString();
+  } // getString()
+
+  /**
+   * Returns the value of the current NUMBER token as a double.
+   *
+   * @throws Exception
+   *           if the current token is not a number
+   */
+  public double getDouble()
+    throws Exception
+  {
+    if (current != Token.NUMBER)
+      throw new Exception("Current token is not a number: " + current);
+    double value = numbers.fastDouble();
+    if (Double.isNaN(value))
+      value = Double.parseDouble(text.toString());
+    return value;
+  } // getDouble()
+
+  /**
+   * Returns the value of the current NUMBER token as the Number
+   * JSONUtils.parse would produce for it.
+   *
+   * @throws Exception
+   *           if the current token is not a number
+   */
+  public Number getNumber()
+    throws Exception
+  {
+    if (current != Token.NUMBER)
+      throw new Exception("Current token is not a number: " + current);
+    Number value = numbers.value();
+    if (value == null)
+      value = numbers.value(text.toString());
+    return value;
+  } // getNumber()
+
+  /**
+   * Returns the value of the current TRUE or FALSE token.
+   *
+   * @throws Exception
+   *           if the current token is not a boolean
+   */
+  public boolean getBoolean()
+    throws Exception
+  {
+    if (current != Token.TRUE && current != Token.FALSE)
+      throw new Exception("Current token is not a boolean: " + current);
+    return current == Token.TRUE;
+  } // getBoolean()
+
+  /**
+   * Skips the value at the reader's position. If the current token is a NAME,
+   * the member's value is skipped; if it is START_OBJECT or START_ARRAY,
+   * everything up to and including the matching end token is skipped. String
+   * contents are not kept while skipping.
+   *
+   * @throws Exception
+   *           if the input is not valid JSON or cannot be read
+   */
+  public void skipValue()
+    throws Exception
+  {
+    skipping = true;
+    try
+      {
+        if (current == Token.NAME)
+          nextToken();
+        if (current == Token.START_OBJECT || current == Token.START_ARRAY)
+          {
+            int target = depth - 1;
+            while (depth > target)
+              {
+                if (nextToken() == Token.END_DOCUMENT)
+                  throw new Exception("Unexpected end of input.");
+              } // while
+          } // if
+      } // try
+    finally
+      {
+        skipping = false;
+      } // finally
+  } // skipValue()
+
+  /**
+   * Reads the value at the reader's position into the form JSONUtils.parse
+   * produces: a JSONObjectMap for an object, an ArrayList for an array, and so on.
+   * If the current token is a NAME, the member's value is read. Otherwise the
+   * value starts at the current token, or at the next one if there is no
+   * current token yet.
+   *
+   * @throws Exception
+   *           if the input is not valid JSON or cannot be read
+   */
+  public Object readValue()
+    throws Exception
+  {
+    if (current == null || current == Token.NAME)
+      nextToken();
+    switch (current)
+      {
+        case START_OBJECT:
+          JSONObjectMap obj = new JSONObjectMap();
+          while (nextToken() != Token.END_OBJECT)
+            {
+              String key = getString();
+              obj.put(key, readValue());
+            } // while
+          return obj.trim();
+        case START_ARRAY:
+          ArrayList<Object> arr = new ArrayList<>();
+          while (nextToken() != Token.END_ARRAY)
+            {
+              arr.add(readValue());
+            } // while
+          return arr;
+        case STRING:
+          return text.toString();
+        case NUMBER:
+          return getNumber();
+        case TRUE:
+          return Boolean.TRUE;
+        case FALSE:
+          return Boolean.FALSE;
+        case NULL:
+          return null;
+        default:
+          throw new Exception("No value at token: " + current);
+      } // switch
+  } // readValue()
+
+  /**
+   * Closes the underlying Reader.
+   */
+  @Override
+  public void close()
+    throws IOException
+  {
+    in.close();
+  } // close()
+
+  // +------------------+------------------------------------------------
+  // | Scanning Methods |
+  // +------------------+
+
+  /**
+   * Reads the value whose first character, c, has already been consumed
+   *
+   * @param c
+   *          an int
+   * @throws Exception
+   */
+  Token scanValue(int c)
+    throws Exception
+  {
+    switch (c)
+      {
+        case '{':
+          push(EMPTY_OBJECT);
+          return current = Token.START_OBJECT;
+        case '[':
+          push(EMPTY_ARRAY);
+          return current = Token.START_ARRAY;
+        case '\"':
+          readString();
+          return current = Token.STRING;
+        case 't':
+          readLiteral("true");
+          return current = Token.TRUE;
+        case 'f':
+          readLiteral("false");
+          return current = Token.FALSE;
+        case 'n':
+          readLiteral("null");
+          return current = Token.NULL;
+        default:
+          if ((c >= '0' && c <= '9') || c == '-')
+            {
+              readNumber(c);
+              return current = Token.NUMBER;
+            } // if
+          throw new Exception("Parser does not recognize value: "
+                              + describe(c));
+      } // switch
+  } // scanValue(int)
+
+  /**
+   * Reads an object member name whose first character, c, has already been
+   * consumed
+   *
+   * @param c
+   *          an int
+   * @throws Exception
+   */
+  Token readName(int c)
+    throws Exception
+  {
+    if (c != '\"')
+      throw new Exception("Invalid key type.");
+    stack[depth - 1] = DANGLING_NAME;
+    readString();
+    return current = Token.NAME;
+  } // readName(int)
+
+  /**
+   * Reads the rest of a string whose opening quote has been consumed into
+   * text, decoding escape sequences
+   *
+   * @throws Exception
+   */
+  void readString()
+    throws Exception
+  {
+    text.setLength(0);
+    while (true)
+      {
+        // copy the run of plain characters in the buffer in one go
+        int start = pos;
+        while (pos < limit && buffer[pos] != '\"' && buffer[pos] != '\\')
+          {
+            pos++;
+          } // while
+        if (!skipping)
+          text.append(buffer, start, pos - start);
+        if (pos == limit)
+          {
+            if (!fill())
+              throw new Exception("Missing quote.");
+            continue;
+          } // if
+        if (buffer[pos++] == '\"')
+          return;
+        int escaped = read();
+        switch (escaped)
+          {
+            case '\\':
+            case '\"':
+            case '/':
+              text.append((char) escaped);
+              break;
+            case 'n':
+              text.append('\n');
+              break;
+            case 't':
+              text.append('\t');
+              break;
+            case 'b':
+              text.append('\b');
+              break;
+            case 'f':
+              text.append('\f');
+              break;
+            case 'r':
+              text.append('\r');
+              break;
+            case 'u':
+              int unicode = 0;
+              for (int i = 0; i < 4; i++)
+                {
+                  int digit = JSONParser.hexValue((char) read());
+                  if (digit < 0)
+                    throw new Exception("Illegal unicode escape.");
+                  unicode = (unicode << 4) | digit;
+                } // for
+              text.append((char) unicode);
+              break;
+            default:
+              throw new Exception("Illegal character after \\.");
+          } // switch
+      } // while
+  } // readString()
+
+  /**
+   * Reads the rest of a number whose first character, c, has already been
+   * consumed into text
+   *
+   * @param c
+   *          an int
+   * @throws Exception
+   */
+  void readNumber(int c)
+    throws Exception
+  {
+    text.setLength(0);
+    text.append((char) c);
+    numbers.reset();
+    numbers.accept(c);
+    while ((c = peek()) != -1 && numbers.accept(c))
+      {
+        text.append((char) c);
+        pos++;
+      } // while
+    // The number must end where the token does
+    if (c != -1 && c != ',' && c != ']' && c != '}'
+        && !Character.isWhitespace(c))
+      throw new Exception("Illegal number: " + text + (char) c);
+    if (!numbers.isComplete())
+      throw new Exception("Illegal number.");
+  } // readNumber(int)
+
+  /**
+   * Checks that the input continues with the rest of literal, whose first
+   * character has already been consumed
+   *
+   * @param literal
+   *          a String
+   * @throws Exception
+   */
+  void readLiteral(String literal)
+    throws Exception
+  {
+    for (int i = 1; i < literal.length(); i++)
+      {
+        if (read() != literal.charAt(i))
+          throw new Exception("Parser does not recognize value: " + literal);
+      } // for
+    int next = peek();
+    if (next != -1 && Character.isLetterOrDigit(next))
+      throw new Exception("Parser does not recognize value: " + literal
+                          + (char) next);
+  } // readLiteral(String)
+
+  /**
+   * Pops the innermost scope and records token as the current one
+   *
+   * @param token
+   *          a Token
+   */
+  Token endScope(Token token)
+  {
+    depth--;
+    return current = token;
+  } // endScope(Token)
+
+  /**
+   * Pushes a new scope, growing the stack when needed
+   *
+   * @param scope
+   *          an int
+   */
+  void push(int scope)
+  {
+    if (depth == stack.length)
+      stack = Arrays.copyOf(stack, depth * 2);
+    stack[depth++] = scope;
+  } // push(int)
+
+  /**
+   * Consumes white space and returns the next character, or -1 at the end of
+   * the input
+   *
+   * @throws IOException
+   */
+  int nextNonWhitespace()
+    throws IOException
+  {
+    while (pos < limit || fill())
+      {
+        char c = buffer[pos++];
+        if (!Character.isWhitespace(c))
+          return c;
+      } // while
+    return -1;
+  } // nextNonWhitespace()
+
+  /**
+   * Consumes and returns the next character, or -1 at the end of the input
+   *
+   * @throws IOException
+   */
+  int read()
+    throws IOException
+  {
+    if (pos == limit && !fill())
+      return -1;
+    return buffer[pos++];
+  } // read()
+
+  /**
+   * Returns the next character without consuming it, or -1 at the end of the
+   * input
+   *
+   * @throws IOException
+   */
+  int peek()
+    throws IOException
+  {
+    if (pos == limit && !fill())
+      return -1;
+    return buffer[pos];
+  } // peek()
+
+  /**
+   * Refills the buffer once all of it has been consumed. Returns false at the
+   * end of the input.
+   *
+   * @throws IOException
+   */
+  boolean fill()
+    throws IOException
+  {
+    int count;
+    while ((count = in.read(buffer, 0, buffer.length)) == 0)
+      {
+        // a Reader may legally return no characters; try again
+      } // while
+    pos = 0;
+    limit = Math.max(count, 0);
+    return count > 0;
+  } // fill()
+
+  /**
+   * Helper for error messages
+   *
+   * @param c
+   *          an int
+   */
+  static String describe(int c)
+  {
+    return c == -1 ? "end of input" : String.valueOf((char) c);
+  } // describe(int)
+} // class JSONReader
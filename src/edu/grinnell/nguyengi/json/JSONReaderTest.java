@@ -0,0 +1,183 @@
+package edu.grinnell.nguyengi.json;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import edu.grinnell.nguyengi.json.JSONReader.Token;
+
+/**
+ * Tests for the pull parser
+ *
+ * @author Giang
+ *
+ */
+public class JSONReaderTest
+{
+  /**
+   * Sample inputs shared with Tests.java
+   */
+  static final String[] SAMPLES =
+      { "[\t{\t\"\"\t:\t[\t]\t,\t\"\"\t:\t{\t}\t}\t,\t[\t]\t,\t\"[[]{\\\"\"\t]",
+       "[212,\"a\",{\"id\":32,\"abc\":22},null]",
+       "{\"password\":123456,\"a\":1,\"object\":{\"id\":32,\"Giang\\\"\":22,"
+           + "\"abc\":true,\"new object\":{\"inside\":[12]}},\"value\":null}",
+       "123", "[12,12E-5]", "[2,[12,13],343,[23],\"a\"]", "\"[{:\"", "{}",
+       "[\"\\u00D1\\u00fb\"]", "[[true, \"\", false], null]" };
+
+  /**
+   * Reading a whole value gives the same result as JSONUtils.parse
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testReadValueMatchesParse()
+    throws Exception
+  {
+    for (String sample : SAMPLES)
+      {
+        JSONReader reader = new JSONReader(new StringReader(sample));
+        assertEquals(sample, JSONUtils.parse(sample), reader.readValue());
+        assertEquals(Token.END_DOCUMENT, reader.nextToken());
+      } // for
+  } // testReadValueMatchesParse()
+
+  /**
+   * Checks the sequence of tokens and their values
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testTokens()
+    throws Exception
+  {
+    String json = "{\"a\" : [1.5, \"x\\ty\", true, false, null], \"b\":{}}";
+    byte[] input = json.getBytes(StandardCharsets.UTF_8);
+    JSONReader reader = new JSONReader(new ByteArrayInputStream(input));
+    assertEquals(Token.START_OBJECT, reader.nextToken());
+    assertEquals(Token.NAME, reader.nextToken());
+    assertEquals("a", reader.getString());
+    assertEquals(Token.START_ARRAY, reader.nextToken());
+    assertEquals(2, reader.getDepth());
+    assertEquals(Token.NUMBER, reader.nextToken());
+    assertEquals(1.5, reader.getDouble(), 0);
+    assertEquals(Token.STRING, reader.nextToken());
+    assertEquals("x\ty", reader.getString());
+    assertEquals(Token.TRUE, reader.nextToken());
+    assertEquals(Token.FALSE, reader.nextToken());
+    assertEquals(Token.NULL, reader.nextToken());
+    assertEquals(Token.END_ARRAY, reader.nextToken());
+    assertEquals(Token.NAME, reader.nextToken());
+    assertEquals(Token.START_OBJECT, reader.nextToken());
+    assertEquals(Token.END_OBJECT, reader.nextToken());
+    assertEquals(Token.END_OBJECT, reader.nextToken());
+    assertEquals(Token.END_DOCUMENT, reader.nextToken());
+  } // testTokens()
+
+  /**
+   * Skipping a member value leaves the reader on the next member
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testSkipValue()
+    throws Exception
+  {
+    JSONReader reader =
+        new JSONReader(new StringReader("{\"skip\":{\"x\":[1,{\"y\":\"}\"}]},"
+                                        + "\"keep\":\"yes\"}"));
+    assertEquals(Token.START_OBJECT, reader.nextToken());
+    assertEquals(Token.NAME, reader.nextToken());
+    reader.skipValue();
+    assertEquals(Token.END_OBJECT, reader.currentToken());
+    assertEquals(Token.NAME, reader.nextToken());
+    assertEquals("keep", reader.getString());
+    assertEquals("yes", reader.readValue());
+  } // testSkipValue()
+
+  /**
+   * Strings longer than the reader's buffer are read whole
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testLongString()
+    throws Exception
+  {
+    StringBuilder longString = new StringBuilder();
+    for (int i = 0; i < 3 * JSONReader.BUFFER_SIZE; i++)
+      {
+        longString.append((char) ('a' + i % 26));
+      } // for
+    JSONReader reader =
+        new JSONReader(new StringReader("[\"" + longString + "\"]"));
+    assertEquals(Token.START_ARRAY, reader.nextToken());
+    assertEquals(Token.STRING, reader.nextToken());
+    assertEquals(longString.toString(), reader.getString());
+  } // testLongString()
+
+  /**
+   * Malformed input is rejected
+   *
+   * @throws Exception
+   */
+  @Test(expected = Exception.class)
+  public void testMissingColon()
+    throws Exception
+  {
+    new JSONReader(new StringReader("{\"a\" 1}")).readValue();
+  } // testMissingColon()
+
+  /**
+   * A \\u escape takes only ASCII hex digits, as in JSONUtils.parse
+   */
+  @Test
+  public void testUnicodeEscapeDigits()
+  {
+    // Arabic-Indic digits zero to three
+    String text = "\"\\u\u0660\u0661\u0662\u0663\"";
+    try
+      {
+        new JSONReader(new StringReader(text)).readValue();
+        fail("accepted non-ASCII digits");
+      } // try
+    catch (Exception e)
+      {
+        assertEquals("Illegal unicode escape.", e.getMessage());
+      } // catch
+  } // testUnicodeEscapeDigits()
+
+  /**
+   * Malformed numbers give the messages JSONUtils.parse gives
+   */
+  @Test
+  public void testNumberErrors()
+  {
+    for (String text : new String[] { "-", "[1.]", "[1.x]", "[01]", "1e" })
+      {
+        String expected = null;
+        try
+          {
+            JSONUtils.parse(text);
+            fail(text);
+          } // try
+        catch (Exception e)
+          {
+            expected = e.getMessage();
+          } // catch
+        try
+          {
+            new JSONReader(new StringReader(text)).readValue();
+            fail(text);
+          } // try
+        catch (Exception e)
+          {
+            assertEquals(text, expected, e.getMessage());
+          } // catch
+      } // for
+  } // testNumberErrors()
+} // class JSONReaderTest
@@ -0,0 +1,392 @@
+package edu.grinnell.nguyengi.json;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * The positions of the tokens in UTF-8 encoded JSON text: every brace,
+ * bracket, colon, and comma outside of strings, both quotes of every string,
+ * and the first byte of every number and literal. JSONIndexedParser walks an
+ * index to build values without looking at white space or string contents.
+ *
+ * @author Giang
+ *
+ */
+public class JSONStructuralIndex
+{
+  // +-------+-----------------------------------------------------------
+  // | Notes |
+  // +-------+
+
+  /*
+   * The text is classified 64 bytes at a time into four bit masks, one bit
+   * per byte: quotes, backslashes, operators ({}[]:,), and white space. The
+   * rest is done on whole masks with shifts and adds. Escaped quotes are
+   * found from the runs of backslashes before them, and the bits inside
+   * strings are the prefix xor of the remaining quotes. Carries between
+   * blocks are kept in three fields.
+   *
+   * The masks come from a Classifier. If the JVM runs with the incubating
+   * jdk.incubator.vector module, JSONVectorClassifier computes them with
+   * vector compares; otherwise the Classifier here computes them eight bytes
+   * at a time within longs (SWAR).
+   *
+   * White space means the same bytes as JSONByteParser.isWhitespace, so a
+   * byte between tokens that is not white space always starts a token of its
+   * own, and JSONIndexedParser reports the same errors as JSONByteParser.
+   */
+
+  // +-----------+-------------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * Bytes classified at a time
+   */
+  static final int BLOCK = 64;
+
+  /**
+   * Indices of the masks filled in by a Classifier
+   */
+  static final int QUOTES = 0, BACKSLASHES = 1, OPERATORS = 2, SPACES = 3;
+
+  /**
+   * Bits at the even positions of a mask
+   */
+  static final long EVEN_BITS = 0x5555555555555555L;
+
+  /**
+   * The classifier used by build
+   */
+  static final Classifier CLASSIFIER = pickClassifier();
+
+  // +--------+----------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * Positions of the tokens, in order
+   */
+  int[] positions;
+
+  /**
+   * Number of positions
+   */
+  int count = 0;
+
+  /**
+   * Whether the last byte of the previous block escaped the next one
+   */
+  long prevEscaped = 0;
+
+  /**
+   * All ones if the previous block ended inside a string, else zero
+   */
+  long prevInString = 0;
+
+  /**
+   * 1 if the previous block ended inside a number or literal, else 0
+   */
+  long prevScalar = 0;
+
+  // +--------------+----------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Creates an empty index with room for capacity positions
+   *
+   * @param capacity
+   *          an int
+   */
+  JSONStructuralIndex(int capacity)
+  {
+    this.positions = new int[Math.max(capacity, 16)];
+  } // JSONStructuralIndex(int)
+
+  // +---------+---------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Indexes the bytes of the array between start and end. Positions are
+   * indices into bytes.
+   *
+   * @param bytes
+   *          a byte[]
+   * @param start
+   *          an int
+   * @param end
+   *          an int
+   */
+  static public JSONStructuralIndex build(byte[] bytes, int start, int end)
+  {
+    return build(bytes, start, end, CLASSIFIER);
+  } // build(byte[], int, int)
+
+  /**
+   * Indexes the bytes of the array between start and end with classifier
+   *
+   * @param bytes
+   *          a byte[]
+   * @param start
+   *          an int
+   * @param end
+   *          an int
+   * @param classifier
+   *          a Classifier
+   */
+  static JSONStructuralIndex build(byte[] bytes, int start, int end,
+                                   Classifier classifier)
+  {
+    // most documents have a token every eight bytes or so
+    JSONStructuralIndex index = new JSONStructuralIndex((end - start) / 8);
+    long[] masks = new long[4];
+    int base = start;
+    for (; base + BLOCK <= end; base += BLOCK)
+      {
+        classifier.classify(bytes, base, masks);
+        index.add(masks, base);
+      } // for
+    if (base < end)
+      {
+        // pad the last block with spaces, which never add a token
+        byte[] last = new byte[BLOCK];
+        Arrays.fill(last, (byte) ' ');
+        System.arraycopy(bytes, base, last, 0, end - base);
+        classifier.classify(last, 0, masks);
+        index.add(masks, base);
+      } // if
+    return index;
+  } // build(byte[], int, int, Classifier)
+
+  /**
+   * Returns the number of tokens.
+   */
+  public int size()
+  {
+    return count;
+  } // size()
+
+  /**
+   * Returns the position of token i.
+   *
+   * @param i
+   *          an int
+   */
+  public int get(int i)
+  {
+    if (i >= count)
+      throw new IndexOutOfBoundsException("Token " + i + " of " + count);
+    return positions[i];
+  } // get(int)
+
+  /**
+   * Adds the tokens of the block classified in masks, which starts at base
+   *
+   * @param masks
+   *          a long[]
+   * @param base
+   *          an int
+   */
+  void add(long[] masks, int base)
+  {
+    long quotes = masks[QUOTES] & ~escaped(masks[BACKSLASHES]);
+    long inString = prefixXor(quotes) ^ prevInString;
+    prevInString = inString >> 63;
+    long scalars = ~(masks[OPERATORS] | masks[SPACES] | quotes) & ~inString;
+    long scalarStarts = scalars & ~((scalars << 1) | prevScalar);
+    prevScalar = scalars >>> 63;
+    long tokens = (masks[OPERATORS] & ~inString) | quotes | scalarStarts;
+    int needed = count + Long.bitCount(tokens);
+    if (needed > positions.length)
+      positions = Arrays.copyOf(positions,
+                                Math.max(needed, positions.length * 2));
+    while (tokens != 0)
+      {
+        positions[count++] = base + Long.numberOfTrailingZeros(tokens);
+        tokens &= tokens - 1;
+      } // while
+  } // add(long[], int)
+
+  /**
+   * Returns the bits of the bytes escaped by a backslash, given the bits of
+   * the backslashes. A backslash escapes the next byte when it ends a run of
+   * odd length.
+   *
+   * @param backslashes
+   *          a long
+   */
+  long escaped(long backslashes)
+  {
+    if (backslashes == 0 && prevEscaped == 0)
+      return 0;
+    backslashes &= ~prevEscaped;
+    long followsEscape = (backslashes << 1) | prevEscaped;
+    // runs starting at odd positions, added to their runs, carry to the end
+    long oddStarts = backslashes & ~EVEN_BITS & ~followsEscape;
+    long sum = oddStarts + backslashes;
+    prevEscaped = Long.compareUnsigned(sum, oddStarts) < 0 ? 1 : 0;
+    long invert = sum << 1;
+    return (EVEN_BITS ^ invert) & followsEscape;
+  } // escaped(long)
+
+  /**
+   * Returns the mask in which each bit is the xor of itself and all lower bits
+   *
+   * @param bits
+   *          a long
+   */
+  static long prefixXor(long bits)
+  {
+    bits ^= bits << 1;
+    bits ^= bits << 2;
+    bits ^= bits << 4;
+    bits ^= bits << 8;
+    bits ^= bits << 16;
+    bits ^= bits << 32;
+    return bits;
+  } // prefixXor(long)
+
+  /**
+   * Returns the vector classifier if its module is available, else the SWAR
+   * one
+   */
+  static Classifier pickClassifier()
+  {
+    if (!Boolean.parseBoolean(System.getProperty("json.vector", "true")))
+      return new Classifier();
+    try
+      {
+        Class<?> vector =
+            Class.forName("edu.grinnell.nguyengi.json.JSONVectorClassifier");
+        return (Classifier) vector.getDeclaredConstructor().newInstance();
+      } // try
+    catch (Exception | LinkageError e)
+      {
+        // jdk.incubator.vector is not in the module graph
+        return new Classifier();
+      } // catch
+  } // pickClassifier()
+
+  // +---------------+---------------------------------------------------
+  // | Inner Classes |
+  // +---------------+
+
+  /**
+   * Classifies 64 bytes at a time, eight at a time within a long
+   */
+  static class Classifier
+  {
+    /**
+     * Reads eight bytes as a long, the first in the lowest bits
+     */
+    static final VarHandle LONGS =
+        MethodHandles.byteArrayViewVarHandle(long[].class,
+                                             ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * One in every byte
+     */
+    static final long ONES = 0x0101010101010101L;
+
+    /**
+     * The high bit of every byte
+     */
+    static final long HIGHS = 0x8080808080808080L;
+
+    /**
+     * Fills masks with the bits of the quotes, backslashes, operators, and
+     * white space among the 64 bytes starting at offset
+     *
+     * @param bytes
+     *          a byte[]
+     * @param offset
+     *          an int
+     * @param masks
+     *          a long[]
+     */
+    void classify(byte[] bytes, int offset, long[] masks)
+    {
+      long quotes = 0;
+      long backslashes = 0;
+      long operators = 0;
+      long spaces = 0;
+      for (int i = 0; i < BLOCK; i += 8)
+        {
+          long word = (long) LONGS.get(bytes, offset + i);
+          long folded = word | (0x20 * ONES);
+          quotes |= gather(equal(word, '\"')) << i;
+          backslashes |= gather(equal(word, '\\')) << i;
+          operators |= gather(equal(folded, '{') | equal(folded, '}')
+                              | equal(word, ':') | equal(word, ','))
+                       << i;
+          spaces |= gather(equal(word, ' ') | range(word, '\t', '\r')
+                           | range(word, 0x1C, 0x1F))
+                    << i;
+        } // for
+      masks[QUOTES] = quotes;
+      masks[BACKSLASHES] = backslashes;
+      masks[OPERATORS] = operators;
+      masks[SPACES] = spaces;
+    } // classify(byte[], int, long[])
+
+    /**
+     * Returns the high bits of the bytes of word that equal c
+     *
+     * @param word
+     *          a long
+     * @param c
+     *          an int
+     */
+    static long equal(long word, int c)
+    {
+      long x = word ^ (c * ONES);
+      // the high bit of a byte ends up set only if the byte is zero
+      return ~(((x & ~HIGHS) + ~HIGHS) | x) & HIGHS;
+    } // equal(long, int)
+
+    /**
+     * Returns the high bits of the bytes of word between low and high
+     * inclusive, both below 0x80
+     *
+     * @param word
+     *          a long
+     * @param low
+     *          an int
+     * @param high
+     *          an int
+     */
+    static long range(long word, int low, int high)
+    {
+      return below(word, high + 1) & ~below(word, low);
+    } // range(long, int, int)
+
+    /**
+     * Returns the high bits of the bytes of word below n, at most 0x80
+     *
+     * @param word
+     *          a long
+     * @param n
+     *          an int
+     */
+    static long below(long word, int n)
+    {
+      long sum = (word & ~HIGHS) + (0x80 - n) * ONES;
+      return ~(sum | word) & HIGHS;
+    } // below(long, int)
+
+    /**
+     * Packs the high bits of the eight bytes of bits into the low eight bits
+     *
+     * @param bits
+     *          a long
+     */
+    static long gather(long bits)
+    {
+      return ((bits >>> 7) * 0x0102040810204080L) >>> 56;
+    } // gather(long)
+  } // class Classifier
+} // class JSONStructuralIndex
@@ -0,0 +1,902 @@
+package edu.grinnell.nguyengi.json;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * An immutable JSON document held in two primitive arrays: a tape of long
+ * words describing the values in document order, and an arena holding the
+ * characters of strings. Values are addressed by node, the index of their
+ * first word on the tape.
+ *
+ * @author Giang
+ *
+ */
+public class JSONTape
+{
+  // +-------+-----------------------------------------------------------
+  // | Notes |
+  // +-------+
+
+  /*
+   * Each word holds a type character in its top byte and a payload in the
+   * other 56 bits:
+   *
+   * { and [ : the node of the matching } or ] in the low 32 bits, and the
+   * number of members or elements (up to 0xFFFFFF) in the next 24 bits.
+   * } and ] : the node of the matching { or [.
+   * " : the offset of the string in the arena, where it is stored as its
+   * length (two chars, high half first) followed by its characters.
+   * N : an integer too large for a long, or a decimal kept as a BigDecimal,
+   * stored as its text like a string and turned back into a Number when
+   * read.
+   * l and d : no payload; the next word is the long, or the bits of the
+   * double.
+   * t, f, and n : true, false, and null; no payload.
+   *
+   * An object's members are its keys (strings) each followed by its value.
+   * Since every container knows where it ends, passing over one is a single
+   * step, and nothing but the two arrays is kept per document.
+   *
+   * The tape is built by a JSONIndexedParser, so it accepts exactly what
+   * parse accepts, and toObject gives back the same values parse would.
+   * Object keys of up to 64 ASCII characters are stored in the arena once.
+   */
+
+  // +-----------+-------------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * Kinds of values on the tape
+   */
+  public enum Type
+  {
+    OBJECT, ARRAY, STRING, NUMBER, TRUE, FALSE, NULL
+  } // enum Type
+
+  /**
+   * Bits below the type character
+   */
+  static final int TYPE_SHIFT = 56;
+
+  /**
+   * The payload bits of a word
+   */
+  static final long PAYLOAD = (1L << TYPE_SHIFT) - 1;
+
+  /**
+   * The largest count stored in a container's word
+   */
+  static final int MAX_COUNT = 0xFFFFFF;
+
+  // +--------+----------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The words describing the values
+   */
+  final long[] tape;
+
+  /**
+   * The characters of the strings
+   */
+  final char[] arena;
+
+  // +--------------+----------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Creates a document from its tape and arena
+   *
+   * @param tape
+   *          a long[]
+   * @param arena
+   *          a char[]
+   */
+  JSONTape(long[] tape, char[] arena)
+  {
+    this.tape = tape;
+    this.arena = arena;
+  } // JSONTape(long[], char[])
+
+  // +---------+---------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Parses UTF-8 encoded JSON text into a tape.
+   *
+   * @param bytes
+   *          a byte[]
+   * @throws Exception
+   */
+  static public JSONTape parse(byte[] bytes)
+    throws Exception
+  {
+    return new Builder(bytes, 0, bytes.length).build();
+  } // parse(byte[])
+
+  /**
+   * Parses a JSON string into a tape.
+   *
+   * @param str
+   *          a String
+   * @throws Exception
+   */
+  static public JSONTape parse(String str)
+    throws Exception
+  {
+    return parse(str.getBytes(StandardCharsets.UTF_8));
+  } // parse(String)
+
+  /**
+   * Returns the node of the document's value.
+   */
+  public int root()
+  {
+    return 0;
+  } // root()
+
+  /**
+   * Returns the kind of value at node.
+   *
+   * @param node
+   *          an int
+   */
+  public Type getType(int node)
+  {
+    switch (type(node))
+      {
+        case '{':
+          return Type.OBJECT;
+        case '[':
+          return Type.ARRAY;
+        case '\"':
+          return Type.STRING;
+        case 't':
+          return Type.TRUE;
+        case 'f':
+          return Type.FALSE;
+        case 'n':
+          return Type.NULL;
+        default:
+          return Type.NUMBER;
+      } // switch
+  } // getType(int)
+
+  /**
+   * Returns the node after the value at node, skipping all of its contents.
+   *
+   * @param node
+   *          an int
+   */
+  public int next(int node)
+  {
+    switch (type(node))
+      {
+        case '{':
+        case '[':
+          return end(node) + 1;
+        case 'l':
+        case 'd':
+          return node + 2;
+        default:
+          return node + 1;
+      } // switch
+  } // next(int)
+
+  /**
+   * Returns the node of the } or ] that closes the object or array at node.
+   * Its members or elements are the nodes from node + 1 up to there.
+   *
+   * @param node
+   *          an int
+   */
+  public int end(int node)
+  {
+    container(node);
+    return (int) tape[node];
+  } // end(int)
+
+  /**
+   * Returns the number of members of the object, or elements of the array,
+   * at node.
+   *
+   * @param node
+   *          an int
+   */
+  public int size(int node)
+  {
+    container(node);
+    int count = (int) ((tape[node] >>> 32) & MAX_COUNT);
+    if (count < MAX_COUNT)
+      return count;
+    // too many to store; count them
+    count = 0;
+    int step = type(node) == '{' ? 2 : 1;
+    for (int child = node + 1; child < end(node); child = skip(child, step))
+      {
+        count++;
+      } // for
+    return count;
+  } // size(int)
+
+  /**
+   * Returns the node of the value of the member named key in the object at
+   * node, or -1 if there is none. As in parse, a later duplicate key hides
+   * an earlier one.
+   *
+   * @param node
+   *          an int
+   * @param key
+   *          a String
+   */
+  public int get(int node, String key)
+  {
+    if (type(node) != '{')
+      throw new IllegalStateException("Node " + node + " is not an object: "
+                                      + getType(node));
+    int found = -1;
+    for (int child = node + 1; child < end(node); child = skip(child, 2))
+      {
+        if (keyEquals(child, key))
+          found = child + 1;
+      } // for
+    return found;
+  } // get(int, String)
+
+  /**
+   * Returns the node of element index of the array at node, or -1 if there
+   * is none.
+   *
+   * @param node
+   *          an int
+   * @param index
+   *          an int
+   */
+  public int get(int node, int index)
+  {
+    if (type(node) != '[')
+      throw new IllegalStateException("Node " + node + " is not an array: "
+                                      + getType(node));
+    int child = node + 1;
+    for (int i = 0; i < index && child < end(node); i++)
+      {
+        child = next(child);
+      } // for
+    return index >= 0 && child < end(node) ? child : -1;
+  } // get(int, int)
+
+  /**
+   * Returns the string at node, which may also be an object key.
+   *
+   * @param node
+   *          an int
+   */
+  public String getString(int node)
+  {
+    if (type(node) != '\"')
+      throw new IllegalStateException("Node " + node + " is not a string: "
+                                      + getType(node));
+    int offset = (int) (tape[node] & PAYLOAD);
+    return new String(arena, offset + 2, length(offset));
+  } // getString(int)
+
+  /**
+   * Returns the number at node as a long, truncating any fraction.
+   *
+   * @param node
+   *          an int
+   */
+  public long getLong(int node)
+  {
+    char type = type(node);
+    if (type == 'l')
+      return tape[node + 1];
+    if (type == 'd')
+      return (long) Double.longBitsToDouble(tape[node + 1]);
+    return getNumber(node).longValue();
+  } // getLong(int)
+
+  /**
+   * Returns the number at node as a double.
+   *
+   * @param node
+   *          an int
+   */
+  public double getDouble(int node)
+  {
+    char type = type(node);
+    if (type == 'd')
+      return Double.longBitsToDouble(tape[node + 1]);
+    if (type == 'l')
+      return tape[node + 1];
+    return getNumber(node).doubleValue();
+  } // getDouble(int)
+
+  /**
+   * Returns the number at node, as the same kind of Number parse returns.
+   *
+   * @param node
+   *          an int
+   */
+  public Number getNumber(int node)
+  {
+    switch (type(node))
+      {
+        case 'l':
+          long value = tape[node + 1];
+          if (value == (int) value)
+            return Integer.valueOf((int) value);
+          return Long.valueOf(value);
+        case 'd':
+          return Double.valueOf(Double.longBitsToDouble(tape[node + 1]));
+        case 'N':
+          int offset = (int) (tape[node] & PAYLOAD);
+          String text = new String(arena, offset + 2, length(offset));
+          JSONNumberScanner scanner = new JSONNumberScanner();
+          for (int i = 0; i < text.length(); i++)
+            {
+              scanner.accept(text.charAt(i));
+            } // for
+          scanner.bigDecimals = !scanner.isIntegral();
+          return scanner.value(text);
+        default:
+          throw new IllegalStateException("Node " + node
+                                          + " is not a number: "
+                                          + getType(node));
+      } // switch
+  } // getNumber(int)
+
+  /**
+   * Returns the boolean at node.
+   *
+   * @param node
+   *          an int
+   */
+  public boolean getBoolean(int node)
+  {
+    char type = type(node);
+    if (type != 't' && type != 'f')
+      throw new IllegalStateException("Node " + node + " is not a boolean: "
+                                      + getType(node));
+    return type == 't';
+  } // getBoolean(int)
+
+  /**
+   * Determines whether the value at node is null.
+   *
+   * @param node
+   *          an int
+   */
+  public boolean isNull(int node)
+  {
+    return type(node) == 'n';
+  } // isNull(int)
+
+  /**
+   * Returns the document as the JSONObjectMaps and ArrayLists parse would
+   * return.
+   */
+  public Object toObject()
+  {
+    return toObject(root());
+  } // toObject()
+
+  /**
+   * Returns the value at node as the JSONObjectMaps and ArrayLists parse would
+   * return.
+   *
+   * @param node
+   *          an int
+   */
+  public Object toObject(int node)
+  {
+    switch (type(node))
+      {
+        case '{':
+          JSONObjectMap obj = new JSONObjectMap(size(node));
+          for (int child = node + 1; child < end(node); child = skip(child, 2))
+            {
+              obj.put(getString(child), toObject(child + 1));
+            } // for
+          return obj;
+        case '[':
+          ArrayList<Object> arr = new ArrayList<>(size(node));
+          for (int child = node + 1; child < end(node); child = next(child))
+            {
+              arr.add(toObject(child));
+            } // for
+          return arr;
+        case '\"':
+          return getString(node);
+        case 't':
+          return Boolean.TRUE;
+        case 'f':
+          return Boolean.FALSE;
+        case 'n':
+          return null;
+        default:
+          return getNumber(node);
+      } // switch
+  } // toObject(int)
+
+  /**
+   * Returns the number of words on the tape.
+   */
+  public int getTapeLength()
+  {
+    return tape.length;
+  } // getTapeLength()
+
+  /**
+   * Returns the number of characters in the string arena.
+   */
+  public int getArenaLength()
+  {
+    return arena.length;
+  } // getArenaLength()
+
+  /**
+   * Returns the type character of the word at node
+   *
+   * @param node
+   *          an int
+   */
+  char type(int node)
+  {
+    if (node < 0 || node >= tape.length)
+      throw new IndexOutOfBoundsException("Node " + node + " of "
+                                          + tape.length);
+    return (char) (tape[node] >>> TYPE_SHIFT);
+  } // type(int)
+
+  /**
+   * Fails unless node is an object or an array
+   *
+   * @param node
+   *          an int
+   */
+  void container(int node)
+  {
+    char type = type(node);
+    if (type != '{' && type != '[')
+      throw new IllegalStateException("Node " + node
+                                      + " is not an object or array: "
+                                      + getType(node));
+  } // container(int)
+
+  /**
+   * Returns the node steps values after node
+   *
+   * @param node
+   *          an int
+   * @param steps
+   *          an int
+   */
+  int skip(int node, int steps)
+  {
+    for (int i = 0; i < steps; i++)
+      {
+        node = next(node);
+      } // for
+    return node;
+  } // skip(int, int)
+
+  /**
+   * Returns the length of the string stored at offset in the arena
+   *
+   * @param offset
+   *          an int
+   */
+  int length(int offset)
+  {
+    return (arena[offset] << 16) | arena[offset + 1];
+  } // length(int)
+
+  /**
+   * Determines whether the key at node is key, without creating a String
+   *
+   * @param node
+   *          an int
+   * @param key
+   *          a String
+   */
+  boolean keyEquals(int node, String key)
+  {
+    int offset = (int) (tape[node] & PAYLOAD);
+    int length = length(offset);
+    if (length != key.length())
+      return false;
+    for (int i = 0; i < length; i++)
+      {
+        if (arena[offset + 2 + i] != key.charAt(i))
+          return false;
+      } // for
+    return true;
+  } // keyEquals(int, String)
+
+  // +---------------+---------------------------------------------------
+  // | Inner Classes |
+  // +---------------+
+
+  /**
+   * Builds a tape by walking the structural index of the text
+   */
+  static class Builder
+      extends JSONIndexedParser
+  {
+    /**
+     * Number of slots in the table of stored keys
+     */
+    static final int KEY_SLOTS = 1024;
+
+    /**
+     * The tape so far
+     */
+    long[] words;
+
+    /**
+     * Number of words used
+     */
+    int size = 0;
+
+    /**
+     * The arena so far
+     */
+    char[] strings;
+
+    /**
+     * Number of chars used
+     */
+    int used = 0;
+
+    /**
+     * Arena offsets of stored keys, by hash, plus one (0 is empty)
+     */
+    int[] keys = new int[KEY_SLOTS];
+
+    /**
+     * Creates a builder for length bytes of the array, starting at offset
+     *
+     * @param bytes
+     *          a byte[]
+     * @param offset
+     *          an int
+     * @param length
+     *          an int
+     */
+    Builder(byte[] bytes, int offset, int length)
+    {
+      super(bytes, offset, length);
+      this.words = new long[Math.max(16, index.size() + 8)];
+      this.strings = new char[Math.max(16, length / 2)];
+    } // Builder(byte[], int, int)
+
+    /**
+     * Builds the tape for the value at the start of the text
+     *
+     * @throws Exception
+     */
+    JSONTape build()
+      throws Exception
+    {
+      value();
+      return new JSONTape(Arrays.copyOf(words, size),
+                          Arrays.copyOf(strings, used));
+    } // build()
+
+    /**
+     * Adds a word to the tape, returning its node
+     *
+     * @param type
+     *          a char
+     * @param payload
+     *          a long
+     */
+    int emit(char type, long payload)
+    {
+      if (size == words.length)
+        words = Arrays.copyOf(words, size * 2);
+      words[size] = ((long) type << TYPE_SHIFT) | payload;
+      return size++;
+    } // emit(char, long)
+
+    /**
+     * Adds the value at the parser's position to the tape
+     *
+     * @throws Exception
+     */
+    void value()
+      throws Exception
+    {
+      skipWhitespace();
+      if (pos == limit)
+        throw new Exception("Parser does not recognize value: end of input");
+      byte first = text[pos];
+      if (first == '{')
+        object();
+      else if (first == '[')
+        array();
+      else if (first == '\"')
+        string(false);
+      else if ((first >= '0' && first <= '9') || first == '-')
+        number();
+      else
+        literal();
+    } // value()
+
+    /**
+     * Adds the object at the parser's position to the tape
+     *
+     * @throws Exception
+     */
+    void object()
+      throws Exception
+    {
+      int start = emit('{', 0);
+      int count = 0;
+      pos++;
+      skipWhitespace();
+      while (current() != '}')
+        {
+          if (text[pos] != '\"')
+            throw new Exception("Invalid key type.");
+          string(true);
+          if (current() != ':')
+            throw new Exception("Invalid object format.");
+          pos++;
+          value();
+          count++;
+          byte b = current();
+          if (b != ',' && b != '}')
+            throw new Exception("Illegal object character: " + (char) b);
+          if (b == ',')
+            {
+              pos++;
+              skipWhitespace();
+            } // if
+        } // while
+      pos++;
+      skipWhitespace();
+      close(start, '}', count);
+    } // object()
+
+    /**
+     * Adds the array at the parser's position to the tape
+     *
+     * @throws Exception
+     */
+    void array()
+      throws Exception
+    {
+      int start = emit('[', 0);
+      int count = 0;
+      pos++;
+      skipWhitespace();
+      while (current() != ']')
+        {
+          value();
+          count++;
+          byte b = current();
+          if (b != ',' && b != ']')
+            throw new Exception("Illegal array character: " + (char) b);
+          if (b == ',')
+            {
+              pos++;
+              skipWhitespace();
+            } // if
+        } // while
+      pos++;
+      skipWhitespace();
+      close(start, ']', count);
+    } // array()
+
+    /**
+     * Closes the container whose word is at start
+     *
+     * @param start
+     *          an int
+     * @param type
+     *          a char
+     * @param count
+     *          an int
+     */
+    void close(int start, char type, int count)
+    {
+      int end = emit(type, start);
+      words[start] |= ((long) Math.min(count, MAX_COUNT) << 32) | end;
+    } // close(int, char, int)
+
+    /**
+     * Adds the string at the parser's position to the tape. ASCII strings
+     * without escapes are copied straight from the text.
+     *
+     * @param key
+     *          a boolean
+     * @throws Exception
+     */
+    void string(boolean key)
+      throws Exception
+    {
+      skipWhitespace();
+      if (next + 1 >= index.count)
+        throw new Exception("Missing quote.");
+      int start = pos + 1;
+      int end = index.positions[next + 1];
+      int hash = 0;
+      int i = start;
+      while (i < end && text[i] > 0 && text[i] != '\\')
+        {
+          hash = 31 * hash + text[i];
+          i++;
+        } // while
+      if (i < end)
+        {
+          // escapes or non-ASCII bytes; let the parser decode them
+          store('\"', super.parseString(null));
+          return;
+        } // if
+      int length = end - start;
+      int slot = (hash ^ (hash >>> 16)) & (KEY_SLOTS - 1);
+      if (key && length <= JSONKeyCache.MAX_KEY_LENGTH && keys[slot] > 0)
+        {
+          int offset = keys[slot] - 1;
+          if (sameKey(offset, start, length))
+            {
+              emit('\"', offset);
+              pos = end + 1;
+              skipWhitespace();
+              return;
+            } // if
+        } // if
+      int offset = reserve(length);
+      for (int j = 0; j < length; j++)
+        {
+          strings[offset + 2 + j] = (char) text[start + j];
+        } // for
+      emit('\"', offset);
+      if (key && length <= JSONKeyCache.MAX_KEY_LENGTH)
+        keys[slot] = offset + 1;
+      pos = end + 1;
+      skipWhitespace();
+    } // string(boolean)
+
+    /**
+     * Determines whether the stored string at offset has the ASCII bytes of
+     * the text starting at start
+     *
+     * @param offset
+     *          an int
+     * @param start
+     *          an int
+     * @param length
+     *          an int
+     */
+    boolean sameKey(int offset, int start, int length)
+    {
+      if (((strings[offset] << 16) | strings[offset + 1]) != length)
+        return false;
+      for (int i = 0; i < length; i++)
+        {
+          if (strings[offset + 2 + i] != text[start + i])
+            return false;
+        } // for
+      return true;
+    } // sameKey(int, int, int)
+
+    /**
+     * Makes room in the arena for a string of length chars, stores the
+     * length, and returns the string's offset
+     *
+     * @param length
+     *          an int
+     */
+    int reserve(int length)
+    {
+      if (used + length + 2 > strings.length)
+        strings = Arrays.copyOf(strings,
+                                Math.max(used + length + 2,
+                                         strings.length * 2));
+      int offset = used;
+      strings[offset] = (char) (length >>> 16);
+      strings[offset + 1] = (char) length;
+      used += length + 2;
+      return offset;
+    } // reserve(int)
+
+    /**
+     * Adds a word of the given type for str, stored in the arena
+     *
+     * @param type
+     *          a char
+     * @param str
+     *          a String
+     */
+    void store(char type, String str)
+    {
+      int offset = reserve(str.length());
+      str.getChars(0, str.length(), strings, offset + 2);
+      emit(type, offset);
+    } // store(char, String)
+
+    /**
+     * Adds the number at the parser's position to the tape, without boxing
+     * it when it fits in a long or a double
+     *
+     * @throws Exception
+     */
+    void number()
+      throws Exception
+    {
+      int start = pos;
+      numbers.reset();
+      while (pos < limit && numbers.accept(text[pos]))
+        {
+          pos++;
+        } // while
+      if (pos < limit && !isEndOfSV(text[pos]) && !isWhitespace(text[pos]))
+        throw new Exception("Illegal number: " + decodeUTF8(start, pos + 1));
+      if (!numbers.isComplete())
+        throw new Exception("Illegal number.");
+      if (numbers.isIntegral() && numbers.digits <= 18)
+        {
+          emit('l', 0);
+          emit('\0', 0);
+          words[size - 1] = numbers.negative ? -numbers.mantissa
+                                             : numbers.mantissa;
+        } // if
+      else
+        {
+          double value = Double.NaN;
+          if (!numbers.isIntegral() && !numbers.bigDecimals)
+            value = numbers.fastDouble();
+          if (Double.isNaN(value))
+            {
+              String digits = decodeUTF8(start, pos);
+              Number exact = numbers.value(digits);
+              if (exact instanceof Long)
+                {
+                  emit('l', 0);
+                  emit('\0', 0);
+                  words[size - 1] = exact.longValue();
+                } // if
+              else if (exact instanceof Double)
+                {
+                  value = exact.doubleValue();
+                } // else if
+              else
+                {
+                  store('N', digits);
+                } // else
+            } // if
+          if (!Double.isNaN(value))
+            {
+              emit('d', 0);
+              emit('\0', 0);
+              words[size - 1] = Double.doubleToRawLongBits(value);
+            } // if
+        } // else
+      skipWhitespace();
+    } // number()
+
+    /**
+     * Adds the true, false, or null at the parser's position to the tape
+     *
+     * @throws Exception
+     */
+    void literal()
+      throws Exception
+    {
+      Object value = parseSpecialValue();
+      if (value == null)
+        emit('n', 0);
+      else
+        emit((Boolean) value ? 't' : 'f', 0);
+    } // literal()
+  } // class Builder
+} // class JSONTape
@@ -0,0 +1,126 @@
+package edu.grinnell.nguyengi.json;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Tests for the tape representation
+ *
+ * @author Giang
+ *
+ */
+public class JSONTapeTest
+{
+  /**
+   * toObject gives back what parse returns
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testToObject()
+    throws Exception
+  {
+    for (String sample : JSONReaderTest.SAMPLES)
+      {
+        assertEquals(sample, JSONUtils.parse(sample),
+                     JSONTape.parse(sample).toObject());
+      } // for
+    String records = JSONParallelParserTest.records();
+    assertEquals(JSONUtils.parse(records), JSONTape.parse(records).toObject());
+    String numbers = "[0, -7, 2147483648, 123456789012345678, "
+                     + "12345678901234567890, -9223372036854775808, 1.5e300, "
+                     + "0.1, 1e400, 123456789012345678901234567890.5]";
+    assertEquals(JSONUtils.parse(numbers), JSONTape.parse(numbers).toObject());
+  } // testToObject()
+
+  /**
+   * Navigation and typed getters
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testNavigation()
+    throws Exception
+  {
+    JSONTape tape = JSONTape.parse("{\"a\": [1, 2.5, \"x\\n\", true, null,"
+                                   + " {}], \"b\": {\"c\": -3}, \"a\": 0,"
+                                   + " \"\\u00e9\": false}");
+    int root = tape.root();
+    assertEquals(JSONTape.Type.OBJECT, tape.getType(root));
+    assertEquals(4, tape.size(root));
+    assertEquals(0, tape.getLong(tape.get(root, "a")));
+    assertEquals(-1, tape.get(root, "z"));
+    int b = tape.get(root, "b");
+    assertEquals(-3.0, tape.getDouble(tape.get(b, "c")), 0);
+    assertFalse(tape.getBoolean(tape.get(root, "\u00e9")));
+    int arr = tape.root() + 2;
+    assertEquals(JSONTape.Type.ARRAY, tape.getType(arr));
+    assertEquals(6, tape.size(arr));
+    assertEquals(1, tape.getNumber(tape.get(arr, 0)));
+    assertEquals(2.5, tape.getDouble(tape.get(arr, 1)), 0);
+    assertEquals(2, tape.getLong(tape.get(arr, 1)));
+    assertEquals("x\n", tape.getString(tape.get(arr, 2)));
+    assertTrue(tape.getBoolean(tape.get(arr, 3)));
+    assertTrue(tape.isNull(tape.get(arr, 4)));
+    assertEquals(0, tape.size(tape.get(arr, 5)));
+    assertEquals(-1, tape.get(arr, 6));
+    try
+      {
+        tape.getString(arr);
+        fail();
+      } // try
+    catch (IllegalStateException e)
+      {
+        // not a string
+      } // catch
+  } // testNavigation()
+
+  /**
+   * Repeated keys are stored once
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testCompact()
+    throws Exception
+  {
+    StringBuilder text = new StringBuilder("[");
+    for (int i = 0; i < 1000; i++)
+      {
+        text.append(i == 0 ? "" : ",").append("{\"name\":\"n\",\"id\":")
+            .append(i).append("}");
+      } // for
+    JSONTape tape = JSONTape.parse(text.append("]").toString());
+    // one copy of each key plus 1000 copies of "n"
+    assertEquals(6 + 4 + 3 * 1000, tape.getArenaLength());
+    // [ ] plus per record { } two keys, a string, and a long in two words
+    assertEquals(2 + 1000 * 7, tape.getTapeLength());
+    assertEquals(999, tape.getLong(tape.get(tape.get(0, 999), "id")));
+  } // testCompact()
+
+  /**
+   * Malformed text fails as in parse
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testErrors()
+    throws Exception
+  {
+    String[] bad = { "[1 2]", "{\"a\" 1}", "[\"a]", "[1,tru]", "{\"a\":1",
+                    "[1.]", "", "{1:2}" };
+    for (String text : bad)
+      {
+        try
+          {
+            JSONTape.parse(text);
+            fail(text);
+          } // try
+        catch (Exception e)
+          {
+            // expected
+          } // catch
+      } // for
+  } // testErrors()
+} // class JSONTapeTest
@@ -1,13 +1,20 @@
 package edu.grinnell.nguyengi.json;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.FileReader;
-import java.io.PrintWriter;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 /* Citation:
  * 
@@ -40,6 +47,16 @@ public class JSONUtils
   // | Fields |
   // +--------+
 
+  /**
+   * Where the parse and write methods report, if anywhere
+   */
+  static volatile JSONListener listener = null;
+
+  /**
+   * Parses files for parseFiles
+   */
+  static final JSONBatchParser BATCH = new JSONBatchParser();
+
   // +--------------+----------------------------------------------------
   // | Constructors |
   // +--------------+
@@ -48,6 +65,19 @@ public class JSONUtils
   // | Methods |
   // +---------+
 
+  /**
+   * Sets the listener that parse(String), parse(byte[]), parse(ByteBuffer),
+   * parseFromFile, toJSONString, and writeJSON report to, or null to report
+   * nothing. A JSONMetrics adds the reports up and can be watched over JMX.
+   *
+   * @param listener
+   *          a JSONListener
+   */
+  static public void setListener(JSONListener listener)
+  {
+    JSONUtils.listener = listener;
+  } // setListener(JSONListener)
+
   // +----------------+-----------------------------------------------
   // | Parser Methods |
   // +----------------+
@@ -63,55 +93,41 @@ public class JSONUtils
   static public Object parse(String str)
     throws Exception
   {
-    // the (first member of the) integer array will be used to keep track of the
-    // parsing process
-    return parse(str, new int[] { 0 });
+    JSONParser parser = JSONParser.cached();
+    parser.listener = listener;
+    return parser.parse(str);
   } // parse (String)
 
   /**
-   * Parses a JSON string from a specified index and returns a corresponding
-   * object.
+   * Parses UTF-8 encoded JSON text and returns an object that corresponds to
+   * the value described in it, without decoding the whole text into a String
+   * first.
    * 
-   * @param str
-   *          a String
-   * @param index
-   *          an int[]
+   * @param bytes
+   *          a byte[]
    * @throws Exception
    */
-  static Object parse(String str, int[] index)
+  static public Object parse(byte[] bytes)
     throws Exception
   {
-    // White spaces either precede or follow JSON values
-    // Removing here takes care of the white spaces in front in most cases
-    deleteWhitespace(str, index);
-    char first = str.charAt(index[0]);
-    // I1: Object and array parse methods can only call parse when index is at
-    // the first character of new value
-    // I2: All parse methods keeps index at the separator tokens or the end when
-    // they finish
-    if (first == ('{'))
-      {
-        return parseObject(str, index);
-      } // if object
-    else if (first == '[')
-      {
-        return parseArray(str, index);
-      } // else if array
-    else if (first == '\"')
-      {
-        return parseString(str, index);
-      } // else if String
-    else if (Character.isDigit(first) || first == '.' || first == '+'
-             || first == '-')
-      {
-        return parseNumber(str, index);
-      } // else if Number
-    else
-      {
-        return parseSpecialValue(str, index);
-      } // else must be special value
+    return parse(ByteBuffer.wrap(bytes));
+  } // parse(byte[])
 
-  } // parse(String)
+  /**
+   * Parses the UTF-8 encoded JSON text between the position and the limit of
+   * buf and returns an object that corresponds to the value described in it.
+   * 
+   * @param buf
+   *          a ByteBuffer
+   * @throws Exception
+   */
+  static public Object parse(ByteBuffer buf)
+    throws Exception
+  {
+    JSONByteParser parser = new JSONByteParser(buf);
+    parser.listener = listener;
+    return parser.parse();
+  } // parse(ByteBuffer)
 
   /**
    * Parses single JSON object from the file specified by fileName.
@@ -123,319 +139,206 @@ public class JSONUtils
   static public Object parseFromFile(String fileName)
     throws Exception
   {
-    BufferedReader eyes =
-        new BufferedReader(new FileReader(new File(fileName)));
-    String test = null;
-    StringBuilder obj = new StringBuilder();
-    // Method treats all lines as single object
-    while ((test = eyes.readLine()) != null)
-      {
-        obj.append(test);
-      } // while
-    eyes.close();
-    return parse(obj.toString());
+    return parseFromFile(Paths.get(fileName));
   } // parseFromFile(String)
 
   /**
-   * Parses single JSON object from the file specified by fileName. Writes back
-   * into file the JSON string without white spaces.
+   * Parses single JSON object from the UTF-8 encoded file at path. Large files
+   * are parsed through a memory mapping rather than read onto the heap.
    * 
-   * @param fileName
-   *          a String
+   * @param path
+   *          a Path
    * @throws Exception
    */
-  static public void deleteWhitespace(String fileName)
+  static public Object parseFromFile(Path path)
     throws Exception
   {
-    Object obj = parseFromFile(fileName);
-    PrintWriter pen = new PrintWriter(new FileOutputStream(new File(fileName)));
-    pen.write(toJSONString(obj));
-    pen.flush();
-    pen.close();
-  } // deleteWhitespace(String)
+    return JSONFileParser.parse(path, JSONFileParser.WINDOW_SIZE, listener);
+  } // parseFromFile(Path)
 
   /**
-   * Skips over consecutive whitespace characters starting from index specified
-   * by index[0].
+   * Returns a stream of the records in the newline-delimited JSON file at
+   * path, one per line. The stream holds the file open until it is closed.
+   * See JSONLines for parallel parsing and other options.
    * 
-   * @param str
-   *          a String
-   * @param index
-   *          an int[]
+   * @param path
+   *          a Path
+   * @throws IOException
    */
-  static void deleteWhitespace(String str, int[] index)
+  static public Stream<Object> parseLines(Path path)
+    throws IOException
   {
-    while (!isEnd(str, index[0])
-           && Character.isWhitespace(str.charAt(index[0])))
-      {
-        index[0]++;
-      } // while
-  } // deleteWhitespace(String, int[])
+    return new JSONLines().stream(path);
+  } // parseLines(Path)
 
   /**
-   * Tries to parse str as true, false, or null, returns them if successful
-   * 
-   * @param str
-   *          s String
-   * @param index
-   *          an int array
+   * Parses the JSON file at path, parsing the elements of a top-level array
+   * on several threads. See JSONParallelParser for other options.
+   *
+   * @param path
+   *          a Path
    * @throws Exception
    */
-  static Object parseSpecialValue(String str, int[] index)
+  static public Object parseParallel(Path path)
     throws Exception
   {
-    // An obviously false value to compare later
-    Object result = "";
-    // Moves index as long as the first characters match
-    if (str.startsWith("true", index[0]))
-      {
-        index[0] += 4;
-        result = Boolean.TRUE;
-      } // if
-    else if (str.startsWith("false", index[0]))
-      {
-        index[0] += 5;
-        result = Boolean.FALSE;
-      } // else if
-    else if (str.startsWith("null", index[0]))
-      {
-        index[0] += 4;
-        result = null;
-      } // else if
-    // Takes care of all white spaces after value
-    deleteWhitespace(str, index);
-    // We're safe if there was actually a value or if token ends here
-    if (result == null || !result.equals(""))
-      if (isEnd(str, index[0]) || isEndOfSV(str.charAt(index[0])))
-        return result;
-    throw new Exception("Parser does not recognize value: "
-                        + str.charAt(index[0]));
-  } // parseSpecialValue(String, int[])
+    return new JSONParallelParser().parse(path);
+  } // parseParallel(Path)
 
   /**
-   * Helper predicate, determines whether c signals end of a special value
+   * Starts parsing each of the UTF-8 encoded files at paths without tying up
+   * a thread per file, and returns a future for the value of each, in the
+   * same order. See JSONBatchParser to limit how many files are open at once
+   * or to choose where parsing runs.
    * 
-   * @param c
-   *          a char
+   * @param paths
+   *          a Collection of Paths
    */
-  static boolean isEndOfSV(char c)
+  static public List<CompletableFuture<Object>>
+    parseFiles(Collection<Path> paths)
   {
-    return c == ',' || c == ']' || c == '}';
-  } // isEndOfSV(char)
+    return BATCH.parseFiles(paths);
+  } // parseFiles(Collection<Path>)
 
   /**
-   * Tries to parse str as a JSON object, returns a HashMap representing the
-   * object if successful
-   * 
-   * @param str
-   *          a String
-   * @param index
-   *          an int[]
+   * Parses UTF-8 encoded JSON text on demand. Objects and arrays come back as
+   * read-only views that decode their members as they are read; see
+   * JSONLazyParser.
+   *
+   * @param bytes
+   *          a byte[]
    * @throws Exception
    */
-  static HashMap<String, Object> parseObject(String str, int[] index)
+  static public Object parseLazy(byte[] bytes)
     throws Exception
   {
-    HashMap<String, Object> obj = new HashMap<>();
-    index[0]++;
-    deleteWhitespace(str, index);
-    while (str.charAt(index[0]) != '}')
-      {
-        // Removes whitespace before parsing String, because call does not go
-        // through parse()
-        deleteWhitespace(str, index);
-        if (str.charAt(index[0]) != '\"')
-          throw new Exception("Invalid key type.");
-        String key = parseString(str, index);
-        if (str.charAt(index[0]) != ':')
-          throw new Exception("Invalid object format.");
-        index[0]++;
-        obj.put(key, parse(str, index));
-        // check for appropriate object characters
-        if (str.charAt(index[0]) != ',' && str.charAt(index[0]) != '}')
-          throw new Exception("Illegal object character: "
-                              + str.charAt(index[0]));
-        // skip a character only if it's a comma, not a }
-        if (str.charAt(index[0]) == ',')
-          index[0]++;
-      } // while
-    if (str.charAt(index[0]) != '}')
-      throw new Exception("Illegal object character: " + str.charAt(index[0]));
-    index[0]++;
-    // Takes care of all white spaces after object
-    deleteWhitespace(str, index);
-    return obj;
-  } // parseObject(String, int[])
+    return JSONLazyParser.parse(bytes);
+  } // parseLazy(byte[])
 
   /**
-   * Tries to parse str as a String, returns a corresponding String if
-   * successful
-   * 
-   * @param str
+   * Returns the value at the JSON Pointer pointer, such as "/a/b/0", in the
+   * JSON string source, or null if there is none. Only that value is built.
+   *
+   * @param source
+   *          a String
+   * @param pointer
    *          a String
-   * @param index
-   *          an int[]
    * @throws Exception
    */
-  static String parseString(String str, int[] index)
+  static public Object extract(String source, String pointer)
     throws Exception
   {
-    char current = 'a';
-    StringBuilder temp = new StringBuilder();
-    // Moves past "
-    index[0]++;
-    while (!isEnd(str, index[0])
-           && ((current = str.charAt(index[0]++)) != '\"'))
-      {
-        // Special cases
-        if (current == '\\')
-          {
-            switch (str.charAt(index[0]))
-              {
-                case '\\':
-                  temp.append('\\');
-                  break;
-                case '\"':
-                  temp.append('\"');
-                  break;
-                case '/':
-                  temp.append('/');
-                  break;
-                case 'n':
-                  temp.append('\n');
-                  break;
-                case 't':
-                  temp.append('\t');
-                  break;
-                case 'b':
-                  temp.append('\b');
-                  break;
-                case 'f':
-                  temp.append('\f');
-                  break;
-                case 'r':
-                  temp.append('\r');
-                  break;
-                case 'u':
-                  // hex String -parse-> int -cast-> char = Unicode char
-                  temp.append((char) (Integer.parseInt(str.substring(++index[0],
-                                                                     index[0] + 4),
-                                                       16)));
-                  index[0] += 3;
-                  break;
-                default:
-                  throw new Exception("Illegal character after \\.");
-              } // switch
-            index[0]++;
-          } // if
-        else
-          {
-            temp.append(current);
-          }
-      } // while
-    if (current == '\"')
-      {
-        // Remove spaces after Strings
-        deleteWhitespace(str, index);
-        return temp.toString();
-      } // if
-    throw new Exception("Missing quote.");
-  } // parseString(String, int[])
+    return JSONExtractor.extract(source, pointer);
+  } // extract(String, String)
 
   /**
-   * Tries to parse str as a JSON Number, returns a corresponding Number if
-   * successful
-   * 
-   * @param str
+   * Returns the values at several JSON Pointers in the JSON string source,
+   * keyed by pointer, reading source once. Pointers with no value are left
+   * out.
+   *
+   * @param source
    *          a String
-   * @param index
-   *          an int[]
-   */
-  static Number parseNumber(String str, int[] index)
-  {
-    char current;
-    StringBuilder temp = new StringBuilder();
-    // Keeps adding to string until token ends, as parseDouble will do the error
-    // checking
-    while (!isEnd(str, index[0])
-           && !isEndOfNumber(current = str.charAt(index[0])))
-      {
-        temp.append(current);
-        index[0]++;
-      } // while
-    return Double.parseDouble(temp.toString());
-  } // parseNumber(String, int[])
-
-  /**
-   * Helper predicate
-   * 
-   * @param c
-   *          a char
+   * @param pointers
+   *          Strings
+   * @throws Exception
    */
-  static boolean isEndOfNumber(char c)
+  static public Map<String, Object> extractAll(String source,
+                                               String... pointers)
+    throws Exception
   {
-    return c == ',' || c == ']' || c == '}';
-  } // isEndOfNumber(char)
+    return JSONExtractor.extractAll(source, pointers);
+  } // extractAll(String, String...)
 
   /**
-   * Helper predicate
+   * Removes the whitespace between the tokens of the JSON file specified by
+   * fileName, keeping the tokens as they are. The file is streamed to a
+   * temporary file beside it, which then replaces it, so it is left alone if
+   * it is not valid JSON. A symbolic link is followed, so the file it points
+   * to is rewritten, and the file keeps its POSIX permissions and, where
+   * allowed, its owner.
    * 
-   * @param str
+   * @param fileName
    *          a String
-   * @param i
-   *          an int
+   * @throws Exception
    */
-  static boolean isEnd(String str, int i)
+  static public void deleteWhitespace(String fileName)
+    throws Exception
   {
-    return (str.length() == i);
-  } // isEnd(String, int)
+    Path path = Paths.get(fileName).toRealPath();
+    Path temp = Files.createTempFile(path.getParent(), ".json", ".tmp");
+    try
+      {
+        if (Files.getFileStore(path)
+                 .supportsFileAttributeView(PosixFileAttributeView.class))
+          {
+            Files.setPosixFilePermissions(temp,
+                                          Files.getPosixFilePermissions(path));
+            try
+              {
+                Files.setOwner(temp, Files.getOwner(path));
+              } // try
+            catch (IOException | SecurityException e)
+              {
+                // only a privileged user may give a file away
+              } // catch
+          } // if
+        try (InputStream in = Files.newInputStream(path);
+            OutputStream out = Files.newOutputStream(temp))
+          {
+            new JSONFormatter().format(in, out);
+          } // try
+        try
+          {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+          } // try
+        catch (AtomicMoveNotSupportedException e)
+          {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+          } // catch
+      } // try
+    finally
+      {
+        Files.deleteIfExists(temp);
+      } // finally
+  } // deleteWhitespace(String)
 
   /**
-   * Tries to parse str as a JSON array, returns an ArrayList representing the
-   * object if successful
+   * Copies the JSON text read from in to out without the whitespace between
+   * its tokens, in a fixed amount of memory. Neither stream is closed.
    * 
-   * @param str
-   *          a String
-   * @param index
-   *          an int[]
+   * @param in
+   *          an InputStream
+   * @param out
+   *          an OutputStream
    * @throws Exception
    */
-  static ArrayList<Object> parseArray(String str, int[] index)
+  static public void minify(InputStream in, OutputStream out)
     throws Exception
   {
-    ArrayList<Object> arr = new ArrayList<>();
-    // Moves past [
-    index[0]++;
-    deleteWhitespace(str, index);
-    while (str.charAt(index[0]) != ']')
-      {
-        arr.add(parse(str, index));
-        if (isIllegalArray(str.charAt(index[0])))
-          throw new Exception("Illegal array character: "
-                              + str.charAt(index[0]));
-        // skips a space only if character is comma, not ]
-        if (str.charAt(index[0]) == ',')
-          index[0]++;
-      } // while
-    if (str.charAt(index[0]) != ']')
-      throw new Exception("Illegal array character: " + str.charAt(index[0]));
-    // for ]
-    index[0]++;
-    // Remove white spaces after array
-    deleteWhitespace(str, index);
-    return arr;
-  } // parseArray (String, int[])
+    new JSONFormatter().format(in, out);
+  } // minify(InputStream, OutputStream)
 
   /**
-   * Helper predicate, returns whether char specified by c is legal.
+   * Copies the JSON text read from in to out with each member and element
+   * on a line of its own, indented by indent spaces per level, in a fixed
+   * amount of memory. Neither stream is closed.
    * 
-   * @param c
-   *          a char
+   * @param in
+   *          an InputStream
+   * @param out
+   *          an OutputStream
+   * @param indent
+   *          an int
+   * @throws Exception
    */
-  static boolean isIllegalArray(char c)
+  static public void prettyPrint(InputStream in, OutputStream out, int indent)
+    throws Exception
   {
-    return c != ',' && c != ']';
-  } // isIllegalArray(char)
+    JSONFormatter formatter = new JSONFormatter();
+    formatter.setIndent(indent);
+    formatter.format(in, out);
+  } // prettyPrint(InputStream, OutputStream, int)
 
   // +------------------+-----------------------------------------------
   // | toString Methods |
@@ -445,122 +348,61 @@ public class JSONUtils
    * Given an object created by parse, generate the JSON string that corresponds
    * to the object.
    * 
-   * @exception Exception
-   *              If the object cannot be converted, e.g., if it does not
-   *              correspond to something created by parse.
+   * @param obj
+   *          an Object
    */
-  @SuppressWarnings("unchecked")
   static public String toJSONString(Object obj)
   {
-    if (obj instanceof ArrayList)
-      {
-        return arrayToJSONString((ArrayList<Object>) obj);
-      } // if array
-    else if (obj instanceof HashMap)
-      {
-        return objectToJSONString((HashMap<String, Object>) obj);
-      } // else if object
-    else if (obj == null)
-      {
-        return "null";
-      } // else if null
-    else if (obj instanceof String)
-      {
-        return stringToJSONString((String) obj);
-      } // else if String
-    else
-      {
-        return obj.toString();
-      } // else
+    return JSONWriter.toJSONString(obj, false);
   } // toJSONString(Object)
 
   /**
-   * From a String generated by parse, computes a corresponding JSON String
+   * Given an object created by parse, returns the corresponding JSON text
+   * with every character outside ASCII written as a \\u escape.
    * 
-   * @param str
-   *          a String
-   * @throws Exception
+   * @param obj
+   *          an Object
    */
-  static String stringToJSONString(String str)
+  static public String toASCIIString(Object obj)
   {
-    StringBuilder temp = new StringBuilder();
-    int index = 0;
-    while (index < str.length())
-      {
-        switch (str.charAt(index))
-          {
-            case '\\':
-              temp.append("\\\\");
-              break;
-            case '\"':
-              temp.append("\\\"");
-              break;
-            case '/':
-              temp.append("\\/");
-              break;
-            case '\n':
-              temp.append("\\n");
-              break;
-            case '\t':
-              temp.append("\\t");
-              break;
-            case '\b':
-              temp.append("\\b");
-              break;
-            case 'f':
-              temp.append("\\f");
-              break;
-            case '\r':
-              temp.append("\\r");
-              break;
-            default:
-              temp.append(str.charAt(index));
-          } // switch
-        index++;
-      } // while
-    return temp.insert(0, "\"").append("\"").toString();
-  } // stringToJSONString(String)
+    return JSONWriter.toJSONString(obj, true);
+  } // toASCIIString(Object)
 
   /**
-   * From an ArrayList generated by parse, computes a corresponding JSON String
+   * Given an object created by parse, writes the corresponding JSON text to
+   * out, which may also be a Writer or a StringBuilder.
    * 
-   * @param arr
-   *          an ArrayList
+   * @param obj
+   *          an Object
+   * @param out
+   *          an Appendable
+   * @throws IOException
    */
-  static String arrayToJSONString(ArrayList<Object> arr)
+  static public void writeJSON(Object obj, Appendable out)
+    throws IOException
   {
-    StringBuilder result = new StringBuilder();
-    result.append('[');
-    for (Object o : arr)
-      {
-        result.append(toJSONString(o)).append(',');
-      } // for
-    // if array is not empty, get rid of ending comma
-    if (result.length() > 1)
-      result.deleteCharAt(result.length() - 1);
-    return result.append(']').toString();
-  } // arrayToJSONString(ArrayList<Object>)
+    JSONWriter writer = new JSONWriter(out);
+    writer.listener = listener;
+    writer.write(obj);
+    writer.flush();
+  } // writeJSON(Object, Appendable)
 
   /**
-   * From an object (HashMap) generated by parse, computes a corresponding JSON
-   * String
+   * Given an object created by parse, writes the corresponding JSON text to
+   * out, encoded as UTF-8.
    * 
-   * @param map
-   *          a HashMap
+   * @param obj
+   *          an Object
+   * @param out
+   *          an OutputStream
+   * @throws IOException
    */
-  static String objectToJSONString(HashMap<String, Object> map)
+  static public void writeJSON(Object obj, OutputStream out)
+    throws IOException
   {
-    StringBuilder result = new StringBuilder();
-    result.append('{');
-    // Go through HashMap, adding key & value in correct syntax
-    for (Map.Entry<String, Object> entry : map.entrySet())
-      {
-        result.append(toJSONString(entry.getKey())).append(':')
-              .append(toJSONString(entry.getValue())).append(',');
-      } // for
-    // if array is not empty, get rid of ending comma
-    if (result.length() > 1)
-      result.deleteCharAt(result.length() - 1);
-    return result.append('}').toString();
-  } // objectToJSONString(HashMap<String, Object>)
+    JSONWriter writer = new JSONWriter(out);
+    writer.listener = listener;
+    writer.write(obj);
+    writer.flush();
+  } // writeJSON(Object, OutputStream)
 } // class JSONUtils
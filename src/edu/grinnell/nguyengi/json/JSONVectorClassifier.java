@@ -0,0 +1,90 @@
+package edu.grinnell.nguyengi.json;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Classifies bytes for JSONStructuralIndex with the incubating Vector API.
+ * JSONStructuralIndex only loads this class when jdk.incubator.vector is
+ * available, as with --add-modules jdk.incubator.vector.
+ *
+ * @author Giang
+ *
+ */
+class JSONVectorClassifier
+    extends JSONStructuralIndex.Classifier
+{
+  // +-----------+-------------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The widest vectors of the machine, as long as a mask fits in a long
+   */
+  static final VectorSpecies<Byte> SPECIES =
+      ByteVector.SPECIES_PREFERRED.length() <= JSONStructuralIndex.BLOCK
+          ? ByteVector.SPECIES_PREFERRED
+          : ByteVector.SPECIES_512;
+
+  // +---------+---------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Fills masks with the bits of the quotes, backslashes, operators, and
+   * white space among the 64 bytes starting at offset
+   *
+   * @param bytes
+   *          a byte[]
+   * @param offset
+   *          an int
+   * @param masks
+   *          a long[]
+   */
+  @Override
+  void classify(byte[] bytes, int offset, long[] masks)
+  {
+    long quotes = 0;
+    long backslashes = 0;
+    long operators = 0;
+    long spaces = 0;
+    for (int i = 0; i < JSONStructuralIndex.BLOCK; i += SPECIES.length())
+      {
+        ByteVector v = ByteVector.fromArray(SPECIES, bytes, offset + i);
+        ByteVector folded = v.or((byte) 0x20);
+        quotes |= v.eq((byte) '\"').toLong() << i;
+        backslashes |= v.eq((byte) '\\').toLong() << i;
+        VectorMask<Byte> ops = folded.eq((byte) '{')
+                                     .or(folded.eq((byte) '}'))
+                                     .or(v.eq((byte) ':'))
+                                     .or(v.eq((byte) ','));
+        operators |= ops.toLong() << i;
+        VectorMask<Byte> ws = v.eq((byte) ' ')
+                               .or(between(v, '\t', '\r'))
+                               .or(between(v, 0x1C, 0x1F));
+        spaces |= ws.toLong() << i;
+      } // for
+    masks[JSONStructuralIndex.QUOTES] = quotes;
+    masks[JSONStructuralIndex.BACKSLASHES] = backslashes;
+    masks[JSONStructuralIndex.OPERATORS] = operators;
+    masks[JSONStructuralIndex.SPACES] = spaces;
+  } // classify(byte[], int, long[])
+
+  /**
+   * Returns the lanes of v between low and high inclusive
+   *
+   * @param v
+   *          a ByteVector
+   * @param low
+   *          an int
+   * @param high
+   *          an int
+   */
+  static VectorMask<Byte> between(ByteVector v, int low, int high)
+  {
+    return v.compare(VectorOperators.GE, (byte) low)
+            .and(v.compare(VectorOperators.LE, (byte) high));
+  } // between(ByteVector, int, int)
+} // class JSONVectorClassifier
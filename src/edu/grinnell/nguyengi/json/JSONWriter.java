@@ -0,0 +1,592 @@
+package edu.grinnell.nguyengi.json;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes values created by parse as JSON text. All output goes through a
+ * single character buffer into an Appendable, a Writer, or (encoded as UTF-8)
+ * an OutputStream, so no part of the text is built up as a separate String.
+ *
+ * @author Giang
+ *
+ */
+public class JSONWriter
+    implements Closeable, Flushable
+{
+  // +-------+-----------------------------------------------------------
+  // | Notes |
+  // +-------+
+
+  /*
+   * Values are written depth first straight into the buffer, which is passed
+   * on to the output whenever it fills up and when the writer is flushed. A
+   * high surrogate at the end of the buffer is held back until its low
+   * surrogate arrives, so UTF-8 output never splits a pair.
+   *
+   * Like JSONParser, a writer is not safe for use by several threads at once.
+   * JSONUtils keeps one per thread for toJSONString; see cached().
+   */
+
+  // +-----------+-------------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * Size of the character buffer
+   */
+  static final int BUFFER_SIZE = 8192;
+
+  /**
+   * Hex digits for \\u escapes
+   */
+  static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  /**
+   * The escape for each ASCII character, or null for characters written as
+   * they are. Control characters without a short escape are written as
+   * \\u00XX, as the standard requires.
+   */
+  static final String[] ESCAPES = new String[128];
+
+  static
+  {
+    for (char c = 0; c < 0x20; c++)
+      {
+        ESCAPES[c] = "\\u00" + HEX_DIGITS[c >> 4] + HEX_DIGITS[c & 0xF];
+      } // for
+    ESCAPES['\\'] = "\\\\";
+    ESCAPES['\"'] = "\\\"";
+    ESCAPES['/'] = "\\/";
+    ESCAPES['\n'] = "\\n";
+    ESCAPES['\t'] = "\\t";
+    ESCAPES['\b'] = "\\b";
+    ESCAPES['\f'] = "\\f";
+    ESCAPES['\r'] = "\\r";
+  } // static
+
+  // +--------+----------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * One writer per thread, for JSONUtils.toJSONString
+   */
+  static final ThreadLocal<JSONWriter> CACHED =
+      ThreadLocal.withInitial(() -> new JSONWriter((Appendable) null));
+
+  /**
+   * Characters written but not yet passed on
+   */
+  char[] buffer = new char[BUFFER_SIZE];
+
+  /**
+   * Number of characters in buffer
+   */
+  int count = 0;
+
+  /**
+   * Where characters go, unless the output is a stream
+   */
+  Appendable out;
+
+  /**
+   * Where UTF-8 bytes go, if the output is a stream
+   */
+  OutputStream stream;
+
+  /**
+   * Scratch space for encoding the buffer as UTF-8
+   */
+  byte[] bytes;
+
+  /**
+   * Whether the writer is in the middle of a value
+   */
+  boolean busy = false;
+
+  /**
+   * Characters passed on to the output so far
+   */
+  long drained = 0;
+
+  /**
+   * Where written values are reported, if anywhere
+   */
+  JSONListener listener = null;
+
+  /**
+   * Whether characters outside ASCII are written as \\u escapes
+   */
+  boolean asciiOnly = false;
+
+  // +--------------+----------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Creates a writer appending to out, which may also be a Writer or a
+   * StringBuilder
+   *
+   * @param out
+   *          an Appendable
+   */
+  public JSONWriter(Appendable out)
+  {
+    this.out = out;
+  } // JSONWriter(Appendable)
+
+  /**
+   * Creates a writer sending UTF-8 encoded text to stream
+   *
+   * @param stream
+   *          an OutputStream
+   */
+  public JSONWriter(OutputStream stream)
+  {
+    this.stream = stream;
+    // every char takes at most three bytes
+    this.bytes = new byte[BUFFER_SIZE * 3];
+  } // JSONWriter(OutputStream)
+
+  // +---------+---------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Sets the listener that each value written is reported to, or null to
+   * report nothing.
+   *
+   * @param listener
+   *          a JSONListener
+   */
+  public void setListener(JSONListener listener)
+  {
+    this.listener = listener;
+  } // setListener(JSONListener)
+
+  /**
+   * Sets whether characters outside ASCII are written as \\u escapes, so that
+   * the text is pure ASCII. Characters outside the Basic Multilingual Plane
+   * are written as two escapes, one for each half of their surrogate pair.
+   *
+   * @param asciiOnly
+   *          a boolean
+   */
+  public void setAsciiOnly(boolean asciiOnly)
+  {
+    this.asciiOnly = asciiOnly;
+  } // setAsciiOnly(boolean)
+
+  /**
+   * Given an object created by parse, returns the corresponding JSON text,
+   * using the calling thread's writer.
+   *
+   * @param obj
+   *          an Object
+   * @param asciiOnly
+   *          a boolean
+   */
+  static String toJSONString(Object obj, boolean asciiOnly)
+  {
+    StringBuilder result = new StringBuilder();
+    JSONWriter writer = CACHED.get();
+    if (writer.busy)
+      writer = new JSONWriter(result);
+    writer.out = result;
+    writer.listener = JSONUtils.listener;
+    writer.asciiOnly = asciiOnly;
+    try
+      {
+        writer.write(obj);
+        writer.flush();
+      } // try
+    catch (IOException e)
+      {
+        // a StringBuilder never throws
+        throw new IllegalStateException(e);
+      } // catch
+    finally
+      {
+        writer.count = 0;
+        writer.out = null;
+        writer.asciiOnly = false;
+      } // finally
+    return result.toString();
+  } // toJSONString(Object, boolean)
+
+  /**
+   * Writes the JSON text for a value created by parse. Lists are written as
+   * arrays and Maps as objects; other values are written as strings, numbers,
+   * true, false, or null.
+   *
+   * @param value
+   *          an Object
+   * @throws IOException
+   */
+  public void write(Object value)
+    throws IOException
+  {
+    long began = 0;
+    long before = 0;
+    if (listener != null)
+      {
+        began = System.nanoTime();
+        before = drained + count;
+      } // if
+    busy = true;
+    try
+      {
+        writeValue(value);
+      } // try
+    finally
+      {
+        busy = false;
+      } // finally
+    if (listener != null)
+      listener.documentWritten(drained + count - before,
+                               System.nanoTime() - began);
+  } // write(Object)
+
+  /**
+   * Passes everything written so far on to the output, and flushes the
+   * output if it can be flushed.
+   *
+   * @throws IOException
+   */
+  @Override
+  public void flush()
+    throws IOException
+  {
+    drain(true);
+    if (stream != null)
+      stream.flush();
+    else if (out instanceof Flushable)
+      ((Flushable) out).flush();
+  } // flush()
+
+  /**
+   * Flushes the writer and closes the output if it can be closed.
+   *
+   * @throws IOException
+   */
+  @Override
+  public void close()
+    throws IOException
+  {
+    flush();
+    if (stream != null)
+      stream.close();
+    else if (out instanceof Closeable)
+      ((Closeable) out).close();
+  } // close()
+
+  // +------------------+------------------------------------------------
+  // | Writing Methods |
+  // +------------------+
+
+  /**
+   * Writes any value
+   *
+   * @param value
+   *          an Object
+   * @throws IOException
+   */
+  void writeValue(Object value)
+    throws IOException
+  {
+    if (value instanceof List)
+      {
+        writeArray((List<?>) value);
+      } // if array
+    else if (value instanceof Map)
+      {
+        writeObject((Map<?, ?>) value);
+      } // else if object
+    else if (value == null)
+      {
+        writeRaw("null");
+      } // else if null
+    else if (value instanceof String)
+      {
+        writeString((String) value);
+      } // else if String
+    else
+      {
+        writeRaw(value.toString());
+      } // else
+  } // writeValue(Object)
+
+  /**
+   * Writes a list as a JSON array
+   *
+   * @param arr
+   *          a List
+   * @throws IOException
+   */
+  void writeArray(List<?> arr)
+    throws IOException
+  {
+    if (arr instanceof JSONNumberList)
+      {
+        writeNumbers((JSONNumberList) arr);
+        return;
+      } // if
+    writeChar('[');
+    boolean first = true;
+    for (Object o : arr)
+      {
+        if (!first)
+          writeChar(',');
+        first = false;
+        writeValue(o);
+      } // for
+    writeChar(']');
+  } // writeArray(List<?>)
+
+  /**
+   * Writes a list of numbers as a JSON array without boxing its elements
+   *
+   * @param nums
+   *          a JSONNumberList
+   * @throws IOException
+   */
+  void writeNumbers(JSONNumberList nums)
+    throws IOException
+  {
+    writeChar('[');
+    for (int i = 0; i < nums.size(); i++)
+      {
+        if (i > 0)
+          writeChar(',');
+        if (nums.isIntegral(i))
+          writeRaw(Long.toString(nums.getLong(i)));
+        else
+          writeRaw(Double.toString(nums.getDouble(i)));
+      } // for
+    writeChar(']');
+  } // writeNumbers(JSONNumberList)
+
+  /**
+   * Writes a map as a JSON object
+   *
+   * @param map
+   *          a Map
+   * @throws IOException
+   */
+  void writeObject(Map<?, ?> map)
+    throws IOException
+  {
+    writeChar('{');
+    boolean first = true;
+    for (Map.Entry<?, ?> entry : map.entrySet())
+      {
+        if (!first)
+          writeChar(',');
+        first = false;
+        writeString(String.valueOf(entry.getKey()));
+        writeChar(':');
+        writeValue(entry.getValue());
+      } // for
+    writeChar('}');
+  } // writeObject(Map<?, ?>)
+
+  /**
+   * Writes a string as a quoted JSON string. Runs of characters that need no
+   * escape are copied into the buffer in bulk.
+   *
+   * @param str
+   *          a String
+   * @throws IOException
+   */
+  void writeString(String str)
+    throws IOException
+  {
+    writeChar('\"');
+    int length = str.length();
+    int run = 0;
+    for (int index = 0; index < length; index++)
+      {
+        char c = str.charAt(index);
+        String escape;
+        if (c < ESCAPES.length)
+          {
+            escape = ESCAPES[c];
+            if (escape == null)
+              continue;
+          } // if
+        else if (asciiOnly)
+          {
+            escape = null;
+          } // else if
+        else
+          {
+            continue;
+          } // else
+        writeRaw(str, run, index);
+        if (escape != null)
+          writeRaw(escape);
+        else
+          writeUnicode(c);
+        run = index + 1;
+      } // for
+    writeRaw(str, run, length);
+    writeChar('\"');
+  } // writeString(String)
+
+  /**
+   * Writes c as a \\u escape
+   *
+   * @param c
+   *          a char
+   * @throws IOException
+   */
+  void writeUnicode(char c)
+    throws IOException
+  {
+    writeChar('\\');
+    writeChar('u');
+    writeChar(HEX_DIGITS[c >> 12]);
+    writeChar(HEX_DIGITS[(c >> 8) & 0xF]);
+    writeChar(HEX_DIGITS[(c >> 4) & 0xF]);
+    writeChar(HEX_DIGITS[c & 0xF]);
+  } // writeUnicode(char)
+
+  /**
+   * Writes str as it is
+   *
+   * @param str
+   *          a String
+   * @throws IOException
+   */
+  void writeRaw(String str)
+    throws IOException
+  {
+    writeRaw(str, 0, str.length());
+  } // writeRaw(String)
+
+  /**
+   * Writes the characters of str from start up to end as they are
+   *
+   * @param str
+   *          a String
+   * @param start
+   *          an int
+   * @param end
+   *          an int
+   * @throws IOException
+   */
+  void writeRaw(String str, int start, int end)
+    throws IOException
+  {
+    int done = start;
+    while (done < end)
+      {
+        if (count == buffer.length)
+          drain(false);
+        int n = Math.min(end - done, buffer.length - count);
+        str.getChars(done, done + n, buffer, count);
+        count += n;
+        done += n;
+      } // while
+  } // writeRaw(String, int, int)
+
+  /**
+   * Writes a single character
+   *
+   * @param c
+   *          a char
+   * @throws IOException
+   */
+  void writeChar(char c)
+    throws IOException
+  {
+    if (count == buffer.length)
+      drain(false);
+    buffer[count++] = c;
+  } // writeChar(char)
+
+  /**
+   * Passes the buffered characters on to the output. Unless all is set, a
+   * trailing high surrogate stays in the buffer.
+   *
+   * @param all
+   *          a boolean
+   * @throws IOException
+   */
+  void drain(boolean all)
+    throws IOException
+  {
+    if (stream == null)
+      {
+        if (out instanceof StringBuilder)
+          ((StringBuilder) out).append(buffer, 0, count);
+        else if (out instanceof Writer)
+          ((Writer) out).write(buffer, 0, count);
+        else
+          out.append(CharBuffer.wrap(buffer, 0, count));
+        drained += count;
+        count = 0;
+        return;
+      } // if
+    int end = count;
+    if (!all && end > 0 && Character.isHighSurrogate(buffer[end - 1]))
+      end--;
+    stream.write(bytes, 0, encode(end));
+    drained += end;
+    if (end < count)
+      buffer[0] = buffer[end];
+    count -= end;
+  } // drain(boolean)
+
+  /**
+   * Encodes the first end characters of the buffer as UTF-8 into bytes and
+   * returns the number of bytes. Unpaired surrogates become '?'.
+   *
+   * @param end
+   *          an int
+   */
+  int encode(int end)
+  {
+    int n = 0;
+    for (int i = 0; i < end; i++)
+      {
+        char c = buffer[i];
+        if (c < 0x80)
+          {
+            bytes[n++] = (byte) c;
+          } // if one byte
+        else if (c < 0x800)
+          {
+            bytes[n++] = (byte) (0xC0 | (c >> 6));
+            bytes[n++] = (byte) (0x80 | (c & 0x3F));
+          } // else if two bytes
+        else if (Character.isHighSurrogate(c) && i + 1 < end
+                 && Character.isLowSurrogate(buffer[i + 1]))
+          {
+            int codePoint = Character.toCodePoint(c, buffer[++i]);
+            bytes[n++] = (byte) (0xF0 | (codePoint >> 18));
+            bytes[n++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+            bytes[n++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+            bytes[n++] = (byte) (0x80 | (codePoint & 0x3F));
+          } // else if four bytes
+        else if (Character.isSurrogate(c))
+          {
+            bytes[n++] = '?';
+          } // else if unpaired
+        else
+          {
+            bytes[n++] = (byte) (0xE0 | (c >> 12));
+            bytes[n++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            bytes[n++] = (byte) (0x80 | (c & 0x3F));
+          } // else three bytes
+      } // for
+    return n;
+  } // encode(int)
+} // class JSONWriter
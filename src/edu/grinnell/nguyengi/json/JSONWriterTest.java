@@ -0,0 +1,142 @@
+package edu.grinnell.nguyengi.json;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests for the streaming serializer
+ *
+ * @author Giang
+ *
+ */
+public class JSONWriterTest
+{
+  /**
+   * Writing to a String, a Writer, and a stream gives the same text, which
+   * parses back to the original value
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testOutputs()
+    throws Exception
+  {
+    for (String sample : JSONReaderTest.SAMPLES)
+      {
+        Object value = JSONUtils.parse(sample);
+        String text = JSONUtils.toJSONString(value);
+        assertEquals(sample, value, JSONUtils.parse(text));
+
+        StringWriter writer = new StringWriter();
+        JSONUtils.writeJSON(value, writer);
+        assertEquals(text, writer.toString());
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        JSONUtils.writeJSON(value, stream);
+        assertEquals(text, new String(stream.toByteArray(),
+                                      StandardCharsets.UTF_8));
+      } // for
+  } // testOutputs()
+
+  /**
+   * Output longer than the buffer, with surrogate pairs falling on the buffer
+   * boundaries, is encoded correctly
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testLargeOutput()
+    throws Exception
+  {
+    ArrayList<Object> arr = new ArrayList<>();
+    for (int i = 0; i < JSONWriter.BUFFER_SIZE; i++)
+      {
+        arr.add("x\ud83d\ude00" + i);
+      } // for
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    JSONUtils.writeJSON(arr, stream);
+    String text = new String(stream.toByteArray(), StandardCharsets.UTF_8);
+    assertEquals(JSONUtils.toJSONString(arr), text);
+    assertEquals(arr, JSONUtils.parse(text));
+  } // testLargeOutput()
+
+  /**
+   * Escapes are written for special characters, and only for them
+   */
+  @Test
+  public void testEscapes()
+  {
+    assertEquals("\"f\\f\\n\\\"\\\\\"",
+                 JSONUtils.toJSONString("f\f\n\"\\"));
+    Map<String, Object> obj = Collections.singletonMap("GlossDef", null);
+    assertEquals("{\"GlossDef\":null}", JSONUtils.toJSONString(obj));
+  } // testEscapes()
+
+  /**
+   * Control characters are written as \\u00XX unless they have a short
+   * escape, and a string of them parses back to itself
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testControlCharacters()
+    throws Exception
+  {
+    assertEquals("\"a\\u0000b\\u001fc\\u000b\\t\u007f\"",
+                 JSONUtils.toJSONString("a\u0000b\u001fc\u000b\t\u007f"));
+    StringBuilder controls = new StringBuilder();
+    for (char c = 0; c < 0x20; c++)
+      {
+        controls.append(c).append("ok");
+      } // for
+    String text = JSONUtils.toJSONString(controls.toString());
+    for (int i = 0; i < text.length(); i++)
+      {
+        assertTrue(text.charAt(i) >= 0x20);
+      } // for
+    assertEquals(controls.toString(), JSONUtils.parse(text));
+  } // testControlCharacters()
+
+  /**
+   * ASCII-only output escapes everything outside ASCII, surrogate pairs as
+   * two escapes, and leaves the usual output unchanged
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testAsciiOnly()
+    throws Exception
+  {
+    String str = "caf\u00e9 \ud83d\ude00 \u4e2d/";
+    assertEquals("\"caf\\u00e9 \\ud83d\\ude00 \\u4e2d\\/\"",
+                 JSONUtils.toASCIIString(str));
+    assertEquals("\"" + str.replace("/", "\\/") + "\"",
+                 JSONUtils.toJSONString(str));
+    ArrayList<Object> arr = new ArrayList<>();
+    for (int i = 0; i < JSONWriter.BUFFER_SIZE; i++)
+      {
+        arr.add(str + i);
+      } // for
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    JSONWriter writer = new JSONWriter(stream);
+    writer.setAsciiOnly(true);
+    writer.write(arr);
+    writer.flush();
+    byte[] bytes = stream.toByteArray();
+    for (byte b : bytes)
+      {
+        assertTrue(b >= 0);
+      } // for
+    String text = new String(bytes, StandardCharsets.US_ASCII);
+    assertEquals(JSONUtils.toASCIIString(arr), text);
+    assertEquals(arr, JSONUtils.parse(text));
+  } // testAsciiOnly()
+} // class JSONWriterTest
@@ -13,8 +13,6 @@ import java.io.FileReader;
 import java.io.PrintStream;
 import java.io.PrintWriter;
 
-import edu.grinnell.nguyengi.json.JSON.ParsingException;
-
 /**
  * Some tests using specific inputs
  * 
@@ -24,8 +22,7 @@ import edu.grinnell.nguyengi.json.JSON.ParsingException;
 public class Tests
 {
   public static void main(String[] args)
-    throws ParsingException,
-      Exception
+    throws Exception
   {
     // Tests methods using specific inputs from a file
     BufferedReader eyes =